@@ -0,0 +1,228 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.flow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+import io.fixprotocol.silverflash.fixp.store.Durability;
+import io.fixprotocol.silverflash.fixp.store.MessageJournal;
+import io.fixprotocol.silverflash.fixp.store.MessageStore;
+import io.fixprotocol.silverflash.fixp.store.MessageStoreResult;
+import io.fixprotocol.silverflash.fixp.store.StoreException;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
+import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
+import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
+
+/**
+ * Measures latency of sending on a recoverable flow when messages are persisted synchronously
+ * versus through a MessageJournal
+ */
+@State(Scope.Benchmark)
+public class RecoverableFlowSenderBenchmark {
+
+  /**
+   * Appends messages to a file; retrieval is not needed by this benchmark
+   */
+  static class FileMessageStore implements MessageStore {
+    private static final long MAX_FILE_SIZE = 64 * 1024 * 1024;
+    private FileChannel channel;
+    private RandomAccessFile file;
+
+    @Override
+    public void close() throws Exception {
+      file.close();
+    }
+
+    @Override
+    public void flush(Durability durability) throws StoreException {
+      if (durability == Durability.SYNC) {
+        try {
+          channel.force(false);
+        } catch (IOException e) {
+          throw new StoreException(e);
+        }
+      }
+    }
+
+    @Override
+    public void insertMessage(UUID sessionId, long seqNo, ByteBuffer message)
+        throws StoreException {
+      try {
+        if (channel.position() > MAX_FILE_SIZE) {
+          channel.position(0);
+        }
+        channel.write(message.duplicate());
+      } catch (IOException e) {
+        throw new StoreException(e);
+      }
+    }
+
+    @Override
+    public CompletableFuture<FileMessageStore> open() {
+      try {
+        File temp = File.createTempFile("journal", ".dat");
+        temp.deleteOnExit();
+        file = new RandomAccessFile(temp, "rw");
+        channel = file.getChannel();
+      } catch (IOException e) {
+        CompletableFuture<FileMessageStore> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+      }
+      return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public long retrieveMaxSeqNo(UUID sessionId) {
+      return 0;
+    }
+
+    @Override
+    public void retrieveMessagesAsync(MessageStoreResult result,
+        Consumer<MessageStoreResult> consumer) throws StoreException {
+    }
+  }
+
+  /**
+   * Discards sent messages
+   */
+  static class NullTransport implements Transport {
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public boolean isFifo() {
+      return true;
+    }
+
+    @Override
+    public boolean isMessageOriented() {
+      return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public boolean isReadyToRead() {
+      return false;
+    }
+
+    @Override
+    public CompletableFuture<? extends Transport> open(BufferSupplier buffers,
+        TransportConsumer consumer) {
+      return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return 0;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return src.position();
+    }
+  }
+
+  @Param({"NONE", "FLUSH", "SYNC"})
+  public String durability;
+
+  @Param({"false", "true"})
+  public boolean isJournaled;
+
+  @Param({"128", "1024"})
+  public int messageLength;
+
+  private MessageJournal journal;
+  private ByteBuffer message;
+  private EventReactor<ByteBuffer> reactor;
+  private RecoverableFlowSender sender;
+  private FileMessageStore store;
+  private final AffinityThreadFactory threadFactory =
+      new AffinityThreadFactory(true, true, "benchmark");
+
+  @TearDown
+  public void detroyTestEnvironment() throws Exception {
+    if (journal != null) {
+      journal.close();
+    }
+    store.close();
+    reactor.close();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Setup
+  public void initTestEnvironment() throws Exception {
+    reactor = EventReactor.builder().withThreadFactory(threadFactory)
+        .withDispatcher(new ByteBufferDispatcher())
+        .withPayloadAllocator(new ByteBufferPayload(2048)).build();
+    reactor.open().get();
+
+    store = new FileMessageStore();
+    store.open().get();
+
+    RecoverableFlowSender.Builder builder = RecoverableFlowSender.builder();
+    builder.withMessageStore(store);
+    builder.withDurability(Durability.valueOf(durability));
+    if (isJournaled) {
+      journal = new MessageJournal(store, threadFactory, System.err::println);
+      journal.open().get();
+      builder.withMessageJournal(journal);
+    }
+    sender = (RecoverableFlowSender) builder.withSessionId(UUID.randomUUID())
+        .withReactor(reactor).withTransport(new NullTransport())
+        .withSequencer(new SimplexStreamSequencer(new MessageLengthFrameEncoder()))
+        .withMessageFrameEncoder(new MessageLengthFrameEncoder()).withKeepaliveInterval(60000)
+        .build();
+
+    message = ByteBuffer.allocateDirect(messageLength).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < messageLength; i++) {
+      message.put((byte) i);
+    }
+  }
+
+  @Benchmark
+  public long send() throws IOException {
+    message.position(messageLength);
+    return sender.send(message);
+  }
+}
@@ -37,6 +37,7 @@ import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
 import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameSpliterator;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
 
 @State(Scope.Benchmark)
 public class FrameSpliteratorBenchmark {
@@ -58,8 +59,12 @@ public class FrameSpliteratorBenchmark {
   private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
 
   private MessageLengthFrameSpliterator spliterator;
+  private ReassemblingFrameSpliterator reassembler;
   private MessageFrameEncoder frameEncoder;
   private ByteBuffer buffer;
+  // same frames split into two reads at a point within a frame
+  private ByteBuffer firstRead;
+  private ByteBuffer secondRead;
 
   @AuxCounters
   @State(Scope.Thread)
@@ -82,15 +87,28 @@ public class FrameSpliteratorBenchmark {
             ByteOrder.nativeOrder());
     
     spliterator = new MessageLengthFrameSpliterator();
+    reassembler = new ReassemblingFrameSpliterator();
     frameEncoder = new MessageLengthFrameEncoder();
 
     for (int i = 0; i < message.limit(); i++) {
       message.put((byte) i);
     }
+    message.flip();
 
     for (int i = 0; i < numberOfMessages; i++) {
       encodeApplicationMessageWithFrame(buffer, message);
     }
+    buffer.flip();
+
+    final int splitOffset = buffer.limit() / 2 + 1;
+    firstRead = ByteBuffer.allocateDirect(splitOffset).order(ByteOrder.nativeOrder());
+    secondRead =
+        ByteBuffer.allocateDirect(buffer.limit() - splitOffset).order(ByteOrder.nativeOrder());
+    ByteBuffer source = buffer.duplicate();
+    source.limit(splitOffset);
+    firstRead.put(source).flip();
+    source.limit(buffer.limit());
+    secondRead.put(source).flip();
   }
 
   @Benchmark
@@ -99,33 +117,70 @@ public class FrameSpliteratorBenchmark {
     spliterator.wrap(buffer);
 
     while (spliterator.tryAdvance((Consumer<ByteBuffer>) message -> {
-      immutableBuffer.wrap(buffer);
-      int offset = buffer.position();
-      messageHeaderDecoder.wrap(immutableBuffer, offset);
+      decodeMessage(message, counters);
+    }));
+  }
+
+  /**
+   * Whole frames in a single read are delimited in place
+   */
+  @Benchmark
+  public void reassembleWholeFrames(Counters counters) throws IOException {
+    buffer.rewind();
+    reassembler.wrap(buffer);
+
+    while (reassembler.tryAdvance((Consumer<ByteBuffer>) message -> {
+      decodeMessage(message, counters);
+    }));
+  }
 
-      if (templateId == messageHeaderDecoder.templateId()) {
-        counters.succeeded++;
-      } else {
-        counters.failed++;
-      }
+  /**
+   * A frame straddles two reads, so its leading bytes are carried into the second read
+   */
+  @Benchmark
+  public void reassembleStraddlingFrames(Counters counters) throws IOException {
+    firstRead.rewind();
+    reassembler.wrap(firstRead);
+
+    while (reassembler.tryAdvance((Consumer<ByteBuffer>) message -> {
+      decodeMessage(message, counters);
+    }));
+
+    secondRead.rewind();
+    reassembler.wrap(secondRead);
 
+    while (reassembler.tryAdvance((Consumer<ByteBuffer>) message -> {
+      decodeMessage(message, counters);
     }));
   }
 
+  private void decodeMessage(ByteBuffer message, Counters counters) {
+    immutableBuffer.wrap(message);
+    int offset = message.position();
+    messageHeaderDecoder.wrap(immutableBuffer, offset);
+
+    if (templateId == messageHeaderDecoder.templateId()) {
+      counters.succeeded++;
+    } else {
+      counters.failed++;
+    }
+  }
+
  
   private long encodeApplicationMessageWithFrame(ByteBuffer buffer, ByteBuffer message) {
+    final int frameOffset = buffer.position();
     int length = message.remaining();
     int offset = 0;
     mutableBuffer.wrap(buffer);
-    frameEncoder.wrap(buffer, offset).encodeFrameHeader();
+    frameEncoder.wrap(buffer, frameOffset).encodeFrameHeader();
     offset += frameEncoder.getHeaderLength();
-    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.wrap(mutableBuffer, frameOffset + offset);
     messageHeaderEncoder.blockLength(length)
         .templateId(templateId).schemaId(schemaId)
         .version(schemaVersion);
     offset += MessageHeaderEncoder.ENCODED_LENGTH; 
-    buffer.position(offset);
-    buffer.put(message);
+    buffer.position(frameOffset + offset);
+    buffer.put(message.duplicate());
     frameEncoder.setMessageLength(offset + length);
     frameEncoder.encodeFrameTrailer();
     return frameEncoder.getEncodedLength();
@@ -17,6 +17,7 @@ package io.fixprotocol.silverflash.reactor;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -28,14 +29,18 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
 import io.fixprotocol.silverflash.Receiver;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType;
 import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
 import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
 import io.fixprotocol.silverflash.reactor.EventReactor;
 import io.fixprotocol.silverflash.reactor.Topic;
-import io.fixprotocol.silverflash.reactor.Topics;
 import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
 
 
+/**
+ * Run with {@code -prof gc} to observe allocation rate; posting an event should not allocate.
+ */
 @State(Scope.Benchmark)
 public class EventReactorBenchmark {
 
@@ -100,6 +105,7 @@ public class EventReactorBenchmark {
   @Param({"128", "256", "1024"})
   public int ringSize;
   private final ThreadFactory threadFactory = new AffinityThreadFactory(true, true, "benchmark");
+  private UUID[] sessionIds;
   private Topic[] topics;
 
 
@@ -119,9 +125,12 @@ public class EventReactorBenchmark {
     topics = new Topic[numberOfTopics];
     receivers = new TestReceiver[numberOfTopics];
     messages = new ByteBuffer[numberOfTopics];
+    sessionIds = new UUID[numberOfTopics];
 
     for (int i = 0; i < numberOfTopics; ++i) {
-      topics[i] = Topics.getTopic("Topic" + i);
+      sessionIds[i] = UUID.randomUUID();
+      topics[i] = SessionEventTopics.getTopic(sessionIds[i],
+          ToSessionEventType.APPLICATION_MESSAGE_TO_SEND);
       receivers[i] = new TestReceiver();
       reactor.subscribe(topics[i], receivers[i]);
       messages[i] = ByteBuffer.allocate(messageLength);
@@ -139,4 +148,12 @@ public class EventReactorBenchmark {
     Topic topic = topics[instance % numberOfTopics];
     reactor.post(topic, messages[instance % numberOfTopics]);
   }
+
+  @Benchmark
+  public void publishBySession(Publisher local) {
+    int instance = local.next();
+    Topic topic = SessionEventTopics.getTopic(sessionIds[instance % numberOfTopics],
+        ToSessionEventType.APPLICATION_MESSAGE_TO_SEND);
+    reactor.post(topic, messages[instance % numberOfTopics]);
+  }
 }
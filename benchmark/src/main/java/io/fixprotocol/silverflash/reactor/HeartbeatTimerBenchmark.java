@@ -0,0 +1,141 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+import java.nio.ByteBuffer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.fixprotocol.silverflash.Receiver;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType;
+import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
+
+/**
+ * Schedules and cancels heartbeat timers of many sessions, as when sessions are established and
+ * terminated. Each session has a sender and a receiver heartbeat.
+ * <p>
+ * The EventReactor timer wheel is compared to a {@code java.util.Timer} that posts to the reactor,
+ * which was formerly used by EventReactor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HeartbeatTimerBenchmark {
+
+  private static class HeartbeatTask extends TimerTask {
+    private final EventReactor<ByteBuffer> reactor;
+    private final ByteBuffer src;
+    private final Topic topic;
+
+    HeartbeatTask(EventReactor<ByteBuffer> reactor, Topic topic, ByteBuffer src) {
+      this.reactor = reactor;
+      this.topic = topic;
+      this.src = src;
+    }
+
+    @Override
+    public void run() {
+      reactor.post(topic, src);
+    }
+  }
+
+  private final ByteBuffer heartbeat = ByteBuffer.allocate(0);
+
+  @Param({"1000"})
+  public long keepaliveInterval;
+
+  @Param({"100000"})
+  public int numberOfSessions;
+
+  private Topic[] receiverTopics;
+  private EventReactor<ByteBuffer> reactor;
+  private TimerSchedule[] schedules;
+  private Topic[] senderTopics;
+  private TimerTask[] tasks;
+  private final ThreadFactory threadFactory = new AffinityThreadFactory(true, true, "benchmark");
+  private Timer timer;
+
+  @TearDown
+  public void detroyTestEnvironment() {
+    timer.cancel();
+    reactor.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Setup
+  public void initTestEnvironment() throws Exception {
+    reactor = EventReactor.builder().withRingSize(1024).withThreadFactory(threadFactory)
+        .withDispatcher(new ByteBufferDispatcher())
+        .withPayloadAllocator(new ByteBufferPayload(64)).build();
+    reactor.open().get();
+    timer = new Timer();
+
+    senderTopics = new Topic[numberOfSessions];
+    receiverTopics = new Topic[numberOfSessions];
+    schedules = new TimerSchedule[numberOfSessions * 2];
+    tasks = new TimerTask[numberOfSessions * 2];
+    final Receiver receiver = buffer -> {
+    };
+    for (int i = 0; i < numberOfSessions; i++) {
+      final UUID sessionId = UUID.randomUUID();
+      senderTopics[i] = SessionEventTopics.getTopic(sessionId, SessionEventType.HEARTBEAT);
+      receiverTopics[i] = SessionEventTopics.getTopic(sessionId, SessionEventType.PEER_HEARTBEAT);
+      reactor.subscribe(senderTopics[i], receiver);
+      reactor.subscribe(receiverTopics[i], receiver);
+    }
+  }
+
+  @Benchmark
+  public void javaUtilTimer() {
+    for (int i = 0; i < numberOfSessions; i++) {
+      tasks[2 * i] = new HeartbeatTask(reactor, senderTopics[i], heartbeat);
+      timer.scheduleAtFixedRate(tasks[2 * i], keepaliveInterval, keepaliveInterval);
+      tasks[2 * i + 1] = new HeartbeatTask(reactor, receiverTopics[i], heartbeat);
+      timer.scheduleAtFixedRate(tasks[2 * i + 1], keepaliveInterval, keepaliveInterval);
+    }
+    for (int i = 0; i < tasks.length; i++) {
+      tasks[i].cancel();
+    }
+    timer.purge();
+  }
+
+  @Benchmark
+  public void timerWheel() {
+    for (int i = 0; i < numberOfSessions; i++) {
+      schedules[2 * i] = reactor.postAtInterval(senderTopics[i], heartbeat, keepaliveInterval);
+      schedules[2 * i + 1] =
+          reactor.postAtInterval(receiverTopics[i], heartbeat, keepaliveInterval);
+    }
+    for (int i = 0; i < schedules.length; i++) {
+      schedules[i].cancel();
+    }
+  }
+}
@@ -37,6 +37,13 @@ import io.fixprotocol.silverflash.transport.Transport;
 import io.fixprotocol.silverflash.transport.TransportConsumer;
 import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
 
+/**
+ * Compares transports between components on the same host
+ * <p>
+ * A client writes messages that a server echoes. {@code pipe} is a {@link PipeTransport} read by an
+ * IOReactor, {@code shmem} is a {@link SharedMemoryTransport} read by a Dispatcher per side, and
+ * {@code inprocess} is an {@link InProcessTransport} whose sides are read by one Dispatcher.
+ */
 @State(Scope.Benchmark)
 public class MemoryTransportBenchmark {
 
@@ -72,7 +79,8 @@ public class MemoryTransportBenchmark {
 
     @Override
     public void accept(ByteBuffer inbound) {
-      inbound.rewind();
+      // a write flips the buffer, so it must be positioned at the end of the message
+      inbound.position(inbound.limit());
       try {
         transport.write(inbound);
       } catch (IOException e) {
@@ -99,6 +107,9 @@ public class MemoryTransportBenchmark {
   @Param({"128", "256", "1024"})
   public int bufferSize;
 
+  @Param({"pipe", "shmem", "inprocess"})
+  public String transportType;
+
   private BufferSupplier clientBuffers;
   private Transport clientTransport;
   private byte[] message;
@@ -110,10 +121,15 @@ public class MemoryTransportBenchmark {
 
   private Dispatcher clientDispatcher;
 
+  private IOReactor reactor;
+
   @TearDown
   public void detroyTestEnvironment() {
     clientTransport.close();
     serverTransport.close();
+    if (reactor != null) {
+      reactor.close();
+    }
   }
 
   @Setup
@@ -122,12 +138,31 @@ public class MemoryTransportBenchmark {
     serverBuffers =
         new SingleBufferSupplier(ByteBuffer.allocate(bufferSize).order(ByteOrder.nativeOrder()));
     serverDispatcher = new Dispatcher(threadFactory);
-    serverTransport = new SharedMemoryTransport(false, true, 1, serverDispatcher);
+    clientDispatcher = new Dispatcher(threadFactory);
+    switch (transportType) {
+      case "pipe":
+        reactor = new IOReactor(threadFactory, System.err::println);
+        reactor.open().get();
+        final PipeTransport pipeTransport = new PipeTransport(reactor.getSelector());
+        serverTransport = pipeTransport.getServerTransport();
+        clientTransport = pipeTransport.getClientTransport();
+        break;
+      case "shmem":
+        serverTransport = new SharedMemoryTransport(false, true, 1, serverDispatcher);
+        clientTransport = new SharedMemoryTransport(true, true, 1, clientDispatcher);
+        break;
+      case "inprocess":
+        // one dispatcher reads both directions
+        final InProcessTransport inProcessTransport = new InProcessTransport(serverDispatcher);
+        serverTransport = inProcessTransport.getServerTransport();
+        clientTransport = inProcessTransport.getClientTransport();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown transport type " + transportType);
+    }
     serverTransport.open(serverBuffers, new Reflector(serverTransport));
     clientBuffers =
         new SingleBufferSupplier(ByteBuffer.allocate(bufferSize).order(ByteOrder.nativeOrder()));
-    clientDispatcher = new Dispatcher(threadFactory);
-    clientTransport = new SharedMemoryTransport(true, true, 1, clientDispatcher);
     clientTransport.open(clientBuffers, new NoopConsumer());
     message = new byte[bufferSize];
     Arrays.fill(message, (byte) 'x');
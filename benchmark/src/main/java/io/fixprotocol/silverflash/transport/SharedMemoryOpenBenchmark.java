@@ -0,0 +1,150 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+
+/**
+ * Measures the time to open a pair of new shared memory pipes, and the latency of the first
+ * message after open
+ * <p>
+ * Each invocation starts from new files. Without pre-faulting, opening is cheap but the first
+ * message takes page faults; with pre-faulting, the cost moves to open.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SharedMemoryOpenBenchmark {
+
+  private class Receiver implements TransportConsumer {
+
+    @Override
+    public void accept(ByteBuffer inbound) {
+      messagesReceived++;
+    }
+
+    @Override
+    public void connected() {
+      // do nothing
+
+    }
+
+    @Override
+    public void disconnected() {
+      // do nothing
+
+    }
+
+  }
+
+  private static final int TRANSPORT_NUMBER = 99;
+
+  @Param({"16777216", "1073741824"})
+  public int capacity;
+
+  @Param({"/dev/shm"})
+  public String directory;
+
+  @Param({"false", "true"})
+  public boolean preFault;
+
+  private SharedMemoryTransport clientTransport;
+  private Dispatcher dispatcher;
+  private volatile int messagesReceived;
+  private SharedMemoryTransport serverTransport;
+  private ByteBuffer src;
+
+  @Setup(Level.Trial)
+  public void initTestEnvironment() {
+    dispatcher = new Dispatcher();
+    src = ByteBuffer.allocateDirect(128).order(ByteOrder.nativeOrder());
+  }
+
+  @Setup(Level.Invocation)
+  public void createFiles(BenchmarkParams params)
+      throws IOException, InterruptedException, ExecutionException {
+    messagesReceived = 0;
+    final Path path = Paths.get(directory);
+    Files.deleteIfExists(path.resolve(String.format(SharedMemoryTransport.FILENAME_PATTERN,
+        TRANSPORT_NUMBER, "C")));
+    Files.deleteIfExists(path.resolve(String.format(SharedMemoryTransport.FILENAME_PATTERN,
+        TRANSPORT_NUMBER, "S")));
+    if (params.getBenchmark().endsWith("firstMessage")) {
+      openTransports();
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeTransports() {
+    clientTransport.close();
+    serverTransport.close();
+  }
+
+  @Benchmark
+  public void firstMessage() throws IOException {
+    src.clear();
+    src.position(src.capacity());
+    clientTransport.write(src);
+    while (messagesReceived == 0) {
+      Thread.yield();
+    }
+  }
+
+  @Benchmark
+  public void open() throws InterruptedException, ExecutionException {
+    openTransports();
+  }
+
+  private SharedMemoryTransport open(boolean isClient)
+      throws InterruptedException, ExecutionException {
+    final SharedMemoryTransport transport =
+        SharedMemoryTransport.builder().withClient(isClient).withDispatcher(dispatcher)
+            .withDirectory(Paths.get(directory)).withTransportNumber(TRANSPORT_NUMBER)
+            .withInboundCapacity(capacity).withOutboundCapacity(capacity).withPreFault(preFault)
+            .build();
+    transport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new Receiver()).get();
+    return transport;
+  }
+
+  private void openTransports() throws InterruptedException, ExecutionException {
+    serverTransport = open(false);
+    clientTransport = open(true);
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
+
+/**
+ * Measures round trip latency of one client while another client of the same server IOReactor
+ * sends messages but never reads its echoes
+ * <p>
+ * The server echoes every message on the reactor thread. Without an outbound queue, the reactor
+ * thread stalls once the slow peer's socket buffer is full, and the round trip of the fast client
+ * never completes. With an outbound queue, writes to the slow peer are queued up to its high-water
+ * mark and then fail, while the fast client is unaffected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlowPeerBenchmark {
+
+  private class Echo implements TransportConsumer {
+
+    private final Transport transport;
+
+    public Echo(Transport transport) {
+      this.transport = transport;
+    }
+
+    @Override
+    public void accept(ByteBuffer inbound) {
+      inbound.position(inbound.limit());
+      try {
+        transport.write(inbound);
+      } catch (IOException e) {
+        rejectedWrites.incrementAndGet();
+      }
+    }
+
+    @Override
+    public void connected() {
+      // do nothing
+    }
+
+    @Override
+    public void disconnected() {
+      // do nothing
+    }
+  }
+
+  private class FastConsumer implements TransportConsumer {
+
+    @Override
+    public void accept(ByteBuffer inbound) {
+      bytesReceived.addAndGet(inbound.remaining());
+    }
+
+    @Override
+    public void connected() {
+      // do nothing
+    }
+
+    @Override
+    public void disconnected() {
+      // do nothing
+    }
+  }
+
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class Counters {
+    public long rejected;
+
+    @Setup(Level.Iteration)
+    public void clean() {
+      rejected = 0;
+    }
+  }
+
+  private static final InetSocketAddress serverAddress =
+      new InetSocketAddress(InetAddress.getLoopbackAddress(), 7547);
+
+  @Param({"128", "1024"})
+  public int bufferSize;
+
+  @Param({"true", "false"})
+  public boolean hasSlowPeer;
+
+  private final AtomicLong bytesReceived = new AtomicLong();
+  private IOReactor clientIOReactor;
+  private TcpConnectorTransport fastTransport;
+  private ByteBuffer message;
+  private final AtomicLong rejectedWrites = new AtomicLong();
+  private IOReactor serverIOReactor;
+  private SocketChannel slowChannel;
+  private TcpAcceptor tcpAcceptor;
+
+  private final Function<Transport, Transport> transportWrapper =
+      new Function<Transport, Transport>() {
+
+        public Transport apply(Transport transport) {
+          try {
+            transport.open(
+                new SingleBufferSupplier(
+                    ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder())),
+                new Echo(transport)).get();
+          } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+          }
+          return transport;
+        }
+      };
+
+  @TearDown
+  public void detroyTestEnvironment() throws IOException {
+    fastTransport.close();
+    if (slowChannel != null) {
+      slowChannel.close();
+    }
+    tcpAcceptor.close();
+    clientIOReactor.close();
+    serverIOReactor.close();
+  }
+
+  @Setup
+  public void initTestEnvironment()
+      throws IOException, InterruptedException, ExecutionException, TimeoutException {
+    final byte[] bytes = new byte[bufferSize];
+    Arrays.fill(bytes, (byte) 'x');
+    message = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+    message.put(bytes);
+
+    AffinityThreadFactory threadFactory = new AffinityThreadFactory(true, true, "benchmark");
+    ExceptionConsumer exceptionConsumer = System.err::println;
+
+    serverIOReactor = new IOReactor(threadFactory, exceptionConsumer);
+    serverIOReactor.open().get();
+    tcpAcceptor = new TcpAcceptor(serverIOReactor.getSelector(), serverAddress, transportWrapper);
+    tcpAcceptor.open().get();
+
+    clientIOReactor = new IOReactor(threadFactory, exceptionConsumer);
+    clientIOReactor.open().get();
+    fastTransport = new TcpConnectorTransport(clientIOReactor.getSelector(), serverAddress);
+    fastTransport.open(
+        new SingleBufferSupplier(
+            ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder())),
+        new FastConsumer()).get(3000L, TimeUnit.MILLISECONDS);
+
+    if (hasSlowPeer) {
+      slowChannel = SocketChannel.open(serverAddress);
+      slowChannel.configureBlocking(false);
+      // send until the server cannot keep up echoing; never read
+      final ByteBuffer flood = ByteBuffer.allocateDirect(64 * 1024);
+      final long deadline = System.currentTimeMillis() + 2000L;
+      while (System.currentTimeMillis() < deadline) {
+        flood.clear();
+        slowChannel.write(flood);
+      }
+    }
+    // client gets accepted signal before server transport is fully constructed
+    Thread.sleep(1000L);
+  }
+
+  @Benchmark
+  public void roundTrip(Counters counters) throws IOException {
+    final long expected = bytesReceived.get() + bufferSize;
+    message.position(bufferSize);
+    fastTransport.write(message);
+    while (bytesReceived.get() < expected) {
+      if (Thread.currentThread().isInterrupted()) {
+        return;
+      }
+    }
+    counters.rejected = rejectedWrites.get();
+  }
+}
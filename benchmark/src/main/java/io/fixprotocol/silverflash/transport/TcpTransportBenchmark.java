@@ -58,6 +58,13 @@ public class TcpTransportBenchmark {
   @Param({"true", "false"})
   public boolean isDemultiplexed;
 
+  /**
+   * If {@code true}, messages of a batch written one at a time are gathered and flushed together;
+   * otherwise each write is sent immediately
+   */
+  @Param({"false", "true"})
+  public boolean isCoalesced;
+
   private class InjectorConsumer implements TransportConsumer {
 
     @Override
@@ -226,4 +233,28 @@ public class TcpTransportBenchmark {
     }
   }
 
+  /**
+   * Writes messages of a batch one at a time, as a sender does for a burst of application messages
+   */
+  @Benchmark
+  public void send(Counters counters) throws IOException {
+    if (isCoalesced) {
+      clientTransport.cork();
+    }
+    long bytesWritten = 0;
+    for (int i = 0; i < batchSize; i++) {
+      srcs[i].clear();
+      srcs[i].put(message);
+      bytesWritten += clientTransport.write(srcs[i]);
+    }
+    if (isCoalesced) {
+      clientTransport.flush();
+    }
+    if (bytesWritten == 0) {
+      counters.failed++;
+    } else {
+      counters.succeeded++;
+    }
+  }
+
 }
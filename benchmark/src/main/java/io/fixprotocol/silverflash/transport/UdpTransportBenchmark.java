@@ -28,7 +28,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
@@ -116,10 +118,32 @@ public class UdpTransportBenchmark {
 
   }
 
+  /**
+   * Reports datagrams reflected by the server per second
+   */
+  @AuxCounters
+  @State(Scope.Thread)
+  public static class Counters {
+    public long packets;
+    private long start = -1;
+
+    @Setup(Level.Iteration)
+    public void clean() {
+      packets = 0;
+      start = -1;
+    }
+  }
+
   private static AffinityThreadFactory threadFactory;
   @Param({"1", "2", "4"})
   public int batchSize;
 
+  /**
+   * Maximum number of datagrams read per readiness event
+   */
+  @Param({"1", "16", "64"})
+  public int readBudget;
+
   @Param({"128", "256", "1024"})
   public int bufferSize;
 
@@ -197,11 +221,13 @@ public class UdpTransportBenchmark {
       serverIOReactor.open().get();
       serverTransport =
           createServerTransport(serverIOReactor.getSelector(), serverAddress, clientAddress);
+      serverTransport.setReadBudget(readBudget);
       reflector.setTransport(serverTransport);
       serverTransport.open(serverBuffers, serverBuffers);
     } else {
       Dispatcher dispatcher = new Dispatcher(threadFactory);
       serverTransport = createServerTransport(dispatcher, serverAddress, clientAddress);
+      serverTransport.setReadBudget(readBudget);
       reflector.setTransport(serverTransport);
       serverTransport.open(serverBuffers, serverBuffers);
       dispatcher.addTransport(serverTransport);
@@ -231,11 +257,16 @@ public class UdpTransportBenchmark {
   }
 
   @Benchmark
-  public void inject() throws IOException {
+  public void inject(Counters counters) throws IOException {
     for (int i = 0; i < batchSize; i++) {
       srcs[i].clear();
       srcs[i].put(message);
     }
     clientTransport.write(srcs);
+    final int reflected = reflector.reflected.get();
+    if (counters.start == -1) {
+      counters.start = reflected;
+    }
+    counters.packets = reflected - counters.start;
   }
 }
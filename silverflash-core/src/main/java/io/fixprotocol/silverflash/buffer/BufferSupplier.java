@@ -22,7 +22,7 @@ import java.util.function.Supplier;
 /**
  * A Supplier of buffers that requires populated buffers to be committed
  * 
- * Not guaranteed to support more than one uncommitted buffer.
+ * Not guaranteed to support more than one uncommitted buffer; see {@link #getMaxUncommitted()}.
  * @author Don Mendelson
  *
  */
@@ -32,5 +32,16 @@ public interface BufferSupplier extends Supplier<ByteBuffer> {
    * Complete storage of the last supplied buffer
    */
   void commit();
+
+  /**
+   * Returns the number of buffers that may be supplied before {@link #commit()}, which then
+   * completes all of them as one batch. A supplier may receive empty buffers in a batch, which it
+   * should ignore.
+   * 
+   * @return maximum number of uncommitted buffers. Default is 1.
+   */
+  default int getMaxUncommitted() {
+    return 1;
+  }
   
 }
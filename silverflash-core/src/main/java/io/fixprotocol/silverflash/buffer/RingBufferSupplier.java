@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 
@@ -65,22 +66,36 @@ public class RingBufferSupplier implements BufferSupplier, Service {
   private RingBuffer<BufferEvent> ringBuffer;
   private final int ringSize = 256;
 
-  private final ThreadLocal<Long> uncommitted = new ThreadLocal<Long>() {
+  // first and last uncommitted sequences of a batch, or -1 if none
+  private final ThreadLocal<long[]> uncommitted = new ThreadLocal<long[]>() {
     @Override
-    protected Long initialValue() {
-      return 0L;
+    protected long[] initialValue() {
+      return new long[] {-1L, -1L};
     }
   };
   private final ThreadFactory threadFactory;
+  private final WaitStrategy waitStrategy;
 
   /**
-   * Constructor
+   * Constructor with busy spin wait strategy
    * @param threadFactory supplies threads to consume the ring buffer
    * @param consumer receives buffered messages
    */
   public RingBufferSupplier(ThreadFactory threadFactory, Receiver consumer) {
+    this(threadFactory, consumer, new BusySpinWaitStrategy());
+  }
+
+  /**
+   * Constructor
+   * @param threadFactory supplies threads to consume the ring buffer
+   * @param consumer receives buffered messages
+   * @param waitStrategy how the consuming thread waits for messages
+   */
+  public RingBufferSupplier(ThreadFactory threadFactory, Receiver consumer,
+      WaitStrategy waitStrategy) {
     this.threadFactory = threadFactory;
     this.consumer = consumer;
+    this.waitStrategy = waitStrategy;
   }
 
   /*
@@ -102,7 +117,11 @@ public class RingBufferSupplier implements BufferSupplier, Service {
    */
   @Override
   public void commit() {
-    ringBuffer.publish(uncommitted.get());
+    final long[] batch = uncommitted.get();
+    if (batch[0] != -1L) {
+      ringBuffer.publish(batch[0], batch[1]);
+      batch[0] = -1L;
+    }
   }
 
   /*
@@ -114,14 +133,28 @@ public class RingBufferSupplier implements BufferSupplier, Service {
   public ByteBuffer get() {
     long sequence = ringBuffer.next();
     final BufferEvent event = ringBuffer.get(sequence);
-    uncommitted.set(sequence);
+    final long[] batch = uncommitted.get();
+    if (batch[0] == -1L) {
+      batch[0] = sequence;
+    }
+    batch[1] = sequence;
     return event.getBuffer();
   }
 
+  /**
+   * Buffers may be supplied in batches up to half the size of the ring
+   */
+  @Override
+  public int getMaxUncommitted() {
+    return ringSize / 2;
+  }
+
   private void onEvent(BufferEvent event, long sequence, boolean endOfBatch) throws Exception {
+    // buffer was flipped by its producer
     ByteBuffer buffer = event.getBuffer();
-    buffer.flip();
-    consumer.accept(buffer);
+    if (buffer.hasRemaining()) {
+      consumer.accept(buffer);
+    }
   }
 
   /*
@@ -133,7 +166,7 @@ public class RingBufferSupplier implements BufferSupplier, Service {
   public CompletableFuture<? extends Service> open() {
     if (isRunning.compareAndSet(false, true)) {
       this.disruptor = new Disruptor<>(BufferEvent.EVENT_FACTORY, ringSize, threadFactory,
-          ProducerType.SINGLE, new BusySpinWaitStrategy());
+          ProducerType.SINGLE, waitStrategy);
       this.disruptor.handleEventsWith(this::onEvent);
       this.ringBuffer = disruptor.start();
     }
@@ -0,0 +1,480 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.SequenceDecoder;
+import io.fixprotocol.silverflash.frame.MessageFrameDecoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameDecoder;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Arbitrates between redundant A and B lines of a multicast feed
+ * <p>
+ * Both lines carry the same sequenced flow, typically as two {@code UdpMulticastTransport}
+ * instances joined to different groups on different interfaces. Each received datagram is
+ * inspected for its Sequence message and the count of application messages that follow it, and it
+ * is passed to the consumer only if it carries a sequence number not yet delivered, so each
+ * sequence number is delivered once from whichever line it arrives on first. Datagrams without a
+ * Sequence message, such as Topic, are passed from both lines.
+ * <p>
+ * A heartbeat, that is a Sequence with no application messages, carries no new sequence number but
+ * must still reach the flow receiver, so it is always passed on unless it is the other line's copy
+ * of the heartbeat just delivered, recognized by the same next sequence number.
+ * <p>
+ * Delivered sequence numbers are tracked in a sliding bitset window, so duplicate suppression does
+ * not allocate. A sequence number older than the window is treated as a duplicate. A message that
+ * arrives on the lagging line after the leading line has moved past a gap is passed on, but an
+ * in-order flow receiver treats it as a gap to be recovered.
+ * <p>
+ * Per-line statistics of received datagrams, first arrivals, losses and lag behind the other line
+ * are available from {@link #getStatistics(int)}. A loss is counted when its sequence number
+ * leaves the window.
+ * <p>
+ * Both lines must be serviced by the same thread, that is, by the same Selector or Dispatcher,
+ * and they share the consumer's BufferSupplier. This Transport is receive-only.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class ArbitratedTransport implements Transport {
+
+  /**
+   * Statistics of one line
+   * <p>
+   * Updated by the receiving thread; values read by another thread may be stale.
+   */
+  public static final class LineStatistics {
+    private long duplicates;
+    private long firstArrivals;
+    private long lagSamples;
+    private long lost;
+    private long maxLagNanos;
+    private long received;
+    private long totalLagNanos;
+
+    /**
+     * @return number of sequenced datagrams that carried no new sequence number
+     */
+    public long getDuplicates() {
+      return duplicates;
+    }
+
+    /**
+     * @return number of sequenced datagrams delivered because this line was first to carry a
+     *         sequence number
+     */
+    public long getFirstArrivals() {
+      return firstArrivals;
+    }
+
+    /**
+     * @return number of messages received on this line after the other line
+     */
+    public long getLagSamples() {
+      return lagSamples;
+    }
+
+    /**
+     * @return number of messages delivered from the other line that were never received on this
+     *         line
+     */
+    public long getLost() {
+      return lost;
+    }
+
+    /**
+     * @return maximum time in nanoseconds that a message arrived on this line after the other line
+     */
+    public long getMaxLagNanos() {
+      return maxLagNanos;
+    }
+
+    /**
+     * @return mean time in nanoseconds that messages arrived on this line after the other line, or
+     *         zero if there are no samples
+     */
+    public long getMeanLagNanos() {
+      return lagSamples > 0 ? totalLagNanos / lagSamples : 0L;
+    }
+
+    /**
+     * @return number of datagrams received on this line
+     */
+    public long getReceived() {
+      return received;
+    }
+
+    @Override
+    public String toString() {
+      return "LineStatistics [received=" + received + ", firstArrivals=" + firstArrivals
+          + ", duplicates=" + duplicates + ", lost=" + lost + ", meanLagNanos="
+          + getMeanLagNanos() + ", maxLagNanos=" + maxLagNanos + "]";
+    }
+
+    void lag(long lagNanos) {
+      lagSamples++;
+      totalLagNanos += lagNanos;
+      if (lagNanos > maxLagNanos) {
+        maxLagNanos = lagNanos;
+      }
+    }
+  }
+
+  /**
+   * Receives datagrams from one line
+   */
+  private class LineConsumer implements TransportConsumer {
+    private final int line;
+
+    LineConsumer(int line) {
+      this.line = line;
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      arbitrate(line, buffer);
+    }
+
+    @Override
+    public void connected() {
+      if (connectedLines++ == 0) {
+        consumer.connected();
+      }
+    }
+
+    @Override
+    public void disconnected() {
+      if (--connectedLines == 0) {
+        consumer.disconnected();
+      }
+    }
+  }
+
+  /**
+   * Default number of sequence numbers tracked for duplicate suppression
+   */
+  public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+  /**
+   * Index of the A line
+   */
+  public static final int LINE_A = 0;
+
+  /**
+   * Index of the B line
+   */
+  public static final int LINE_B = 1;
+
+  private static final int NO_LINE = -1;
+  private static final long NOT_STARTED = -1L;
+
+  private long baseSeqNo = NOT_STARTED;
+  private int connectedLines = 0;
+  private TransportConsumer consumer;
+  private final long[] delivered;
+  // arrival time of the first copy of each sequence number in the window
+  private final long[] firstArrivalNanos;
+  private final MessageFrameDecoder frameDecoder;
+  private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
+  private int lastHeartbeatLine = NO_LINE;
+  private long lastHeartbeatSeqNo = NOT_STARTED;
+  private final long[][] lineBits = new long[2][];
+  private final Transport[] lines = new Transport[2];
+  private final LineStatistics[] lineStatistics =
+      new LineStatistics[] {new LineStatistics(), new LineStatistics()};
+  private final int mask;
+  private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+  // first sequence number and message count of each Sequence in the datagram being arbitrated
+  private long[] ranges = new long[16];
+  private final SequenceDecoder sequenceDecoder = new SequenceDecoder();
+  private long unrecovered = 0;
+  private final int windowSize;
+
+  /**
+   * Constructor with default window size and message length framing
+   *
+   * @param lineA transport of the A line
+   * @param lineB transport of the B line
+   */
+  public ArbitratedTransport(Transport lineA, Transport lineB) {
+    this(lineA, lineB, DEFAULT_WINDOW_SIZE, new MessageLengthFrameDecoder());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param lineA transport of the A line
+   * @param lineB transport of the B line
+   * @param windowSize number of sequence numbers tracked for duplicate suppression; must be a
+   *        power of 2 and at least 64. It should cover the greatest expected lag between the lines.
+   * @param frameDecoder decodes message frames within a datagram
+   */
+  public ArbitratedTransport(Transport lineA, Transport lineB, int windowSize,
+      MessageFrameDecoder frameDecoder) {
+    Objects.requireNonNull(lineA);
+    Objects.requireNonNull(lineB);
+    Objects.requireNonNull(frameDecoder);
+    if (windowSize < Long.SIZE || Integer.bitCount(windowSize) != 1) {
+      throw new IllegalArgumentException("Window size must be a power of 2 and at least 64");
+    }
+    this.lines[LINE_A] = lineA;
+    this.lines[LINE_B] = lineB;
+    this.windowSize = windowSize;
+    this.mask = windowSize - 1;
+    this.delivered = new long[windowSize / Long.SIZE];
+    this.lineBits[LINE_A] = new long[windowSize / Long.SIZE];
+    this.lineBits[LINE_B] = new long[windowSize / Long.SIZE];
+    this.firstArrivalNanos = new long[windowSize];
+    this.frameDecoder = frameDecoder;
+  }
+
+  @Override
+  public void close() {
+    lines[LINE_A].close();
+    lines[LINE_B].close();
+  }
+
+  /**
+   * @return number of sequence numbers that left the window without being received on either line
+   */
+  public long getUnrecovered() {
+    return unrecovered;
+  }
+
+  /**
+   * Returns statistics of a line
+   *
+   * @param line {@link #LINE_A} or {@link #LINE_B}
+   * @return statistics of the line
+   */
+  public LineStatistics getStatistics(int line) {
+    return lineStatistics[line];
+  }
+
+  @Override
+  public boolean isFifo() {
+    return false;
+  }
+
+  @Override
+  public boolean isMessageOriented() {
+    return lines[LINE_A].isMessageOriented();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return lines[LINE_A].isOpen() || lines[LINE_B].isOpen();
+  }
+
+  @Override
+  public boolean isReadyToRead() {
+    return lines[LINE_A].isReadyToRead() || lines[LINE_B].isReadyToRead();
+  }
+
+  @Override
+  public CompletableFuture<? extends Transport> open(BufferSupplier buffers,
+      TransportConsumer consumer) {
+    Objects.requireNonNull(buffers);
+    Objects.requireNonNull(consumer);
+    this.consumer = consumer;
+    CompletableFuture<? extends Transport> futureA =
+        lines[LINE_A].open(buffers, new LineConsumer(LINE_A));
+    CompletableFuture<? extends Transport> futureB =
+        lines[LINE_B].open(buffers, new LineConsumer(LINE_B));
+    return CompletableFuture.allOf(futureA, futureB).thenApply(v -> this);
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int bytesReadA = lines[LINE_A].read();
+    final int bytesReadB = lines[LINE_B].read();
+    if (bytesReadA < 0 && bytesReadB < 0) {
+      return -1;
+    }
+    return Math.max(bytesReadA, 0) + Math.max(bytesReadB, 0);
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    throw new IOException("Transport not writable");
+  }
+
+  private void arbitrate(int line, ByteBuffer buffer) {
+    final LineStatistics statistics = lineStatistics[line];
+    statistics.received++;
+    final int rangeCount = decodeRanges(buffer);
+    if (rangeCount == 0) {
+      // not sequenced
+      consumer.accept(buffer);
+      return;
+    }
+
+    if (isHeartbeat(rangeCount)) {
+      if (ranges[0] == lastHeartbeatSeqNo && lastHeartbeatLine != NO_LINE
+          && lastHeartbeatLine != line) {
+        // copy of a heartbeat delivered from the other line; the next one is passed again
+        lastHeartbeatLine = NO_LINE;
+        statistics.duplicates++;
+      } else {
+        lastHeartbeatSeqNo = ranges[0];
+        lastHeartbeatLine = line;
+        statistics.firstArrivals++;
+        consumer.accept(buffer);
+      }
+      return;
+    }
+
+    final long now = System.nanoTime();
+    final long[] bits = lineBits[line];
+    boolean isNew = false;
+    for (int r = 0; r < rangeCount; r++) {
+      final long fromSeqNo = ranges[2 * r];
+      final long toSeqNo = fromSeqNo + ranges[2 * r + 1];
+      for (long seqNo = fromSeqNo; seqNo < toSeqNo; seqNo++) {
+        if (baseSeqNo == NOT_STARTED) {
+          baseSeqNo = seqNo;
+        } else if (seqNo < baseSeqNo) {
+          // too old to tell; presumed delivered
+          continue;
+        } else if (seqNo >= baseSeqNo + windowSize) {
+          slide(seqNo - windowSize + 1);
+        }
+        final int index = (int) (seqNo & mask);
+        final int word = index >>> 6;
+        final long bit = 1L << index;
+        if ((delivered[word] & bit) == 0) {
+          delivered[word] |= bit;
+          firstArrivalNanos[index] = now;
+          isNew = true;
+        } else if ((bits[word] & bit) == 0) {
+          // first copy on this line but delivered from the other
+          statistics.lag(now - firstArrivalNanos[index]);
+        }
+        bits[word] |= bit;
+      }
+    }
+
+    if (isNew) {
+      statistics.firstArrivals++;
+      consumer.accept(buffer);
+    } else {
+      statistics.duplicates++;
+    }
+  }
+
+  private boolean isHeartbeat(int rangeCount) {
+    for (int r = 0; r < rangeCount; r++) {
+      if (ranges[2 * r + 1] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds each Sequence message in a datagram and counts the application messages that follow it
+   *
+   * @return number of ranges found
+   */
+  private int decodeRanges(ByteBuffer buffer) {
+    final int position = buffer.position();
+    final int limit = buffer.limit();
+    immutableBuffer.wrap(buffer);
+    int rangeCount = 0;
+    int offset = position;
+    try {
+      while (offset + frameDecoder.getHeaderLength() <= limit) {
+        buffer.position(offset);
+        frameDecoder.wrap(buffer).decodeFrameHeader();
+        final int messageOffset = buffer.position();
+        final int messageLength = frameDecoder.getMessageLength();
+        if (messageLength <= 0 || messageOffset + messageLength > limit) {
+          break;
+        }
+        messageHeaderDecoder.wrap(immutableBuffer, messageOffset);
+        if (messageHeaderDecoder.schemaId() == sequenceDecoder.sbeSchemaId()
+            && messageHeaderDecoder.templateId() == sequenceDecoder.sbeTemplateId()) {
+          sequenceDecoder.wrap(immutableBuffer,
+              messageOffset + messageHeaderDecoder.encodedLength(),
+              sequenceDecoder.sbeBlockLength(), sequenceDecoder.sbeSchemaVersion());
+          if (2 * rangeCount == ranges.length) {
+            // grows only for a stream that delivers many datagrams at once
+            long[] larger = new long[2 * ranges.length];
+            System.arraycopy(ranges, 0, larger, 0, ranges.length);
+            ranges = larger;
+          }
+          ranges[2 * rangeCount] = sequenceDecoder.nextSeqNo();
+          ranges[2 * rangeCount + 1] = 0;
+          rangeCount++;
+        } else if (rangeCount > 0) {
+          ranges[2 * rangeCount - 1]++;
+        }
+        offset = messageOffset + messageLength;
+      }
+    } finally {
+      buffer.limit(limit);
+      buffer.position(position);
+    }
+    return rangeCount;
+  }
+
+  /**
+   * Advances the window, accounting for losses of sequence numbers that leave it
+   */
+  private void slide(long newBaseSeqNo) {
+    final long endSeqNo = Math.min(newBaseSeqNo, baseSeqNo + windowSize);
+    for (long seqNo = baseSeqNo; seqNo < endSeqNo; seqNo++) {
+      final int index = (int) (seqNo & mask);
+      final int word = index >>> 6;
+      final long bit = 1L << index;
+      if ((delivered[word] & bit) == 0) {
+        unrecovered++;
+      } else {
+        final int lostLine = lostLine(word, bit);
+        if (lostLine != NO_LINE) {
+          lineStatistics[lostLine].lost++;
+        }
+      }
+      delivered[word] &= ~bit;
+      lineBits[LINE_A][word] &= ~bit;
+      lineBits[LINE_B][word] &= ~bit;
+    }
+    // sequence numbers skipped entirely were never received
+    unrecovered += newBaseSeqNo - endSeqNo;
+    baseSeqNo = newBaseSeqNo;
+  }
+
+  private int lostLine(int word, long bit) {
+    if ((lineBits[LINE_A][word] & bit) == 0) {
+      return LINE_A;
+    } else if ((lineBits[LINE_B][word] & bit) == 0) {
+      return LINE_B;
+    } else {
+      return NO_LINE;
+    }
+  }
+}
@@ -26,14 +26,22 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.lmax.disruptor.WaitStrategy;
+
 import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.fixp.auth.ReactiveAuthenticator;
 import io.fixprotocol.silverflash.fixp.store.InMemoryMessageStore;
+import io.fixprotocol.silverflash.fixp.store.MessageJournal;
 import io.fixprotocol.silverflash.fixp.store.MessageStore;
+import io.fixprotocol.silverflash.reactor.BackoffWaitStrategy;
 import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
 import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
+import io.fixprotocol.silverflash.reactor.ByteBufferRegionPayload;
 import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.reactor.PayloadAllocator;
 import io.fixprotocol.silverflash.transport.IOReactor;
+import io.fixprotocol.silverflash.transport.IOReactorGroup;
+import io.fixprotocol.silverflash.transport.SelectStrategy;
 import io.fixprotocol.silverflash.util.platform.AffinityThreadFactory;
 
 /**
@@ -57,8 +65,13 @@ public class Engine implements AutoCloseable {
   public static class Builder<T extends Engine, B extends Builder<T, B>> {
     private ReactiveAuthenticator<UUID, ByteBuffer> authenticator = null;
     private ExceptionConsumer exceptionHandler;
+    private int ioReactors = 1;
     private int maxCore = -1;
     private int minCore = -1;
+    private int payloadRegionCapacity = 0;
+    private int reactorShards = 1;
+    private SelectStrategy selectStrategy = SelectStrategy.busySpin();
+    private WaitStrategy waitStrategy = null;
     private MessageStore store = null;
 
     /**
@@ -105,6 +118,73 @@ public class Engine implements AutoCloseable {
       return (B) this;
     }
 
+    /**
+     * Services transports with multiple selector threads, each pinned to a core. An acceptor
+     * created with {@link Engine#getIOReactorGroup()} spreads connections over them.
+     * 
+     * @param ioReactors number of selector threads. Default is 1.
+     * @return this Builder
+     */
+    public B withIOReactors(int ioReactors) {
+      this.ioReactors = ioReactors;
+      return (B) this;
+    }
+
+    /**
+     * Supplies event payloads from one off-heap region of variable-length slots rather than
+     * copying each message into a fixed-size slot. An application may then claim an event of the
+     * reactor and encode a message in place, for example on topic
+     * {@code APPLICATION_MESSAGE_TO_SEND}.
+     * 
+     * @param capacity size of the region in bytes. The size of a message is limited by this
+     *        capacity.
+     * @return this Builder
+     */
+    public B withPayloadRegion(int capacity) {
+      this.payloadRegionCapacity = capacity;
+      return (B) this;
+    }
+
+    /**
+     * Partitions session events among multiple reactor threads. Each session is dispatched by one
+     * shard, and service events such as authentication are dispatched by the first shard. Not
+     * compatible with {@link #withPayloadRegion(int)}.
+     * 
+     * @param shards number of reactor threads. Default is 1.
+     * @return this Builder
+     */
+    public B withReactorShards(int shards) {
+      this.reactorShards = shards;
+      return (B) this;
+    }
+
+    /**
+     * Sets how IOReactor threads wait for IO events
+     * 
+     * @param selectStrategy a select strategy. Default is busy spin. Since transports are
+     *        registered from other threads, a blocking strategy should have a timeout, for example
+     *        {@link SelectStrategy#spinThenSelect(int, long)}.
+     * @return this Builder
+     */
+    public B withSelectStrategy(SelectStrategy selectStrategy) {
+      this.selectStrategy = selectStrategy;
+      return (B) this;
+    }
+
+    /**
+     * Sets how reactor threads wait for events
+     * 
+     * @param waitStrategy a wait strategy. It must time out to drive timers, preferably at least
+     *        every millisecond, for example a {@link BackoffWaitStrategy} with a timeout.
+     *        A strategy that never times out is rejected when the Engine is built; see
+     *        {@link EventReactor.Builder#withWaitStrategy(WaitStrategy)}.
+     * @return this Builder
+     */
+    public B withWaitStrategy(WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return (B) this;
+    }
+
     /**
      * Adds a MessageStore to this Engine
      * 
@@ -126,12 +206,13 @@ public class Engine implements AutoCloseable {
   private final EventReactor<ByteBuffer> eventReactor;
   private ExceptionConsumer exceptionConsumer = System.err::println;
   private final ExecutorService executor;
-  private final IOReactor iOReactor;
+  private final IOReactorGroup iOReactorGroup;
   private final AtomicBoolean isOpen = new AtomicBoolean();
   private Retransmitter retransmitter;
   private final Sessions sessions = new Sessions();
   private MessageStore store;
 
+  private MessageJournal journal;
   private final AffinityThreadFactory threadFactory;
 
   /**
@@ -151,13 +232,18 @@ public class Engine implements AutoCloseable {
     if (builder.exceptionHandler != null) {
       this.exceptionConsumer = builder.exceptionHandler;
     }
-    this.iOReactor = new IOReactor(threadFactory, exceptionConsumer);
+    this.iOReactorGroup = new IOReactorGroup(builder.ioReactors, threadFactory,
+        exceptionConsumer, builder.selectStrategy);
     this.store = builder.store;
     this.authenticator = builder.authenticator;
+    final PayloadAllocator<ByteBuffer> payloadAllocator = builder.payloadRegionCapacity > 0
+        ? new ByteBufferRegionPayload(builder.payloadRegionCapacity)
+        : new ByteBufferPayload(2048);
     this.eventReactor =
         EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
             .withExceptionConsumer(exceptionConsumer).withThreadFactory(threadFactory)
-            .withPayloadAllocator(new ByteBufferPayload(2048)).withRingSize(256).build();
+            .withPayloadAllocator(payloadAllocator).withRingSize(256)
+            .withShards(builder.reactorShards).withWaitStrategy(builder.waitStrategy).build();
   }
 
   /**
@@ -172,19 +258,30 @@ public class Engine implements AutoCloseable {
       } catch (Exception e) {
         exceptionConsumer.accept(e);
       }
-      iOReactor.close();
+      iOReactorGroup.close();
       eventReactor.close();
     }
   }
 
   /**
-   * Returns an IOReactor in running state
+   * Returns an IOReactor in running state. If this Engine has multiple IOReactors, returns the
+   * first member of its group.
    * 
    * @return an IO reactor
    * @throws Exception if the IOReactor cannot be started
    */
   public IOReactor getIOReactor() throws Exception {
-    CompletableFuture<IOReactor> future = iOReactor.open();
+    return getIOReactorGroup().getIOReactor(0);
+  }
+
+  /**
+   * Returns all IOReactors of this Engine in running state
+   * 
+   * @return a group of IO reactors
+   * @throws Exception if an IOReactor cannot be started
+   */
+  public IOReactorGroup getIOReactorGroup() throws Exception {
+    CompletableFuture<IOReactorGroup> future = iOReactorGroup.open();
     return future.get();
   }
 
@@ -197,6 +294,16 @@ public class Engine implements AutoCloseable {
     return eventReactor;
   }
 
+  /**
+   * Returns a journal that persists messages to the store of this Engine asynchronously. Only
+   * available after this Engine is opened.
+   * 
+   * @return a journal shared by sessions
+   */
+  public MessageJournal getMessageJournal() {
+    return journal;
+  }
+
   /**
    * @return the store
    */
@@ -275,6 +382,10 @@ public class Engine implements AutoCloseable {
       this.store = new InMemoryMessageStore();
     }
     futureList.add(this.store.open());
+    // journal is not latency critical, so it need not occupy a pinned core
+    this.journal =
+        new MessageJournal(store, threadFactory.nonAffinityThreadFactory(), exceptionConsumer);
+    futureList.add(this.journal.open());
     this.retransmitter = new Retransmitter(getReactor(), store, sessions,
         exceptionConsumer);
     futureList.add(this.retransmitter.open());
@@ -287,6 +398,9 @@ public class Engine implements AutoCloseable {
     if (this.authenticator != null) {
       this.authenticator.close();
     }
+    if (this.journal != null) {
+      this.journal.close();
+    }
     if (this.store != null) {
       this.store.close();
     }
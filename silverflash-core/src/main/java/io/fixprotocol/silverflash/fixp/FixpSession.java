@@ -22,13 +22,16 @@ import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventTyp
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.PEER_TERMINATED;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.SERVER_ESTABLISHED;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.SERVER_NEGOTIATED;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.SESSION_RELEASED;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType.APPLICATION_MESSAGE_TO_SEND;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.MessageConsumer;
@@ -37,6 +40,7 @@ import io.fixprotocol.silverflash.RecoverableSender;
 import io.fixprotocol.silverflash.Sequenced;
 import io.fixprotocol.silverflash.Session;
 import io.fixprotocol.silverflash.buffer.BufferSupplier;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
 import io.fixprotocol.silverflash.fixp.flow.ClientSessionEstablisher;
 import io.fixprotocol.silverflash.fixp.flow.FlowBuilder;
 import io.fixprotocol.silverflash.fixp.flow.FlowReceiver;
@@ -53,6 +57,8 @@ import io.fixprotocol.silverflash.fixp.flow.NoneFlowReceiver;
 import io.fixprotocol.silverflash.fixp.flow.NoneFlowSender;
 import io.fixprotocol.silverflash.fixp.flow.RecoverableFlowReceiver;
 import io.fixprotocol.silverflash.fixp.flow.RecoverableFlowSender;
+import io.fixprotocol.silverflash.fixp.flow.RecoverableFlowSenderWithTopic;
+import io.fixprotocol.silverflash.fixp.flow.RetransmissionClient;
 import io.fixprotocol.silverflash.fixp.flow.Sequencer;
 import io.fixprotocol.silverflash.fixp.flow.ServerSessionEstablisher;
 import io.fixprotocol.silverflash.fixp.flow.SimplexSequencer;
@@ -60,16 +66,22 @@ import io.fixprotocol.silverflash.fixp.flow.SimplexStreamSequencer;
 import io.fixprotocol.silverflash.fixp.flow.UnsequencedFlowReceiver;
 import io.fixprotocol.silverflash.fixp.flow.UnsequencedFlowSender;
 import io.fixprotocol.silverflash.fixp.messages.FlowType;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRejectCode;
+import io.fixprotocol.silverflash.fixp.store.Durability;
+import io.fixprotocol.silverflash.fixp.store.MessageJournal;
 import io.fixprotocol.silverflash.fixp.store.MessageStore;
 import io.fixprotocol.silverflash.frame.FrameSpliterator;
 import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameSpliterator;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
 import io.fixprotocol.silverflash.reactor.EventReactor;
 import io.fixprotocol.silverflash.reactor.Subscription;
 import io.fixprotocol.silverflash.reactor.Topic;
+import io.fixprotocol.silverflash.reactor.Topics;
 import io.fixprotocol.silverflash.transport.IdentifiableTransportConsumer;
 import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
 
 /**
  * A Session that implements FIXP, FIX high performance session protocol
@@ -94,14 +106,22 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     private byte[] credentials = null;
     private ExceptionConsumer exceptionHandler;
     private FrameSpliterator frameSpliter = null;
+    private boolean isCoalescing = false;
     private boolean isMultiplexedTransport = false;
+    private long lingerTime = 0;
+    private TimeUnit lingerUnit = TimeUnit.MILLISECONDS;
+    private int maxDatagramSize = 0;
     private MessageConsumer<UUID> messageConsumer = null;
     private FlowType outboundFlow = FlowType.Idempotent;
     private int outboundKeepaliveInterval = 10000;
     private EventReactor<ByteBuffer> reactor = null;
+    private Transport recoveryTransport = null;
+    private Transport snapshotTransport = null;
     private Role role = Role.CLIENT;
     private UUID sessionId = SessionId.EMPTY;
     private MessageStore store = null;
+    private Durability durability = Durability.NONE;
+    private MessageJournal journal = null;
     private String topic;
     private Transport transport = null;
     private MessageFrameEncoder frameEncoder;
@@ -177,6 +197,40 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
       return (B) this;
     }
 
+    /**
+     * Coalesces messages posted on topic {@code APPLICATION_MESSAGE_TO_SEND}. Messages dispatched
+     * in one batch of the reactor are gathered by the transport and flushed once at the end of the
+     * batch, rather than written one at a time. Only writes of the dispatching thread are gathered;
+     * heartbeats and sends of other threads are written at once.
+     * 
+     * @param isCoalescing set {@code true} to coalesce writes. Default is {@code false}.
+     * @return this Builder
+     */
+    public B withCoalescing(boolean isCoalescing) {
+      this.isCoalescing = isCoalescing;
+      return (B) this;
+    }
+
+    /**
+     * Packs consecutive outbound messages into datagrams on a transport that does not guarantee
+     * FIFO delivery, such as UDP. Each datagram carries a single Sequence or Context message, and a
+     * message is never split across datagrams. A partially filled datagram is sent when the linger
+     * time elapses, at the end of a coalesced batch, or on {@link FixpSession#endBatch()}.
+     * 
+     * @param maxDatagramSize maximum datagram size in bytes, typically the path MTU less IP and
+     *        UDP headers. Default is 0, which sends one datagram per send.
+     * @param lingerTime maximum time that a message waits to be packed. Resolution is limited by
+     *        the timer tick of the reactor.
+     * @param unit time unit of {@code lingerTime}
+     * @return this Builder
+     */
+    public B withDatagramPacking(int maxDatagramSize, long lingerTime, TimeUnit unit) {
+      this.maxDatagramSize = maxDatagramSize;
+      this.lingerTime = lingerTime;
+      this.lingerUnit = unit;
+      return (B) this;
+    }
+
     /**
      * Adds an exception handler
      * 
@@ -200,7 +254,8 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
     /**
      * Provide a message framer for received messages. If not provided, a default implementation is
-     * used.
+     * used. For a {@linkplain Transport#isStream() stream transport}, it reassembles frames that
+     * straddle reads; otherwise, it delimits the frames of each read.
      * 
      * @param frameSpliter the FrameSpliterator to use for received messages
      * @return this Builder
@@ -220,6 +275,31 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
       return (B) this;
     }
     
+    /**
+     * Set the level of durability of messages persisted for a recoverable flow
+     * 
+     * @param durability level of durability; default is {@link Durability#NONE}
+     * @return this Builder
+     */
+    public B withDurability(Durability durability) {
+      Objects.requireNonNull(durability);
+      this.durability = durability;
+      return (B) this;
+    }
+
+    /**
+     * Provide a MessageJournal to persist messages of recoverable flows asynchronously. If not
+     * provided, messages are inserted into the MessageStore synchronously.
+     * 
+     * @param journal appends messages to a MessageStore
+     * @return this Builder
+     */
+    public B withMessageJournal(MessageJournal journal) {
+      Objects.requireNonNull(journal);
+      this.journal = journal;
+      return (B) this;
+    }
+
     /**
      * Provide a MessageStore for recoverable flows
      * 
@@ -254,6 +334,34 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
       return (B) this;
     }
 
+    /**
+     * Provide a unicast transport to a RetransmissionServer for a multicast consumer. Sequence
+     * gaps on the multicast feed are then requested over it while live messages continue to be
+     * delivered.
+     * 
+     * @param recoveryTransport a TCP or UDP unicast transport
+     * @return this Builder
+     */
+    public B withRecoveryTransport(Transport recoveryTransport) {
+      Objects.requireNonNull(recoveryTransport);
+      this.recoveryTransport = recoveryTransport;
+      return (B) this;
+    }
+
+    /**
+     * Provide a transport to receive snapshots from a SnapshotPublisher for a multicast consumer
+     * that may join late. Live messages are buffered until a snapshot is merged with them;
+     * snapshot messages are delivered with sequence number zero.
+     * 
+     * @param snapshotTransport snapshot channel, serviced by the same thread as the live feed
+     * @return this Builder
+     */
+    public B withSnapshotTransport(Transport snapshotTransport) {
+      Objects.requireNonNull(snapshotTransport);
+      this.snapshotTransport = snapshotTransport;
+      return (B) this;
+    }
+
     /**
      * Set an EventReactor to use for asynchrous events
      * 
@@ -299,6 +407,9 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
     /**
      * Provide a Transport to use for message exchange
+     * <p>
+     * A multicast consumer on a multiplexed transport skips datagrams of other topics; see
+     * {@link TopicFilter}.
      * 
      * @param transport a Transport
      * @param isMultiplexed set {@code true} if the transport is multiplexed with other sessions
@@ -315,6 +426,8 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     CLIENT, MULTICAST_CONSUMER, MULTICAST_PRODUCER, SERVER
   }
 
+  private static final int SNAPSHOT_BUFFER_CAPACITY = 64 * 1024;
+
   @SuppressWarnings("rawtypes")
   public static Builder builder() {
     return new Builder();
@@ -327,9 +440,10 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
     @Override
     public void accept(ByteBuffer buffer) {
+      acquireTopics();
       setInboundStream();
       setOutboundStream();
-      Topic toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
+      toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
       applicationMessageToSendSubscription = reactor.subscribe(toSendTopic, outboundMessageHandler);
       Topic terminatedTopic = SessionEventTopics.getTopic(sessionId, PEER_TERMINATED);
       terminatedSubscription = reactor.subscribe(terminatedTopic, peerTerminatedHandler);
@@ -355,7 +469,13 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
   private FlowReceiver flowReceiver;
   private FlowSender flowSender;
   private final FrameSpliterator frameSpliter;
+  // accessed only by the dispatching thread of toSendTopic
+  private boolean isBatchCorked = false;
+  private final boolean isCoalescing;
   private final boolean isMultiplexedTransport;
+  private final long lingerTime;
+  private final TimeUnit lingerUnit;
+  private final int maxDatagramSize;
   private final MessageConsumer<UUID> messageConsumer;
 
   private final Receiver negotiatedHandler = new Receiver() {
@@ -365,6 +485,7 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
       // System.out.println("Server negotiated");
       if (negotiatedSubscription != null) {
         negotiatedSubscription.unsubscribe();
+        Topics.release(negotiatedSubscription.getTopic());
       }
 
       uuidAsBytes = establisher.getSessionId();
@@ -385,6 +506,12 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     public void accept(ByteBuffer message) {
       try {
         message.position(message.limit());
+        if (isCoalescing && !isBatchCorked) {
+          // corked once per batch, since the cork of a thread nests
+          getTransport().cork();
+          isBatchCorked = true;
+          reactor.runAtEndOfBatch(toSendTopic, flushHandler);
+        }
         flowSender.send(message);
       } catch (IOException e) {
         exceptionConsumer.accept(e);
@@ -393,6 +520,19 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
   };
 
+  // Sends messages coalesced during a batch of the reactor
+  private final Runnable flushHandler = () -> {
+    isBatchCorked = false;
+    try {
+      if (flowSender != null) {
+        flowSender.flush();
+      }
+      getTransport().flush();
+    } catch (IOException e) {
+      exceptionConsumer.accept(e);
+    }
+  };
+
   private final Receiver peerTerminatedHandler = new Receiver() {
 
     @Override
@@ -407,9 +547,32 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
   private final EventReactor<ByteBuffer> reactor;
   private final Role role;
   private UUID sessionId = SessionId.EMPTY;
+  private Topic toSendTopic;
   private Topic sessionSuspendedTopic;
   private final MessageStore store;
+  private final Transport recoveryTransport;
+  private RetransmissionClient retransmissionClient;
+  private final SnapshotMerger snapshotMerger;
+  private final Transport snapshotTransport;
+  private final Durability durability;
+  private final MessageJournal journal;
   private Subscription terminatedSubscription;
+  private volatile boolean isClosed = false;
+  private Subscription releasedSubscription;
+  private volatile Topic releasedTopic;
+
+  private final Receiver releasedHandler = new Receiver() {
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      unsubscribe(applicationMessageToSendSubscription);
+      unsubscribe(terminatedSubscription);
+      unsubscribe(establishedSubscription);
+      unsubscribe(releasedSubscription);
+      releasedTopic = null;
+      SessionEventTopics.release(sessionId);
+    }
+  };
 
   private final Receiver topicHandler = new Receiver() {
 
@@ -421,12 +584,23 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
       uuidAsBytes = establisher.getSessionId();
       sessionId = SessionId.UUIDFromBytes(uuidAsBytes);
+      acquireTopics();
 
       setInboundStream();
       setOutboundStream();
 
+      if (recoveryTransport != null) {
+        retransmissionClient = new RetransmissionClient(reactor, recoveryTransport,
+            FixpSession.this, messageConsumer, frameEncoder.copy(), exceptionConsumer);
+        retransmissionClient.open();
+      }
+
       try {
         establisher.complete();
+
+        // Notify application that a consumer has joined the session
+        Topic readyTopic = SessionEventTopics.getTopic(sessionId, SESSION_READY);
+        reactor.post(readyTopic, buffer);
       } catch (IOException e) {
         exceptionConsumer.accept(e);
       }
@@ -457,12 +631,19 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
 
         @Override
         public void disconnected() {
+          if (frameSpliter instanceof ReassemblingFrameSpliterator) {
+            ((ReassemblingFrameSpliterator) frameSpliter).reset();
+          }
           try {
             flowSender.sendEndOfStream();
           } catch (IOException e) {
             // terminates heartbeats
           }
           reactor.post(sessionSuspendedTopic, null);
+          // dispatched after the suspended event since events of a session are ordered
+          if (isClosed && releasedTopic != null) {
+            reactor.post(releasedTopic, null);
+          }
         }
 
         public UUID getSessionId() {
@@ -488,17 +669,36 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     this.reactor = builder.reactor;
     this.transport = builder.transport;
     this.buffers = builder.buffers;
-    this.messageConsumer = builder.messageConsumer;
+    this.snapshotTransport = builder.snapshotTransport;
+    if (this.snapshotTransport != null && builder.role == Role.MULTICAST_CONSUMER) {
+      this.snapshotMerger =
+          new SnapshotMerger(builder.messageConsumer, this, this::onSnapshotTopic,
+              this::isEstablished);
+      this.messageConsumer = snapshotMerger;
+    } else {
+      this.snapshotMerger = null;
+      this.messageConsumer = builder.messageConsumer;
+    }
     this.outboundFlow = builder.outboundFlow;
 
     this.store = builder.store;
+    this.recoveryTransport = builder.recoveryTransport;
+    this.durability = builder.durability;
+    this.journal = builder.journal;
     this.isMultiplexedTransport = builder.isMultiplexedTransport;
+    this.isCoalescing = builder.isCoalescing;
+    this.maxDatagramSize = builder.maxDatagramSize;
+    this.lingerTime = builder.lingerTime;
+    this.lingerUnit = builder.lingerUnit;
     this.sessionId = builder.sessionId;
     this.uuidAsBytes = SessionId.UUIDAsBytes(sessionId);
 
     if (builder.frameSpliter != null) {
       this.frameSpliter = builder.frameSpliter;
+    } else if (transport.isStream()) {
+      this.frameSpliter = new ReassemblingFrameSpliterator();
     } else {
+      // each read holds whole frames
       this.frameSpliter = new MessageLengthFrameSpliterator();
     }
 
@@ -553,6 +753,13 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
    */
   @Override
   public void close() {
+    isClosed = true;
+    if (retransmissionClient != null) {
+      retransmissionClient.close();
+    }
+    if (snapshotTransport != null) {
+      snapshotTransport.close();
+    }
     try {
       flowSender.sendEndOfStream();
     } catch (IOException e) {
@@ -560,6 +767,23 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     }
   }
 
+  /**
+   * Holds the topics of this session until it is closed and disconnected
+   */
+  private void acquireTopics() {
+    if (releasedTopic == null) {
+      SessionEventTopics.acquire(sessionId);
+      releasedTopic = SessionEventTopics.getTopic(sessionId, SESSION_RELEASED);
+      releasedSubscription = reactor.subscribe(releasedTopic, releasedHandler);
+    }
+  }
+
+  private static void unsubscribe(Subscription subscription) {
+    if (subscription != null) {
+      subscription.unsubscribe();
+    }
+  }
+
   private Establisher createClientEstablisher(byte[] credentials) {
     final ClientSessionEstablisher clientSessionEstablisher =
         new ClientSessionEstablisher(frameEncoder.copy(), reactor, outboundFlow, getTransport())
@@ -652,6 +876,20 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     return outboundFlow;
   }
 
+  /**
+   * Returns the next sequence number to send on a sequenced flow
+   * 
+   * @return next sequence number or zero if the outbound flow is not sequenced
+   */
+  public long getNextSeqNoToSend() {
+    if (flowSender instanceof Sequenced) {
+      Sequenced sequenced = (Sequenced) flowSender;
+      return sequenced.getNextSeqNo();
+    } else {
+      return 0;
+    }
+  }
+
   /**
    * @return the sessionId
    */
@@ -659,6 +897,15 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     return sessionId;
   }
 
+  /**
+   * Returns the multicast topic of this session
+   * 
+   * @return topic or {@code null} if this session is point-to-point
+   */
+  public String getTopic() {
+    return topic;
+  }
+
   /**
    * Returns the Transport to communicate with peer
    * 
@@ -701,7 +948,21 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
   @Override
   public CompletableFuture<FixpSession> open() {
     CompletableFuture<FixpSession> future = new CompletableFuture<>();
-    getTransport().open(getBuffers(), getTransportConsumer()).whenComplete((transport, error) -> {
+    CompletableFuture<? extends Transport> snapshotFuture;
+    if (snapshotMerger != null) {
+      snapshotFuture = snapshotTransport.open(new SingleBufferSupplier(
+          ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_CAPACITY).order(ByteOrder.nativeOrder())),
+          snapshotMerger);
+    } else {
+      snapshotFuture = CompletableFuture.completedFuture(null);
+    }
+    TransportConsumer transportConsumer = getTransportConsumer();
+    if (role == Role.MULTICAST_CONSUMER && isMultiplexedTransport) {
+      // a multiplexed group may carry other topics; skip their datagrams before decoding
+      transportConsumer = new TopicFilter(transportConsumer, topic);
+    }
+    getTransport().open(getBuffers(), transportConsumer).thenCombine(snapshotFuture,
+        (transport, snapshot) -> transport).whenComplete((transport, error) -> {
       if (error == null) {
         future.complete(this);
       } else {
@@ -724,6 +985,40 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     }
   }
 
+  /**
+   * Rejects a request for retransmission on a recoverable flow
+   * 
+   * @param requestTimestamp time that the retransmission was requested
+   * @param code reason for rejection
+   * @throws IOException if an IO error occurs
+   */
+  public void rejectResend(long requestTimestamp, RetransmitRejectCode code) throws IOException {
+    if (flowSender instanceof RecoverableFlowSender) {
+      ((RecoverableFlowSender) flowSender).sendRetransmitReject(requestTimestamp, code);
+    }
+  }
+
+  /**
+   * Gathers messages sent by the calling thread until {@link #endBatch()} so that they are written
+   * to the transport together. Messages of other threads, such as heartbeats, are not held. Batches
+   * of one thread may be nested; messages are written when the outermost batch ends.
+   */
+  public void beginBatch() {
+    getTransport().cork();
+  }
+
+  /**
+   * Ends a batch begun by {@link #beginBatch()}, writing its messages if it is the outermost
+   * 
+   * @throws IOException if an IO error occurs
+   */
+  public void endBatch() throws IOException {
+    if (flowSender != null) {
+      flowSender.flush();
+    }
+    getTransport().flush();
+  }
+
   public long send(ByteBuffer message) throws IOException {
     return flowSender.send(message);
   }
@@ -732,6 +1027,17 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     return flowSender.send(messages);
   }
 
+  private boolean isEstablished() {
+    return flowReceiver != establisher;
+  }
+
+  private void onSnapshotTopic(ByteBuffer buffer) {
+    // only until established by a Topic on either channel
+    if (!isEstablished()) {
+      flowReceiver.accept(buffer);
+    }
+  }
+
   private void setInboundStream() {
     @SuppressWarnings("rawtypes")
     FlowReceiverBuilder<? extends FlowReceiver, ? extends FlowReceiverBuilder> builder = null;
@@ -753,6 +1059,7 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
         (FlowReceiver) builder.withSession(this).withMessageConsumer(messageConsumer)
             .withReactor(reactor).withTransport(getTransport())
             .withKeepaliveInterval(establisher.getInboundKeepaliveInterval())
+            .withJoining(role == Role.MULTICAST_CONSUMER)
             .withMessageFrameEncoder(frameEncoder.copy())
             .withExceptionConsumer(exceptionConsumer).build();
   }
@@ -764,9 +1071,9 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
     }
   }
 
+  @SuppressWarnings("unchecked")
   private void setOutboundStream() {
-    @SuppressWarnings("rawtypes")
-    FlowBuilder builder = null;
+    FlowBuilder<? extends FlowSender, ?> builder = null;
     Sequencer sequencer;
     switch (establisher.getOutboundFlow()) {
       case Unsequenced:
@@ -790,12 +1097,25 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
         break;
       case Recoverable:
         @SuppressWarnings("rawtypes")
-        RecoverableFlowSender.Builder abuilder = RecoverableFlowSender.builder();
+        RecoverableFlowSender.Builder abuilder;
+        if (Role.MULTICAST_PRODUCER == role) {
+          @SuppressWarnings("rawtypes")
+          RecoverableFlowSenderWithTopic.Builder topicBuilder =
+              RecoverableFlowSenderWithTopic.builder();
+          topicBuilder.withTopic(topic);
+          abuilder = topicBuilder;
+        } else {
+          abuilder = RecoverableFlowSender.builder();
+        }
         sequencer = isMultiplexedTransport ? new MultiplexSequencer(frameEncoder.copy(), uuidAsBytes)
             : (getTransport().isFifo() ? new SimplexStreamSequencer(frameEncoder.copy())
                 : new SimplexSequencer(frameEncoder));
 
         abuilder.withMessageStore(store).withSequencer(sequencer);
+        abuilder.withDurability(durability);
+        if (journal != null) {
+          abuilder.withMessageJournal(journal);
+        }
         builder = abuilder;
         break;
       case None:
@@ -803,8 +1123,12 @@ public class FixpSession implements Session<UUID>, RecoverableSender {
         break;
     }
 
+    if (maxDatagramSize > 0 && !getTransport().isFifo()) {
+      builder.withDatagramPacking(maxDatagramSize, lingerTime, lingerUnit);
+    }
+
     this.flowSender =
-        (FlowSender) builder.withKeepaliveInterval(establisher.getOutboundKeepaliveInterval())
+        builder.withKeepaliveInterval(establisher.getOutboundKeepaliveInterval())
             .withReactor(reactor).withSessionId(getSessionId()).withTransport(getTransport())
             .withMessageFrameEncoder(frameEncoder.copy())
             .withExceptionConsumer(exceptionConsumer).build();
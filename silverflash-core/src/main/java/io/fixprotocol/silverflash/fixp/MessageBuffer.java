@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 
@@ -86,14 +87,28 @@ public class MessageBuffer implements MessageConsumer<UUID> {
   private RingBuffer<BufferEvent> ringBuffer;
   private final int ringSize = 256;
   private final ThreadFactory threadFactory;
+  private final WaitStrategy waitStrategy;
 
   /**
+   * Constructor with busy spin wait strategy
+   * 
    * @param threadFactory executes events
    * @param receiver receives messages asynchronously
    */
   public MessageBuffer(ThreadFactory threadFactory, MessageConsumer<UUID> receiver) {
+    this(threadFactory, receiver, new BusySpinWaitStrategy());
+  }
+
+  /**
+   * @param threadFactory executes events
+   * @param receiver receives messages asynchronously
+   * @param waitStrategy how the consumer waits for messages
+   */
+  public MessageBuffer(ThreadFactory threadFactory, MessageConsumer<UUID> receiver,
+      WaitStrategy waitStrategy) {
     this.threadFactory = threadFactory;
     this.receiver = receiver;
+    this.waitStrategy = waitStrategy;
   }
 
   public void accept(ByteBuffer message, Session<UUID> session, long seqNo) {
@@ -112,7 +127,7 @@ public class MessageBuffer implements MessageConsumer<UUID> {
     if (isRunning.compareAndSet(false, true)) {
       this.disruptor =
           new Disruptor<>(BufferEvent.EVENT_FACTORY, ringSize, threadFactory, ProducerType.SINGLE,
-              new BusySpinWaitStrategy());
+              waitStrategy);
       this.disruptor.handleEventsWith(this::handleEvent);
       this.ringBuffer = disruptor.start();
     }
@@ -0,0 +1,330 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.Service;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RestransmitRejectEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmissionEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRejectCode;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestDecoder;
+import io.fixprotocol.silverflash.fixp.store.MessageStore;
+import io.fixprotocol.silverflash.fixp.store.MessageStoreResult;
+import io.fixprotocol.silverflash.fixp.store.StoreException;
+import io.fixprotocol.silverflash.frame.FrameSpliterator;
+import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Serves retransmission requests from multicast consumers over unicast recovery sessions
+ * <p>
+ * A multicast producer on a recoverable flow stores the messages that it publishes. When a
+ * consumer detects a gap on the feed, it sends a RetransmitRequest over a point-to-point transport,
+ * either TCP or UDP, to this server. Requested messages are retrieved from the producer's
+ * MessageStore and returned as Retransmission messages followed by the original messages, in
+ * batches. If some or all of a range is no longer available, a RetransmitReject is sent for it.
+ * <p>
+ * Each recovery transport is served independently, so a slow consumer does not delay recovery of
+ * others, and the multicast feed itself is never stalled.
+ *
+ * <pre>
+ * RetransmissionServer server = new RetransmissionServer(store, exceptionConsumer);
+ * server.open();
+ * TcpAcceptor acceptor = new TcpAcceptor(selector, recoveryAddress, server::serve);
+ * </pre>
+ *
+ * @author Don Mendelson
+ *
+ */
+public class RetransmissionServer implements Service {
+
+  private class RecoverySession implements TransportConsumer {
+
+    private final ByteBuffer batchBuffer =
+        ByteBuffer.allocateDirect(MAX_MESSAGE_LENGTH).order(ByteOrder.nativeOrder());
+    private final FrameSpliterator frameSpliter = new ReassemblingFrameSpliterator();
+    private final MessageFrameEncoder frameEncoder = RetransmissionServer.this.frameEncoder.copy();
+    private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final RetransmitRequestDecoder requestDecoder = new RetransmitRequestDecoder();
+    private final RestransmitRejectEncoder retransmitRejectEncoder = new RestransmitRejectEncoder();
+    private final RetransmissionEncoder retransmissionEncoder = new RetransmissionEncoder();
+    private final byte[] sessionId = new byte[16];
+    private final ByteBuffer sendBuffer =
+        ByteBuffer.allocateDirect(64).order(ByteOrder.nativeOrder());
+    private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(sendBuffer);
+    private final ByteBuffer[] srcs = new ByteBuffer[2];
+    private final Consumer<MessageStoreResult> resultConsumer = this::onResult;
+    private final Transport transport;
+
+    RecoverySession(Transport transport) {
+      this.transport = transport;
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      if (transport.isMessageOriented()) {
+        onMessage(buffer);
+      } else {
+        frameSpliter.wrap(buffer);
+        frameSpliter.forEachRemaining(this::onMessage);
+      }
+    }
+
+    /**
+     * Sends retrieved messages; invoked when a store request completes
+     */
+    private void onResult(MessageStoreResult result) {
+      final byte[] uuidAsBytes = SessionId.UUIDAsBytes(result.getSessionId());
+      try {
+        final long fromSeqNo = result.getFromSeqNo();
+        final long available = result.getMessagesRemaining(fromSeqNo);
+        long seqNo = fromSeqNo;
+        while (seqNo < fromSeqNo + available) {
+          seqNo += resendBatch(uuidAsBytes, result, seqNo);
+        }
+        if (available < result.getCountRequested()) {
+          // evicted or never stored
+          reject(uuidAsBytes, result.getRequestTimestamp(), RetransmitRejectCode.OutOfRange);
+        }
+      } catch (IOException e) {
+        exceptionConsumer.accept(e);
+      } finally {
+        // messages may be views of store memory; don't hold them
+        result.finishedRetrieving();
+      }
+    }
+
+    @Override
+    public void connected() {
+      // requests are expected only after the consumer connects
+    }
+
+    @Override
+    public void disconnected() {
+      sessions.remove(this);
+    }
+
+    private void onMessage(ByteBuffer buffer) {
+      immutableBuffer.wrap(buffer);
+      int offset = buffer.position();
+      messageHeaderDecoder.wrap(immutableBuffer, offset);
+      if (messageHeaderDecoder.templateId() != requestDecoder.sbeTemplateId()
+          || messageHeaderDecoder.schemaId() != requestDecoder.sbeSchemaId()) {
+        // only requests are expected on a recovery session
+        return;
+      }
+      offset += messageHeaderDecoder.encodedLength();
+      requestDecoder.wrap(immutableBuffer, offset, requestDecoder.sbeBlockLength(),
+          requestDecoder.sbeSchemaVersion());
+      for (int i = 0; i < 16; i++) {
+        sessionId[i] = (byte) requestDecoder.sessionId(i);
+      }
+      final long requestTimestamp = requestDecoder.timestamp();
+      final MessageStoreResult result = new MessageStoreResult(SessionId.UUIDFromBytes(sessionId));
+      try {
+        if (result.setRequest(requestTimestamp, requestDecoder.fromSeqNo(),
+            requestDecoder.count())) {
+          store.retrieveMessagesAsync(result, resultConsumer);
+        }
+      } catch (StoreException e) {
+        result.setException(e);
+        try {
+          reject(sessionId, requestTimestamp, RetransmitRejectCode.OutOfRange);
+        } catch (IOException e1) {
+          exceptionConsumer.accept(e1);
+        }
+      }
+    }
+
+    private void reject(byte[] uuidAsBytes, long requestTimestamp, RetransmitRejectCode code)
+        throws IOException {
+      int offset = 0;
+      frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
+      offset += frameEncoder.getHeaderLength();
+      messageHeaderEncoder.wrap(mutableBuffer, offset);
+      messageHeaderEncoder.blockLength(retransmitRejectEncoder.sbeBlockLength())
+          .templateId(retransmitRejectEncoder.sbeTemplateId())
+          .schemaId(retransmitRejectEncoder.sbeSchemaId())
+          .version(retransmitRejectEncoder.sbeSchemaVersion());
+      offset += messageHeaderEncoder.encodedLength();
+      retransmitRejectEncoder.wrap(mutableBuffer, offset);
+      for (int i = 0; i < 16; i++) {
+        retransmitRejectEncoder.sessionId(i, uuidAsBytes[i]);
+      }
+      retransmitRejectEncoder.requestTimestamp(requestTimestamp);
+      retransmitRejectEncoder.code(code);
+      frameEncoder.setMessageLength(offset + retransmitRejectEncoder.encodedLength());
+      frameEncoder.encodeFrameTrailer();
+
+      transport.write(sendBuffer);
+    }
+
+    /**
+     * Copies as many messages as fit in a batch, but at least one, and sends them after a
+     * Retransmission message
+     *
+     * @return number of messages sent
+     */
+    private int resendBatch(byte[] uuidAsBytes, MessageStoreResult result, long fromSeqNo)
+        throws IOException {
+      final long messagesRemaining = result.getMessagesRemaining(fromSeqNo);
+      batchBuffer.clear();
+      int count = 0;
+      for (; count < messagesRemaining; count++) {
+        final ByteBuffer message = result.getMessage(fromSeqNo + count);
+        final int length = message.remaining();
+        if (count > 0 && batchBuffer.position() + length > MAX_BATCH_LENGTH) {
+          break;
+        }
+        if (length > batchBuffer.remaining()) {
+          if (count > 0) {
+            break;
+          }
+          throw new IOException("Message too large to retransmit; seqNo " + fromSeqNo);
+        }
+        batchBuffer.put(message);
+      }
+
+      int offset = 0;
+      frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
+      offset += frameEncoder.getHeaderLength();
+      messageHeaderEncoder.wrap(mutableBuffer, offset);
+      messageHeaderEncoder.blockLength(retransmissionEncoder.sbeBlockLength())
+          .templateId(retransmissionEncoder.sbeTemplateId())
+          .schemaId(retransmissionEncoder.sbeSchemaId())
+          .version(retransmissionEncoder.sbeSchemaVersion());
+      offset += messageHeaderEncoder.encodedLength();
+      retransmissionEncoder.wrap(mutableBuffer, offset);
+      for (int i = 0; i < 16; i++) {
+        retransmissionEncoder.sessionId(i, uuidAsBytes[i]);
+      }
+      retransmissionEncoder.nextSeqNo(fromSeqNo);
+      retransmissionEncoder.requestTimestamp(result.getRequestTimestamp());
+      retransmissionEncoder.count(count);
+      frameEncoder.setMessageLength(offset + retransmissionEncoder.encodedLength());
+      frameEncoder.encodeFrameTrailer();
+
+      srcs[0] = sendBuffer;
+      srcs[1] = batchBuffer;
+      transport.write(srcs);
+      return count;
+    }
+  }
+
+  /**
+   * Retransmitted messages are batched to fit in one datagram of a typical MTU, except that a
+   * single larger message is sent alone
+   */
+  public static final int MAX_BATCH_LENGTH = 1400;
+
+  private static final int MAX_MESSAGE_LENGTH = 64 * 1024;
+  private static final int RECEIVE_BUFFER_CAPACITY = 16 * 1024;
+
+  private final ExceptionConsumer exceptionConsumer;
+  private final MessageFrameEncoder frameEncoder;
+  private final Set<RecoverySession> sessions = ConcurrentHashMap.newKeySet();
+  private final MessageStore store;
+
+  /**
+   * Constructor with default message framing
+   *
+   * @param store repository of messages published by a producer
+   * @param exceptionConsumer reports exceptions
+   */
+  public RetransmissionServer(MessageStore store, ExceptionConsumer exceptionConsumer) {
+    this(store, new MessageLengthFrameEncoder(), exceptionConsumer);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param store repository of messages published by a producer
+   * @param frameEncoder delimits messages
+   * @param exceptionConsumer reports exceptions
+   */
+  public RetransmissionServer(MessageStore store, MessageFrameEncoder frameEncoder,
+      ExceptionConsumer exceptionConsumer) {
+    Objects.requireNonNull(store);
+    Objects.requireNonNull(frameEncoder);
+    this.store = store;
+    this.frameEncoder = frameEncoder;
+    this.exceptionConsumer = exceptionConsumer;
+  }
+
+  /**
+   * Closes all recovery sessions
+   */
+  @Override
+  public void close() {
+    for (RecoverySession session : sessions) {
+      session.transport.close();
+    }
+    sessions.clear();
+  }
+
+  /**
+   * @return number of connected recovery sessions
+   */
+  public int getSessionCount() {
+    return sessions.size();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see io.fixprotocol.silverflash.Service#open()
+   */
+  @Override
+  public CompletableFuture<RetransmissionServer> open() {
+    return CompletableFuture.completedFuture(this);
+  }
+
+  /**
+   * Serves retransmission requests received on a recovery transport. This method is suitable as
+   * the transport wrapper of a TcpAcceptor.
+   *
+   * @param transport a point-to-point transport to a consumer
+   * @return a future that completes when the transport is open
+   */
+  public CompletableFuture<? extends Transport> serve(Transport transport) {
+    Objects.requireNonNull(transport);
+    final RecoverySession session = new RecoverySession(transport);
+    sessions.add(session);
+    return transport.open(new SingleBufferSupplier(
+        ByteBuffer.allocateDirect(RECEIVE_BUFFER_CAPACITY).order(ByteOrder.nativeOrder())),
+        session);
+  }
+}
@@ -35,6 +35,7 @@ import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.Receiver;
 import io.fixprotocol.silverflash.Service;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRejectCode;
 import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestDecoder;
 import io.fixprotocol.silverflash.fixp.store.MessageStore;
 import io.fixprotocol.silverflash.fixp.store.MessageStoreResult;
@@ -66,9 +67,17 @@ public class Retransmitter implements Service {
         final FixpSession session = value.session.get();
         if (session != null) {
           try {
-            resend(result, result.getFromSeqNo(), session);
+            if (result.isAvailable(result.getFromSeqNo())) {
+              resend(result, result.getFromSeqNo(), session);
+            } else {
+              // evicted or never stored
+              session.rejectResend(result.getRequestTimestamp(), RetransmitRejectCode.OutOfRange);
+            }
           } catch (IOException e) {
             exceptionConsumer.accept(e);
+          } finally {
+            // messages may be views of store memory; don't hold them
+            result.finishedRetrieving();
           }
         } else {
           // session has gone away
@@ -78,6 +87,9 @@ public class Retransmitter implements Service {
     }
   };
 
+  // fits the gather array of a sender
+  private static final int MAX_BATCH_COUNT = 16;
+
   private final MessageLengthFrameDecoder frameDecoder = new MessageLengthFrameDecoder();
   private final EventReactor<ByteBuffer> reactor;
   // todo: a vulture to remove entries for dead sessions, may consider LRU,
@@ -110,20 +122,19 @@ public class Retransmitter implements Service {
       UUID uuid = SessionId.UUIDFromBytes(sessionId);
 
       SessionValue value = getResultForSession(uuid);
-      if (value.result.isRangeContained(fromSeqNo, count)) {
-        try {
-          resend(value.result, fromSeqNo, value.session.get());
-        } catch (IOException ex) {
-
-        }
-      } else {
-        try {
-          if (!requestMessagesFromStore(value.result, requestTimestamp, fromSeqNo, count)) {
-            // reject for in-flight request
-          }
-        } catch (StoreException ex1) {
-          // notify client?
+      final FixpSession session = value != null ? value.session.get() : null;
+      if (session == null) {
+        // cannot respond to an unknown session
+        return;
+      }
+      try {
+        if (!requestMessagesFromStore(value.result, requestTimestamp, fromSeqNo, count)) {
+          // a previous request is still in flight
+          reject(session, requestTimestamp, RetransmitRejectCode.RequestLimitExceeded);
         }
+      } catch (StoreException ex1) {
+        value.result.setException(ex1);
+        reject(session, requestTimestamp, RetransmitRejectCode.OutOfRange);
       }
     }
   };
@@ -186,10 +197,11 @@ public class Retransmitter implements Service {
     int count = 0;
     int totalLength = 0;
 
-    for (; count <= messagesRemaining; count++) {
+    // at least one message is sent even if it exceeds the datagram size
+    for (; count < messagesRemaining && count < MAX_BATCH_COUNT; count++) {
       ByteBuffer message = result.getMessage(fromSeqNo + count);
       totalLength += message.remaining();
-      if (totalLength > 1400) {
+      if (totalLength > 1400 && count > 0) {
         break;
       }
     }
@@ -200,19 +212,27 @@ public class Retransmitter implements Service {
   private SessionValue getResultForSession(UUID uuid) {
     SessionValue value = resultMap.get(uuid);
     if (value == null) {
-      value = new SessionValue();
-      value.result = new MessageStoreResult(uuid);
       final FixpSession session = (FixpSession) sessions.getSession(uuid);
       if (session != null) {
+        value = new SessionValue();
+        value.result = new MessageStoreResult(uuid);
         value.session = new WeakReference<>(session);
         resultMap.put(uuid, value);
       }
-      // todo: else race condition? session died after requesting retrans
+      // else session died after requesting retrans
     }
 
     return value;
   }
 
+  private void reject(FixpSession session, long requestTimestamp, RetransmitRejectCode code) {
+    try {
+      session.rejectResend(requestTimestamp, code);
+    } catch (IOException e) {
+      exceptionConsumer.accept(e);
+    }
+  }
+
   private boolean requestMessagesFromStore(MessageStoreResult result, long requestTimestamp,
       long fromSeqNo, long count) throws StoreException {
     final boolean requested = result.setRequest(requestTimestamp, fromSeqNo, count);
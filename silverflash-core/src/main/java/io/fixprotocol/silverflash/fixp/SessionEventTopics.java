@@ -18,12 +18,17 @@
 package io.fixprotocol.silverflash.fixp;
 
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.fixprotocol.silverflash.reactor.Topic;
 import io.fixprotocol.silverflash.reactor.Topics;
 
 /**
  * Topics for session events
+ * <p>
+ * Topics of a session are created once and cached by session ID while the session is held by
+ * {@link #acquire(UUID)}, so that repeated lookups do not allocate. A lookup for a session that is
+ * not held is not cached, so it leaves no entry behind.
  * 
  * @author Don Mendelson
  *
@@ -90,6 +95,10 @@ public final class SessionEventTopics {
      * A client session was negotiated
      */
     CLIENT_NEGOTIATED,
+    /**
+     * FixpSession sends messages held for packing into a datagram
+     */
+    DATAGRAM_FLUSH,
     /**
      * FixpSession sends heartbeat
      */
@@ -102,6 +111,10 @@ public final class SessionEventTopics {
      * FixpSession peer terminated flow
      */
     PEER_TERMINATED,
+    /**
+     * A consumer requests retransmission of messages missed on a multicast feed
+     */
+    RETRANSMIT_REQUEST,
     /**
      * A server session was established
      */
@@ -110,10 +123,18 @@ public final class SessionEventTopics {
      * A server session was negotiated. This event reports the UUID.
      */
     SERVER_NEGOTIATED,
+    /**
+     * A multicast producer publishes a snapshot of its topic
+     */
+    SNAPSHOT,
     /**
      * A FIXP Topic for multicast was received
      */
-    MULTICAST_TOPIC
+    MULTICAST_TOPIC,
+    /**
+     * A closed FixpSession releases the topics of its session
+     */
+    SESSION_RELEASED
   }
 
   /**
@@ -134,6 +155,100 @@ public final class SessionEventTopics {
     NOT_AUTHENTICATED,
   }
 
+  /**
+   * Topics of one session, indexed by ordinal of event type
+   */
+  private static final class SessionTopics {
+    private final Topic[] fromSessionTopics;
+    // guarded by the map entry
+    private int references = 0;
+    private final Topic[] sessionTopics;
+    private final Topic[] toSessionTopics;
+
+    SessionTopics(UUID sessionId) {
+      final String name = sessionId.toString();
+      fromSessionTopics = createTopics(name, FromSessionEventType.values());
+      sessionTopics = createTopics(name, SessionEventType.values());
+      toSessionTopics = createTopics(name, ToSessionEventType.values());
+    }
+
+    private static Topic[] createTopics(String name, Enum<?>[] types) {
+      final Topic[] topics = new Topic[types.length];
+      for (int i = 0; i < types.length; i++) {
+        topics[i] = Topics.getTopic(name, types[i].name());
+      }
+      return topics;
+    }
+
+    private static void releaseTopics(Topic[] topics) {
+      for (int i = 0; i < topics.length; i++) {
+        Topics.release(topics[i]);
+      }
+    }
+
+    void release() {
+      releaseTopics(fromSessionTopics);
+      releaseTopics(sessionTopics);
+      releaseTopics(toSessionTopics);
+    }
+  }
+
+  private static final Topic[] serviceTopics;
+  private static final ConcurrentHashMap<UUID, SessionTopics> topicsBySession =
+      new ConcurrentHashMap<>();
+
+  static {
+    final ServiceEventType[] types = ServiceEventType.values();
+    serviceTopics = new Topic[types.length];
+    for (int i = 0; i < types.length; i++) {
+      serviceTopics[i] = Topics.getTopic(types[i].name());
+    }
+  }
+
+  /**
+   * Holds the topics of a session until a matching call to {@link #release(UUID)}. Both ends of a
+   * session may be in the same process, so topics are held by reference count.
+   * 
+   * @param sessionId session identifier
+   */
+  public static void acquire(UUID sessionId) {
+    topicsBySession.compute(sessionId, (key, topics) -> {
+      final SessionTopics acquired = topics != null ? topics : new SessionTopics(key);
+      acquired.references++;
+      return acquired;
+    });
+  }
+
+  /**
+   * Returns the number of sessions whose topics are held
+   * 
+   * @return number of sessions
+   */
+  public static int getSessionCount() {
+    return topicsBySession.size();
+  }
+
+  private static Topic getUnheldTopic(UUID sessionId, Enum<?> sessionEventType) {
+    return Topics.getTopic(sessionId.toString(), sessionEventType.name());
+  }
+
+  /**
+   * Releases the topics of a session when the last holder is done with them. Events posted
+   * afterwards to the released topics are not dispatched, and their identifiers are reused.
+   * 
+   * @param sessionId session identifier
+   * @see Topics#release(Topic)
+   */
+  public static void release(UUID sessionId) {
+    topicsBySession.computeIfPresent(sessionId, (key, topics) -> {
+      if (--topics.references > 0) {
+        return topics;
+      }
+      topics.release();
+      return null;
+    });
+  }
+
   /**
    * Returns a Topic by service type
    * 
@@ -141,7 +256,7 @@ public final class SessionEventTopics {
    * @return a Topic
    */
   public static Topic getTopic(ServiceEventType serviceEventType) {
-    return Topics.getTopic(serviceEventType.name());
+    return serviceTopics[serviceEventType.ordinal()];
   }
 
   /**
@@ -173,7 +288,9 @@ public final class SessionEventTopics {
    * @return a Topic
    */
   public static Topic getTopic(UUID sessionId, FromSessionEventType sessionEventType) {
-    return Topics.getTopic(sessionId.toString(), sessionEventType.name());
+    final SessionTopics topics = topicsBySession.get(sessionId);
+    return topics != null ? topics.fromSessionTopics[sessionEventType.ordinal()]
+        : getUnheldTopic(sessionId, sessionEventType);
   }
 
   /**
@@ -184,7 +301,9 @@ public final class SessionEventTopics {
    * @return a Topic
    */
   public static Topic getTopic(UUID sessionId, SessionEventType sessionEventType) {
-    return Topics.getTopic(sessionId.toString(), sessionEventType.name());
+    final SessionTopics topics = topicsBySession.get(sessionId);
+    return topics != null ? topics.sessionTopics[sessionEventType.ordinal()]
+        : getUnheldTopic(sessionId, sessionEventType);
   }
 
   /**
@@ -195,6 +314,8 @@ public final class SessionEventTopics {
    * @return a Topic
    */
   public static Topic getTopic(UUID sessionId, ToSessionEventType sessionEventType) {
-    return Topics.getTopic(sessionId.toString(), sessionEventType.name());
+    final SessionTopics topics = topicsBySession.get(sessionId);
+    return topics != null ? topics.toSessionTopics[sessionEventType.ordinal()]
+        : getUnheldTopic(sessionId, sessionEventType);
   }
 }
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.MessageConsumer;
+import io.fixprotocol.silverflash.Session;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmissionDecoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicDecoder;
+import io.fixprotocol.silverflash.frame.FrameSpliterator;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Merges a snapshot published by a {@link SnapshotPublisher} with incremental messages of the live
+ * feed for a multicast consumer that joins late
+ * <p>
+ * Until a complete snapshot is received, live messages are buffered with their sequence numbers.
+ * When a snapshot valid at sequence number <i>n</i> completes, its messages are delivered with
+ * sequence number zero, followed by buffered messages from <i>n</i> onward, and live messages are
+ * then passed through. A snapshot older than the first buffered message is skipped in favor of the
+ * next one. If buffered messages overflow, they are discarded and buffering starts over.
+ * <p>
+ * Topic messages on the snapshot channel are passed on so that a session that missed the Topic on
+ * the live feed can establish. Only a cycle that starts after the session is established is merged,
+ * since live messages are buffered only from then. Not thread-safe; the snapshot channel and the live feed must be
+ * serviced by the same thread.
+ *
+ * @author Don Mendelson
+ *
+ */
+class SnapshotMerger implements MessageConsumer<UUID>, TransportConsumer {
+
+  /**
+   * Default capacity in bytes of each of the snapshot and incremental buffers
+   */
+  static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+  private static final long NONE = -1L;
+  // each record holds a sequence number and message length before the message
+  private static final int RECORD_HEADER_LENGTH = Long.BYTES + Integer.BYTES;
+
+  private long cycleTimestamp = 0;
+  private final MessageConsumer<UUID> delegate;
+  private final Consumer<ByteBuffer> frameConsumer = this::onSnapshotFrame;
+  private final FrameSpliterator frameSpliter = new ReassemblingFrameSpliterator();
+  private long firstBufferedSeqNo = NONE;
+  private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
+  private final ByteBuffer incrementals;
+  private boolean isApplied = false;
+  private final BooleanSupplier isEstablished;
+  private boolean isCycleStarted = false;
+  private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+  private final ByteBuffer incrementalView;
+  private long remaining = 0;
+  private final RetransmissionDecoder retransmissionDecoder = new RetransmissionDecoder();
+  private final Session<UUID> session;
+  private final ByteBuffer snapshot;
+  private final ByteBuffer snapshotView;
+  private final Consumer<ByteBuffer> topicConsumer;
+  private final TopicDecoder topicDecoder = new TopicDecoder();
+  private long validAtSeqNo = 0;
+
+  /**
+   * Constructor with default capacity
+   *
+   * @param delegate application consumer of messages
+   * @param session session that delivers messages
+   * @param topicConsumer receives Topic messages from the snapshot channel
+   * @param isEstablished tells whether the session is receiving the live feed
+   */
+  SnapshotMerger(MessageConsumer<UUID> delegate, Session<UUID> session,
+      Consumer<ByteBuffer> topicConsumer, BooleanSupplier isEstablished) {
+    this(delegate, session, topicConsumer, isEstablished, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param delegate application consumer of messages
+   * @param session session that delivers messages
+   * @param topicConsumer receives Topic messages from the snapshot channel
+   * @param isEstablished tells whether the session is receiving the live feed
+   * @param capacity capacity in bytes of each of the snapshot and incremental buffers
+   */
+  SnapshotMerger(MessageConsumer<UUID> delegate, Session<UUID> session,
+      Consumer<ByteBuffer> topicConsumer, BooleanSupplier isEstablished, int capacity) {
+    this.delegate = delegate;
+    this.session = session;
+    this.topicConsumer = topicConsumer;
+    this.isEstablished = isEstablished;
+    this.snapshot = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    this.incrementals = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    this.snapshotView = snapshot.duplicate().order(ByteOrder.nativeOrder());
+    this.incrementalView = incrementals.duplicate().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Receives a message of the live feed
+   */
+  @Override
+  public void accept(ByteBuffer message, Session<UUID> session, long seqNo) {
+    if (isApplied) {
+      // the live feed may lag the snapshot channel; its state already covers earlier messages
+      if (seqNo >= validAtSeqNo) {
+        delegate.accept(message, session, seqNo);
+      }
+    } else {
+      if (!append(incrementals, message, seqNo)) {
+        // a snapshot must now be valid at this message or later
+        incrementals.clear();
+        firstBufferedSeqNo = NONE;
+        append(incrementals, message, seqNo);
+      }
+      if (firstBufferedSeqNo == NONE) {
+        firstBufferedSeqNo = seqNo;
+      }
+    }
+  }
+
+  /**
+   * Receives data from the snapshot channel
+   */
+  @Override
+  public void accept(ByteBuffer buffer) {
+    if (!isApplied) {
+      frameSpliter.wrap(buffer);
+      frameSpliter.forEachRemaining(frameConsumer);
+    }
+  }
+
+  @Override
+  public void connected() {
+
+  }
+
+  @Override
+  public void disconnected() {
+    if (frameSpliter instanceof ReassemblingFrameSpliterator) {
+      ((ReassemblingFrameSpliterator) frameSpliter).reset();
+    }
+    isCycleStarted = false;
+  }
+
+  /**
+   * @return {@code true} if a snapshot has been applied and live messages are passed through
+   */
+  boolean isApplied() {
+    return isApplied;
+  }
+
+  private boolean append(ByteBuffer buffer, ByteBuffer message, long seqNo) {
+    final int length = message.remaining();
+    if (RECORD_HEADER_LENGTH + length > buffer.remaining()) {
+      return false;
+    }
+    buffer.putLong(seqNo);
+    buffer.putInt(length);
+    final int position = message.position();
+    buffer.put(message);
+    message.position(position);
+    return true;
+  }
+
+  private void complete() {
+    isCycleStarted = false;
+    if (firstBufferedSeqNo != NONE && firstBufferedSeqNo > validAtSeqNo) {
+      // snapshot predates buffered messages; wait for the next one
+      return;
+    }
+    deliver(snapshot, snapshotView, 0L);
+    deliver(incrementals, incrementalView, validAtSeqNo);
+    isApplied = true;
+  }
+
+  private void deliver(ByteBuffer buffer, ByteBuffer view, long fromSeqNo) {
+    final int end = buffer.position();
+    int offset = 0;
+    while (offset < end) {
+      final long seqNo = buffer.getLong(offset);
+      final int length = buffer.getInt(offset + Long.BYTES);
+      final int messageOffset = offset + RECORD_HEADER_LENGTH;
+      if (seqNo == 0L || seqNo >= fromSeqNo) {
+        view.limit(messageOffset + length);
+        view.position(messageOffset);
+        delegate.accept(view, session, seqNo);
+      }
+      offset = messageOffset + length;
+    }
+  }
+
+  private void onSnapshotFrame(ByteBuffer message) {
+    immutableBuffer.wrap(message);
+    final int offset = message.position();
+    messageHeaderDecoder.wrap(immutableBuffer, offset);
+    if (messageHeaderDecoder.schemaId() == topicDecoder.sbeSchemaId()) {
+      switch (messageHeaderDecoder.templateId()) {
+        case TopicDecoder.TEMPLATE_ID:
+          // start of a snapshot cycle
+          isCycleStarted = isEstablished.getAsBoolean();
+          cycleTimestamp = 0;
+          snapshot.clear();
+          topicConsumer.accept(message);
+          return;
+        case RetransmissionDecoder.TEMPLATE_ID:
+          retransmissionDecoder.wrap(immutableBuffer, offset + messageHeaderDecoder.encodedLength(),
+              retransmissionDecoder.sbeBlockLength(), retransmissionDecoder.sbeSchemaVersion());
+          onSnapshotHeader(retransmissionDecoder.requestTimestamp(),
+              retransmissionDecoder.nextSeqNo(), retransmissionDecoder.count());
+          return;
+        default:
+          // not part of a snapshot
+          return;
+      }
+    }
+    if (isCycleStarted && cycleTimestamp != 0) {
+      if (append(snapshot, message, 0L)) {
+        remaining--;
+        if (remaining == 0) {
+          complete();
+        }
+      } else {
+        // snapshot too large to merge
+        isCycleStarted = false;
+      }
+    }
+  }
+
+  private void onSnapshotHeader(long timestamp, long nextSeqNo, long count) {
+    if (!isCycleStarted) {
+      return;
+    }
+    if (cycleTimestamp == 0) {
+      cycleTimestamp = timestamp;
+      validAtSeqNo = nextSeqNo;
+      remaining = count;
+    } else if (timestamp != cycleTimestamp || count != remaining) {
+      // a datagram of this cycle was lost; wait for the next cycle
+      isCycleStarted = false;
+    }
+  }
+}
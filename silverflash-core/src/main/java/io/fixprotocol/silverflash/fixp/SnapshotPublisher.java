@@ -0,0 +1,310 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.SNAPSHOT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.Receiver;
+import io.fixprotocol.silverflash.Sender;
+import io.fixprotocol.silverflash.Service;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmissionEncoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicEncoder;
+import io.fixprotocol.silverflash.frame.MessageFrameDecoder;
+import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameDecoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.reactor.Subscription;
+import io.fixprotocol.silverflash.reactor.TimerSchedule;
+import io.fixprotocol.silverflash.reactor.Topic;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Periodically publishes a snapshot of a multicast topic on a separate channel so that a consumer
+ * that joins late can start from current state rather than replaying the day
+ * <p>
+ * Each snapshot cycle begins with a Topic message identical to the one sent by the producer
+ * session, which also allows a late joiner to establish its session. The snapshot messages follow
+ * in datagrams, each headed by a Retransmission message in which
+ * <ul>
+ * <li>RequestTimestamp identifies the cycle</li>
+ * <li>NextSeqNo is the sequence number on the producer session at which the snapshot is valid</li>
+ * <li>Count is the number of snapshot messages remaining in the cycle, including those in the
+ * datagram</li>
+ * </ul>
+ * A consumer merges a complete snapshot with incremental messages buffered from the live feed; see
+ * {@code FixpSession.Builder.withSnapshotTransport()}.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class SnapshotPublisher implements Service {
+
+  /**
+   * Default capacity of a snapshot in bytes
+   */
+  public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+  /**
+   * Default maximum size of a snapshot datagram
+   */
+  public static final int DEFAULT_MAX_DATAGRAM_SIZE = 1400;
+
+  private final ByteBuffer datagram;
+  private final MutableDirectBuffer datagramMutableBuffer;
+  private final ExceptionConsumer exceptionConsumer;
+  private final MessageFrameDecoder frameDecoder = new MessageLengthFrameDecoder();
+  private final MessageFrameEncoder frameEncoder;
+  private final long intervalMillis;
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final FixpSession producer;
+  private final EventReactor<ByteBuffer> reactor;
+  private final RetransmissionEncoder retransmissionEncoder = new RetransmissionEncoder();
+  private final Receiver snapshotHandler = this::onSnapshotDue;
+  private TimerSchedule snapshotSchedule;
+  private Subscription snapshotSubscription;
+  private final SnapshotSource source;
+  private int stagedCount = 0;
+  private final ByteBuffer staging;
+  private final Sender stagingSender = this::stage;
+  private final ByteBuffer topicBuffer =
+      ByteBuffer.allocateDirect(128).order(ByteOrder.nativeOrder());
+  private final TopicEncoder topicEncoder = new TopicEncoder();
+  private final Transport transport;
+  private final byte[] uuidAsBytes;
+
+  /**
+   * Constructor with default framing and sizes
+   *
+   * @param reactor schedules snapshots
+   * @param transport snapshot channel, typically a {@code UdpMulticastTransport} on a group other
+   *        than the live feed
+   * @param producer multicast producer session of the topic
+   * @param source supplies the state of the topic
+   * @param intervalMillis interval between snapshots in milliseconds
+   */
+  public SnapshotPublisher(EventReactor<ByteBuffer> reactor, Transport transport,
+      FixpSession producer, SnapshotSource source, long intervalMillis) {
+    this(reactor, transport, producer, source, intervalMillis, new MessageLengthFrameEncoder(),
+        DEFAULT_MAX_DATAGRAM_SIZE, DEFAULT_CAPACITY, System.err::println);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param reactor schedules snapshots
+   * @param transport snapshot channel, typically a {@code UdpMulticastTransport} on a group other
+   *        than the live feed
+   * @param producer multicast producer session of the topic
+   * @param source supplies the state of the topic
+   * @param intervalMillis interval between snapshots in milliseconds
+   * @param frameEncoder delimits messages
+   * @param maxDatagramSize maximum size of a snapshot datagram
+   * @param capacity maximum size of a snapshot in bytes
+   * @param exceptionConsumer reports exceptions
+   */
+  public SnapshotPublisher(EventReactor<ByteBuffer> reactor, Transport transport,
+      FixpSession producer, SnapshotSource source, long intervalMillis,
+      MessageFrameEncoder frameEncoder, int maxDatagramSize, int capacity,
+      ExceptionConsumer exceptionConsumer) {
+    Objects.requireNonNull(reactor);
+    Objects.requireNonNull(transport);
+    Objects.requireNonNull(producer);
+    Objects.requireNonNull(source);
+    Objects.requireNonNull(frameEncoder);
+    this.reactor = reactor;
+    this.transport = transport;
+    this.producer = producer;
+    this.source = source;
+    this.intervalMillis = intervalMillis;
+    this.frameEncoder = frameEncoder;
+    this.exceptionConsumer = exceptionConsumer;
+    this.uuidAsBytes = SessionId.UUIDAsBytes(producer.getSessionId());
+    this.datagram = ByteBuffer.allocateDirect(maxDatagramSize).order(ByteOrder.nativeOrder());
+    this.datagramMutableBuffer = new UnsafeBuffer(datagram);
+    this.staging = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Stops publishing snapshots and closes the snapshot channel
+   */
+  @Override
+  public void close() {
+    if (snapshotSchedule != null) {
+      snapshotSchedule.cancel();
+      snapshotSubscription.unsubscribe();
+    }
+    transport.close();
+  }
+
+  /**
+   * Opens the snapshot channel and schedules snapshots
+   */
+  @Override
+  public CompletableFuture<SnapshotPublisher> open() {
+    encodeTopic();
+    // the snapshot channel is send-only
+    final TransportConsumer consumer = new TransportConsumer() {
+
+      @Override
+      public void accept(ByteBuffer buffer) {
+
+      }
+
+      @Override
+      public void connected() {
+
+      }
+
+      @Override
+      public void disconnected() {
+
+      }
+    };
+    return transport
+        .open(new SingleBufferSupplier(ByteBuffer.allocate(64).order(ByteOrder.nativeOrder())),
+            consumer)
+        .thenApply(t -> {
+          final Topic snapshotTopic = SessionEventTopics.getTopic(producer.getSessionId(), SNAPSHOT);
+          snapshotSubscription = reactor.subscribe(snapshotTopic, snapshotHandler);
+          snapshotSchedule = reactor.postAtInterval(snapshotTopic, null, intervalMillis);
+          return this;
+        });
+  }
+
+  /**
+   * Publishes a snapshot immediately. Snapshots are also published at the configured interval.
+   *
+   * @throws IOException if the snapshot cannot be taken or sent
+   */
+  public synchronized void publish() throws IOException {
+    staging.clear();
+    stagedCount = 0;
+    final long validAtSeqNo = source.snapshot(stagingSender);
+    final long cycleTimestamp = System.nanoTime();
+
+    transport.write(topicBuffer);
+
+    staging.flip();
+    int remaining = stagedCount;
+    while (remaining > 0) {
+      datagram.clear();
+      encodeHeader(cycleTimestamp, validAtSeqNo, remaining);
+      int inDatagram = 0;
+      while (staging.hasRemaining()) {
+        final int frameLength = nextFrameLength();
+        if (frameLength > datagram.remaining()) {
+          if (inDatagram > 0) {
+            break;
+          }
+          throw new IOException("Snapshot message exceeds datagram size");
+        }
+        final int limit = staging.limit();
+        staging.limit(staging.position() + frameLength);
+        datagram.put(staging);
+        staging.limit(limit);
+        inDatagram++;
+      }
+      transport.write(datagram);
+      remaining -= inDatagram;
+    }
+  }
+
+  private void encodeHeader(long cycleTimestamp, long validAtSeqNo, int remaining) {
+    int offset = 0;
+    frameEncoder.wrap(datagram, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(datagramMutableBuffer, offset);
+    messageHeaderEncoder.blockLength(retransmissionEncoder.sbeBlockLength())
+        .templateId(retransmissionEncoder.sbeTemplateId())
+        .schemaId(retransmissionEncoder.sbeSchemaId())
+        .version(retransmissionEncoder.sbeSchemaVersion());
+    offset += messageHeaderEncoder.encodedLength();
+    retransmissionEncoder.wrap(datagramMutableBuffer, offset);
+    for (int i = 0; i < 16; i++) {
+      retransmissionEncoder.sessionId(i, uuidAsBytes[i]);
+    }
+    retransmissionEncoder.requestTimestamp(cycleTimestamp);
+    retransmissionEncoder.nextSeqNo(validAtSeqNo);
+    retransmissionEncoder.count(remaining);
+    frameEncoder.setMessageLength(
+        messageHeaderEncoder.encodedLength() + retransmissionEncoder.encodedLength());
+    frameEncoder.encodeFrameTrailer();
+  }
+
+  private void encodeTopic() {
+    final MutableDirectBuffer directBuffer = new UnsafeBuffer(topicBuffer);
+    int offset = 0;
+    frameEncoder.wrap(topicBuffer, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(directBuffer, offset);
+    messageHeaderEncoder.blockLength(topicEncoder.sbeBlockLength())
+        .templateId(topicEncoder.sbeTemplateId()).schemaId(topicEncoder.sbeSchemaId())
+        .version(topicEncoder.sbeSchemaVersion());
+    offset += messageHeaderEncoder.encodedLength();
+    topicEncoder.wrap(directBuffer, offset);
+    for (int i = 0; i < 16; i++) {
+      topicEncoder.sessionId(i, uuidAsBytes[i]);
+    }
+    topicEncoder.flow(producer.getOutboundFlow());
+    topicEncoder.classification(producer.getTopic());
+    frameEncoder.setMessageLength(messageHeaderEncoder.encodedLength() + topicEncoder.encodedLength());
+    frameEncoder.encodeFrameTrailer();
+  }
+
+  private int nextFrameLength() {
+    final int position = staging.position();
+    frameDecoder.wrap(staging).decodeFrameHeader();
+    final int frameLength = frameDecoder.getHeaderLength() + frameDecoder.getMessageLength();
+    staging.position(position);
+    return frameLength;
+  }
+
+  private void onSnapshotDue(ByteBuffer buffer) {
+    try {
+      publish();
+    } catch (IOException e) {
+      exceptionConsumer.accept(e);
+    }
+  }
+
+  private long stage(ByteBuffer message) throws IOException {
+    final int length = message.position();
+    if (length > staging.remaining()) {
+      throw new IOException("Snapshot exceeds capacity");
+    }
+    final int limit = message.limit();
+    message.flip();
+    staging.put(message);
+    message.limit(limit);
+    message.position(length);
+    stagedCount++;
+    return 0;
+  }
+}
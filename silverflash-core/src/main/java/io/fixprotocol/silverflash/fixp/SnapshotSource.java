@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import java.io.IOException;
+
+import io.fixprotocol.silverflash.Sender;
+
+/**
+ * Supplies a compacted snapshot of the state of a multicast topic (application layer)
+ *
+ * @author Don Mendelson
+ *
+ */
+@FunctionalInterface
+public interface SnapshotSource {
+
+  /**
+   * Writes the current state of a topic as application messages. The state and the returned
+   * sequence number must be consistent, so an application typically takes the snapshot under the
+   * same lock as it sends on the producer session.
+   *
+   * @param sink receives each message of the snapshot, framed as for {@code FixpSession.send()}
+   * @return sequence number of the next message to be sent on the producer session; the snapshot
+   *         reflects all messages before it
+   * @throws IOException if the snapshot cannot be written
+   */
+  long snapshot(Sender sink) throws IOException;
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.fixp.messages.ContextDecoder;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicDecoder;
+import io.fixprotocol.silverflash.frame.MessageFrameDecoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameDecoder;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Passes only datagrams of wanted topics from a multicast group shared by several topics
+ * <p>
+ * A Topic message binds a classification to the session ID of its producer. When the classification
+ * is wanted, the session ID is learned and the Topic is passed on; otherwise it is skipped. Each
+ * datagram of a multiplexed flow begins with a Context message that carries the session ID of its
+ * producer, so a datagram is skipped by comparing those 16 bytes with learned session IDs, without
+ * decoding the rest of the datagram and without allocating. Producers that share a group must
+ * therefore use a multiplexed transport; datagrams that do not begin with Topic or Context, such as
+ * those of a simplex flow, cannot be attributed to a topic and are passed on.
+ * <p>
+ * Not thread-safe; intended to be invoked by the thread that services the transport.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class TopicFilter implements TransportConsumer {
+
+  private final TransportConsumer consumer;
+  private final ContextDecoder contextDecoder = new ContextDecoder();
+  private long filtered = 0;
+  private final MessageFrameDecoder frameDecoder;
+  private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
+  private final boolean[] isLearned;
+  private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+  // most and least significant halves of the session ID of each topic, as raw bytes
+  private final long[] sessionIds;
+  private final TopicDecoder topicDecoder = new TopicDecoder();
+  // classifications of wanted topics in the encoding of Topic messages
+  private final byte[][] topics;
+
+  /**
+   * Constructor with message length framing
+   *
+   * @param consumer receives datagrams of wanted topics
+   * @param topics classifications of wanted topics
+   */
+  public TopicFilter(TransportConsumer consumer, String... topics) {
+    this(consumer, new MessageLengthFrameDecoder(), topics);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param consumer receives datagrams of wanted topics
+   * @param frameDecoder decodes the message frame at the start of a datagram
+   * @param topics classifications of wanted topics
+   */
+  public TopicFilter(TransportConsumer consumer, MessageFrameDecoder frameDecoder,
+      String... topics) {
+    Objects.requireNonNull(consumer);
+    Objects.requireNonNull(frameDecoder);
+    Objects.requireNonNull(topics);
+    this.consumer = consumer;
+    this.frameDecoder = frameDecoder;
+    this.topics = new byte[topics.length][];
+    for (int i = 0; i < topics.length; i++) {
+      this.topics[i] = topics[i].getBytes(StandardCharsets.UTF_8);
+    }
+    this.isLearned = new boolean[topics.length];
+    this.sessionIds = new long[2 * topics.length];
+  }
+
+  @Override
+  public void accept(ByteBuffer buffer) {
+    final int position = buffer.position();
+    final int offset = position + frameDecoder.getHeaderLength();
+    if (offset + MessageHeaderDecoder.ENCODED_LENGTH > buffer.limit()) {
+      consumer.accept(buffer);
+      return;
+    }
+    immutableBuffer.wrap(buffer);
+    messageHeaderDecoder.wrap(immutableBuffer, offset);
+    if (messageHeaderDecoder.schemaId() == contextDecoder.sbeSchemaId()) {
+      final int bodyOffset = offset + messageHeaderDecoder.encodedLength();
+      switch (messageHeaderDecoder.templateId()) {
+        case ContextDecoder.TEMPLATE_ID:
+          // session ID is the first field of Context
+          if (!isWanted(immutableBuffer.getLong(bodyOffset),
+              immutableBuffer.getLong(bodyOffset + Long.BYTES))) {
+            filtered++;
+            return;
+          }
+          break;
+        case TopicDecoder.TEMPLATE_ID:
+          if (!onTopic(bodyOffset, buffer.limit())) {
+            filtered++;
+            return;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    consumer.accept(buffer);
+  }
+
+  @Override
+  public void connected() {
+    consumer.connected();
+  }
+
+  @Override
+  public void disconnected() {
+    consumer.disconnected();
+  }
+
+  /**
+   * @return number of datagrams skipped because they belong to topics that are not wanted
+   */
+  public long getFiltered() {
+    return filtered;
+  }
+
+  private boolean isClassification(byte[] topic, int offset, int length) {
+    if (topic.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (immutableBuffer.getByte(offset + i) != topic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isWanted(long msb, long lsb) {
+    for (int i = 0; i < isLearned.length; i++) {
+      if (isLearned[i] && sessionIds[2 * i] == msb && sessionIds[2 * i + 1] == lsb) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean onTopic(int bodyOffset, int limit) {
+    topicDecoder.wrap(immutableBuffer, bodyOffset, topicDecoder.sbeBlockLength(),
+        topicDecoder.sbeSchemaVersion());
+    // classification is compared in place rather than decoded
+    final int classificationOffset =
+        topicDecoder.limit() + TopicDecoder.classificationHeaderLength();
+    final int classificationLength = topicDecoder.classificationLength();
+    if (classificationOffset + classificationLength > limit) {
+      return false;
+    }
+    for (int i = 0; i < topics.length; i++) {
+      if (isClassification(topics[i], classificationOffset, classificationLength)) {
+        // session ID is the first field of Topic; a restarted producer replaces the previous one
+        sessionIds[2 * i] = immutableBuffer.getLong(bodyOffset);
+        sessionIds[2 * i + 1] = immutableBuffer.getLong(bodyOffset + Long.BYTES);
+        isLearned[i] = true;
+        return true;
+      }
+    }
+    return false;
+  }
+}
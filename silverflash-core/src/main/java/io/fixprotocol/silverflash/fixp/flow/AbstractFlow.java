@@ -17,6 +17,7 @@ package io.fixprotocol.silverflash.fixp.flow;
 import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.fixp.SessionId;
@@ -30,6 +31,8 @@ abstract class AbstractFlow {
     private ExceptionConsumer exceptionHandler;
     private MessageFrameEncoder frameEncoder;
     private long keepaliveInterval;
+    private long lingerMillis;
+    private int maxDatagramSize = 0;
     private EventReactor<ByteBuffer> reactor;
     private Sequencer sequencer;
     private UUID sessionId;
@@ -47,6 +50,19 @@ abstract class AbstractFlow {
       return (B) this;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see io.fixprotocol.silverflash.fixp.flow.FlowBuilder#withDatagramPacking(int, long,
+     * java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public B withDatagramPacking(int maxDatagramSize, long lingerTime, TimeUnit unit) {
+      this.maxDatagramSize = maxDatagramSize;
+      this.lingerMillis = Math.max(1L, unit.toMillis(lingerTime));
+      return (B) this;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -119,6 +135,8 @@ abstract class AbstractFlow {
   protected final ExceptionConsumer exceptionHandler;
   protected final  MessageFrameEncoder frameEncoder;
   protected final long keepaliveInterval;
+  protected final long lingerMillis;
+  protected final int maxDatagramSize;
   protected final EventReactor<ByteBuffer> reactor;
   protected final Sequencer sequencer;
   protected final UUID sessionId;
@@ -135,6 +153,8 @@ abstract class AbstractFlow {
     this.transport = builder.transport;
     this.sequencer = builder.sequencer;
     this.keepaliveInterval = builder.keepaliveInterval;
+    this.maxDatagramSize = builder.maxDatagramSize;
+    this.lingerMillis = builder.lingerMillis;
     this.exceptionHandler = builder.exceptionHandler;
     this.frameEncoder = builder.frameEncoder;
   }
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp.flow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import io.fixprotocol.silverflash.transport.Transport;
+
+/**
+ * Packs consecutive messages of a flow into a datagram up to a maximum size
+ * <p>
+ * Messages are copied into a staging buffer until the next one would not fit, and then the staged
+ * messages are written to the transport as one datagram. If a Sequencer is supplied, a single
+ * Sequence or Context message is applied to each datagram. A message is never split across
+ * datagrams; one too large to pack is refused so that the caller can send it alone.
+ * <p>
+ * Not thread-safe; the caller is responsible for concurrency.
+ *
+ * @author Don Mendelson
+ *
+ */
+class DatagramPacker {
+
+  /**
+   * Room reserved in each datagram for a Sequence or Context message with its frame
+   */
+  static final int MAX_HEADER_LENGTH = 48;
+
+  private int messageCount = 0;
+  private final Sequencer sequencer;
+  private final ByteBuffer staging;
+  private final Transport transport;
+
+  /**
+   * Constructor
+   *
+   * @param transport datagram transport
+   * @param sequencer applies sequence to each datagram, or {@code null} for an unsequenced flow
+   * @param maxDatagramSize maximum datagram size in bytes, typically the path MTU less IP and UDP
+   *        headers
+   */
+  DatagramPacker(Transport transport, Sequencer sequencer, int maxDatagramSize) {
+    if (maxDatagramSize <= MAX_HEADER_LENGTH) {
+      throw new IllegalArgumentException("Datagram size too small");
+    }
+    this.transport = transport;
+    this.sequencer = sequencer;
+    this.staging =
+        ByteBuffer.allocateDirect(maxDatagramSize - MAX_HEADER_LENGTH).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Writes staged messages as one datagram, if any
+   *
+   * @throws IOException if an IO error occurs
+   */
+  void flush() throws IOException {
+    if (messageCount > 0) {
+      try {
+        if (sequencer != null) {
+          transport.write(sequencer.apply(staging, messageCount));
+        } else {
+          transport.write(staging);
+        }
+      } finally {
+        staging.clear();
+        messageCount = 0;
+      }
+    }
+  }
+
+  /**
+   * @return number of messages staged but not yet written
+   */
+  int getMessageCount() {
+    return messageCount;
+  }
+
+  /**
+   * Stages a message, first writing staged messages if it does not fit in the current datagram
+   *
+   * @param message a message buffer; position as for {@code write()}. Its position and limit are
+   *        unchanged on return.
+   * @return {@code true} if the message was staged or {@code false} if it is too large for any
+   *         datagram
+   * @throws IOException if an IO error occurs
+   */
+  boolean pack(ByteBuffer message) throws IOException {
+    final int length = message.position();
+    if (length > staging.capacity()) {
+      return false;
+    }
+    if (length > staging.remaining()) {
+      flush();
+    }
+    final int limit = message.limit();
+    message.flip();
+    staging.put(message);
+    message.limit(limit);
+    message.position(length);
+    messageCount++;
+    return true;
+  }
+}
@@ -16,6 +16,7 @@ package io.fixprotocol.silverflash.fixp.flow;
 
 import java.nio.ByteBuffer;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
@@ -39,6 +40,23 @@ public interface FlowBuilder<T, B extends FlowBuilder<T, B>> {
    */
   T build();
 
+  /**
+   * Packs consecutive outbound messages into datagrams up to a maximum size, with a single
+   * Sequence or Context message per datagram. A partially filled datagram is sent when the
+   * linger time elapses or the flow is flushed. Flows that do not send datagrams ignore this.
+   * 
+   * @param maxDatagramSize maximum datagram size in bytes, typically the path MTU less IP and UDP
+   *        headers
+   * @param lingerTime maximum time that a message waits to be packed. Resolution is limited by the
+   *        timer tick of the reactor.
+   * @param unit time unit of {@code lingerTime}
+   * @return this Builder
+   */
+  @SuppressWarnings("unchecked")
+  default B withDatagramPacking(int maxDatagramSize, long lingerTime, TimeUnit unit) {
+    return (B) this;
+  }
+
   /**
    * Supply the outbound keepalive interval
    * 
@@ -28,6 +28,19 @@ import io.fixprotocol.silverflash.Session;
 public interface FlowReceiverBuilder<T, B extends FlowReceiverBuilder<T, B>>
     extends FlowBuilder<T, B> {
 
+  /**
+   * Tells whether the receiver joins a flow already in progress, as a multicast consumer does.
+   * A joining receiver starts at the first Sequence it receives rather than requesting
+   * retransmission of earlier messages. Flows that do not recover messages ignore this.
+   * 
+   * @param isJoining set {@code true} to join a flow in progress. Default is {@code false}.
+   * @return this Builder
+   */
+  @SuppressWarnings("unchecked")
+  default B withJoining(boolean isJoining) {
+    return (B) this;
+  }
+
   B withMessageConsumer(MessageConsumer<UUID> streamReceiver);
 
   B withSession(Session<UUID> session);
@@ -33,4 +33,12 @@ public interface FlowSender extends Sender {
 
   void sendEndOfStream() throws IOException;
 
+  /**
+   * Sends any messages held for packing into a datagram
+   * 
+   * @throws IOException if an IO error occurs
+   */
+  default void flush() throws IOException {
+  }
+
 }
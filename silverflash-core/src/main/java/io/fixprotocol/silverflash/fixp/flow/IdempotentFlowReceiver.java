@@ -22,7 +22,6 @@ import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventTyp
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType.APPLICATION_MESSAGE_TO_SEND;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,6 +53,9 @@ import io.fixprotocol.silverflash.reactor.Topic;
  */
 public class IdempotentFlowReceiver extends AbstractReceiverFlow implements FlowReceiver, Sequenced {
 
+  // frame, message header and NotApplied message
+  private static final int NOT_APPLIED_CAPACITY = 32;
+
   @SuppressWarnings("rawtypes")
   public static class Builder<T extends IdempotentFlowReceiver, B extends FlowReceiverBuilder<IdempotentFlowReceiver, B>>
       extends AbstractReceiverFlow.Builder implements FlowReceiverBuilder  {
@@ -85,31 +87,16 @@ public class IdempotentFlowReceiver extends AbstractReceiverFlow implements Flow
   private final AtomicLong nextSeqNoAccepted = new AtomicLong(1);
   private final AtomicLong nextSeqNoReceived = new AtomicLong(1);
   private final NotAppliedEncoder notAppliedEncoder = new NotAppliedEncoder();
-  private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(32)
-      .order(ByteOrder.nativeOrder());
   private final SequenceDecoder sequenceDecoder = new SequenceDecoder();
   private final Topic terminatedTopic;
   private final Topic toSendTopic;
-  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(sendBuffer);
+  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(new byte[0]);
   
 
   @SuppressWarnings("rawtypes")
   protected IdempotentFlowReceiver(Builder builder) {
     super(builder);
     Objects.requireNonNull(messageConsumer);
-    int offset = 0;
-    frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
-    offset += frameEncoder.getHeaderLength();
-    messageHeaderEncoder.wrap(mutableBuffer, offset);
-    messageHeaderEncoder.blockLength(notAppliedEncoder.sbeBlockLength())
-        .templateId(notAppliedEncoder.sbeTemplateId()).schemaId(notAppliedEncoder.sbeSchemaId())
-        .version(notAppliedEncoder.sbeSchemaVersion());
-    offset += messageHeaderEncoder.encodedLength();
-    notAppliedEncoder.wrap(mutableBuffer, offset);
-    notAppliedEncoder.fromSeqNo(0);
-    notAppliedEncoder.count(0);
-    frameEncoder.setMessageLength(offset + notAppliedEncoder.encodedLength());
-    frameEncoder.encodeFrameTrailer();
 
     toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
     terminatedTopic = SessionEventTopics.getTopic(sessionId, PEER_TERMINATED);
@@ -198,10 +185,28 @@ public class IdempotentFlowReceiver extends AbstractReceiverFlow implements Flow
 
   void notifyGap(long fromSeqNo, int count) {
     // System.out.println("Gap detected");
-    notAppliedEncoder.fromSeqNo(fromSeqNo);
-    notAppliedEncoder.count(count);
-    // Post this to reactor for async sending as an application message
-    reactor.post(toSendTopic, sendBuffer.duplicate());
+    // Encoded in place in an event for async sending as an application message
+    final long sequence = reactor.claim(toSendTopic, NOT_APPLIED_CAPACITY);
+    try {
+      final ByteBuffer payload = reactor.getPayload(sequence);
+      int offset = 0;
+      frameEncoder.wrap(payload, offset).encodeFrameHeader();
+      offset += frameEncoder.getHeaderLength();
+      mutableBuffer.wrap(payload);
+      messageHeaderEncoder.wrap(mutableBuffer, offset);
+      messageHeaderEncoder.blockLength(notAppliedEncoder.sbeBlockLength())
+          .templateId(notAppliedEncoder.sbeTemplateId()).schemaId(notAppliedEncoder.sbeSchemaId())
+          .version(notAppliedEncoder.sbeSchemaVersion());
+      offset += messageHeaderEncoder.encodedLength();
+      notAppliedEncoder.wrap(mutableBuffer, offset);
+      notAppliedEncoder.fromSeqNo(fromSeqNo);
+      notAppliedEncoder.count(count);
+      frameEncoder.setMessageLength(offset + notAppliedEncoder.encodedLength());
+      frameEncoder.encodeFrameTrailer();
+      payload.position((int) frameEncoder.getEncodedLength());
+    } finally {
+      reactor.commit(sequence);
+    }
   }
 
   void onContext(ContextDecoder contextDecoder) {
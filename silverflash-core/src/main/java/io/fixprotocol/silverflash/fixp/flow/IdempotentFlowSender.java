@@ -18,6 +18,7 @@
 package io.fixprotocol.silverflash.fixp.flow;
 
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.FromSessionEventType.SESSION_SUSPENDED;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.DATAGRAM_FLUSH;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.HEARTBEAT;
 
 import java.io.IOException;
@@ -41,6 +42,9 @@ import io.fixprotocol.silverflash.reactor.Topic;
 /**
  * Sends messages on an idempotent flow on a Transport that guarantees FIFO delivery. The
  * implementation sends a Sequence message only at startup and for heartbeats.
+ * <p>
+ * If datagram packing is configured, consecutive messages are packed into a datagram with a
+ * single Sequence message until it is full, its linger time elapses, or the flow is flushed.
  * 
  * @author Don Mendelson
  *
@@ -64,6 +68,18 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
   }
 
   private final AtomicBoolean criticalSection = new AtomicBoolean();
+  private final Receiver flushEvent = t -> {
+    try {
+      flush();
+    } catch (IOException e) {
+      exceptionHandler.accept(e);
+    }
+  };
+  private final ByteBuffer flushBuffer = ByteBuffer.allocate(0);
+  // guarded by criticalSection
+  private TimerSchedule flushSchedule;
+  private final Subscription flushSubscription;
+  private final Topic flushTopic;
   private final Receiver heartbeatEvent = t -> {
     try {
       sendHeartbeat();
@@ -82,6 +98,8 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
   private final AtomicBoolean isHeartbeatDue = new AtomicBoolean(true);
   private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
   private final ByteBuffer[] one = new ByteBuffer[1];
+  private final ByteBuffer[] oversize = new ByteBuffer[1];
+  private final DatagramPacker packer;
   private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(48)
       .order(ByteOrder.nativeOrder());
   private final TerminateEncoder terminateEncoder = new TerminateEncoder();
@@ -94,6 +112,57 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
     heartbeatSubscription = reactor.subscribe(heartbeatTopic, heartbeatEvent);
     heartbeatSchedule = reactor.postAtInterval(heartbeatTopic, ByteBuffer.allocate(0),
         keepaliveInterval);
+
+    if (maxDatagramSize > 0) {
+      packer = new DatagramPacker(transport, sequencer, maxDatagramSize);
+      flushTopic = SessionEventTopics.getTopic(sessionId, DATAGRAM_FLUSH);
+      flushSubscription = reactor.subscribe(flushTopic, flushEvent);
+    } else {
+      packer = null;
+      flushTopic = null;
+      flushSubscription = null;
+    }
+  }
+
+  /**
+   * Arms a one-shot flush of staged messages after the linger time, so an idle flow is not woken.
+   * Invoked within the critical section.
+   */
+  private void armFlush() {
+    if (flushSchedule == null && packer.getMessageCount() > 0) {
+      flushSchedule = reactor.postAt(flushTopic, flushBuffer, lingerMillis);
+    }
+  }
+
+  private void disarmFlush() {
+    if (flushSchedule != null) {
+      flushSchedule.cancel();
+      flushSchedule = null;
+    }
+  }
+
+  /**
+   * Sends messages held for packing into a datagram
+   * 
+   * @throws IOException if an IO error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    if (packer == null) {
+      return;
+    }
+    while (!criticalSection.compareAndSet(false, true)) {
+      Thread.yield();
+    }
+    try {
+      if (packer.getMessageCount() > 0) {
+        packer.flush();
+        isHeartbeatDue.set(false);
+      }
+      disarmFlush();
+    } finally {
+      criticalSection.compareAndSet(true, false);
+    }
   }
 
   /*
@@ -102,6 +171,9 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
    * @see io.fixprotocol.silverflash.Sequenced#getNextSeqNo()
    */
   public long getNextSeqNo() {
+    if (packer != null) {
+      return sequencer.getNextSeqNo() + packer.getMessageCount();
+    }
     return sequencer.getNextSeqNo();
   }
 
@@ -122,6 +194,23 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
       Thread.yield();
     }
     try {
+      if (packer != null && messages.length > 0) {
+        for (int i = 0; i < messages.length; i++) {
+          if (!packer.pack(messages[i])) {
+            packer.flush();
+            oversize[0] = messages[i];
+            transport.write(sequencer.apply(oversize));
+          }
+        }
+        // held messages are sent within the linger time, so a heartbeat is not needed
+        armFlush();
+        isHeartbeatDue.set(false);
+        return sequencer.getNextSeqNo() + packer.getMessageCount();
+      } else if (packer != null) {
+        // heartbeat: held messages carry their own Sequence
+        packer.flush();
+        disarmFlush();
+      }
       transport.write(sequencer.apply(messages));
       isHeartbeatDue.set(false);
       return sequencer.getNextSeqNo();
@@ -133,6 +222,10 @@ public class IdempotentFlowSender extends AbstractFlow implements FlowSender, Mu
   public void sendEndOfStream() throws IOException {
     heartbeatSchedule.cancel();
     heartbeatSubscription.unsubscribe();
+    if (packer != null) {
+      flushSubscription.unsubscribe();
+      flush();
+    }
 
     int offset = 0;
     frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
@@ -83,6 +83,21 @@ public class MultiplexSequencer implements Sequencer, MutableSequence {
     return dest;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.flow.Sequencer#apply(java.nio.ByteBuffer, int)
+   */
+  @Override
+  public ByteBuffer[] apply(ByteBuffer packed, int messageCount) {
+    contextEncoder.nextSeqNo(nextSeqNo);
+    ByteBuffer[] dest = arrays.getBufferArray(2);
+    dest[0] = contextBuffer;
+    dest[1] = packed;
+    nextSeqNo += messageCount;
+    return dest;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -21,6 +21,7 @@ import static io.fixprotocol.silverflash.fixp.SessionEventTopics.FromSessionEven
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ServiceEventType.SERVICE_STORE_RETREIVE;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.PEER_HEARTBEAT;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.PEER_TERMINATED;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.RETRANSMIT_REQUEST;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -37,13 +38,16 @@ import io.fixprotocol.silverflash.Receiver;
 import io.fixprotocol.silverflash.Sequenced;
 import io.fixprotocol.silverflash.fixp.SessionEventTopics;
 import io.fixprotocol.silverflash.fixp.flow.NoneFlowReceiver.Builder;
+import io.fixprotocol.silverflash.fixp.messages.ContextDecoder;
 import io.fixprotocol.silverflash.fixp.messages.FinishedSendingDecoder;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RestransmitRejectDecoder;
 import io.fixprotocol.silverflash.fixp.messages.RetransmissionDecoder;
 import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestEncoder;
 import io.fixprotocol.silverflash.fixp.messages.SequenceDecoder;
 import io.fixprotocol.silverflash.fixp.messages.TerminateDecoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicDecoder;
 import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
 import io.fixprotocol.silverflash.reactor.Subscription;
 import io.fixprotocol.silverflash.reactor.TimerSchedule;
@@ -51,6 +55,11 @@ import io.fixprotocol.silverflash.reactor.Topic;
 
 /**
  * Receives a recoverable message flow
+ * <p>
+ * When a gap in sequence is detected, a RetransmitRequest is published on the session topic
+ * {@code RETRANSMIT_REQUEST} if it has a subscriber, such as a RetransmissionClient of a multicast
+ * consumer; otherwise, it is published to the local message store service. Messages after the gap
+ * continue to be delivered while it is recovered.
  * 
  * @author Don Mendelson
  *
@@ -62,10 +71,24 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
   public static class Builder<T extends RecoverableFlowReceiver, B extends FlowReceiverBuilder<RecoverableFlowReceiver, B>>
       extends AbstractReceiverFlow.Builder implements FlowReceiverBuilder {
 
+    private boolean isJoining = false;
+
     public RecoverableFlowReceiver build() {
       return new RecoverableFlowReceiver(this);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see io.fixprotocol.silverflash.fixp.flow.FlowReceiverBuilder#withJoining(boolean)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public B withJoining(boolean isJoining) {
+      this.isJoining = isJoining;
+      return (B) this;
+    }
+
   }
 
   public static Builder<RecoverableFlowReceiver, ? extends FlowReceiverBuilder> builder() {
@@ -82,6 +105,10 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
   private final TimerSchedule heartbeatSchedule;
   private final Subscription heartbeatSubscription;
   private boolean isEndOfStream = false;
+  // a multicast consumer may join after the start of the feed
+  private boolean isJoining;
+  // application messages follow a Context of another session on a shared transport
+  private boolean isForeignContext = false;
   private final AtomicBoolean isHeartbeatDue = new AtomicBoolean(true);
   private final AtomicBoolean isRetransmission = new AtomicBoolean();
   private long lastRequestTimestamp = 0L;
@@ -92,7 +119,9 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
   private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(64)
       .order(ByteOrder.nativeOrder());
   private final RetransmitRequestEncoder retransmitRequestEncoder = new RetransmitRequestEncoder();
+  private final byte[] contextSessionId = new byte[16];
   private final byte[] retransSessionId = new byte[16];
+  private final Topic recoveryTopic;
   private final Topic retrieveTopic;
   private final Topic terminatedTopic;
   private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(sendBuffer);
@@ -100,6 +129,7 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
   private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
   private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
   private final SequenceDecoder sequenceDecoder = new SequenceDecoder();
+  private final ContextDecoder contextDecoder = new ContextDecoder();
   private final RetransmissionDecoder retransmissionDecoder = new RetransmissionDecoder();
 
 
@@ -119,12 +149,19 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
     frameEncoder.encodeFrameTrailer();
 
     retrieveTopic = SessionEventTopics.getTopic(SERVICE_STORE_RETREIVE);
+    recoveryTopic = SessionEventTopics.getTopic(sessionId, RETRANSMIT_REQUEST);
     terminatedTopic = SessionEventTopics.getTopic(sessionId, PEER_TERMINATED);
     finishedTopic = SessionEventTopics.getTopic(sessionId, SESSION_FINISHED);
 
-    final Topic heartbeatTopic = SessionEventTopics.getTopic(sessionId, PEER_HEARTBEAT);
-    heartbeatSubscription = reactor.subscribe(heartbeatTopic, heartbeatEvent);
-    heartbeatSchedule = reactor.postAtInterval(heartbeatTopic, null, keepaliveInterval);
+    if (keepaliveInterval != 0) {
+      final Topic heartbeatTopic = SessionEventTopics.getTopic(sessionId, PEER_HEARTBEAT);
+      heartbeatSubscription = reactor.subscribe(heartbeatTopic, heartbeatEvent);
+      heartbeatSchedule = reactor.postAtInterval(heartbeatTopic, null, keepaliveInterval);
+    } else {
+      heartbeatSubscription = null;
+      heartbeatSchedule = null;
+    }
+    isJoining = builder.isJoining;
   }
 
   public void accept(ByteBuffer buffer) {
@@ -143,12 +180,22 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
         onSequence(sequenceDecoder);
         isApplicationMessage = false;
         break;
+      case ContextDecoder.TEMPLATE_ID:
+        contextDecoder.wrap(immutableBuffer, offset,
+        contextDecoder.sbeBlockLength(), contextDecoder.sbeSchemaVersion());
+        onContext(contextDecoder);
+        isApplicationMessage = false;
+        break;
       case RetransmissionDecoder.TEMPLATE_ID:
         retransmissionDecoder.wrap(immutableBuffer, offset,
         retransmissionDecoder.sbeBlockLength(), sequenceDecoder.sbeSchemaVersion());
         onRetransmission(retransmissionDecoder, buffer);
         isApplicationMessage = false;
         break;
+      case RestransmitRejectDecoder.TEMPLATE_ID:
+        // requested messages are lost; continue after the gap
+        isApplicationMessage = false;
+        break;
       case FinishedSendingDecoder.TEMPLATE_ID:
         finished(buffer);
         isApplicationMessage = false;
@@ -157,6 +204,10 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
         terminated(buffer);
         isApplicationMessage = false;
         break;
+      case TopicDecoder.TEMPLATE_ID:
+        // a multicast producer repeats its Topic for late joiners
+        isApplicationMessage = false;
+        break;
       default:
 //          System.out
 //              .println("RecoverableFlowReceiver: Protocol violation; unexpected session message "
@@ -164,7 +215,8 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
         reactor.post(terminatedTopic, buffer);
       }
     }
-    if (isApplicationMessage && !isEndOfStream) {
+    // a joiner cannot number messages until it receives a Sequence
+    if (isApplicationMessage && !isEndOfStream && !isForeignContext && !isJoining) {
       if (!isRetransmission.get()) {
         final long seqNo = nextSeqNoReceived.getAndIncrement();
         if (nextSeqNoAccepted.compareAndSet(seqNo, seqNo)) {
@@ -192,15 +244,35 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
       nextRetransSeqNoReceived.set(retransSeqNo);
       lastRetransSeqNoToAccept = retransSeqNo + count;
       isRetransmission.set(true);
+      isForeignContext = false;
     } else {
       // System.err.println("Protocol violation; unsolicited retransmission");
       reactor.post(terminatedTopic, buffer);
     }
   }
 
+  void onContext(ContextDecoder contextDecoder) {
+    for (int i = 0; i < 16; i++) {
+      contextSessionId[i] = (byte) contextDecoder.sessionId(i);
+    }
+    isForeignContext = !Arrays.equals(uuidAsBytes, contextSessionId);
+    if (!isForeignContext) {
+      handleSequence(contextDecoder.nextSeqNo());
+    }
+  }
+
   void onSequence(SequenceDecoder sequenceDecoder) {
+    isForeignContext = false;
+    handleSequence(sequenceDecoder.nextSeqNo());
+  }
+
+  private void handleSequence(long newNextSeqNo) {
     isHeartbeatDue.set(false);
-    final long newNextSeqNo = sequenceDecoder.nextSeqNo();
+    if (isJoining) {
+      // start at the live sequence; earlier state comes from a snapshot rather than retransmission
+      isJoining = false;
+      nextSeqNoAccepted.set(newNextSeqNo);
+    }
     final long prevNextSeqNo = nextSeqNoReceived.getAndSet(newNextSeqNo);
     // todo: protocol violation if less than previous seq?
     final long accepted = nextSeqNoAccepted.get();
@@ -243,14 +315,20 @@ public class RecoverableFlowReceiver extends AbstractReceiverFlow
     retransmitRequestEncoder.fromSeqNo(fromSeqNo);
     retransmitRequestEncoder.count(count);
     // Post this to reactor for async message retrieval and retransmission
-    reactor.post(retrieveTopic, sendBuffer);
+    if (reactor.hasSubscriber(recoveryTopic)) {
+      reactor.post(recoveryTopic, sendBuffer);
+    } else {
+      reactor.post(retrieveTopic, sendBuffer);
+    }
   }
 
   private void terminated(ByteBuffer buffer) {
     isEndOfStream = true;
     buffer.rewind();
     reactor.post(terminatedTopic, buffer);
-    heartbeatSchedule.cancel();
-    heartbeatSubscription.unsubscribe();
+    if (heartbeatSchedule != null) {
+      heartbeatSchedule.cancel();
+      heartbeatSubscription.unsubscribe();
+    }
   }
 }
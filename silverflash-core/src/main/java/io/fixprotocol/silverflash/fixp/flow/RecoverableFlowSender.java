@@ -32,7 +32,11 @@ import io.fixprotocol.silverflash.RecoverableSender;
 import io.fixprotocol.silverflash.fixp.SessionEventTopics;
 import io.fixprotocol.silverflash.fixp.messages.FinishedSendingEncoder;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RestransmitRejectEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRejectCode;
 import io.fixprotocol.silverflash.fixp.messages.RetransmissionEncoder;
+import io.fixprotocol.silverflash.fixp.store.Durability;
+import io.fixprotocol.silverflash.fixp.store.MessageJournal;
 import io.fixprotocol.silverflash.fixp.store.MessageStore;
 import io.fixprotocol.silverflash.fixp.store.StoreException;
 import io.fixprotocol.silverflash.reactor.Subscription;
@@ -43,24 +47,52 @@ import io.fixprotocol.silverflash.reactor.Topic;
  * Sends messages on an recoverable flow on a Transport that guarantees FIFO delivery. The
  * implementation sends a Sequence message only at startup, when context changes between
  * retransmission and real-time messages, and for heartbeats.
+ * <p>
+ * Each sequenced message is persisted to a MessageStore for recovery, either through a
+ * {@link MessageJournal} or, if none is provided, synchronously.
  * 
  * @author Don Mendelson
  *
  */
 @SuppressWarnings("unchecked")
 public class RecoverableFlowSender extends AbstractFlow
-    implements RecoverableSender, MutableSequence {
+    implements FlowSender, RecoverableSender, MutableSequence {
 
   @SuppressWarnings("rawtypes")
   public static class Builder<T extends RecoverableFlowSender, B extends FlowBuilder>
       extends AbstractFlow.Builder {
 
+    private Durability durability = Durability.NONE;
+    private MessageJournal journal;
     private MessageStore store;
 
     public T build() {
       return (T) new RecoverableFlowSender(this);
     }
 
+    /**
+     * Set the level of durability of sent messages. Default is {@link Durability#NONE}.
+     * 
+     * @param durability level of durability
+     * @return this Builder
+     */
+    public B withDurability(Durability durability) {
+      this.durability = durability;
+      return (B) this;
+    }
+
+    /**
+     * Provide a journal to persist sent messages asynchronously. If not provided, messages are
+     * inserted into the MessageStore synchronously.
+     * 
+     * @param journal appends messages to a store
+     * @return this Builder
+     */
+    public B withMessageJournal(MessageJournal journal) {
+      this.journal = journal;
+      return (B) this;
+    }
+
     public B withMessageStore(MessageStore store) {
       this.store = store;
       return (B) this;
@@ -91,17 +123,27 @@ public class RecoverableFlowSender extends AbstractFlow
   private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
   private final ByteBuffer[] one = new ByteBuffer[1];
   private final RetransmissionEncoder retransmissionEncoder = new RetransmissionEncoder();
+  private final RestransmitRejectEncoder retransmitRejectEncoder = new RestransmitRejectEncoder();
   private final ByteBuffer sendBuffer =
       ByteBuffer.allocateDirect(64).order(ByteOrder.nativeOrder());
   private final ByteBuffer[] srcs = new ByteBuffer[32];
 
+  private final Durability durability;
+  private final MessageJournal journal;
   private final MessageStore store;
   private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(sendBuffer);
 
   protected RecoverableFlowSender(Builder builder) {
     super(builder);
-    Objects.requireNonNull(builder.store);
-    this.store = builder.store;
+    this.journal = builder.journal;
+    if (builder.store != null) {
+      this.store = builder.store;
+    } else {
+      this.store = journal != null ? journal.getStore() : null;
+    }
+    Objects.requireNonNull(this.store);
+    Objects.requireNonNull(builder.durability);
+    this.durability = builder.durability;
     final Topic heartbeatTopic = SessionEventTopics.getTopic(sessionId, HEARTBEAT);
     heartbeatSubscription = reactor.subscribe(heartbeatTopic, heartbeatEvent);
     heartbeatSchedule =
@@ -116,8 +158,31 @@ public class RecoverableFlowSender extends AbstractFlow
     return isHeartbeatDue.getAndSet(true);
   }
 
-  private void persist(long seqNo, ByteBuffer message) throws StoreException {
-    store.insertMessage(sessionId, seqNo, message);
+  /**
+   * Persists messages that have not yet been written to the transport, so each is found from the
+   * start of its buffer to its position.
+   */
+  private void persist(long reservation, long firstSeqNo, ByteBuffer[] messages)
+      throws StoreException {
+    if (journal != null) {
+      journal.append(reservation, sessionId, firstSeqNo, messages, durability);
+    } else {
+      for (int i = 0; i < messages.length; i++) {
+        final ByteBuffer message = messages[i];
+        final int position = message.position();
+        final int limit = message.limit();
+        message.flip();
+        try {
+          store.insertMessage(sessionId, firstSeqNo + i, message);
+        } finally {
+          message.limit(limit);
+          message.position(position);
+        }
+      }
+      if (messages.length > 0 && durability != Durability.NONE) {
+        store.flush(durability);
+      }
+    }
   }
 
   @Override
@@ -166,15 +231,16 @@ public class RecoverableFlowSender extends AbstractFlow
       Thread.yield();
     }
     try {
-      frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
-      offset += frameEncoder.getHeaderLength();
-      messageHeaderEncoder.wrap(mutableBuffer, offset);
+      int bufferOffset = 0;
+      frameEncoder.wrap(sendBuffer, bufferOffset).encodeFrameHeader();
+      bufferOffset += frameEncoder.getHeaderLength();
+      messageHeaderEncoder.wrap(mutableBuffer, bufferOffset);
       messageHeaderEncoder.blockLength(retransmissionEncoder.sbeBlockLength())
           .templateId(retransmissionEncoder.sbeTemplateId())
           .schemaId(retransmissionEncoder.sbeSchemaId())
           .version(retransmissionEncoder.sbeSchemaVersion());
-      offset += messageHeaderEncoder.encodedLength();
-      retransmissionEncoder.wrap(mutableBuffer, offset);
+      bufferOffset += messageHeaderEncoder.encodedLength();
+      retransmissionEncoder.wrap(mutableBuffer, bufferOffset);
 
       for (int i = 0; i < 16; i++) {
         retransmissionEncoder.sessionId(i, uuidAsBytes[i]);
@@ -182,7 +248,7 @@ public class RecoverableFlowSender extends AbstractFlow
       retransmissionEncoder.nextSeqNo(seqNo);
       retransmissionEncoder.requestTimestamp(requestTimestamp);
       retransmissionEncoder.count(length);
-      frameEncoder.setMessageLength(offset + retransmissionEncoder.encodedLength());
+      frameEncoder.setMessageLength(bufferOffset + retransmissionEncoder.encodedLength());
       frameEncoder.encodeFrameTrailer();
       
       isRetransmission.set(true);
@@ -196,6 +262,45 @@ public class RecoverableFlowSender extends AbstractFlow
     }
   }
 
+  /**
+   * Rejects a request for retransmission, e.g. because requested messages are no longer available
+   * 
+   * @param requestTimestamp time that the retransmission was requested
+   * @param code reason for rejection
+   * @throws IOException if an IO error occurs
+   */
+  public void sendRetransmitReject(long requestTimestamp, RetransmitRejectCode code)
+      throws IOException {
+    Objects.requireNonNull(code);
+    while (!criticalSection.compareAndSet(false, true)) {
+      Thread.yield();
+    }
+    try {
+      int offset = 0;
+      frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
+      offset += frameEncoder.getHeaderLength();
+      messageHeaderEncoder.wrap(mutableBuffer, offset);
+      messageHeaderEncoder.blockLength(retransmitRejectEncoder.sbeBlockLength())
+          .templateId(retransmitRejectEncoder.sbeTemplateId())
+          .schemaId(retransmitRejectEncoder.sbeSchemaId())
+          .version(retransmitRejectEncoder.sbeSchemaVersion());
+      offset += messageHeaderEncoder.encodedLength();
+      retransmitRejectEncoder.wrap(mutableBuffer, offset);
+
+      for (int i = 0; i < 16; i++) {
+        retransmitRejectEncoder.sessionId(i, uuidAsBytes[i]);
+      }
+      retransmitRejectEncoder.requestTimestamp(requestTimestamp);
+      retransmitRejectEncoder.code(code);
+      frameEncoder.setMessageLength(offset + retransmitRejectEncoder.encodedLength());
+      frameEncoder.encodeFrameTrailer();
+
+      transport.write(sendBuffer);
+    } finally {
+      criticalSection.compareAndSet(true, false);
+    }
+  }
+
   @Override
   public long send(ByteBuffer message) throws IOException {
     Objects.requireNonNull(message);
@@ -206,18 +311,48 @@ public class RecoverableFlowSender extends AbstractFlow
   @Override
   public long send(ByteBuffer[] messages) throws IOException {
     Objects.requireNonNull(messages);
+    final long reservation;
+    try {
+      // a lagging journal holds up this sender only, not others waiting for the critical section
+      reservation = journal != null ? journal.reserve(messages.length)
+          : MessageJournal.NO_RESERVATION;
+    } catch (StoreException e) {
+      throw new IOException("Failed to persist message", e);
+    }
     while (!criticalSection.compareAndSet(false, true)) {
       Thread.yield();
     }
     try {
+      persist(reservation, sequencer.getNextSeqNo(), messages);
       transport.write(sequencer.apply(messages));
       isHeartbeatDue.set(false);
+    } catch (StoreException e) {
+      throw new IOException("Failed to persist message", e);
     } finally {
       criticalSection.compareAndSet(true, false);
     }
     return sequencer.getNextSeqNo();
   }
 
+  /**
+   * Writes a session message that does not consume a sequence number, e.g. a Topic for late
+   * joiners
+   * 
+   * @param message a framed session message
+   * @throws IOException if the message cannot be sent
+   */
+  protected void sendUnsequenced(ByteBuffer message) throws IOException {
+    Objects.requireNonNull(message);
+    while (!criticalSection.compareAndSet(false, true)) {
+      Thread.yield();
+    }
+    try {
+      transport.write(message);
+    } finally {
+      criticalSection.compareAndSet(true, false);
+    }
+  }
+
   public void sendEndOfStream() throws IOException {
     while (!criticalSection.compareAndSet(false, true)) {
       Thread.yield();
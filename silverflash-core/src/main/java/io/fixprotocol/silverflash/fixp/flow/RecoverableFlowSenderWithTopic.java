@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp.flow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.fixp.messages.FlowType;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicEncoder;
+
+/**
+ * Sends messages on a recoverable multicast flow. Additionally, it resends a Topic message with
+ * each heartbeat so a late joiner can establish from the live feed. The Topic does not consume a
+ * sequence number, so it is never subject to retransmission.
+ * 
+ * @author Don Mendelson
+ */
+public class RecoverableFlowSenderWithTopic extends RecoverableFlowSender {
+
+  @SuppressWarnings("rawtypes")
+  public static class Builder<T extends RecoverableFlowSenderWithTopic, B extends RecoverableFlowSender.Builder<RecoverableFlowSender, FlowBuilder>>
+      extends RecoverableFlowSender.Builder {
+
+    private String topic;
+
+    public RecoverableFlowSenderWithTopic build() {
+      return new RecoverableFlowSenderWithTopic(this);
+    }
+
+    @SuppressWarnings("unchecked")
+    public B withTopic(String topic) {
+      this.topic = topic;
+      return (B) this;
+    }
+  }
+
+  @SuppressWarnings("rawtypes")
+  public static Builder<RecoverableFlowSenderWithTopic, RecoverableFlowSender.Builder<RecoverableFlowSender, FlowBuilder>> builder() {
+    return new Builder<RecoverableFlowSenderWithTopic, RecoverableFlowSender.Builder<RecoverableFlowSender, FlowBuilder>>();
+  }
+
+  private static final ByteBuffer[] EMPTY = new ByteBuffer[0];
+
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final ByteBuffer topicBuffer =
+      ByteBuffer.allocateDirect(128).order(ByteOrder.nativeOrder());
+  private final TopicEncoder topicEncoder = new TopicEncoder();
+  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(topicBuffer);
+
+  @SuppressWarnings("rawtypes")
+  protected RecoverableFlowSenderWithTopic(Builder builder) {
+    super(builder);
+    final String topic = builder.topic;
+    int offset = 0;
+    frameEncoder.wrap(topicBuffer, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.blockLength(topicEncoder.sbeBlockLength())
+        .templateId(topicEncoder.sbeTemplateId()).schemaId(topicEncoder.sbeSchemaId())
+        .version(topicEncoder.sbeSchemaVersion());
+    offset += messageHeaderEncoder.encodedLength();
+    topicEncoder.wrap(mutableBuffer, offset);
+
+    topicEncoder.flow(FlowType.Recoverable);
+    for (int i = 0; i < 16; i++) {
+      topicEncoder.sessionId(i, uuidAsBytes[i]);
+    }
+    topicEncoder.classification(topic);
+    frameEncoder.setMessageLength(offset + topicEncoder.encodedLength());
+    frameEncoder.encodeFrameTrailer();
+  }
+
+  /**
+   * Heartbeats with a Topic followed by a Sequence message
+   */
+  @Override
+  public void sendHeartbeat() throws IOException {
+    if (isHeartbeatDue()) {
+      sendUnsequenced(topicBuffer);
+      send(EMPTY);
+    }
+  }
+
+}
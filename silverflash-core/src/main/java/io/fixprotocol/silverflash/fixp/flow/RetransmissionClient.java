@@ -0,0 +1,324 @@
+/**
+ * Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.flow;
+
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.RETRANSMIT_REQUEST;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.MessageConsumer;
+import io.fixprotocol.silverflash.Receiver;
+import io.fixprotocol.silverflash.Service;
+import io.fixprotocol.silverflash.Session;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics;
+import io.fixprotocol.silverflash.fixp.SessionId;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RestransmitRejectDecoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmissionDecoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestDecoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestEncoder;
+import io.fixprotocol.silverflash.frame.FrameSpliterator;
+import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
+import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.reactor.Subscription;
+import io.fixprotocol.silverflash.reactor.Topic;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * Recovers messages missed by a multicast consumer over a unicast recovery session
+ * <p>
+ * A RecoverableFlowReceiver detects gaps in the sequence of a multicast feed and publishes a
+ * RetransmitRequest on the session topic {@code RETRANSMIT_REQUEST}. This client forwards requests
+ * to a {@link io.fixprotocol.silverflash.fixp.RetransmissionServer} one at a time, queuing any
+ * that arrive while one is outstanding. Recovered messages are delivered to the MessageConsumer
+ * with their original sequence numbers.
+ * <p>
+ * The receiver continues to deliver live messages after a gap, so recovery never stalls the feed.
+ * Recovered messages are delivered on the thread that services the recovery transport; to
+ * serialize them with live messages, service both transports with the same selector.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class RetransmissionClient implements Service {
+
+  private long currentEndSeqNo;
+  private long currentTimestamp;
+  private final ExceptionConsumer exceptionConsumer;
+  private final MessageFrameEncoder frameEncoder;
+  private final FrameSpliterator frameSpliter = new ReassemblingFrameSpliterator();
+  private final DirectBuffer immutableBuffer = new UnsafeBuffer(new byte[0]);
+  private boolean isConnected = false;
+  private boolean isRequestInFlight = false;
+  private final Object lock = new Object();
+  private final MessageConsumer<UUID> messageConsumer;
+  private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private long nextRetransSeqNo;
+  // pairs of fromSeqNo and count
+  private final ArrayDeque<long[]> pendingRequests = new ArrayDeque<>();
+  private final EventReactor<ByteBuffer> reactor;
+  private volatile long recoveredCount = 0;
+  private final RetransmitRequestDecoder requestDecoder = new RetransmitRequestDecoder();
+
+  // gaps are published on the reactor thread, so decoding is separate from the transport thread
+  private final DirectBuffer requestBuffer = new UnsafeBuffer(new byte[0]);
+  private final MessageHeaderDecoder requestHeaderDecoder = new MessageHeaderDecoder();
+  private final Receiver requestHandler = this::onRequest;
+
+  private Subscription requestSubscription;
+  private final RetransmissionDecoder retransmissionDecoder = new RetransmissionDecoder();
+  private long retransRemaining = 0;
+  private final RestransmitRejectDecoder retransmitRejectDecoder = new RestransmitRejectDecoder();
+  private final RetransmitRequestEncoder retransmitRequestEncoder = new RetransmitRequestEncoder();
+  private final ByteBuffer sendBuffer =
+      ByteBuffer.allocateDirect(64).order(ByteOrder.nativeOrder());
+  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(sendBuffer);
+  private final Session<UUID> session;
+  private final Transport transport;
+
+  private final TransportConsumer transportConsumer = new TransportConsumer() {
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      if (transport.isMessageOriented()) {
+        onMessage(buffer);
+      } else {
+        frameSpliter.wrap(buffer);
+        frameSpliter.forEachRemaining(RetransmissionClient.this::onMessage);
+      }
+    }
+
+    @Override
+    public void connected() {
+      synchronized (lock) {
+        isConnected = true;
+        sendNextRequest();
+      }
+    }
+
+    @Override
+    public void disconnected() {
+      synchronized (lock) {
+        isConnected = false;
+        isRequestInFlight = false;
+      }
+    }
+  };
+
+  private final byte[] uuidAsBytes;
+
+  /**
+   * Constructor
+   *
+   * @param reactor publishes gaps detected by the flow receiver
+   * @param transport a point-to-point transport to a retransmission server
+   * @param session multicast consumer session; its ID is that of the producer's flow
+   * @param messageConsumer consumer of recovered messages
+   * @param frameEncoder delimits messages
+   * @param exceptionConsumer reports exceptions
+   */
+  public RetransmissionClient(EventReactor<ByteBuffer> reactor, Transport transport,
+      Session<UUID> session, MessageConsumer<UUID> messageConsumer,
+      MessageFrameEncoder frameEncoder, ExceptionConsumer exceptionConsumer) {
+    Objects.requireNonNull(reactor);
+    Objects.requireNonNull(transport);
+    Objects.requireNonNull(session);
+    Objects.requireNonNull(messageConsumer);
+    this.reactor = reactor;
+    this.transport = transport;
+    this.session = session;
+    this.messageConsumer = messageConsumer;
+    this.frameEncoder = frameEncoder;
+    this.exceptionConsumer = exceptionConsumer;
+    this.uuidAsBytes = SessionId.UUIDAsBytes(session.getSessionId());
+  }
+
+  /**
+   * Stops requesting retransmissions and closes the recovery transport
+   */
+  @Override
+  public void close() {
+    if (requestSubscription != null) {
+      requestSubscription.unsubscribe();
+    }
+    transport.close();
+  }
+
+  /**
+   * @return number of gaps waiting to be recovered, including one in progress
+   */
+  public int getPendingRequestCount() {
+    synchronized (lock) {
+      return pendingRequests.size() + (isRequestInFlight ? 1 : 0);
+    }
+  }
+
+  /**
+   * @return number of messages recovered
+   */
+  public long getRecoveredCount() {
+    return recoveredCount;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see io.fixprotocol.silverflash.Service#open()
+   */
+  @Override
+  public CompletableFuture<RetransmissionClient> open() {
+    final Topic requestTopic =
+        SessionEventTopics.getTopic(session.getSessionId(), RETRANSMIT_REQUEST);
+    requestSubscription = reactor.subscribe(requestTopic, requestHandler);
+    return transport
+        .open(new SingleBufferSupplier(
+            ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder())),
+            transportConsumer)
+        .thenApply(t -> this);
+  }
+
+  private void completeRequest() {
+    synchronized (lock) {
+      isRequestInFlight = false;
+      retransRemaining = 0;
+      sendNextRequest();
+    }
+  }
+
+  private void onMessage(ByteBuffer buffer) {
+    immutableBuffer.wrap(buffer);
+    int offset = buffer.position();
+    messageHeaderDecoder.wrap(immutableBuffer, offset);
+    offset += messageHeaderDecoder.encodedLength();
+
+    if (messageHeaderDecoder.schemaId() == retransmissionDecoder.sbeSchemaId()) {
+      switch (messageHeaderDecoder.templateId()) {
+        case RetransmissionDecoder.TEMPLATE_ID:
+          retransmissionDecoder.wrap(immutableBuffer, offset,
+              retransmissionDecoder.sbeBlockLength(), retransmissionDecoder.sbeSchemaVersion());
+          synchronized (lock) {
+            if (isRequestInFlight
+                && retransmissionDecoder.requestTimestamp() == currentTimestamp) {
+              nextRetransSeqNo = retransmissionDecoder.nextSeqNo();
+              retransRemaining = retransmissionDecoder.count();
+            }
+          }
+          return;
+        case RestransmitRejectDecoder.TEMPLATE_ID:
+          retransmitRejectDecoder.wrap(immutableBuffer, offset,
+              retransmitRejectDecoder.sbeBlockLength(),
+              retransmitRejectDecoder.sbeSchemaVersion());
+          synchronized (lock) {
+            if (isRequestInFlight
+                && retransmitRejectDecoder.requestTimestamp() == currentTimestamp) {
+              // the rest of the gap is lost
+              completeRequest();
+            }
+          }
+          return;
+        default:
+          // not a session message; fall through to application
+      }
+    }
+
+    if (retransRemaining > 0) {
+      retransRemaining--;
+      recoveredCount++;
+      messageConsumer.accept(buffer, session, nextRetransSeqNo);
+      nextRetransSeqNo++;
+      if (nextRetransSeqNo >= currentEndSeqNo) {
+        completeRequest();
+      }
+    }
+  }
+
+  private void onRequest(ByteBuffer buffer) {
+    requestBuffer.wrap(buffer);
+    int offset = buffer.position() + frameEncoder.getHeaderLength();
+    requestHeaderDecoder.wrap(requestBuffer, offset);
+    if (requestHeaderDecoder.templateId() == requestDecoder.sbeTemplateId()
+        && requestHeaderDecoder.schemaId() == requestDecoder.sbeSchemaId()) {
+      offset += requestHeaderDecoder.encodedLength();
+      requestDecoder.wrap(requestBuffer, offset, requestDecoder.sbeBlockLength(),
+          requestDecoder.sbeSchemaVersion());
+      request(requestDecoder.fromSeqNo(), requestDecoder.count());
+    }
+  }
+
+  private void request(long fromSeqNo, long count) {
+    synchronized (lock) {
+      pendingRequests.add(new long[] {fromSeqNo, count});
+      sendNextRequest();
+    }
+  }
+
+  // caller holds lock
+  private void sendNextRequest() {
+    if (isRequestInFlight || !isConnected) {
+      return;
+    }
+    final long[] next = pendingRequests.poll();
+    if (next == null) {
+      return;
+    }
+    final long fromSeqNo = next[0];
+    final long count = next[1];
+    currentTimestamp = System.nanoTime();
+    currentEndSeqNo = fromSeqNo + count;
+    isRequestInFlight = true;
+
+    int offset = 0;
+    frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.blockLength(retransmitRequestEncoder.sbeBlockLength())
+        .templateId(retransmitRequestEncoder.sbeTemplateId())
+        .schemaId(retransmitRequestEncoder.sbeSchemaId())
+        .version(retransmitRequestEncoder.sbeSchemaVersion());
+    offset += messageHeaderEncoder.encodedLength();
+    retransmitRequestEncoder.wrap(mutableBuffer, offset);
+    for (int i = 0; i < 16; i++) {
+      retransmitRequestEncoder.sessionId(i, uuidAsBytes[i]);
+    }
+    retransmitRequestEncoder.timestamp(currentTimestamp);
+    retransmitRequestEncoder.fromSeqNo(fromSeqNo);
+    retransmitRequestEncoder.count(count);
+    frameEncoder.setMessageLength(offset + retransmitRequestEncoder.encodedLength());
+    frameEncoder.encodeFrameTrailer();
+
+    try {
+      transport.write(sendBuffer);
+    } catch (IOException e) {
+      isRequestInFlight = false;
+      exceptionConsumer.accept(e);
+    }
+  }
+}
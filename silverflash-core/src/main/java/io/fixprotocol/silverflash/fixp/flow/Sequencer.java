@@ -30,4 +30,16 @@ import io.fixprotocol.silverflash.Sequenced;
  */
 public interface Sequencer extends Function<ByteBuffer[], ByteBuffer[]>, Sequenced {
 
+  /**
+   * Applies sequence to several messages packed contiguously in one buffer. By default, packing is
+   * not supported.
+   * 
+   * @param packed a buffer containing whole messages; position as for {@code write()}
+   * @param messageCount number of messages in the buffer
+   * @return buffers to write, including any sequence message
+   * @throws UnsupportedOperationException if this Sequencer does not support packed messages
+   */
+  default ByteBuffer[] apply(ByteBuffer packed, int messageCount) {
+    throw new UnsupportedOperationException("Packed messages not supported");
+  }
 }
@@ -90,6 +90,21 @@ public class SimplexSequencer implements Sequencer, MutableSequence {
     return dest;
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.flow.Sequencer#apply(java.nio.ByteBuffer, int)
+   */
+  @Override
+  public ByteBuffer[] apply(ByteBuffer packed, int messageCount) {
+    sequenceEncoder.nextSeqNo(nextSeqNo);
+    ByteBuffer[] dest = arrays.getBufferArray(2);
+    dest[0] = sequenceBuffer;
+    dest[1] = packed;
+    nextSeqNo += messageCount;
+    return dest;
+  }
+
   /**
    * @return the nextSeqNo
    */
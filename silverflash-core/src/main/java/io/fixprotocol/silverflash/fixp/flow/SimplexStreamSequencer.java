@@ -96,6 +96,29 @@ public class SimplexStreamSequencer implements Sequencer, MutableSequence {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.flow.Sequencer#apply(java.nio.ByteBuffer, int)
+   */
+  @Override
+  public ByteBuffer[] apply(ByteBuffer packed, int messageCount) {
+    if (firstTime) {
+      sequenceEncoder.nextSeqNo(nextSeqNo);
+      ByteBuffer[] dest = arrays.getBufferArray(2);
+      dest[0] = sequenceBuffer;
+      dest[1] = packed;
+      nextSeqNo += messageCount;
+      firstTime = false;
+      return dest;
+    } else {
+      ByteBuffer[] dest = arrays.getBufferArray(1);
+      dest[0] = packed;
+      nextSeqNo += messageCount;
+      return dest;
+    }
+  }
+
   /**
    * @return the nextSeqNo
    */
@@ -18,6 +18,7 @@
 package io.fixprotocol.silverflash.fixp.flow;
 
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.FromSessionEventType.SESSION_SUSPENDED;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.DATAGRAM_FLUSH;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.HEARTBEAT;
 
 import java.io.IOException;
@@ -43,6 +44,9 @@ import io.fixprotocol.silverflash.reactor.Topic;
 
 /**
  * Sends messages on an unsequenced flow.
+ * <p>
+ * If datagram packing is configured, consecutive messages are packed into a datagram until it is
+ * full, its linger time elapses, or the flow is flushed.
  * 
  * @author Don Mendelson
  *
@@ -64,6 +68,18 @@ public class UnsequencedFlowSender extends AbstractFlow implements FlowSender {
     return new Builder();
   }
 
+  private final Receiver flushEvent = t -> {
+    try {
+      flush();
+    } catch (IOException e) {
+      exceptionHandler.accept(e);
+    }
+  };
+  private final ByteBuffer flushBuffer = ByteBuffer.allocate(0);
+  // guarded by packer
+  private TimerSchedule flushSchedule;
+  private final Subscription flushSubscription;
+  private final Topic flushTopic;
   private final Receiver heartbeatEvent = t -> {
     try {
       sendHeartbeat();
@@ -77,6 +93,7 @@ public class UnsequencedFlowSender extends AbstractFlow implements FlowSender {
   private final Subscription heartbeatSubscription;
   private final AtomicBoolean isHeartbeatDue = new AtomicBoolean(true);
   private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final DatagramPacker packer;
   private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(48)
       .order(ByteOrder.nativeOrder());
   private final TerminateEncoder terminateEncoder = new TerminateEncoder();
@@ -94,12 +111,60 @@ public class UnsequencedFlowSender extends AbstractFlow implements FlowSender {
     heartbeatSubscription = reactor.subscribe(heartbeatTopic, heartbeatEvent);
     heartbeatSchedule = reactor.postAtInterval(heartbeatTopic, sendBuffer,
         keepaliveInterval);
+
+    if (maxDatagramSize > 0) {
+      packer = new DatagramPacker(transport, null, maxDatagramSize);
+      flushTopic = SessionEventTopics.getTopic(sessionId, DATAGRAM_FLUSH);
+      flushSubscription = reactor.subscribe(flushTopic, flushEvent);
+    } else {
+      packer = null;
+      flushTopic = null;
+      flushSubscription = null;
+    }
+  }
+
+  /**
+   * Arms a one-shot flush of staged messages after the linger time, so an idle flow is not woken.
+   * Invoked while holding the packer.
+   */
+  private void armFlush() {
+    if (flushSchedule == null && packer.getMessageCount() > 0) {
+      flushSchedule = reactor.postAt(flushTopic, flushBuffer, lingerMillis);
+    }
+  }
+
+  private void disarmFlush() {
+    if (flushSchedule != null) {
+      flushSchedule.cancel();
+      flushSchedule = null;
+    }
+  }
+
+  /**
+   * Sends messages held for packing into a datagram
+   * 
+   * @throws IOException if an IO error occurs
+   */
+  @Override
+  public void flush() throws IOException {
+    if (packer != null) {
+      synchronized (packer) {
+        packer.flush();
+        disarmFlush();
+      }
+    }
   }
 
   @Override
   public long send(ByteBuffer message) throws IOException {
     Objects.requireNonNull(message);
-    transport.write(message);
+    if (packer != null) {
+      synchronized (packer) {
+        pack(message);
+      }
+    } else {
+      transport.write(message);
+    }
     isHeartbeatDue.set(false);
     return 0;
   }
@@ -107,15 +172,37 @@ public class UnsequencedFlowSender extends AbstractFlow implements FlowSender {
   @Override
   public long send(ByteBuffer[] messages) throws IOException {
     Objects.requireNonNull(messages);
-    transport.write(messages);
+    if (packer != null) {
+      synchronized (packer) {
+        for (int i = 0; i < messages.length; i++) {
+          pack(messages[i]);
+        }
+      }
+    } else {
+      transport.write(messages);
+    }
     isHeartbeatDue.set(false);
     return 0;
   }
 
+  private void pack(ByteBuffer message) throws IOException {
+    if (packer.pack(message)) {
+      armFlush();
+    } else {
+      packer.flush();
+      disarmFlush();
+      transport.write(message);
+    }
+  }
+
   public void sendEndOfStream() throws IOException {
     heartbeatSchedule.cancel();
     heartbeatSubscription.unsubscribe();
-    
+    if (packer != null) {
+      flushSubscription.unsubscribe();
+      flush();
+    }
+
     int offset = 0;
     frameEncoder.wrap(sendBuffer, offset).encodeFrameHeader();
     offset += frameEncoder.getHeaderLength();
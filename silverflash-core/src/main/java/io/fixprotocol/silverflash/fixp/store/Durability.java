@@ -0,0 +1,38 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.store;
+
+/**
+ * Level of durability requested when messages are journaled to a MessageStore
+ * 
+ * @author Don Mendelson
+ *
+ */
+public enum Durability {
+  /**
+   * Fire and forget; messages are inserted into a store but not explicitly flushed
+   */
+  NONE,
+  /**
+   * Store is flushed after each batch of inserted messages, e.g. to the operating system page cache
+   */
+  FLUSH,
+  /**
+   * Store is synchronized to durable media after each batch of inserted messages, like fsync
+   */
+  SYNC
+}
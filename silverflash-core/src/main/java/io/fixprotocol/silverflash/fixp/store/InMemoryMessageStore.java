@@ -14,10 +14,10 @@
  * limitations under the License.
  *
  */
-
 package io.fixprotocol.silverflash.fixp.store;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.UUID;
@@ -27,16 +27,214 @@ import java.util.function.Consumer;
 
 /**
  * In-memory MessageStore implementation suitable for functional testing Does not persist data.
+ * <p>
+ * Messages are copied into off-heap slabs, so a caller may reuse its buffer. Each session retains
+ * a window of its most recent messages, bounded by a number of messages and by their total length;
+ * older messages are evicted and are no longer available for retrieval. Memory used by a session is
+ * bounded by the retained length plus one slab.
+ * <p>
+ * Retrieved messages are views of the store's slabs. A slab is never reused once its messages are
+ * evicted, so a view that is still being sent keeps its contents; the slab is reclaimed by the
+ * garbage collector when no view refers to it.
  * 
  * @author Don Mendelson
  *
  */
 public class InMemoryMessageStore implements MessageStore {
 
-  private static final ByteBuffer PLACEHOLDER = ByteBuffer.allocate(0);
-  private final Map<UUID, ArrayList<ByteBuffer>> messageMap = new ConcurrentHashMap<>();
+  /**
+   * Window of retained messages of a session
+   */
+  private class SessionWindow {
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    private static final int MISSING = -1;
+
+    private ByteBuffer currentSlab;
+    private long firstSeqNo = 1;
+    private long firstSlabNo = 0;
+    private int[] lengths;
+    // slab number in high word, offset within slab in low word
+    private long[] locations;
+    private int mask;
+    private long maxSeqNo = 0;
+    // a session is expected to encode its messages consistently
+    private ByteOrder order = ByteOrder.nativeOrder();
+    private long retainedLength = 0;
+    private final ArrayList<ByteBuffer> slabs = new ArrayList<>();
+
+    SessionWindow() {
+      allocateIndex(Math.min(INITIAL_INDEX_CAPACITY, ceilingPowerOfTwo(retainedMessages)));
+    }
+
+    private void allocateIndex(int capacity) {
+      final long[] newLocations = new long[capacity];
+      final int[] newLengths = new int[capacity];
+      final int newMask = capacity - 1;
+      for (long seqNo = firstSeqNo; seqNo <= maxSeqNo; seqNo++) {
+        newLocations[(int) (seqNo & newMask)] = locations[(int) (seqNo & mask)];
+        newLengths[(int) (seqNo & newMask)] = lengths[(int) (seqNo & mask)];
+      }
+      locations = newLocations;
+      lengths = newLengths;
+      mask = newMask;
+    }
+
+    private void evictOldest() {
+      final int length = lengths[(int) (firstSeqNo & mask)];
+      if (length != MISSING) {
+        retainedLength -= length;
+      }
+      firstSeqNo++;
+    }
+
+    synchronized long getMaxSeqNo() {
+      return maxSeqNo;
+    }
+
+    synchronized void insert(long seqNo, ByteBuffer message) throws StoreException {
+      if (seqNo <= maxSeqNo) {
+        throw new StoreException(String.format("Sequence number %d not ascending; last %d", seqNo,
+            maxSeqNo));
+      }
+      final int length = message.remaining();
+      if (length > retainedBytes) {
+        throw new StoreException("Message too large to store; length=" + length);
+      }
 
+      // evict to make room in window
+      while (firstSeqNo <= maxSeqNo && (seqNo - firstSeqNo >= retainedMessages
+          || retainedLength + length > retainedBytes)) {
+        evictOldest();
+      }
+      if (firstSeqNo > maxSeqNo) {
+        // window is empty; any gap precedes it
+        firstSeqNo = seqNo;
+      }
+      releaseSlabs();
 
+      final int windowSize = (int) (seqNo - firstSeqNo + 1);
+      if (windowSize > locations.length) {
+        allocateIndex(ceilingPowerOfTwo(windowSize));
+      }
+      for (long missing = Math.max(maxSeqNo + 1, firstSeqNo); missing < seqNo; missing++) {
+        lengths[(int) (missing & mask)] = MISSING;
+      }
+
+      if (currentSlab == null || currentSlab.remaining() < length) {
+        newSlab(length);
+      }
+      final int index = (int) (seqNo & mask);
+      locations[index] = ((firstSlabNo + slabs.size() - 1) << 32) | currentSlab.position();
+      lengths[index] = length;
+      final int position = message.position();
+      currentSlab.put(message);
+      message.position(position);
+      retainedLength += length;
+      maxSeqNo = seqNo;
+      order = message.order();
+    }
+
+    private void newSlab(int length) {
+      currentSlab =
+          ByteBuffer.allocateDirect(Math.max(slabSize, length)).order(ByteOrder.nativeOrder());
+      slabs.add(currentSlab);
+    }
+
+    /**
+     * Releases slabs that precede the oldest retained message. A released slab is not reused since
+     * retrieved views of it may still be in use.
+     */
+    private void releaseSlabs() {
+      long seqNo = firstSeqNo;
+      while (seqNo <= maxSeqNo && lengths[(int) (seqNo & mask)] == MISSING) {
+        seqNo++;
+      }
+      final long oldestSlabNo =
+          seqNo <= maxSeqNo ? locations[(int) (seqNo & mask)] >>> 32 : firstSlabNo + slabs.size();
+      while (firstSlabNo < oldestSlabNo) {
+        final ByteBuffer slab = slabs.remove(0);
+        firstSlabNo++;
+        if (slab == currentSlab) {
+          currentSlab = null;
+        }
+      }
+    }
+
+    synchronized void retrieve(long fromSeqNo, long count, ArrayList<ByteBuffer> messages) {
+      final long toSeqNo = Math.min(fromSeqNo + count - 1, maxSeqNo);
+      for (long seqNo = fromSeqNo; seqNo <= toSeqNo; seqNo++) {
+        final int index = (int) (seqNo & mask);
+        if (seqNo < firstSeqNo || lengths[index] == MISSING) {
+          // not available
+          break;
+        }
+        final long location = locations[index];
+        final ByteBuffer slab = slabs.get((int) ((location >>> 32) - firstSlabNo));
+        final ByteBuffer view = slab.duplicate().order(order);
+        final int offset = (int) location;
+        view.limit(offset + lengths[index]).position(offset);
+        messages.add(view);
+      }
+    }
+  }
+
+  /**
+   * Default maximum number of messages retained per session
+   */
+  public static final int DEFAULT_RETAINED_MESSAGES = 64 * 1024;
+
+  /**
+   * Default maximum total length of messages retained per session
+   */
+  public static final long DEFAULT_RETAINED_BYTES = 16 * 1024 * 1024;
+
+  /**
+   * Default size of an off-heap slab
+   */
+  public static final int DEFAULT_SLAB_SIZE = 64 * 1024;
+
+  private static int ceilingPowerOfTwo(int value) {
+    return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+  }
+
+  private final Map<UUID, SessionWindow> sessionMap = new ConcurrentHashMap<>();
+  private final long retainedBytes;
+  private final int retainedMessages;
+  private final int slabSize;
+
+  /**
+   * Constructor with default retained window
+   */
+  public InMemoryMessageStore() {
+    this(DEFAULT_RETAINED_MESSAGES, DEFAULT_RETAINED_BYTES);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param retainedMessages maximum number of messages retained per session
+   * @param retainedBytes maximum total length of messages retained per session
+   */
+  public InMemoryMessageStore(int retainedMessages, long retainedBytes) {
+    this(retainedMessages, retainedBytes, DEFAULT_SLAB_SIZE);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param retainedMessages maximum number of messages retained per session
+   * @param retainedBytes maximum total length of messages retained per session
+   * @param slabSize size of an off-heap slab of messages. A larger message is stored in a slab of
+   *        its own size.
+   */
+  public InMemoryMessageStore(int retainedMessages, long retainedBytes, int slabSize) {
+    if (retainedMessages <= 0 || retainedBytes <= 0 || slabSize <= 0) {
+      throw new IllegalArgumentException("Invalid retained window");
+    }
+    this.retainedMessages = retainedMessages;
+    this.retainedBytes = retainedBytes;
+    this.slabSize = slabSize;
+  }
 
   /*
    * (non-Javadoc)
@@ -44,7 +242,7 @@ public class InMemoryMessageStore implements MessageStore {
    * @see java.lang.AutoCloseable#close()
    */
   public void close() throws Exception {
-    messageMap.clear();
+    sessionMap.clear();
   }
 
   /*
@@ -63,39 +261,23 @@ public class InMemoryMessageStore implements MessageStore {
    * java.nio.ByteBuffer)
    */
   public void insertMessage(UUID sessionId, long seqNo, ByteBuffer message) throws StoreException {
-    ArrayList<ByteBuffer> messages = messageMap.get(sessionId);
-    if (messages == null) {
-      messages = new ArrayList<>();
-      messageMap.put(sessionId, messages);
-    }
-    for (int i = messages.size(); i < seqNo; i++) {
-      messages.add(PLACEHOLDER);
-    }
-    messages.set((int) (seqNo - 1), message);
+    sessionMap.computeIfAbsent(sessionId, id -> new SessionWindow()).insert(seqNo, message);
   }
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see
-   * io.fixprotocol.silverflash.fixp.store.MessageStore#retrieveMessagesAsync(io.fixprotocol.silverflash
-   * .fixp.store.MessageStoreResult, java.util.function.Consumer)
+  /**
+   * Retrieves messages that are in the retained window. Retrieval stops at the first message that
+   * is not available because it was evicted or never inserted.
    */
   public void retrieveMessagesAsync(MessageStoreResult result, Consumer<MessageStoreResult> consumer)
       throws StoreException {
-    final UUID sessionId = result.getSessionId();
-    final ArrayList<ByteBuffer> messages = messageMap.get(sessionId);
-    if (messages != null) {
-      int offset = (int) (result.getFromSeqNo() - 1);
-      int count = (int) Math.min(result.getCountRequested(), messages.size() - offset);
-
-      ArrayList<ByteBuffer> arrayList = result.getMessageList();
-      arrayList.clear();
-      arrayList.addAll(messages.subList(offset, offset + count));
-
-      // synchronous return
-      consumer.accept(result);
+    final ArrayList<ByteBuffer> messages = result.getMessageList();
+    messages.clear();
+    final SessionWindow window = sessionMap.get(result.getSessionId());
+    if (window != null) {
+      window.retrieve(result.getFromSeqNo(), result.getCountRequested(), messages);
     }
+    // synchronous return
+    consumer.accept(result);
   }
 
   /*
@@ -104,9 +286,9 @@ public class InMemoryMessageStore implements MessageStore {
    * @see io.fixprotocol.silverflash.fixp.store.MessageStore#retrieveMaxSeqNo(java.util.UUID)
    */
   public long retrieveMaxSeqNo(UUID sessionId) {
-    final ArrayList<ByteBuffer> messages = messageMap.get(sessionId);
-    if (messages != null) {
-      return messages.size();
+    final SessionWindow window = sessionMap.get(sessionId);
+    if (window != null) {
+      return window.getMaxSeqNo();
     } else {
       return 0;
     }
@@ -0,0 +1,583 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * MessageStore that persists messages to memory-mapped files
+ * <p>
+ * Each session has its own directory of segments. A segment consists of a data file made of
+ * fixed-size chunks that are mapped on demand, and an index file that densely maps sequence
+ * numbers to record offsets. A message never straddles chunks, so a retrieved message is a slice of
+ * a mapped chunk rather than a copy. When a segment is full, or when a sequence number gap occurs,
+ * a new segment is rolled, and old segments are deleted according to a retention policy.
+ * <p>
+ * The index file header holds the number of entries, so the maximum sequence number of a session
+ * is known after restart without scanning its messages.
+ * <p>
+ * Sequence numbers of a session must be inserted in ascending order, as they are by a sender.
+ * 
+ * @author Don Mendelson
+ *
+ */
+public class MappedFileMessageStore implements MessageStore {
+
+  /**
+   * Collects attributes to build a MappedFileMessageStore
+   *
+   * @param <T> type of the object to build
+   * @param <B> type of the builder
+   */
+  @SuppressWarnings("unchecked")
+  public static class Builder<T extends MappedFileMessageStore, B extends Builder<T, B>> {
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int chunksPerSegment = DEFAULT_CHUNKS_PER_SEGMENT;
+    private Path directory = DEFAULT_DIRECTORY;
+    private int indexCapacity = DEFAULT_INDEX_CAPACITY;
+    private int retainedSegments = 0;
+    private long retentionMillis = 0;
+
+    /**
+     * Build a new MappedFileMessageStore object
+     * 
+     * @return a new store
+     */
+    public T build() {
+      return (T) new MappedFileMessageStore(this);
+    }
+
+    /**
+     * Set the size of a mapped chunk of a data file. It is the maximum size of a stored message.
+     * 
+     * @param chunkSize size in bytes
+     * @return this Builder
+     */
+    public B withChunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+      return (B) this;
+    }
+
+    /**
+     * Set the number of chunks in a segment
+     * 
+     * @param chunksPerSegment number of chunks
+     * @return this Builder
+     */
+    public B withChunksPerSegment(int chunksPerSegment) {
+      this.chunksPerSegment = chunksPerSegment;
+      return (B) this;
+    }
+
+    /**
+     * Set base directory of the store. Default is {@code $HOME/session/store}.
+     * 
+     * @param directory path to directory
+     * @return this Builder
+     */
+    public B withDirectory(Path directory) {
+      this.directory = directory;
+      return (B) this;
+    }
+
+    /**
+     * Set the maximum number of messages in a segment
+     * 
+     * @param indexCapacity number of index entries
+     * @return this Builder
+     */
+    public B withIndexCapacity(int indexCapacity) {
+      this.indexCapacity = indexCapacity;
+      return (B) this;
+    }
+
+    /**
+     * Set the maximum number of segments retained per session. Default is unlimited.
+     * 
+     * @param retainedSegments number of segments, or zero for unlimited
+     * @return this Builder
+     */
+    public B withRetainedSegments(int retainedSegments) {
+      this.retainedSegments = retainedSegments;
+      return (B) this;
+    }
+
+    /**
+     * Set the period that messages are retained. A segment is deleted when all of its messages are
+     * older than the period. Default is unlimited.
+     * 
+     * @param retentionMillis retention period in milliseconds, or zero for unlimited
+     * @return this Builder
+     */
+    public B withRetentionPeriod(long retentionMillis) {
+      this.retentionMillis = retentionMillis;
+      return (B) this;
+    }
+  }
+
+  /**
+   * A data file of mapped chunks and its index
+   */
+  private class Segment {
+    private final MappedByteBuffer[] chunks;
+    private long count;
+    private long createdMillis;
+    private final Path dataPath;
+    private RandomAccessFile dataFile;
+    private int firstDirtyChunk = Integer.MAX_VALUE;
+    private final long firstSeqNo;
+    private MappedByteBuffer index;
+    private RandomAccessFile indexFile;
+    private final Path indexPath;
+    private long writeOffset;
+
+    Segment(Path directory, long firstSeqNo) {
+      this.firstSeqNo = firstSeqNo;
+      this.dataPath = directory.resolve(String.format(DATA_FILENAME_PATTERN, firstSeqNo));
+      this.indexPath = directory.resolve(String.format(INDEX_FILENAME_PATTERN, firstSeqNo));
+      this.chunks = new MappedByteBuffer[chunksPerSegment];
+    }
+
+    /**
+     * @return {@code false} if the segment does not have capacity for the message
+     */
+    boolean append(ByteBuffer message) throws IOException {
+      final int length = message.remaining();
+      final int recordLength = getRecordLength(length);
+      if (count >= indexCapacity || recordLength > chunkSize) {
+        return false;
+      }
+      int chunkIndex = (int) (writeOffset / chunkSize);
+      int chunkOffset = (int) (writeOffset % chunkSize);
+      if (chunkOffset + recordLength > chunkSize) {
+        // records never straddle chunks
+        chunkIndex++;
+        chunkOffset = 0;
+      }
+      if (chunkIndex >= chunksPerSegment) {
+        return false;
+      }
+
+      final MappedByteBuffer chunk = getChunk(chunkIndex);
+      chunk.putInt(chunkOffset, length);
+      final int position = message.position();
+      chunk.position(chunkOffset + RECORD_HEADER_LENGTH);
+      chunk.put(message);
+      message.position(position);
+      firstDirtyChunk = Math.min(firstDirtyChunk, chunkIndex);
+
+      final long recordOffset = (long) chunkIndex * chunkSize + chunkOffset;
+      index.putLong(INDEX_HEADER_LENGTH + (int) count * INDEX_ENTRY_LENGTH, recordOffset);
+      writeOffset = recordOffset + recordLength;
+      count++;
+      index.putLong(WRITE_OFFSET_OFFSET, writeOffset);
+      index.putLong(COUNT_OFFSET, count);
+      return true;
+    }
+
+    void close() throws IOException {
+      if (dataFile != null) {
+        dataFile.close();
+        dataFile = null;
+      }
+      if (indexFile != null) {
+        indexFile.close();
+        indexFile = null;
+      }
+      Arrays.fill(chunks, null);
+      index = null;
+    }
+
+    void create() throws IOException {
+      open();
+      createdMillis = System.currentTimeMillis();
+      index.putLong(CREATED_OFFSET, createdMillis);
+      index.putLong(WRITE_OFFSET_OFFSET, 0L);
+      index.putLong(COUNT_OFFSET, 0L);
+    }
+
+    void delete() throws IOException {
+      close();
+      Files.deleteIfExists(dataPath);
+      Files.deleteIfExists(indexPath);
+    }
+
+    void force() {
+      if (index != null) {
+        for (int i = firstDirtyChunk; i < chunksPerSegment && chunks[i] != null; i++) {
+          chunks[i].force();
+        }
+        firstDirtyChunk = Integer.MAX_VALUE;
+        index.force();
+      }
+    }
+
+    private MappedByteBuffer getChunk(int chunkIndex) throws IOException {
+      MappedByteBuffer chunk = chunks[chunkIndex];
+      if (chunk == null) {
+        chunk = dataFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+            (long) chunkIndex * chunkSize, chunkSize);
+        chunk.order(ByteOrder.nativeOrder());
+        chunks[chunkIndex] = chunk;
+      }
+      return chunk;
+    }
+
+    long getCount() throws IOException {
+      open();
+      return count;
+    }
+
+    long getCreatedMillis() throws IOException {
+      open();
+      return createdMillis;
+    }
+
+    long getFirstSeqNo() {
+      return firstSeqNo;
+    }
+
+    void open() throws IOException {
+      if (index == null) {
+        dataFile = new RandomAccessFile(dataPath.toFile(), "rw");
+        indexFile = new RandomAccessFile(indexPath.toFile(), "rw");
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+            INDEX_HEADER_LENGTH + (long) indexCapacity * INDEX_ENTRY_LENGTH);
+        index.order(ByteOrder.nativeOrder());
+        count = index.getLong(COUNT_OFFSET);
+        writeOffset = index.getLong(WRITE_OFFSET_OFFSET);
+        createdMillis = index.getLong(CREATED_OFFSET);
+      }
+    }
+
+    /**
+     * Returns a view of a stored message without copying it
+     * 
+     * @return a slice of a mapped chunk, or {@code null} if the message is not in this segment
+     */
+    ByteBuffer slice(long seqNo) throws IOException {
+      open();
+      final long entry = seqNo - firstSeqNo;
+      if (entry < 0 || entry >= count) {
+        return null;
+      }
+      final long recordOffset =
+          index.getLong(INDEX_HEADER_LENGTH + (int) entry * INDEX_ENTRY_LENGTH);
+      final MappedByteBuffer chunk = getChunk((int) (recordOffset / chunkSize));
+      final int chunkOffset = (int) (recordOffset % chunkSize);
+      final int length = chunk.getInt(chunkOffset);
+      final ByteBuffer view = chunk.duplicate().order(ByteOrder.nativeOrder());
+      view.limit(chunkOffset + RECORD_HEADER_LENGTH + length);
+      view.position(chunkOffset + RECORD_HEADER_LENGTH);
+      return view;
+    }
+  }
+
+  /**
+   * Segments of a session, ordered by sequence number
+   */
+  private class SessionLog {
+    private Segment current;
+    private final Path directory;
+    private long maxSeqNo = 0;
+    private final ArrayList<Segment> segments = new ArrayList<>();
+
+    SessionLog(UUID sessionId) throws IOException {
+      this.directory = baseDirectory.resolve(sessionId.toString());
+      Files.createDirectories(directory);
+      load();
+    }
+
+    synchronized void close() throws IOException {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+    }
+
+    private void deleteExpiredSegments() throws IOException {
+      while (retainedSegments > 0 && segments.size() > retainedSegments) {
+        segments.remove(0).delete();
+      }
+      if (retentionMillis > 0) {
+        final long expiration = System.currentTimeMillis() - retentionMillis;
+        // a segment expires when its successor was started before the retention period
+        while (segments.size() > 1 && segments.get(1).getCreatedMillis() < expiration) {
+          segments.remove(0).delete();
+        }
+      }
+    }
+
+    synchronized void force() {
+      if (current != null) {
+        current.force();
+      }
+    }
+
+    synchronized long getMaxSeqNo() {
+      return maxSeqNo;
+    }
+
+    private Segment getSegment(long seqNo) {
+      // segments are few, so search from most recent
+      for (int i = segments.size() - 1; i >= 0; i--) {
+        final Segment segment = segments.get(i);
+        if (segment.getFirstSeqNo() <= seqNo) {
+          return segment;
+        }
+      }
+      return null;
+    }
+
+    synchronized void insert(long seqNo, ByteBuffer message) throws IOException, StoreException {
+      if (seqNo <= maxSeqNo) {
+        throw new StoreException(String.format("Sequence number %d not ascending; last %d", seqNo,
+            maxSeqNo));
+      }
+      if (current == null || seqNo != maxSeqNo + 1 || !current.append(message)) {
+        roll(seqNo);
+        if (!current.append(message)) {
+          throw new StoreException("Message too large to store; length=" + message.remaining());
+        }
+      }
+      maxSeqNo = seqNo;
+    }
+
+    private void load() throws IOException {
+      final File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(INDEX_SUFFIX));
+      if (files != null && files.length > 0) {
+        final long[] firstSeqNos = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+          final String name = files[i].getName();
+          firstSeqNos[i] = Long.parseLong(name.substring(0, name.length() - INDEX_SUFFIX.length()));
+        }
+        Arrays.sort(firstSeqNos);
+        for (long firstSeqNo : firstSeqNos) {
+          segments.add(new Segment(directory, firstSeqNo));
+        }
+        // only the latest segment is opened to learn the maximum sequence number
+        current = segments.get(segments.size() - 1);
+        maxSeqNo = current.getFirstSeqNo() + current.getCount() - 1;
+      }
+    }
+
+    synchronized void retrieve(long fromSeqNo, long count, ArrayList<ByteBuffer> messages)
+        throws IOException {
+      final long toSeqNo = Math.min(fromSeqNo + count - 1, maxSeqNo);
+      Segment segment = getSegment(fromSeqNo);
+      for (long seqNo = fromSeqNo; segment != null && seqNo <= toSeqNo; seqNo++) {
+        ByteBuffer message = segment.slice(seqNo);
+        if (message == null) {
+          // may continue in next segment
+          segment = getSegment(seqNo);
+          message = segment.slice(seqNo);
+          if (message == null) {
+            // gap or expired
+            break;
+          }
+        }
+        messages.add(message);
+      }
+    }
+
+    private void roll(long firstSeqNo) throws IOException {
+      if (current != null) {
+        current.force();
+      }
+      current = new Segment(directory, firstSeqNo);
+      current.create();
+      segments.add(current);
+      deleteExpiredSegments();
+    }
+  }
+
+  private static final int COUNT_OFFSET = 0;
+  private static final int CREATED_OFFSET = 16;
+  private static final String DATA_FILENAME_PATTERN = "%020d.dat";
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+  public static final int DEFAULT_CHUNKS_PER_SEGMENT = 4;
+  private static final Path DEFAULT_DIRECTORY =
+      Paths.get(System.getProperty("user.home"), "session", "store");
+  public static final int DEFAULT_INDEX_CAPACITY = 1024 * 1024;
+  private static final int INDEX_ENTRY_LENGTH = 8;
+  private static final String INDEX_FILENAME_PATTERN = "%020d.idx";
+  private static final int INDEX_HEADER_LENGTH = 64;
+  private static final String INDEX_SUFFIX = ".idx";
+  private static final int RECORD_ALIGNMENT = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  private static final int WRITE_OFFSET_OFFSET = 8;
+
+  @SuppressWarnings("rawtypes")
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private static int getRecordLength(int messageLength) {
+    return (RECORD_HEADER_LENGTH + messageLength + RECORD_ALIGNMENT - 1) & ~(RECORD_ALIGNMENT - 1);
+  }
+
+  private final Path baseDirectory;
+  private final int chunkSize;
+  private final int chunksPerSegment;
+  private final int indexCapacity;
+  private final int retainedSegments;
+  private final long retentionMillis;
+  private final Map<UUID, SessionLog> sessionMap = new ConcurrentHashMap<>();
+
+  protected MappedFileMessageStore(Builder<?, ?> builder) {
+    Objects.requireNonNull(builder.directory);
+    if (builder.chunkSize <= RECORD_HEADER_LENGTH || builder.chunksPerSegment <= 0
+        || builder.indexCapacity <= 0) {
+      throw new IllegalArgumentException("Invalid segment size");
+    }
+    this.baseDirectory = builder.directory;
+    this.chunkSize = builder.chunkSize;
+    this.chunksPerSegment = builder.chunksPerSegment;
+    this.indexCapacity = builder.indexCapacity;
+    this.retainedSegments = builder.retainedSegments;
+    this.retentionMillis = builder.retentionMillis;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.AutoCloseable#close()
+   */
+  public void close() throws Exception {
+    for (SessionLog log : sessionMap.values()) {
+      log.close();
+    }
+    sessionMap.clear();
+  }
+
+  /**
+   * Mapped files are in the operating system page cache as soon as they are written, so only
+   * {@link Durability#SYNC} requires action. It forces current segments to storage.
+   */
+  @Override
+  public void flush(Durability durability) throws StoreException {
+    if (durability == Durability.SYNC) {
+      for (SessionLog log : sessionMap.values()) {
+        log.force();
+      }
+    }
+  }
+
+  private SessionLog getSessionLog(UUID sessionId, boolean create) throws StoreException {
+    SessionLog log = sessionMap.get(sessionId);
+    if (log == null) {
+      if (!create && !Files.isDirectory(baseDirectory.resolve(sessionId.toString()))) {
+        return null;
+      }
+      try {
+        log = sessionMap.computeIfAbsent(sessionId, id -> {
+          try {
+            return new SessionLog(id);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw new StoreException("Failed to open session store", e.getCause());
+      }
+    }
+    return log;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.store.MessageStore#insertMessage(java.util.UUID, long,
+   * java.nio.ByteBuffer)
+   */
+  public void insertMessage(UUID sessionId, long seqNo, ByteBuffer message) throws StoreException {
+    Objects.requireNonNull(message);
+    try {
+      getSessionLog(sessionId, true).insert(seqNo, message);
+    } catch (IOException e) {
+      throw new StoreException("Failed to insert message", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.store.MessageStore#open()
+   */
+  public CompletableFuture<MappedFileMessageStore> open() {
+    CompletableFuture<MappedFileMessageStore> future = new CompletableFuture<>();
+    try {
+      Files.createDirectories(baseDirectory);
+      future.complete(this);
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.fixp.store.MessageStore#retrieveMaxSeqNo(java.util.UUID)
+   */
+  public long retrieveMaxSeqNo(UUID sessionId) {
+    try {
+      final SessionLog log = getSessionLog(sessionId, false);
+      return log != null ? log.getMaxSeqNo() : 0;
+    } catch (StoreException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Retrieves messages as slices of mapped files. Retrieval stops at the first message that is not
+   * available, e.g. because its segment was deleted.
+   */
+  public void retrieveMessagesAsync(MessageStoreResult result, Consumer<MessageStoreResult> consumer)
+      throws StoreException {
+    final ArrayList<ByteBuffer> messages = result.getMessageList();
+    messages.clear();
+    final SessionLog log = getSessionLog(result.getSessionId(), false);
+    if (log != null) {
+      try {
+        log.retrieve(result.getFromSeqNo(), result.getCountRequested(), messages);
+      } catch (IOException e) {
+        throw new StoreException("Failed to retrieve messages", e);
+      }
+    }
+    // synchronous return
+    consumer.accept(result);
+  }
+
+}
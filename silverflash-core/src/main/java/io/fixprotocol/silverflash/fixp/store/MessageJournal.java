@@ -0,0 +1,358 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.LifecycleAware;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.Service;
+
+/**
+ * Appends sent messages to a MessageStore asynchronously
+ * <p>
+ * A sender copies each message into a ring buffer slot; a journal thread inserts messages into the
+ * store and flushes it at the end of each batch according to the durability requested for the
+ * session. Thus, store latency is kept out of a sender's critical section. One journal may be shared
+ * by many sessions.
+ * <p>
+ * The journal thread backs off when idle rather than busy spinning since it is not on the latency
+ * critical path; publishing does not require signaling it.
+ * 
+ * @author Don Mendelson
+ *
+ */
+public class MessageJournal implements Service {
+
+  private static class JournalEvent {
+    static final EventFactory<JournalEvent> EVENT_FACTORY = JournalEvent::new;
+    private static final int INITIAL_CAPACITY = 2048;
+
+    private ByteBuffer buffer =
+        ByteBuffer.allocateDirect(INITIAL_CAPACITY).order(ByteOrder.nativeOrder());
+    private Durability durability;
+    private long seqNo;
+    private UUID sessionId;
+
+    ByteBuffer getBuffer() {
+      return buffer;
+    }
+
+    Durability getDurability() {
+      return durability;
+    }
+
+    long getSeqNo() {
+      return seqNo;
+    }
+
+    UUID getSessionId() {
+      return sessionId;
+    }
+
+    /**
+     * Marks a reserved slot that carries no message
+     */
+    void clear() {
+      this.sessionId = null;
+      this.durability = Durability.NONE;
+    }
+
+    /**
+     * Copies a message that has not yet been flipped, from start of buffer to its position. The
+     * state of the source buffer is unchanged.
+     */
+    void set(UUID sessionId, long seqNo, ByteBuffer message, Durability durability) {
+      this.sessionId = sessionId;
+      this.seqNo = seqNo;
+      this.durability = durability;
+      final int position = message.position();
+      final int limit = message.limit();
+      if (position > buffer.capacity()) {
+        buffer = ByteBuffer.allocateDirect(position).order(ByteOrder.nativeOrder());
+      }
+      buffer.clear();
+      buffer.order(message.order());
+      message.flip();
+      buffer.put(message);
+      buffer.flip();
+      message.limit(limit);
+      message.position(position);
+    }
+  }
+
+  private class JournalHandler implements EventHandler<JournalEvent>, LifecycleAware {
+
+    @Override
+    public void onEvent(JournalEvent event, long sequence, boolean endOfBatch) {
+      handleEvent(event, sequence, endOfBatch);
+    }
+
+    @Override
+    public void onShutdown() {
+      isStarted = false;
+    }
+
+    @Override
+    public void onStart() {
+      isStarted = true;
+    }
+  }
+
+  public static final int DEFAULT_RING_SIZE = 1024;
+
+  /**
+   * Reservation of no slots, for an empty batch of messages
+   */
+  public static final long NO_RESERVATION = -1L;
+
+  private Durability batchDurability = Durability.NONE;
+  private Disruptor<JournalEvent> disruptor;
+  private final ExceptionConsumer exceptionConsumer;
+  private final AtomicBoolean isRunning = new AtomicBoolean();
+  private volatile boolean isStarted = false;
+  private volatile long processedSequence = -1;
+  private RingBuffer<JournalEvent> ringBuffer;
+  private final int ringSize;
+  private final MessageStore store;
+  private final ThreadFactory threadFactory;
+
+  /**
+   * Constructor with default ring size
+   * 
+   * @param store repository of messages
+   * @param threadFactory creates the journal thread
+   * @param exceptionConsumer handles store errors on the journal thread
+   */
+  public MessageJournal(MessageStore store, ThreadFactory threadFactory,
+      ExceptionConsumer exceptionConsumer) {
+    this(store, threadFactory, exceptionConsumer, DEFAULT_RING_SIZE);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param store repository of messages
+   * @param threadFactory creates the journal thread
+   * @param exceptionConsumer handles store errors on the journal thread
+   * @param ringSize number of messages that may be pending. Must be a power of 2.
+   */
+  public MessageJournal(MessageStore store, ThreadFactory threadFactory,
+      ExceptionConsumer exceptionConsumer, int ringSize) {
+    Objects.requireNonNull(store);
+    Objects.requireNonNull(threadFactory);
+    Objects.requireNonNull(exceptionConsumer);
+    this.store = store;
+    this.threadFactory = threadFactory;
+    this.exceptionConsumer = exceptionConsumer;
+    this.ringSize = ringSize;
+  }
+
+  /**
+   * Append a message to the journal. Never blocks; fails if the journal has fallen a full ring
+   * behind.
+   * 
+   * @param sessionId session identifier
+   * @param seqNo sequence number of the message
+   * @param message message to append. The message is found from the start of buffer to its
+   *        position, as passed to {@code Transport.write()}. It is copied, so the buffer may be
+   *        reused when this method returns.
+   * @param durability level of durability requested for the message
+   * @throws StoreException if the journal is full
+   */
+  public void append(UUID sessionId, long seqNo, ByteBuffer message, Durability durability)
+      throws StoreException {
+    final long sequence;
+    try {
+      sequence = ringBuffer.tryNext();
+    } catch (InsufficientCapacityException e) {
+      throw new StoreException("Journal full", e);
+    }
+    final JournalEvent event = ringBuffer.get(sequence);
+    event.set(sessionId, seqNo, message, durability);
+    ringBuffer.publish(sequence);
+  }
+
+  /**
+   * Append consecutively sequenced messages to the journal. Either all of the messages are
+   * appended or none. Never blocks; fails if the journal lacks capacity for all of them.
+   * 
+   * @param sessionId session identifier
+   * @param firstSeqNo sequence number of the first message
+   * @param messages messages to append, each in the state described for
+   *        {@link #append(UUID, long, ByteBuffer, Durability)}
+   * @param durability level of durability requested for the messages
+   * @throws StoreException if the journal is full
+   */
+  public void append(UUID sessionId, long firstSeqNo, ByteBuffer[] messages,
+      Durability durability) throws StoreException {
+    final int count = messages.length;
+    if (count == 0) {
+      return;
+    }
+    if (count > ringSize) {
+      throw new StoreException("Messages exceed journal capacity");
+    }
+    final long hi;
+    try {
+      hi = ringBuffer.tryNext(count);
+    } catch (InsufficientCapacityException e) {
+      throw new StoreException("Journal full", e);
+    }
+    final long lo = hi - count + 1;
+    for (int i = 0; i < count; i++) {
+      ringBuffer.get(lo + i).set(sessionId, firstSeqNo + i, messages[i], durability);
+    }
+    ringBuffer.publish(lo, hi);
+  }
+
+  /**
+   * Append consecutively sequenced messages to slots reserved by {@link #reserve(int)}. Never
+   * blocks or fails. Reserved slots are always published, so that the journal is not stalled; any
+   * that are not filled, such as when a message cannot be copied, are skipped by the journal thread.
+   * 
+   * @param reservation slots returned by {@link #reserve(int)} for the number of messages
+   * @param sessionId session identifier
+   * @param firstSeqNo sequence number of the first message
+   * @param messages messages to append, each in the state described for
+   *        {@link #append(UUID, long, ByteBuffer, Durability)}
+   * @param durability level of durability requested for the messages
+   */
+  public void append(long reservation, UUID sessionId, long firstSeqNo, ByteBuffer[] messages,
+      Durability durability) {
+    if (reservation == NO_RESERVATION) {
+      return;
+    }
+    final int count = messages.length;
+    final long lo = reservation - count + 1;
+    int filled = 0;
+    try {
+      for (; filled < count; filled++) {
+        ringBuffer.get(lo + filled).set(sessionId, firstSeqNo + filled, messages[filled],
+            durability);
+      }
+    } finally {
+      for (int i = filled; i < count; i++) {
+        ringBuffer.get(lo + i).clear();
+      }
+      ringBuffer.publish(lo, reservation);
+    }
+  }
+
+  /**
+   * Reserves slots for a number of messages, waiting while the journal lacks capacity. A sender
+   * calls this outside of its critical section, so that a lagging journal applies backpressure to
+   * that sender only. Since the slots are reserved, other senders sharing the journal cannot take
+   * them. Each reservation must be passed to
+   * {@link #append(long, UUID, long, ByteBuffer[], Durability)} with the same number of messages.
+   * 
+   * @param count number of messages to append
+   * @return a reservation, or {@link #NO_RESERVATION} if count is zero
+   * @throws StoreException if the messages exceed the capacity of the journal
+   */
+  public long reserve(int count) throws StoreException {
+    if (count > ringSize) {
+      throw new StoreException("Messages exceed journal capacity");
+    }
+    if (count == 0) {
+      return NO_RESERVATION;
+    }
+    return ringBuffer.next(count);
+  }
+
+  /**
+   * Stops the journal after pending messages have been inserted into the store
+   */
+  public void close() {
+    if (isRunning.compareAndSet(true, false)) {
+      // journal thread may not have started yet, so wait on the sequence actually processed
+      final long cursor = ringBuffer.getCursor();
+      while (processedSequence < cursor) {
+        Thread.yield();
+      }
+      this.disruptor.halt();
+    }
+  }
+
+  /**
+   * @return the store that this journal appends to
+   */
+  public MessageStore getStore() {
+    return store;
+  }
+
+  /**
+   * Any failure is reported and the journal goes on, since an exception escaping the journal
+   * thread would stop it, leaving senders and {@link #close()} waiting forever.
+   */
+  private void handleEvent(JournalEvent event, long sequence, boolean endOfBatch) {
+    if (event.getSessionId() != null) {
+      try {
+        store.insertMessage(event.getSessionId(), event.getSeqNo(), event.getBuffer());
+      } catch (Exception e) {
+        exceptionConsumer.accept(e);
+      }
+      if (event.getDurability().compareTo(batchDurability) > 0) {
+        batchDurability = event.getDurability();
+      }
+    }
+    if (endOfBatch && batchDurability != Durability.NONE) {
+      try {
+        store.flush(batchDurability);
+      } catch (Exception e) {
+        exceptionConsumer.accept(e);
+      }
+      batchDurability = Durability.NONE;
+    }
+    if (endOfBatch) {
+      processedSequence = sequence;
+    }
+  }
+
+  /**
+   * Start the journal thread
+   * 
+   * @return a Future that notifies an observer when this MessageJournal is ready
+   */
+  public CompletableFuture<MessageJournal> open() {
+    if (isRunning.compareAndSet(false, true)) {
+      this.disruptor = new Disruptor<>(JournalEvent.EVENT_FACTORY, ringSize, threadFactory,
+          ProducerType.MULTI, new SleepingWaitStrategy());
+      this.disruptor.handleEventsWith(new JournalHandler());
+      this.ringBuffer = disruptor.start();
+      // a halt before the journal thread starts would be lost, leaving it running after close
+      while (!isStarted) {
+        Thread.yield();
+      }
+    }
+    return CompletableFuture.completedFuture(this);
+  }
+}
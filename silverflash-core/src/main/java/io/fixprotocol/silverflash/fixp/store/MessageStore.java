@@ -34,8 +34,21 @@ import io.fixprotocol.silverflash.Service;
  */
 public interface MessageStore extends Service {
 
+  /**
+   * Make previously inserted messages durable. The default implementation does nothing, which is
+   * appropriate for a store that does not persist data.
+   * 
+   * @param durability level of durability requested. {@link Durability#NONE} requires no action.
+   * @throws StoreException if the store cannot be flushed
+   */
+  default void flush(Durability durability) throws StoreException {
+  }
+
   /**
    * Insert a message
+   * <p>
+   * The message is found from its position to its limit. The caller may reuse the buffer after this
+   * method returns, so a store must copy the message if it retains it.
    * 
    * @param sessionId session identifier
    * @param seqNo sequence number of the message
@@ -46,6 +59,10 @@ public interface MessageStore extends Service {
 
   /**
    * Request a range of messages. The result is returned to a consumer asynchronously.
+   * <p>
+   * The result holds the messages that are available, consecutively from the first requested
+   * sequence number. Messages that were never stored or are no longer retained are not available;
+   * see {@link MessageStoreResult#isAvailable(long)}.
    * 
    * @param result result to populate
    * @param consumer handler of populated result
@@ -154,6 +154,17 @@ public class MessageStoreResult {
     return messages;
   }
 
+  /**
+   * Tells whether a message was retrieved
+   * 
+   * @param seqNo sequence number of a message
+   * @return Returns {@code true} if the message is in the result, or {@code false} if it was not
+   *         requested or is not available from the store
+   */
+  public boolean isAvailable(long seqNo) {
+    return seqNo >= this.fromSeqNo && seqNo - this.fromSeqNo < messages.size();
+  }
+
   public boolean isRangeContained(long fromSeqNo, long count) {
     return fromSeqNo >= this.fromSeqNo && fromSeqNo + count <= this.fromSeqNo + this.countRequested;
   }
@@ -29,7 +29,9 @@ import java.util.Spliterator;
 public interface FrameSpliterator extends Spliterator<ByteBuffer> {
 
   /**
-   * Returns whether a buffer contains any remaining full or partial frames
+   * Returns whether a buffer contains any remaining full or partial frames. After a call to
+   * {@link #tryAdvance(java.util.function.Consumer)} returns {@code false}, the position of the
+   * buffer is at the start of any partial frame.
    * 
    * @return Returns {@code true} if a full frame or partial message remains in the buffer
    */
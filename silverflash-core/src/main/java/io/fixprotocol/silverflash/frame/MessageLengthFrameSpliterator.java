@@ -82,6 +82,8 @@ public class MessageLengthFrameSpliterator implements FrameSpliterator {
     int messageLimit = offset + MessageLengthFrameDecoder.HEADER_LENGTH + messageLength;
 
     if (messageLength <= 0 || (messageLimit > buffer.limit())) {
+      // leave position at start of incomplete frame
+      buffer.position(offset);
       return false;
     }
 
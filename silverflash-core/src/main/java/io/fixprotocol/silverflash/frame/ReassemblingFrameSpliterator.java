@@ -0,0 +1,246 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.frame;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Delimits message frames on a stream transport, reassembling frames that straddle reads
+ * <p>
+ * Whole frames are delivered in place from the wrapped buffer by a delegate FrameSpliterator. Only
+ * a partial frame at the end of a buffer is copied; it is held until the next buffer is wrapped
+ * and completed from its leading bytes.
+ * <p>
+ * Not thread-safe; an instance should be used by a single reader.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class ReassemblingFrameSpliterator implements FrameSpliterator {
+
+  /**
+   * Default initial capacity of the buffer for carried bytes
+   */
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+  private ByteBuffer buffer;
+  private ByteBuffer carry;
+  private final FrameSpliterator delegate;
+  private final MessageFrameDecoder frameDecoder;
+  private final int headerLength;
+
+  /**
+   * Construct an instance for frames delimited by a message length prefix
+   */
+  public ReassemblingFrameSpliterator() {
+    this(new MessageLengthFrameSpliterator(), new MessageLengthFrameDecoder());
+  }
+
+  /**
+   * Construct an instance with default capacity
+   *
+   * @param delegate delimits whole frames in a buffer
+   * @param frameDecoder decodes frame headers of the same protocol as the delegate
+   */
+  public ReassemblingFrameSpliterator(FrameSpliterator delegate, MessageFrameDecoder frameDecoder) {
+    this(delegate, frameDecoder, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct an instance
+   *
+   * @param delegate delimits whole frames in a buffer
+   * @param frameDecoder decodes frame headers of the same protocol as the delegate
+   * @param capacity initial capacity for carried bytes. It is expanded if a larger frame straddles
+   *        reads.
+   */
+  public ReassemblingFrameSpliterator(FrameSpliterator delegate, MessageFrameDecoder frameDecoder,
+      int capacity) {
+    Objects.requireNonNull(delegate);
+    Objects.requireNonNull(frameDecoder);
+    this.delegate = delegate;
+    this.frameDecoder = frameDecoder;
+    this.headerLength = frameDecoder.getHeaderLength();
+    this.carry = ByteBuffer.allocateDirect(Math.max(capacity, headerLength));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Spliterator#characteristics()
+   */
+  @Override
+  public int characteristics() {
+    return DISTINCT | NONNULL | IMMUTABLE;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Spliterator#estimateSize()
+   */
+  @Override
+  public long estimateSize() {
+    return buffer.hasRemaining() ? Long.MAX_VALUE : 0;
+  }
+
+  /**
+   * Returns the number of bytes of a partial frame held until the next buffer is wrapped
+   *
+   * @return number of carried bytes
+   */
+  public int getBytesCarried() {
+    return carry.position();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see io.fixprotocol.silverflash.frame.FrameSpliterator#hasRemaining()
+   */
+  @Override
+  public boolean hasRemaining() {
+    return buffer.hasRemaining();
+  }
+
+  /**
+   * Discard any partial frame, e.g. when a stream is disconnected
+   */
+  public void reset() {
+    carry.clear();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+   */
+  @Override
+  public boolean tryAdvance(Consumer<? super ByteBuffer> action) {
+    Objects.requireNonNull(action);
+    if (carry.position() > 0) {
+      final int frameLength = completeCarriedFrame();
+      if (frameLength == 0) {
+        return false;
+      }
+      if (frameLength > 0) {
+        carry.flip();
+        delegate.wrap(carry);
+        final boolean advanced = delegate.tryAdvance(action);
+        carry.clear();
+        delegate.wrap(buffer);
+        return advanced;
+      }
+      // corrupt frame header; cannot be recovered
+      carry.clear();
+      delegate.wrap(buffer);
+    }
+
+    if (delegate.tryAdvance(action)) {
+      return true;
+    }
+    if (buffer.hasRemaining()) {
+      carryPartialFrame();
+    }
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Spliterator#trySplit()
+   */
+  @Override
+  public Spliterator<ByteBuffer> trySplit() {
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see io.fixprotocol.silverflash.frame.FrameSpliterator#wrap(java.nio.ByteBuffer)
+   */
+  @Override
+  public void wrap(ByteBuffer buffer) {
+    Objects.requireNonNull(buffer);
+    this.buffer = buffer;
+    delegate.wrap(buffer);
+  }
+
+  private void carryPartialFrame() {
+    final int remaining = buffer.remaining();
+    if (remaining >= headerLength && frameLength(buffer, buffer.position()) < 0) {
+      // not a valid frame; leave it as the delegate does
+      return;
+    }
+    ensureCapacity(remaining);
+    carry.order(buffer.order());
+    carry.put(buffer);
+  }
+
+  /**
+   * Appends bytes from the current buffer to a carried partial frame
+   *
+   * @return length of the frame if complete, zero if still partial, or -1 if the frame header is
+   *         invalid
+   */
+  private int completeCarriedFrame() {
+    if (carry.position() < headerLength) {
+      transfer(headerLength - carry.position());
+      if (carry.position() < headerLength) {
+        return 0;
+      }
+    }
+    final int frameLength = frameLength(carry, 0);
+    if (frameLength < 0) {
+      return -1;
+    }
+    ensureCapacity(frameLength);
+    transfer(frameLength - carry.position());
+    return carry.position() == frameLength ? frameLength : 0;
+  }
+
+  private void ensureCapacity(int length) {
+    if (carry.capacity() < length) {
+      final ByteBuffer expanded =
+          ByteBuffer.allocateDirect(Math.max(length, carry.capacity() << 1)).order(carry.order());
+      carry.flip();
+      expanded.put(carry);
+      carry = expanded;
+    }
+  }
+
+  private int frameLength(ByteBuffer frameBuffer, int frameOffset) {
+    final int position = frameBuffer.position();
+    frameBuffer.position(frameOffset);
+    frameDecoder.wrap(frameBuffer).decodeFrameHeader();
+    frameBuffer.position(position);
+    final int messageLength = frameDecoder.getMessageLength();
+    return messageLength > 0 ? headerLength + messageLength : -1;
+  }
+
+  private void transfer(int length) {
+    final int count = Math.min(length, buffer.remaining());
+    final int limit = buffer.limit();
+    buffer.limit(buffer.position() + count);
+    carry.put(buffer);
+    buffer.limit(limit);
+  }
+}
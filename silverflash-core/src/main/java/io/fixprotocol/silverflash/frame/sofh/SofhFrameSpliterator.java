@@ -98,6 +98,8 @@ public class SofhFrameSpliterator implements FrameSpliterator {
     int messageLimit = offset + SofhFrameDecoder.HEADER_LENGTH + messageLength;
 
     if (messageLength <= 0 || (messageLimit > buffer.limit())) {
+      // leave position at start of incomplete frame
+      buffer.position(offset);
       return false;
     }
 
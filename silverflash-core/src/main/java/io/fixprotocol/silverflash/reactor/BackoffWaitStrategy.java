@@ -0,0 +1,278 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.reactor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+
+/**
+ * Waits for events by busy spinning, then yielding, then parking
+ * <p>
+ * A consumer that is kept busy never leaves the spinning phase, so its latency is the same as with
+ * {@code BusySpinWaitStrategy}, but an idle consumer gives up its core. Parking polls the ring,
+ * so producers never need to signal a consumer.
+ * <p>
+ * Optionally, a wait times out periodically so that an event handler that implements
+ * {@code TimeoutHandler} may perform timed work while the ring is idle, as an EventReactor requires
+ * to drive its timers. To keep the clock off the spinning path, the timeout is measured from the
+ * end of spinning and is checked only while parking, so a wait may run over by the time spent
+ * spinning and yielding, and by the lateness of a park.
+ * <p>
+ * The number of polls made in each phase is accumulated for monitoring. A wait that finds an event
+ * already available returns at once and is not counted. One instance may be shared by several
+ * rings; then its metrics are their totals.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class BackoffWaitStrategy implements WaitStrategy {
+
+  /**
+   * Collects attributes to build a BackoffWaitStrategy
+   */
+  public static class Builder {
+    private long parkNanos = DEFAULT_PARK_NANOS;
+    private int spinTries = DEFAULT_SPIN_TRIES;
+    private long timeoutNanos = 0;
+    private int yieldTries = DEFAULT_YIELD_TRIES;
+
+    /**
+     * Build a new BackoffWaitStrategy object
+     *
+     * @return a new wait strategy
+     */
+    public BackoffWaitStrategy build() {
+      return new BackoffWaitStrategy(this);
+    }
+
+    /**
+     * Sets the duration of each park in the final phase
+     *
+     * @param parkTime duration of a park
+     * @param unit time unit of parkTime
+     * @return this Builder
+     */
+    public Builder withParkTime(long parkTime, TimeUnit unit) {
+      this.parkNanos = unit.toNanos(parkTime);
+      return this;
+    }
+
+    /**
+     * Sets the number of polls of the ring while spinning
+     *
+     * @param spinTries number of polls before yielding
+     * @return this Builder
+     */
+    public Builder withSpinTries(int spinTries) {
+      this.spinTries = spinTries;
+      return this;
+    }
+
+    /**
+     * Sets a period after which a waiting consumer is notified if no event has arrived
+     *
+     * @param timeout timeout period. If zero, a wait never times out. Default is zero.
+     * @param unit time unit of timeout
+     * @return this Builder
+     */
+    public Builder withTimeout(long timeout, TimeUnit unit) {
+      this.timeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * Sets the number of polls of the ring while yielding
+     *
+     * @param yieldTries number of yields before parking
+     * @return this Builder
+     */
+    public Builder withYieldTries(int yieldTries) {
+      this.yieldTries = yieldTries;
+      return this;
+    }
+  }
+
+  /**
+   * Default duration of a park
+   */
+  public static final long DEFAULT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  /**
+   * Default number of polls while spinning
+   */
+  public static final int DEFAULT_SPIN_TRIES = 10000;
+
+  /**
+   * Default number of polls while yielding
+   */
+  public static final int DEFAULT_YIELD_TRIES = 100;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final long parkNanos;
+  private final LongAdder parks = new LongAdder();
+  private final int spinTries;
+  private final LongAdder spins = new LongAdder();
+  private final long timeoutNanos;
+  private final int yieldTries;
+  private final LongAdder yields = new LongAdder();
+
+  protected BackoffWaitStrategy(Builder builder) {
+    this.spinTries = builder.spinTries;
+    this.yieldTries = builder.yieldTries;
+    this.parkNanos = Math.max(builder.parkNanos, 1L);
+    this.timeoutNanos = builder.timeoutNanos;
+  }
+
+  /**
+   * Returns the number of times a waiting consumer parked
+   *
+   * @return number of parks
+   */
+  public long getParks() {
+    return parks.sum();
+  }
+
+  /**
+   * Returns the number of polls of the ring while busy spinning
+   *
+   * @return number of spins
+   */
+  public long getSpins() {
+    return spins.sum();
+  }
+
+  /**
+   * Returns the period after which a waiting consumer is notified if no event has arrived
+   *
+   * @return timeout in nanoseconds, or zero if a wait never times out
+   */
+  public long getTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  /**
+   * Returns the number of times a waiting consumer yielded
+   *
+   * @return number of yields
+   */
+  public long getYields() {
+    return yields.sum();
+  }
+
+  /**
+   * Clears accumulated metrics
+   */
+  public void reset() {
+    spins.reset();
+    yields.reset();
+    parks.reset();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.lmax.disruptor.WaitStrategy#signalAllWhenBlocking()
+   */
+  @Override
+  public void signalAllWhenBlocking() {
+  }
+
+  @Override
+  public String toString() {
+    return "BackoffWaitStrategy [spins=" + getSpins() + ", yields=" + getYields() + ", parks="
+        + getParks() + "]";
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.lmax.disruptor.WaitStrategy#waitFor(long, com.lmax.disruptor.Sequence,
+   * com.lmax.disruptor.Sequence, com.lmax.disruptor.SequenceBarrier)
+   */
+  @Override
+  public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence,
+      SequenceBarrier barrier) throws AlertException, InterruptedException, TimeoutException {
+    long availableSequence = dependentSequence.get();
+    if (availableSequence >= sequence) {
+      return availableSequence;
+    }
+
+    int counter = 0;
+    long yieldStart = 0;
+    long parksRemaining = -1;
+    int parked = 0;
+
+    try {
+      while ((availableSequence = dependentSequence.get()) < sequence) {
+        barrier.checkAlert();
+        if (counter < spinTries) {
+          counter++;
+        } else if (counter < spinTries + yieldTries) {
+          if (counter == spinTries) {
+            yieldStart = System.nanoTime();
+          }
+          counter++;
+          Thread.yield();
+        } else {
+          if (parksRemaining < 0) {
+            parksRemaining = parksUntilTimeout(yieldStart);
+          }
+          if (parksRemaining == 0) {
+            throw TimeoutException.INSTANCE;
+          }
+          parksRemaining--;
+          parked++;
+          LockSupport.parkNanos(parkNanos);
+        }
+      }
+    } finally {
+      spins.add(Math.min(counter, spinTries));
+      if (counter > spinTries) {
+        yields.add(counter - spinTries);
+      }
+      if (parked > 0) {
+        parks.add(parked);
+      }
+    }
+
+    return availableSequence;
+  }
+
+  /**
+   * Samples the clock at the transition to parking to tell how many parks remain before timeout
+   */
+  private long parksUntilTimeout(long yieldStart) {
+    if (timeoutNanos <= 0) {
+      return Long.MAX_VALUE;
+    }
+    final long parkStart = System.nanoTime();
+    final long elapsed = yieldTries > 0 ? parkStart - yieldStart : 0L;
+    final long remaining = timeoutNanos - elapsed;
+    return remaining > 0 ? (remaining + parkNanos - 1) / parkNanos : 0L;
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+
+/**
+ * Busy spins like {@code BusySpinWaitStrategy}, but times out periodically so that an event handler
+ * that implements {@code TimeoutHandler} may perform timed work while the ring is idle.
+ * 
+ * @author Don Mendelson
+ *
+ */
+class BusySpinTimeoutWaitStrategy implements WaitStrategy {
+
+  private final long timeoutNanos;
+
+  /**
+   * Constructor
+   * 
+   * @param timeout period after which a waiting consumer is notified if no event has arrived
+   * @param units time unit of timeout
+   */
+  BusySpinTimeoutWaitStrategy(long timeout, TimeUnit units) {
+    this.timeoutNanos = units.toNanos(timeout);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.lmax.disruptor.WaitStrategy#signalAllWhenBlocking()
+   */
+  @Override
+  public void signalAllWhenBlocking() {
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see com.lmax.disruptor.WaitStrategy#waitFor(long, com.lmax.disruptor.Sequence,
+   * com.lmax.disruptor.Sequence, com.lmax.disruptor.SequenceBarrier)
+   */
+  @Override
+  public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence,
+      SequenceBarrier barrier) throws AlertException, InterruptedException, TimeoutException {
+    long availableSequence;
+    final long deadline = System.nanoTime() + timeoutNanos;
+
+    while ((availableSequence = dependentSequence.get()) < sequence) {
+      barrier.checkAlert();
+      if (System.nanoTime() - deadline > 0) {
+        throw TimeoutException.INSTANCE;
+      }
+    }
+
+    return availableSequence;
+  }
+}
@@ -48,6 +48,24 @@ public class ByteBufferPayload implements PayloadAllocator<ByteBuffer> {
     return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
   }
 
+  /**
+   * Clears a buffer to be populated in place
+   * 
+   * @param slot buffer of an event
+   * @param length maximum length of the message
+   * @return the cleared buffer
+   * @throws IllegalArgumentException if length exceeds the capacity of a buffer
+   */
+  @Override
+  public ByteBuffer claimPayload(ByteBuffer slot, int length) {
+    if (length > capacity) {
+      throw new IllegalArgumentException(
+          String.format("Message length %d exceeds payload capacity %d", length, capacity));
+    }
+    slot.clear();
+    return slot;
+  }
+
   /**
    * Copies payload to a destination buffer. 
    * @param src source buffer
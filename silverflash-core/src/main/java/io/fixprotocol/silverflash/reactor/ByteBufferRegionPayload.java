@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.reactor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocates variable-length ByteBuffer payloads from one contiguous off-heap region
+ * <p>
+ * The region is divided into blocks, and a message occupies as many contiguous blocks as its length
+ * requires. A message that would straddle the end of the region is placed at its start instead.
+ * Space is reclaimed as events are dispatched, so a message may be as large as the region.
+ * <p>
+ * A view of the region is created in advance for each block, and the position of a payload is
+ * always zero, so claiming and releasing payloads does not allocate.
+ * <p>
+ * Payloads must be claimed by one thread at a time in the order of publication, and released by
+ * the dispatching thread.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class ByteBufferRegionPayload implements PayloadAllocator<ByteBuffer> {
+
+  /**
+   * Default size of a block of the region
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private final int blockCount;
+  private final int blockSize;
+  // block count at end of each outstanding claim, in order of claims
+  private final long[] claimEnds;
+  private long claims = 0;
+  // total blocks claimed, including padding at end of region
+  private long head = 0;
+  private final int mask;
+  private long releases = 0;
+  // total blocks released
+  private volatile long tail = 0;
+  private final ByteBuffer[] views;
+
+  /**
+   * Constructor with default block size
+   *
+   * @param capacity size of the region
+   */
+  public ByteBufferRegionPayload(int capacity) {
+    this(capacity, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param capacity size of the region. It is rounded up to a multiple of block size.
+   * @param blockSize unit of allocation within the region
+   */
+  public ByteBufferRegionPayload(int capacity, int blockSize) {
+    if (capacity <= 0 || blockSize <= 0) {
+      throw new IllegalArgumentException("Region capacity and block size must be positive");
+    }
+    this.blockSize = blockSize;
+    this.blockCount = (capacity + blockSize - 1) / blockSize;
+    final ByteBuffer region =
+        ByteBuffer.allocateDirect(blockCount * blockSize).order(ByteOrder.nativeOrder());
+    views = new ByteBuffer[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      region.limit(region.capacity()).position(i * blockSize);
+      views[i] = region.slice().order(ByteOrder.nativeOrder());
+    }
+    final int claimCapacity = Integer.highestOneBit(blockCount - 1) << 1;
+    claimEnds = new long[Math.max(1, claimCapacity)];
+    mask = claimEnds.length - 1;
+  }
+
+  /**
+   * Events do not have payloads of their own
+   *
+   * @return Returns {@code null}
+   */
+  public ByteBuffer allocatePayload() {
+    return null;
+  }
+
+  /**
+   * Claims a buffer from the region
+   *
+   * @param slot ignored
+   * @param length maximum length of the message
+   * @return a buffer with position zero and limit of {@code length}, or {@code null} if the region
+   *         does not currently have enough free space
+   * @throws IllegalArgumentException if length exceeds the capacity of the region
+   */
+  @Override
+  public ByteBuffer claimPayload(ByteBuffer slot, int length) {
+    final int blocks = Math.max(1, (length + blockSize - 1) / blockSize);
+    if (blocks > blockCount) {
+      throw new IllegalArgumentException(String.format(
+          "Message length %d exceeds region capacity %d", length, blockCount * blockSize));
+    }
+    int start = (int) (head % blockCount);
+    long end = head + blocks;
+    if (start + blocks > blockCount) {
+      // skip to start of region
+      end += blockCount - start;
+      start = 0;
+    }
+    if (end - tail > blockCount) {
+      return null;
+    }
+    head = end;
+    claimEnds[(int) (claims++ & mask)] = end;
+    final ByteBuffer view = views[start];
+    view.clear();
+    view.limit(length);
+    return view;
+  }
+
+  @Override
+  public ByteBuffer copyPayload(ByteBuffer src, ByteBuffer slot) {
+    final ByteBuffer dest = claimPayload(slot, src != null ? src.position() : 0);
+    if (dest != null) {
+      setPayload(src, dest);
+    }
+    return dest;
+  }
+
+  /**
+   * @return Returns {@code true}
+   */
+  @Override
+  public boolean isShared() {
+    return true;
+  }
+
+  @Override
+  public void releasePayload(ByteBuffer payload) {
+    tail = claimEnds[(int) (releases++ & mask)];
+  }
+
+  /**
+   * Copies payload to a claimed buffer
+   *
+   * @param src source buffer
+   * @param dest destination buffer
+   */
+  public void setPayload(ByteBuffer src, ByteBuffer dest) {
+    if (src != null) {
+      src.flip();
+      dest.put(src);
+    }
+  }
+}
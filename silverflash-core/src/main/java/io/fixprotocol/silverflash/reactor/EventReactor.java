@@ -18,19 +18,26 @@
 package io.fixprotocol.silverflash.reactor;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
-import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.LifecycleAware;
+import com.lmax.disruptor.LiteTimeoutBlockingWaitStrategy;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutHandler;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 
@@ -49,6 +56,23 @@ import io.fixprotocol.silverflash.Service;
  * This implementation unicasts events. That is, there can be at most one subscriber per Topic.
  * Wildcard topics are not supported.
  * <p>
+ * Subscribers are indexed by the dense identifier of an interned Topic, so dispatching an event
+ * is an array lookup and does not allocate. When a Topic is released, its registry slot is
+ * treated as vacant, so a subscriber of a released Topic never receives events of a Topic that
+ * reuses its identifier.
+ * <p>
+ * A message is either copied into an event by {@link #post(Topic, Object)}, or a publisher may
+ * claim the payload of an event, populate it in place and commit it. If the PayloadAllocator
+ * supplies payloads from shared storage, such as {@link ByteBufferRegionPayload}, then payloads are
+ * claimed in order of publication and their length is not limited to a fixed slot size.
+ * <p>
+ * Events may be partitioned among shards, each with its own ring and dispatching thread. Events
+ * of a session are always dispatched by the same shard, preserving their order.
+ * <p>
+ * Timed events are kept in a hashed timer wheel that is driven by the dispatching thread, so no
+ * separate timer thread is needed. Timer resolution is one tick; a timed event is never published
+ * early, and periodic events are published at a fixed rate.
+ * <p>
  * 
  * @author Don Mendelson
  */
@@ -56,24 +80,52 @@ public class EventReactor<T> implements Service {
 
   private class BufferEvent {
 
-    private final T payload;
+    private T payload;
+    private final T slot;
+    private TimerSchedule timer;
     private Topic topic;
 
     BufferEvent() {
-      payload = payloadAllocator.allocatePayload();
+      slot = payloadAllocator.allocatePayload();
+      payload = slot;
+    }
+
+    boolean claim(Topic topic, int length) {
+      this.timer = null;
+      this.payload = payloadAllocator.claimPayload(slot, length);
+      this.topic = payload != null ? topic : null;
+      return payload != null;
+    }
+
+    void clear() {
+      this.topic = null;
+      this.timer = null;
+      this.payload = null;
     }
 
     T getPayload() {
       return payload;
     }
 
+    TimerSchedule getTimer() {
+      return timer;
+    }
+
     Topic getTopic() {
       return topic;
     }
 
-    void set(Topic topic, T src) {
-      this.topic = topic;
-      payloadAllocator.setPayload(src, payload);
+    boolean set(Topic topic, T src) {
+      this.timer = null;
+      this.payload = payloadAllocator.copyPayload(src, slot);
+      this.topic = payload != null ? topic : null;
+      return payload != null;
+    }
+
+    void setTimer(TimerSchedule timer) {
+      this.topic = null;
+      this.timer = timer;
+      this.payload = null;
     }
 
     @Override
@@ -98,7 +150,12 @@ public class EventReactor<T> implements Service {
     private ExceptionConsumer exceptionHandler = System.err::println;
     private PayloadAllocator<T> payloadAllocator;
     private int ringSize = 128;
+    private int serviceShard = 0;
+    private int shardCount = 1;
     private ThreadFactory threadFactory;
+    private long timerTickMillis = DEFAULT_TIMER_TICK_MILLIS;
+    private int timerWheelSize = DEFAULT_TIMER_WHEEL_SIZE;
+    private WaitStrategy waitStrategy;
 
 
     /**
@@ -155,6 +212,31 @@ public class EventReactor<T> implements Service {
       return (B) this;
     }
 
+    /**
+     * Sets the shard that dispatches events of topics that are not partitioned by session, such as
+     * service topics
+     * 
+     * @param serviceShard index of a shard, zero based
+     * @return this Builder
+     */
+    public B withServiceShard(int serviceShard) {
+      this.serviceShard = serviceShard;
+      return (B) this;
+    }
+
+    /**
+     * Partitions events among multiple rings, each with its own dispatching thread and timer
+     * wheel. Threads are created by the thread factory, so an AffinityThreadFactory pins each
+     * one to a core. Shards cannot share payload storage.
+     * 
+     * @param shardCount number of shards. Default is 1.
+     * @return this Builder
+     */
+    public B withShards(int shardCount) {
+      this.shardCount = shardCount;
+      return (B) this;
+    }
+
     /**
      * Adds a task runner
      * 
@@ -165,58 +247,354 @@ public class EventReactor<T> implements Service {
       this.threadFactory = threadFactory;
       return (B) this;
     }
-  }
 
-  private class TimedPostTask extends TimerTask {
+    /**
+     * Sets the resolution of timed events
+     * 
+     * @param tickMillis duration of a timer tick in milliseconds
+     * @return this Builder
+     */
+    public B withTimerTick(long tickMillis) {
+      this.timerTickMillis = tickMillis;
+      return (B) this;
+    }
+
+    /**
+     * Sets the number of slots of the timer wheel. A timed event that is more than one rotation
+     * of the wheel away is visited once per rotation.
+     * 
+     * @param wheelSize number of slots. Must be a power of 2.
+     * @return this Builder
+     */
+    public B withTimerWheelSize(int wheelSize) {
+      this.timerWheelSize = wheelSize;
+      return (B) this;
+    }
+
+    /**
+     * Sets how a dispatching thread waits for events. Timers are expired while the thread waits
+     * only if the strategy times out, so its timeout should not exceed a timer tick; see
+     * {@link BackoffWaitStrategy.Builder#withTimeout(long, TimeUnit)}. By default, a dispatching
+     * thread busy spins and times out every tick.
+     * 
+     * @param waitStrategy a wait strategy, shared by all shards. It must be a
+     *        {@link BackoffWaitStrategy} with a timeout or a disruptor timeout blocking strategy.
+     * @return this Builder
+     * @throws IllegalArgumentException if the strategy never times out, so timers would stall
+     *         while the reactor is idle
+     */
+    public B withWaitStrategy(WaitStrategy waitStrategy) {
+      if (waitStrategy != null && !isTimedOut(waitStrategy)) {
+        throw new IllegalArgumentException("Wait strategy must time out to expire timers");
+      }
+      this.waitStrategy = waitStrategy;
+      return (B) this;
+    }
+
+    private static boolean isTimedOut(WaitStrategy waitStrategy) {
+      if (waitStrategy instanceof BackoffWaitStrategy) {
+        return ((BackoffWaitStrategy) waitStrategy).getTimeoutNanos() > 0;
+      } else {
+        return waitStrategy instanceof BusySpinTimeoutWaitStrategy
+            || waitStrategy instanceof TimeoutBlockingWaitStrategy
+            || waitStrategy instanceof LiteTimeoutBlockingWaitStrategy;
+      }
+    }
+  }
 
-    private final T src;
-    private final Topic topic;
+  /**
+   * An entry of the registry of subscribers
+   */
+  private static final class Registration {
+    final Receiver receiver;
+    final Topic topic;
 
-    public TimedPostTask(Topic topic, T src) {
-      super();
+    Registration(Topic topic, Receiver receiver) {
       this.topic = topic;
-      this.src = src;
+      this.receiver = receiver;
     }
 
-    @Override
-    public void run() {
-      post(topic, src);
+    /**
+     * Tells whether the Topic still holds the identifier of this entry
+     */
+    boolean isCurrent(int id) {
+      return topic.getId() == id;
+    }
+  }
+
+  /**
+   * A partition of events with its own ring, dispatching thread and timer wheel
+   */
+  private class Shard {
+
+    /**
+     * Dispatches events and drives the timer wheel on the dispatching thread
+     */
+    private class DispatchHandler implements EventHandler<BufferEvent>, TimeoutHandler,
+        LifecycleAware {
+
+      @Override
+      public void onEvent(BufferEvent event, long sequence, boolean endOfBatch) {
+        final TimerSchedule timer = event.getTimer();
+        if (timer != null) {
+          timerWheel.schedule(timer);
+        } else if (event.getTopic() != null) {
+          try {
+            handleEvent(event);
+          } finally {
+            payloadAllocator.releasePayload(event.getPayload());
+          }
+        }
+        if (endOfBatch) {
+          runEndOfBatchActions();
+          expireTimers();
+        }
+      }
+
+      @Override
+      public void onShutdown() {
+        dispatchThread = null;
+      }
+
+      @Override
+      public void onStart() {
+        dispatchThread = Thread.currentThread();
+      }
+
+      @Override
+      public void onTimeout(long sequence) {
+        expireTimers();
+      }
+    }
+
+    private volatile Thread dispatchThread;
+    private Disruptor<BufferEvent> disruptor;
+    // owned by the dispatching thread
+    private final ArrayList<Runnable> endOfBatchActions = new ArrayList<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private RingBuffer<BufferEvent> ringBuffer;
+    private final TimerWheel.Expiry timerExpiry = this::tryPost;
+    private TimerWheel timerWheel;
+
+    /**
+     * Waits for shared payload storage to be released by the dispatching thread, which cannot
+     * wait for itself.
+     */
+    private void awaitPayload() {
+      if (Thread.currentThread() == dispatchThread) {
+        throw new IllegalStateException("Payload storage exhausted");
+      }
+      Thread.yield();
+    }
+
+    long claim(Topic topic, int length) {
+      if (isShared) {
+        publishLock.lock();
+      }
+      try {
+        final long sequence = ringBuffer.next();
+        final BufferEvent event = ringBuffer.get(sequence);
+        try {
+          while (!event.claim(topic, length)) {
+            awaitPayload();
+          }
+        } catch (RuntimeException e) {
+          event.clear();
+          ringBuffer.publish(sequence);
+          throw e;
+        }
+        return sequence;
+      } finally {
+        if (isShared) {
+          publishLock.unlock();
+        }
+      }
+    }
+
+    void close() {
+      disruptor.halt();
+    }
+
+    void commit(long sequence) {
+      ringBuffer.publish(sequence);
+    }
+
+    void runAtEndOfBatch(Runnable action) {
+      if (Thread.currentThread() != dispatchThread) {
+        action.run();
+      } else if (!endOfBatchActions.contains(action)) {
+        endOfBatchActions.add(action);
+      }
+    }
+
+    private void runEndOfBatchActions() {
+      for (int i = 0; i < endOfBatchActions.size(); i++) {
+        try {
+          endOfBatchActions.get(i).run();
+        } catch (Exception e) {
+          exceptionConsumer.accept(e);
+        }
+      }
+      endOfBatchActions.clear();
+    }
+
+    private void expireTimers() {
+      timerWheel.expire(System.nanoTime(), timerExpiry);
     }
 
+    T getPayload(long sequence) {
+      return ringBuffer.get(sequence).getPayload();
+    }
+
+    void open() {
+      timerWheel = new TimerWheel(timerTickNanos, timerWheelSize, System.nanoTime());
+      disruptor = new Disruptor<>(EVENT_FACTORY, ringSize, threadFactory, ProducerType.MULTI,
+          waitStrategy != null ? waitStrategy
+              : new BusySpinTimeoutWaitStrategy(timerTickNanos, TimeUnit.NANOSECONDS));
+      disruptor.handleEventsWith(new DispatchHandler());
+      ringBuffer = disruptor.start();
+      // a halt before the dispatch thread starts would be lost, leaving it running after close
+      while (dispatchThread == null) {
+        Thread.yield();
+      }
+    }
+
+    void post(Topic topic, T src) {
+      if (isShared) {
+        publishLock.lock();
+      }
+      try {
+        long sequence = ringBuffer.next();
+        final BufferEvent event = ringBuffer.get(sequence);
+        try {
+          while (!event.set(topic, src)) {
+            awaitPayload();
+          }
+        } catch (RuntimeException e) {
+          event.clear();
+          throw e;
+        } finally {
+          ringBuffer.publish(sequence);
+        }
+      } finally {
+        if (isShared) {
+          publishLock.unlock();
+        }
+      }
+    }
+
+    /**
+     * Adds a timer to the wheel. The wheel is owned by the dispatching thread, so another thread
+     * hands off the timer through the ring.
+     */
+    void schedule(TimerSchedule sched) {
+      if (Thread.currentThread() == dispatchThread) {
+        timerWheel.schedule(sched);
+      } else {
+        long sequence = ringBuffer.next();
+        final BufferEvent event = ringBuffer.get(sequence);
+        event.setTimer(sched);
+        ringBuffer.publish(sequence);
+      }
+    }
+
+    /**
+     * Publishes a timed event from the dispatching thread without blocking on the ring
+     * 
+     * @return {@code false} if the ring or shared payload storage is full
+     */
+    @SuppressWarnings("unchecked")
+    private boolean tryPost(TimerSchedule sched) {
+      if (isShared && !publishLock.tryLock()) {
+        return false;
+      }
+      try {
+        long sequence = ringBuffer.tryNext();
+        final BufferEvent event = ringBuffer.get(sequence);
+        final boolean isSet = event.set(sched.getTopic(), (T) sched.getSrc());
+        if (!isSet) {
+          event.clear();
+        }
+        ringBuffer.publish(sequence);
+        return isSet;
+      } catch (InsufficientCapacityException e) {
+        return false;
+      } finally {
+        if (isShared) {
+          publishLock.unlock();
+        }
+      }
+    }
   }
 
+  /**
+   * Default duration of a timer tick
+   */
+  public static final long DEFAULT_TIMER_TICK_MILLIS = 1;
+
+  /**
+   * Default number of slots of the timer wheel
+   */
+  public static final int DEFAULT_TIMER_WHEEL_SIZE = 1024;
+
   @SuppressWarnings("rawtypes")
   public static Builder builder() {
     return new Builder();
   }
 
   private final Dispatcher<T> dispatcher;
-  private Disruptor<BufferEvent> disruptor;
   final EventFactory<BufferEvent> EVENT_FACTORY = BufferEvent::new;
   protected final ExceptionConsumer exceptionConsumer;
   private final AtomicBoolean isRunning = new AtomicBoolean();
+  private final boolean isShared;
   private String name = "default";
   private final PayloadAllocator<T> payloadAllocator;
-  private final ConcurrentHashMap<Topic, Receiver> registry = new ConcurrentHashMap<>();
-  private RingBuffer<BufferEvent> ringBuffer;
+  private volatile AtomicReferenceArray<Registration> registry;
+  private final Object registryLock = new Object();
   private final int ringSize;
+  private final int serviceShard;
+  private final int shardBits;
+  private final Shard[] shards;
   private final ThreadFactory threadFactory;
-  private Timer timer;
+  private final long timerTickNanos;
+  private final int timerWheelSize;
   private boolean trace = false;
+  private final WaitStrategy waitStrategy;
 
+  @SuppressWarnings("unchecked")
   protected EventReactor(Builder<T, ?, ?> builder) {
     Objects.requireNonNull(builder.payloadAllocator);
     Objects.requireNonNull(builder.dispatcher);
+    if (builder.shardCount < 1) {
+      throw new IllegalArgumentException("Number of shards must be positive");
+    }
+    if (builder.serviceShard < 0 || builder.serviceShard >= builder.shardCount) {
+      throw new IllegalArgumentException("Service shard out of range");
+    }
+    if (builder.shardCount > 1 && builder.payloadAllocator.isShared()) {
+      throw new IllegalArgumentException("Shared payload storage requires a single shard");
+    }
 
     this.ringSize = builder.ringSize;
     this.payloadAllocator = builder.payloadAllocator;
+    this.isShared = payloadAllocator.isShared();
     this.dispatcher = builder.dispatcher;
     this.exceptionConsumer = builder.exceptionHandler;
+    this.timerTickNanos = TimeUnit.MILLISECONDS.toNanos(builder.timerTickMillis);
+    this.timerWheelSize = builder.timerWheelSize;
+    this.registry = new AtomicReferenceArray<>(Math.max(16, Topics.getTopicCount()));
     if (builder.threadFactory != null) {
       this.threadFactory = builder.threadFactory;
     } else {
       this.threadFactory = Executors.defaultThreadFactory();
     }
+    this.serviceShard = builder.serviceShard;
+    this.waitStrategy = builder.waitStrategy;
+    this.shardBits = Integer.SIZE - Integer.numberOfLeadingZeros(builder.shardCount - 1);
+    this.shards = (Shard[]) new EventReactor.Shard[builder.shardCount];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
   }
 
   /**
@@ -224,17 +602,104 @@ public class EventReactor<T> implements Service {
    */
   public void close() {
     if (isRunning.compareAndSet(true, false)) {
-      this.timer.cancel();
-      this.disruptor.halt();
-      registry.clear();
+      for (Shard shard : shards) {
+        shard.close();
+      }
+      synchronized (registryLock) {
+        registry = new AtomicReferenceArray<>(registry.length());
+      }
     }
   }
 
   private Receiver getSubscriber(Topic topic) {
-    return registry.get(topic);
+    final int id = topic.getId();
+    final AtomicReferenceArray<Registration> registrations = registry;
+    if (id < 0 || id >= registrations.length()) {
+      return null;
+    }
+    final Registration registration = registrations.get(id);
+    if (registration == null) {
+      return null;
+    } else if (registration.isCurrent(id)) {
+      return registration.receiver;
+    } else {
+      // the subscribed Topic was released; vacate its slot
+      registrations.compareAndSet(id, registration, null);
+      return null;
+    }
+  }
+
+  /**
+   * Claims the next event to be populated in place. The payload is obtained by
+   * {@link #getPayload(long)}, and the event is published by {@link #commit(long)}. Every claimed
+   * event must be committed, or subsequent events are not dispatched.
+   * 
+   * @param topic key to event
+   * @param length maximum length of the message to be populated
+   * @return sequence of the claimed event
+   * @throws IllegalArgumentException if length exceeds the capacity of a payload
+   * @throws IllegalStateException if invoked by the dispatching thread when shared payload storage
+   *         is exhausted
+   */
+  public long claim(Topic topic, int length) {
+    Objects.requireNonNull(topic);
+    final int index = getShardIndex(topic);
+    return (shards[index].claim(topic, length) << shardBits) | index;
   }
 
-  private void handleEvent(BufferEvent event, long sequence, boolean endOfBatch) {
+  /**
+   * Publish a claimed event
+   * 
+   * @param sequence sequence returned by {@link #claim(Topic, int)}
+   */
+  public void commit(long sequence) {
+    getShard(sequence).commit(sequence >>> shardBits);
+  }
+
+  /**
+   * Returns the payload of a claimed event to populate
+   * 
+   * @param sequence sequence returned by {@link #claim(Topic, int)}
+   * @return payload of the event
+   */
+  public T getPayload(long sequence) {
+    return getShard(sequence).getPayload(sequence >>> shardBits);
+  }
+
+  private Shard getShard(long sequence) {
+    return shards[(int) (sequence & ((1 << shardBits) - 1))];
+  }
+
+  /**
+   * Returns the number of partitions of events
+   * 
+   * @return number of shards
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Returns the shard that dispatches events of a Topic. Topics that have more than one field are
+   * partitioned by their first field, which is a session identifier for session events. Thus, all
+   * events of a session are dispatched by the same thread. Topics with a single field, such as
+   * service topics, are dispatched by the service shard.
+   * 
+   * @param topic key to events
+   * @return index of a shard
+   */
+  public int getShardIndex(Topic topic) {
+    if (shards.length == 1) {
+      return 0;
+    }
+    final String[] fields = topic.getFields();
+    if (fields.length < 2) {
+      return serviceShard;
+    }
+    return (fields[0].hashCode() & Integer.MAX_VALUE) % shards.length;
+  }
+
+  private void handleEvent(BufferEvent event) {
     Topic topic = event.getTopic();
     Receiver receiver = getSubscriber(topic);
     if (receiver != null) {
@@ -258,7 +723,7 @@ public class EventReactor<T> implements Service {
    * @return Returns {@code true} if a subscriber exists for the Topic
    */
   public boolean hasSubscriber(Topic topic) {
-    return registry.containsKey(topic);
+    return getSubscriber(topic) != null;
   }
 
   /**
@@ -270,14 +735,10 @@ public class EventReactor<T> implements Service {
   public CompletableFuture<? extends EventReactor<T>> open() {
     if (isRunning.compareAndSet(false, true)) {
       CompletableFuture<EventReactor<T>> future = new CompletableFuture<>();
-      this.disruptor =
-          new Disruptor<>(EVENT_FACTORY, ringSize, threadFactory, ProducerType.MULTI,
-              new BusySpinWaitStrategy());
-      this.disruptor.handleEventsWith(this::handleEvent);
-      this.ringBuffer = disruptor.start();
-
-      // Starts a timer thread
-      this.timer = new Timer();
+      for (Shard shard : shards) {
+        shard.open();
+      }
+
       future.complete(this);
       return future;
     } else {
@@ -296,10 +757,23 @@ public class EventReactor<T> implements Service {
    *          buffer to its limit.
    */
   public void post(Topic topic, T src) {
-    long sequence = ringBuffer.next();
-    final BufferEvent event = ringBuffer.get(sequence);
-    event.set(topic, src);
-    ringBuffer.publish(sequence);
+    shards[getShardIndex(topic)].post(topic, src);
+  }
+
+  /**
+   * Defers an action until the dispatching thread of a Topic reaches the end of a batch of events,
+   * that is, until no more events are immediately available. A Receiver may use this to flush
+   * output that it gathered while handling a burst of events. An action is run once per batch no
+   * matter how many times it is deferred, so it should be a reused instance.
+   * <p>
+   * If not invoked by the dispatching thread of the Topic, the action is run immediately.
+   * 
+   * @param topic key to events whose dispatching thread runs the action
+   * @param action an action to run
+   */
+  public void runAtEndOfBatch(Topic topic, Runnable action) {
+    Objects.requireNonNull(action);
+    shards[getShardIndex(topic)].runAtEndOfBatch(action);
   }
 
   /**
@@ -311,10 +785,7 @@ public class EventReactor<T> implements Service {
    * @return a TimerSchedule that is used to cancel the timer task
    */
   public TimerSchedule postAt(Topic topic, T src, Date time) {
-    final TimedPostTask task = new TimedPostTask(topic, src);
-    final TimerSchedule sched = new TimerSchedule(task);
-    timer.schedule(task, time);
-    return sched;
+    return postAt(topic, src, Math.max(0, time.getTime() - System.currentTimeMillis()));
   }
 
   /**
@@ -326,9 +797,9 @@ public class EventReactor<T> implements Service {
    * @return a TimerSchedule that is used to cancel the timer task
    */
   public TimerSchedule postAt(Topic topic, T src, long delayMillis) {
-    final TimedPostTask task = new TimedPostTask(topic, src);
-    final TimerSchedule sched = new TimerSchedule(task);
-    timer.schedule(task, delayMillis);
+    final TimerSchedule sched = new TimerSchedule(topic, src,
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), 0);
+    shards[getShardIndex(topic)].schedule(sched);
     return sched;
   }
 
@@ -342,9 +813,10 @@ public class EventReactor<T> implements Service {
    * @return a TimerSchedule that is used to cancel the timer task
    */
   public TimerSchedule postAtInterval(Topic topic, T src, long periodMillis) {
-    final TimedPostTask task = new TimedPostTask(topic, src);
-    final TimerSchedule sched = new TimerSchedule(task);
-    timer.scheduleAtFixedRate(task, periodMillis, periodMillis);
+    final long periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+    final TimerSchedule sched =
+        new TimerSchedule(topic, src, System.nanoTime() + periodNanos, periodNanos);
+    shards[getShardIndex(topic)].schedule(sched);
     return sched;
   }
 
@@ -366,12 +838,31 @@ public class EventReactor<T> implements Service {
    * @param topic key to events
    * @param receiver message handler
    * @return a Subscription object that is used to unsubscribe, or {@code null} if subscription
-   *         failed because another Receiver was already registered.
+   *         failed because another Receiver was already registered or the Topic was released.
    */
   public Subscription subscribe(Topic topic, Receiver receiver) {
     Objects.requireNonNull(topic);
     Objects.requireNonNull(receiver);
-    Receiver theReceiver = registry.putIfAbsent(topic, receiver);
+    final int id = topic.getId();
+    if (id < 0) {
+      if (trace) {
+        System.out.format("Subscribe failed [%s] %s; topic was released\n", name, topic);
+      }
+      return null;
+    }
+    Receiver theReceiver = null;
+    synchronized (registryLock) {
+      AtomicReferenceArray<Registration> registrations = registry;
+      if (id >= registrations.length()) {
+        registrations = grow(registrations, id);
+      }
+      final Registration registration = registrations.get(id);
+      if (registration != null && registration.isCurrent(id)) {
+        theReceiver = registration.receiver;
+      } else {
+        registrations.set(id, new Registration(topic, receiver));
+      }
+    }
     if (theReceiver == null || receiver == theReceiver) {
       if (trace) {
         System.out.format("Subscribe [%s] %s\n", name, topic);
@@ -395,6 +886,29 @@ public class EventReactor<T> implements Service {
     if (trace) {
       System.out.format("Unsubscribe [%s] %s\n", name, topic);
     }
-    registry.remove(topic);
+    final int id = topic.getId();
+    if (id < 0) {
+      return;
+    }
+    synchronized (registryLock) {
+      final AtomicReferenceArray<Registration> registrations = registry;
+      if (id < registrations.length()) {
+        registrations.set(id, null);
+      }
+    }
+  }
+
+  /**
+   * Replaces the registry with a larger copy. Invoked while holding the registry lock.
+   */
+  private AtomicReferenceArray<Registration> grow(AtomicReferenceArray<Registration> registrations,
+      int id) {
+    final int length = Math.max(Integer.highestOneBit(id) << 1, Topics.getTopicCount());
+    final AtomicReferenceArray<Registration> larger = new AtomicReferenceArray<>(length);
+    for (int i = 0; i < registrations.length(); i++) {
+      larger.set(i, registrations.get(i));
+    }
+    registry = larger;
+    return larger;
   }
 }
@@ -19,6 +19,10 @@ package io.fixprotocol.silverflash.reactor;
 
 /**
  * Allocates payload for an event
+ * <p>
+ * By default, each event in the ring has its own preallocated payload, and it is populated either
+ * by copying a message or in place by a publisher that claims it. An allocator may instead supply
+ * payloads from shared storage; then it must be claimed in the order of publication.
  * 
  * @author Don Mendelson
  *
@@ -39,4 +43,46 @@ public interface PayloadAllocator<T> {
    * @param dest destination
    */
   void setPayload(T src, T dest);
+
+  /**
+   * Returns a payload to be populated in place by a publisher
+   * 
+   * @param slot payload preallocated for an event
+   * @param length maximum length of the message to be populated
+   * @return a payload ready to populate, or {@code null} if storage is not currently available
+   */
+  default T claimPayload(T slot, int length) {
+    return slot;
+  }
+
+  /**
+   * Copies a message to a payload
+   * 
+   * @param src source payload
+   * @param slot payload preallocated for an event
+   * @return the populated payload, or {@code null} if storage is not currently available
+   */
+  default T copyPayload(T src, T slot) {
+    setPayload(src, slot);
+    return slot;
+  }
+
+  /**
+   * Tells whether payloads are supplied from storage shared by events
+   * 
+   * @return Returns {@code true} if payloads must be claimed in the order that events are
+   *         published
+   */
+  default boolean isShared() {
+    return false;
+  }
+
+  /**
+   * Releases a payload after its event has been dispatched. Payloads are released in the order
+   * that they were claimed.
+   * 
+   * @param payload a dispatched payload
+   */
+  default void releasePayload(T payload) {
+  }
 }
@@ -14,23 +14,43 @@
  * limitations under the License.
  *
  */
-
 package io.fixprotocol.silverflash.reactor;
 
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
- * Wraps a TimerTask
+ * A timed event scheduled by an EventReactor
+ * <p>
+ * A schedule is an entry of the reactor's timer wheel. Once scheduled, a periodic timer is
+ * re-armed without allocation until it is cancelled.
  * 
  * @author Don Mendelson
  *
  */
 public class TimerSchedule {
 
-  private final TimerTask task;
+  private static final int CANCELLED = 2;
+  private static final int EXPIRED = 1;
+  private static final int SCHEDULED = 0;
+  private static final AtomicIntegerFieldUpdater<TimerSchedule> STATE_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(TimerSchedule.class, "state");
+
+  // accessed only by the timer wheel thread
+  long deadlineNanos;
+  TimerSchedule next;
+  TimerSchedule previous;
+  int slot;
+
+  private final long periodNanos;
+  private final Object src;
+  private volatile int state = SCHEDULED;
+  private final Topic topic;
 
-  TimerSchedule(TimerTask task) {
-    this.task = task;
+  TimerSchedule(Topic topic, Object src, long deadlineNanos, long periodNanos) {
+    this.topic = topic;
+    this.src = src;
+    this.deadlineNanos = deadlineNanos;
+    this.periodNanos = periodNanos;
   }
 
   /**
@@ -42,12 +62,38 @@ public class TimerSchedule {
    *         prevents one or more scheduled executions from taking place.)
    */
   public boolean cancel() {
-    return task.cancel();
+    return STATE_UPDATER.compareAndSet(this, SCHEDULED, CANCELLED);
+  }
+
+  /**
+   * @return {@code true} if this schedule was cancelled
+   */
+  public boolean isCancelled() {
+    return state == CANCELLED;
+  }
+
+  boolean isPeriodic() {
+    return periodNanos > 0;
+  }
+
+  /**
+   * Marks a one-time schedule as run
+   * 
+   * @return {@code true} if it was not cancelled first
+   */
+  boolean expire() {
+    return STATE_UPDATER.compareAndSet(this, SCHEDULED, EXPIRED);
+  }
+
+  long getPeriodNanos() {
+    return periodNanos;
+  }
+
+  Object getSrc() {
+    return src;
   }
 
-  @Override
-  protected void finalize() throws Throwable {
-    super.finalize();
-    cancel();
+  Topic getTopic() {
+    return topic;
   }
 }
@@ -0,0 +1,163 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+/**
+ * Hashed wheel of timers
+ * <p>
+ * Time is divided into ticks, and each timer is linked into the slot of the wheel for the tick of
+ * its deadline. A timer whose deadline is more than one rotation away stays in its slot for
+ * further rotations. Scheduling, cancellation and expiration are constant time and allocation
+ * free, as timers are intrusive list entries.
+ * <p>
+ * Not thread-safe; a wheel is owned by a single thread. Timers may be cancelled from any thread;
+ * a cancelled timer is unlinked when its slot is next visited.
+ * 
+ * @author Don Mendelson
+ *
+ */
+class TimerWheel {
+
+  /**
+   * Receives expired timers
+   */
+  @FunctionalInterface
+  interface Expiry {
+    /**
+     * Handle an expired timer
+     * 
+     * @param timer an expired timer
+     * @return {@code true} if the timer was handled, or {@code false} to retry later
+     */
+    boolean onExpired(TimerSchedule timer);
+  }
+
+  private long currentTick = 0;
+  private final int mask;
+  private int size = 0;
+  private final TimerSchedule[] slots;
+  private final long startNanos;
+  private final long tickNanos;
+
+  /**
+   * Constructor
+   * 
+   * @param tickNanos duration of a tick in nanoseconds
+   * @param wheelSize number of slots. Must be a power of 2.
+   * @param startNanos time of tick zero as from {@code System.nanoTime()}
+   */
+  TimerWheel(long tickNanos, int wheelSize, long startNanos) {
+    if (tickNanos <= 0 || Integer.bitCount(wheelSize) != 1) {
+      throw new IllegalArgumentException("Invalid timer wheel dimensions");
+    }
+    this.tickNanos = tickNanos;
+    this.slots = new TimerSchedule[wheelSize];
+    this.mask = wheelSize - 1;
+    this.startNanos = startNanos;
+  }
+
+  /**
+   * Expires timers that are due
+   * 
+   * @param nowNanos current time as from {@code System.nanoTime()}
+   * @param expiry handler of expired timers
+   * @return number of timers expired
+   */
+  int expire(long nowNanos, Expiry expiry) {
+    final long nowTick = (nowNanos - startNanos) / tickNanos;
+    int expired = 0;
+    while (currentTick <= nowTick) {
+      TimerSchedule timer = slots[(int) (currentTick & mask)];
+      while (timer != null) {
+        final TimerSchedule next = timer.next;
+        if (timer.isCancelled()) {
+          unlink(timer);
+        } else if (toTick(timer.deadlineNanos) <= currentTick) {
+          if (!expiry.onExpired(timer)) {
+            // back pressure; retry this tick later
+            return expired;
+          }
+          expired++;
+          unlink(timer);
+          if (timer.isPeriodic()) {
+            // fixed rate; next deadline does not drift with lateness
+            timer.deadlineNanos += timer.getPeriodNanos();
+            link(timer, currentTick + 1);
+          } else {
+            timer.expire();
+          }
+        }
+        timer = next;
+      }
+      currentTick++;
+    }
+    return expired;
+  }
+
+  /**
+   * @return number of timers in the wheel, including cancelled timers not yet unlinked
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Adds a timer to the wheel. A timer that is already due expires on the next call to
+   * {@link #expire(long, Expiry)}.
+   * 
+   * @param timer a timer to schedule
+   */
+  void schedule(TimerSchedule timer) {
+    if (!timer.isCancelled()) {
+      link(timer, currentTick);
+    }
+  }
+
+  private void link(TimerSchedule timer, long minTick) {
+    final long tick = Math.max(toTick(timer.deadlineNanos), minTick);
+    final int slot = (int) (tick & mask);
+    timer.slot = slot;
+    final TimerSchedule head = slots[slot];
+    timer.previous = null;
+    timer.next = head;
+    if (head != null) {
+      head.previous = timer;
+    }
+    slots[slot] = timer;
+    size++;
+  }
+
+  private long toTick(long nanos) {
+    // round up so that a timer never expires early
+    return (nanos - startNanos + tickNanos - 1) / tickNanos;
+  }
+
+  private void unlink(TimerSchedule timer) {
+    if (timer.previous != null) {
+      timer.previous.next = timer.next;
+    } else {
+      // head of its slot
+      slots[timer.slot] = timer.next;
+    }
+    if (timer.next != null) {
+      timer.next.previous = timer.previous;
+    }
+    timer.next = null;
+    timer.previous = null;
+    size--;
+  }
+}
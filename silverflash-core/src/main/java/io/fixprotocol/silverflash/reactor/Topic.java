@@ -34,6 +34,16 @@ public interface Topic extends Comparable<Topic> {
    */
   String[] getFields();
 
+  /**
+   * Returns a dense identifier of this Topic, unique within a process. Equal topics have the same
+   * identifier. The identifier of a released Topic may be reused; see {@link Topics#release(Topic)}.
+   * 
+   * @return a non-negative identifier, or {@link Topics#RELEASED} if this Topic was released
+   */
+  default int getId() {
+    return Topics.getId(this);
+  }
+
   /**
    * Tests whether the other Topic is a subtopic of this Topic
    * 
@@ -18,10 +18,18 @@
 package io.fixprotocol.silverflash.reactor;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Topic operators
+ * <p>
+ * Topics are interned: equal topics are the same instance, and each is assigned a dense integer
+ * identifier when it is first obtained. Thus, an EventReactor can route an event by array index.
+ * Interned topics are retained for the life of the process.
  * 
  * @author Don Mendelson
  *
@@ -32,10 +40,12 @@ public final class Topics {
     private static final String DELIMITER = "/";
 
     private final String[] fields;
+    private volatile int id;
     private final int[] parts;
 
-    public TopicImpl(String[] fields) {
+    TopicImpl(String[] fields, int id) {
       this.fields = fields;
+      this.id = id;
       parts = new int[fields.length];
       for (int i = 0; i < fields.length; i++) {
         parts[i] = fields[i].hashCode();
@@ -73,13 +83,18 @@ public final class Topics {
         return false;
       }
       TopicImpl other = (TopicImpl) obj;
-      return Arrays.equals(parts, other.parts);
+      return Arrays.equals(fields, other.fields);
     }
 
     public String[] getFields() {
       return fields;
     }
 
+    @Override
+    public int getId() {
+      return id;
+    }
+
     @Override
     public int hashCode() {
       final int prime = 31;
@@ -88,6 +103,17 @@ public final class Topics {
       return result;
     }
 
+    /**
+     * Invalidates the identifier of this Topic so that it may be reused
+     * 
+     * @return the former identifier
+     */
+    int release() {
+      final int released = id;
+      id = RELEASED;
+      return released;
+    }
+
     public boolean isSubtopic(Topic obj) {
       if (getClass() != obj.getClass()) {
         return false;
@@ -117,57 +143,119 @@ public final class Topics {
       return b.toString();
     }
 
-    public static TopicImpl parse(String string) {
-      String[] f =
-          Arrays.stream(string.split(DELIMITER)).filter(s -> s.length() > 0).toArray(String[]::new);
-      return new TopicImpl(f);
+    static String[] parse(String string) {
+      return Arrays.stream(string.split(DELIMITER)).filter(s -> s.length() > 0)
+          .toArray(String[]::new);
+    }
+
+  }
+
+  /**
+   * Identifier of a Topic that was released
+   */
+  public static final int RELEASED = -1;
+
+  private static final ConcurrentLinkedDeque<Integer> freeIds = new ConcurrentLinkedDeque<>();
+  private static final ConcurrentHashMap<List<String>, TopicImpl> interned =
+      new ConcurrentHashMap<>();
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  /**
+   * Returns the highest number of topics interned at once. Identifiers of topics are less than this
+   * number since the identifiers of released topics are reused.
+   * 
+   * @return number of topics
+   */
+  public static int getTopicCount() {
+    return nextId.get();
+  }
+
+  /**
+   * Returns the identifier of any implementation of Topic
+   * 
+   * @param topic a Topic
+   * @return dense identifier of the interned equivalent Topic
+   */
+  static int getId(Topic topic) {
+    return intern(topic.getFields()).getId();
+  }
+
+  private static TopicImpl intern(String[] fields) {
+    TopicImpl topic = interned.get(Arrays.asList(fields));
+    if (topic == null) {
+      final String[] copy = fields.clone();
+      topic = interned.computeIfAbsent(Arrays.asList(copy),
+          key -> new TopicImpl(copy, nextId()));
     }
+    return topic;
+  }
+
+  private static int nextId() {
+    final Integer id = freeIds.pollFirst();
+    return id != null ? id : nextId.getAndIncrement();
+  }
 
+  /**
+   * Releases an interned Topic when it is no longer used, so that its identifier may be reused.
+   * The released instance keeps its fields but its identifier becomes {@link #RELEASED}, so events
+   * posted to it afterwards are not dispatched. Getting a Topic with the same fields again interns
+   * a new instance.
+   * 
+   * @param topic a Topic to release
+   */
+  public static void release(Topic topic) {
+    final List<String> key = Arrays.asList(topic.getFields());
+    final TopicImpl topicImpl = interned.get(key);
+    // a stale instance must not release its successor
+    if (topicImpl != null && (topicImpl == topic || !(topic instanceof TopicImpl))
+        && interned.remove(key, topicImpl)) {
+      freeIds.addFirst(topicImpl.release());
+    }
   }
 
   /**
-   * Returns a new Topic as subtopic
+   * Returns a Topic as subtopic
    * 
    * @param topic the base Topic
    * @param field an additional qualifier
-   * @return a new Topic
+   * @return an interned Topic
    */
   public static Topic getSubtopic(Topic topic, String field) {
     String[] baseFields = topic.getFields();
     String[] fields = new String[baseFields.length + 1];
     System.arraycopy(baseFields, 0, fields, 0, baseFields.length);
     fields[baseFields.length] = field;
-    return new TopicImpl(fields);
+    return intern(fields);
   }
 
   /**
-   * Returns a new Topic with a given name
+   * Returns a Topic with a given name
    * 
    * @param name identifier
-   * @return a new Topic
+   * @return an interned Topic
    */
   public static Topic getTopic(String name) {
-    return new TopicImpl(new String[] {name});
+    return intern(new String[] {name});
   }
 
   /**
-   * Returns a new Topic formed from an ordered list of identifiers
+   * Returns a Topic formed from an ordered list of identifiers
    * 
    * @param fields an array of names
-   * @return a new Topic
+   * @return an interned Topic
    */
   public static Topic getTopic(String... fields) {
-    return new TopicImpl(fields);
+    return intern(fields);
   }
 
   /**
-   * Returns a new Topic formed from a String delimited by '/' character
+   * Returns a Topic formed from a String delimited by '/' character
    * 
    * @param s String to parse
-   * @return a new Topic
+   * @return an interned Topic
    */
   public static Topic parse(String s) {
-    return TopicImpl.parse(s);
+    return intern(TopicImpl.parse(s));
   }
 
   /**
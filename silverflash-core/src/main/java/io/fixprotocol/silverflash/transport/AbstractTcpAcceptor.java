@@ -29,6 +29,8 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 
+import io.fixprotocol.silverflash.transport.IOReactorGroup.BalancingPolicy;
+
 /**
  * A base class for TCP socket servers
  * 
@@ -36,7 +38,9 @@ import java.util.function.Function;
  */
 abstract class AbstractTcpAcceptor implements Acceptor {
   private final Executor executor = Executors.newSingleThreadExecutor();
+  private final IOReactorGroup group;
   private final SocketAddress localAddress;
+  private final BalancingPolicy policy;
   private final Selector selector;
   private ServerSocketChannel serverSocketChannel;
   private final Function<Transport, ?> transportWrapper;
@@ -59,6 +63,35 @@ abstract class AbstractTcpAcceptor implements Acceptor {
     this.selector = selector;
     this.localAddress = localAddress;
     this.transportWrapper = transportWrapper;
+    this.group = null;
+    this.policy = null;
+  }
+
+  /**
+   * Constructor for an acceptor that spreads connections over a group of IO reactors. The server
+   * socket is serviced by the first member of the group.
+   * 
+   * @param group
+   *          a running group of IO reactors
+   * @param policy
+   *          selects a member of the group for each accepted connection
+   * @param localAddress
+   *          listen address
+   * @param transportWrapper
+   *          a function to invoke when a connection is accepted
+   */
+  protected AbstractTcpAcceptor(IOReactorGroup group, BalancingPolicy policy,
+      SocketAddress localAddress, Function<Transport, ?> transportWrapper) {
+    Objects.requireNonNull(group);
+    Objects.requireNonNull(policy);
+    Objects.requireNonNull(localAddress);
+    Objects.requireNonNull(transportWrapper);
+    this.group = group;
+    this.policy = policy;
+    this.selector = group.getIOReactor(0).getSelector();
+    Objects.requireNonNull(selector, "IOReactorGroup not open");
+    this.localAddress = localAddress;
+    this.transportWrapper = transportWrapper;
   }
 
   public void close() throws IOException {
@@ -100,6 +133,20 @@ abstract class AbstractTcpAcceptor implements Acceptor {
     return selector;
   }
 
+  /**
+   * Returns the selector that services an accepted connection
+   * 
+   * @param clientChannel an accepted connection
+   * @return a selector chosen by balancing policy, or the selector of this acceptor if it does not
+   *         have a group of IO reactors
+   */
+  protected Selector getSelector(SocketChannel clientChannel) {
+    if (group == null) {
+      return selector;
+    }
+    return group.getIOReactor(policy.select(group, clientChannel)).getSelector();
+  }
+
   private void register() throws IOException {
     serverSocketChannel.configureBlocking(false);
     serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT, this);
@@ -29,18 +29,50 @@ import java.util.function.Supplier;
 /**
  * Base class for TCP transports demultiplexed by a Selector or added to a dedicated dispatcher
  * thread
+ * <p>
+ * A write never blocks. Bytes that the socket does not accept are appended to an outbound queue
+ * that is drained when the socket becomes writable, that is by the IOReactor on {@code OP_WRITE},
+ * or by the dispatcher thread. Messages are queued behind earlier ones to preserve order. A write
+ * that would exceed the high-water mark of the queue is handled according to an
+ * {@link OutboundQueueFullPolicy}. The queue is allocated on the first partial write and grows as
+ * needed up to the high-water mark, so an idle connection holds no outbound storage.
+ * <p>
+ * While corked, writes are gathered in the outbound queue without a system call, and sent together
+ * on {@link #flush()} or when they reach a coalescing threshold. A cork belongs to the thread that
+ * applied it and may be nested by that thread. Writes of other threads, such as heartbeats, are not
+ * held; they are sent after any gathered bytes, preserving order.
  * 
  * @author Don Mendelson
  *
  */
 abstract class AbstractTcpChannel implements ReactiveTransport {
 
+  /**
+   * Default maximum number of bytes held in an outbound queue
+   */
+  public static final int DEFAULT_OUTBOUND_HIGH_WATER_MARK = 1024 * 1024;
+
+  /**
+   * Default number of bytes gathered while corked that causes them to be sent
+   */
+  public static final int DEFAULT_COALESCING_THRESHOLD = 16 * 1024;
+
+  private static final int INITIAL_OUTBOUND_CAPACITY = 64 * 1024;
 
   protected Supplier<ByteBuffer> buffers;
   protected TransportConsumer consumer;
   protected Dispatcher dispatcher;
   protected Selector selector;
   protected SocketChannel socketChannel;
+  private int coalescingThreshold = DEFAULT_COALESCING_THRESHOLD;
+  // thread whose writes are gathered, and the nesting depth of its corks; guarded by outboundLock
+  private volatile Thread corkOwner;
+  private int corkDepth = 0;
+  // allocated on first partial write and released on close; in write mode
+  private ByteBuffer outbound;
+  private int outboundHighWaterMark = DEFAULT_OUTBOUND_HIGH_WATER_MARK;
+  private final Object outboundLock = new Object();
+  private OutboundQueueFullPolicy outboundQueueFullPolicy = OutboundQueueFullPolicy.FAIL;
 
   /**
    * Constructor for use with a dedicated Dispatcher
@@ -65,6 +97,9 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
       socketChannel.close();
     } catch (IOException e) {
 
+    }
+    synchronized (outboundLock) {
+      outbound = null;
     }
     if (dispatcher != null) {
       dispatcher.removeTransport(this);
@@ -74,6 +109,41 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
     }
   }
 
+  /**
+   * Gathers subsequent writes of the current thread until the matching {@link #flush()}. A cork
+   * applied while another thread holds one is ignored, so the writes of this thread are sent at
+   * once.
+   */
+  @Override
+  public void cork() {
+    synchronized (outboundLock) {
+      final Thread current = Thread.currentThread();
+      if (corkOwner == null) {
+        corkOwner = current;
+        corkDepth = 1;
+      } else if (corkOwner == current) {
+        corkDepth++;
+      }
+    }
+  }
+
+  /**
+   * Sends gathered writes. Gathering stops when the outermost cork of the current thread is
+   * flushed.
+   */
+  @Override
+  public void flush() throws IOException {
+    synchronized (outboundLock) {
+      if (corkOwner == Thread.currentThread()) {
+        if (--corkDepth > 0) {
+          return;
+        }
+        corkOwner = null;
+      }
+      sendOutbound();
+    }
+  }
+
   public void connected() {
     // Transport is connected when created
   }
@@ -100,6 +170,10 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
   }
 
   public int read() throws IOException {
+    if (selector == null && corkOwner == null) {
+      // no OP_WRITE notification with a dispatcher
+      drainOutbound();
+    }
     ByteBuffer buffer = buffers.get();
     buffer.clear();
     int bytesRead = socketChannel.read(buffer);
@@ -137,7 +211,68 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
   }
 
   public void readyToWrite() {
+    try {
+      drainOutbound();
+    } catch (IOException e) {
+      disconnected();
+    }
+  }
+
+  /**
+   * Returns the number of bytes waiting to be sent
+   * 
+   * @return size of the outbound queue
+   */
+  public int getOutboundQueueSize() {
+    synchronized (outboundLock) {
+      return outbound != null ? outbound.position() : 0;
+    }
+  }
+
+  /**
+   * Returns the storage held for the outbound queue
+   * 
+   * @return capacity in bytes, or zero if no queue is allocated
+   */
+  int getOutboundCapacity() {
+    synchronized (outboundLock) {
+      return outbound != null ? outbound.capacity() : 0;
+    }
+  }
+
+  /**
+   * Sets the number of bytes gathered while corked that causes them to be sent before
+   * {@link #flush()}
+   * 
+   * @param coalescingThreshold number of bytes. Default is {@link #DEFAULT_COALESCING_THRESHOLD}.
+   */
+  public void setCoalescingThreshold(int coalescingThreshold) {
+    synchronized (outboundLock) {
+      this.coalescingThreshold = coalescingThreshold;
+    }
+  }
 
+  /**
+   * Configures the outbound queue. Must be invoked before the first write.
+   * 
+   * @param highWaterMark maximum number of bytes queued while the peer is not consuming. A
+   *        message that would exceed it is rejected as a whole before any of it is sent. Default is
+   *        {@link #DEFAULT_OUTBOUND_HIGH_WATER_MARK}.
+   * @param policy action to take when the high-water mark would be exceeded. Default is
+   *        {@link OutboundQueueFullPolicy#FAIL}.
+   */
+  public void setOutboundQueue(int highWaterMark, OutboundQueueFullPolicy policy) {
+    Objects.requireNonNull(policy);
+    if (highWaterMark <= 0) {
+      throw new IllegalArgumentException("High-water mark must be positive");
+    }
+    synchronized (outboundLock) {
+      this.outboundHighWaterMark = highWaterMark;
+      this.outboundQueueFullPolicy = policy;
+      if (!isOutboundQueued()) {
+        outbound = null;
+      }
+    }
   }
 
   public void setReceiveBufferSize(int bufferSize) throws IOException {
@@ -149,42 +284,68 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
   }
 
   /**
-   * Keeps attempting to drain buffer until bytes written is zero due to slow consumer.
+   * Writes a message without blocking. Bytes that cannot be sent immediately are queued.
+   * 
+   * @return number of bytes sent or queued, that is the whole message
+   * @throws IOException if the outbound queue is full or an IO error occurs
    */
   public int write(ByteBuffer src) throws IOException {
     src.flip();
-    int totalBytesWritten = 0;
-    while (src.hasRemaining()) {
-      int bytesWritten = socketChannel.write(src);
-      totalBytesWritten += bytesWritten;
-      if (bytesWritten == 0) {
-        break;
+    final int length = src.remaining();
+    synchronized (outboundLock) {
+      final boolean isHeld = corkOwner == Thread.currentThread();
+      if (checkOutbound(length, isHeld)) {
+        if (!isHeld && !isOutboundQueued()) {
+          socketChannel.write(src);
+        }
+        if (src.hasRemaining()) {
+          enqueue(src, isHeld);
+        }
+        checkCoalescingThreshold();
+        return length;
       }
     }
-    return totalBytesWritten;
+    throw outboundQueueFull(length);
   }
 
+  /**
+   * Writes messages without blocking. Bytes that cannot be sent immediately are queued.
+   * 
+   * @return number of bytes sent or queued, that is all the messages
+   * @throws IOException if the outbound queue is full or an IO error occurs
+   */
   public long write(ByteBuffer[] srcs) throws IOException {
     int i = 0;
+    long length = 0;
     for (i = 0; i < srcs.length; i++) {
       if (srcs[i] == null) {
         break;
       }
       srcs[i].flip();
+      length += srcs[i].remaining();
     }
-    int bytesWritten = 0;
-    // This could block for a slow consumer - consider retries or breaking
-    // session if write() returns 0
-    while (i > 0 && srcs[i - 1].hasRemaining()) {
-      bytesWritten += socketChannel.write(srcs, 0, i);
+    synchronized (outboundLock) {
+      final boolean isHeld = corkOwner == Thread.currentThread();
+      if (checkOutbound(length, isHeld)) {
+        if (!isHeld && !isOutboundQueued()) {
+          socketChannel.write(srcs, 0, i);
+        }
+        for (int j = 0; j < i; j++) {
+          if (srcs[j].hasRemaining()) {
+            enqueue(srcs[j], isHeld);
+          }
+        }
+        checkCoalescingThreshold();
+        return length;
+      }
     }
-    return bytesWritten;
+    throw outboundQueueFull(length);
   }
 
   protected void addInterest(int ops) {
     SelectionKey key = socketChannel.keyFor(selector);
     if (key != null && key.isValid()) {
-      key.interestOps(key.readyOps() | ops);
+      key.interestOps(key.interestOps() | ops);
     }
   }
 
@@ -202,7 +363,114 @@ abstract class AbstractTcpChannel implements ReactiveTransport {
   protected void removeInterest(int ops) {
     SelectionKey key = socketChannel.keyFor(selector);
     if (key != null && key.isValid()) {
-      key.interestOps(key.readyOps() & ~ops);
+      key.interestOps(key.interestOps() & ~ops);
+    }
+  }
+
+  /**
+   * Tries to send queued bytes, making room for a message. Invoked with outboundLock held.
+   * 
+   * @param length length of a message to send
+   * @param isHeld {@code true} if the message is gathered under a cork of the writing thread
+   * @return {@code true} if the message may be sent or queued without exceeding the high-water
+   *         mark
+   */
+  private boolean checkOutbound(long length, boolean isHeld) throws IOException {
+    if (!isOutboundQueued()) {
+      return length <= outboundHighWaterMark;
+    }
+    if (!isHeld) {
+      drainOutbound();
+    }
+    return outbound.position() + length <= outboundHighWaterMark;
+  }
+
+  private void drainOutbound() throws IOException {
+    synchronized (outboundLock) {
+      if (!isOutboundQueued()) {
+        return;
+      }
+      outbound.flip();
+      try {
+        socketChannel.write(outbound);
+      } finally {
+        outbound.compact();
+      }
+      if (outbound.position() == 0) {
+        removeInterest(SelectionKey.OP_WRITE);
+      }
+    }
+  }
+
+  private void checkCoalescingThreshold() throws IOException {
+    if (corkOwner != null && isOutboundQueued() && outbound.position() >= coalescingThreshold) {
+      sendOutbound();
+    }
+  }
+
+  private void enqueue(ByteBuffer src, boolean isHeld) {
+    reserveOutbound(src.remaining());
+    final boolean wasEmpty = outbound.position() == 0;
+    outbound.put(src);
+    // bytes gathered under another thread's cork are not yet awaiting OP_WRITE
+    if (!isHeld && (wasEmpty || corkOwner != null)) {
+      awaitWritable();
+    }
+  }
+
+  /**
+   * Ensures room in the outbound queue, growing it by doubling. The high-water mark was checked
+   * before, so the queue never grows beyond it. Invoked with outboundLock held.
+   * 
+   * @param length number of bytes to append
+   */
+  private void reserveOutbound(int length) {
+    final int required = (outbound != null ? outbound.position() : 0) + length;
+    if (outbound != null && required <= outbound.capacity()) {
+      return;
+    }
+    int capacity = outbound != null ? outbound.capacity() : INITIAL_OUTBOUND_CAPACITY;
+    while (capacity < required) {
+      capacity = capacity <= outboundHighWaterMark / 2 ? capacity << 1 : outboundHighWaterMark;
+    }
+    capacity = Math.min(capacity, outboundHighWaterMark);
+    final ByteBuffer larger = ByteBuffer.allocateDirect(capacity);
+    if (outbound != null) {
+      outbound.flip();
+      larger.put(outbound);
+    }
+    outbound = larger;
+  }
+
+  private void awaitWritable() {
+    addInterest(SelectionKey.OP_WRITE);
+    if (selector != null) {
+      // the reactor may be blocked in select with the old interest set
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Sends queued bytes, leaving any remainder for OP_WRITE. Invoked with outboundLock held.
+   */
+  private void sendOutbound() throws IOException {
+    drainOutbound();
+    if (isOutboundQueued()) {
+      awaitWritable();
+    }
+  }
+
+  private boolean isOutboundQueued() {
+    return outbound != null && outbound.position() > 0;
+  }
+
+  // Invoked without outboundLock since closing notifies the consumer
+  private IOException outboundQueueFull(long length) {
+    if (outboundQueueFullPolicy == OutboundQueueFullPolicy.SUSPEND) {
+      close();
     }
+    return new IOException(String.format(
+        "Outbound queue full; message length %d, high-water mark %d", length,
+        outboundHighWaterMark));
   }
 }
@@ -28,16 +28,29 @@ import io.fixprotocol.silverflash.Service;
 import io.fixprotocol.silverflash.buffer.BufferSupplier;
 
 /**
+ * Base class for UDP transports demultiplexed by a Selector or added to a dedicated dispatcher
+ * thread
+ * <p>
+ * Each readiness event drains up to a budget of datagrams. When the BufferSupplier supports
+ * multiple uncommitted buffers, such as a ring, datagrams are stored in consecutive buffers and
+ * committed as one batch.
+ * 
  * @author Don Mendelson
  *
  */
 abstract class AbstractUdpTransport implements ReactiveTransport {
 
+  /**
+   * Default maximum number of datagrams read per readiness event
+   */
+  public static final int DEFAULT_READ_BUDGET = 16;
+
   protected BufferSupplier buffers;
   protected TransportConsumer consumer;
   protected Dispatcher dispatcher;
   protected Selector selector;
   protected DatagramChannel socketChannel;
+  private int readBudget = DEFAULT_READ_BUDGET;
 
   public AbstractUdpTransport(Selector selector) {
     Objects.requireNonNull(selector);
@@ -104,42 +117,73 @@ abstract class AbstractUdpTransport implements ReactiveTransport {
   }
 
   public int read() throws IOException {
-    try {
-    ByteBuffer buffer = buffers.get();
-    buffer.clear();
-    int bytesRead = socketChannel.read(buffer);
+    final int bytesRead = readBatch();
     if (bytesRead < 0) {
       disconnected();
       socketChannel.close();
-    } else {
-      buffer.flip();
-      consumer.accept(buffer);
     }
     return bytesRead;
-    } finally {
-      buffers.commit();
-    }
   }
 
   public void readyToRead() {
-    removeInterest(SelectionKey.OP_READ);
     try {
-      final ByteBuffer buffer = buffers.get();
-      buffer.clear();
-      int bytesRead = socketChannel.read(buffer);
-      if (bytesRead < 0) {
+      if (readBatch() < 0) {
         disconnected();
         socketChannel.close();
-      } else {
-        buffer.flip();
-        consumer.accept(buffer);
-        addInterest(SelectionKey.OP_READ);
       }
     } catch (IOException e) {
       disconnected();
+    }
+  }
+
+  /**
+   * Reads available datagrams up to the read budget
+   * 
+   * @return total number of bytes read, or -1 if the channel has reached end-of-stream
+   * @throws IOException if an IO error occurs
+   */
+  private int readBatch() throws IOException {
+    final int maxUncommitted = Math.max(1, buffers.getMaxUncommitted());
+    int uncommitted = 0;
+    int totalBytesRead = 0;
+    try {
+      for (int datagrams = 0; datagrams < readBudget; datagrams++) {
+        final ByteBuffer buffer = buffers.get();
+        uncommitted++;
+        buffer.clear();
+        final int bytesRead = socketChannel.read(buffer);
+        buffer.flip();
+        if (bytesRead <= 0) {
+          // an empty buffer is committed and ignored by its supplier
+          return bytesRead < 0 && totalBytesRead == 0 ? -1 : totalBytesRead;
+        }
+        totalBytesRead += bytesRead;
+        consumer.accept(buffer);
+        if (uncommitted == maxUncommitted) {
+          buffers.commit();
+          uncommitted = 0;
+        }
+      }
+      return totalBytesRead;
     } finally {
-      buffers.commit();
+      if (uncommitted > 0) {
+        buffers.commit();
+      }
+    }
+  }
+
+  /**
+   * Sets the maximum number of datagrams read per readiness event. A larger budget drains a burst
+   * with fewer returns to the selector, at the cost of delaying other transports of the same
+   * IOReactor.
+   * 
+   * @param readBudget number of datagrams. Default is {@link #DEFAULT_READ_BUDGET}.
+   */
+  public void setReadBudget(int readBudget) {
+    if (readBudget < 1) {
+      throw new IllegalArgumentException("Read budget must be positive");
     }
+    this.readBudget = readBudget;
   }
 
   public void readyToWrite() {
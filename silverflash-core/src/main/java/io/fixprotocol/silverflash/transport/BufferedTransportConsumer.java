@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import com.lmax.disruptor.BusySpinWaitStrategy;
 import com.lmax.disruptor.EventFactory;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 
@@ -89,22 +90,36 @@ public class BufferedTransportConsumer implements BufferSupplier, Service, Trans
   private final int ringSize = 256;
 
   private final ThreadFactory threadFactory;
+  private final WaitStrategy waitStrategy;
   
-  private final ThreadLocal<Long> uncommitted = new ThreadLocal<Long>() {
+  // first and last uncommitted sequences of a batch, or -1 if none
+  private final ThreadLocal<long[]> uncommitted = new ThreadLocal<long[]>() {
     @Override
-    protected Long initialValue() {
-      return 0L;
+    protected long[] initialValue() {
+      return new long[] {-1L, -1L};
     }
   };
 
   /**
-   * Constructor
+   * Constructor with busy spin wait strategy
    * @param threadFactory supplies threads to consume the buffer
    * @param consumer a consumer of messages
    */
   public BufferedTransportConsumer(ThreadFactory threadFactory, TransportConsumer consumer) {
+    this(threadFactory, consumer, new BusySpinWaitStrategy());
+  }
+
+  /**
+   * Constructor
+   * @param threadFactory supplies threads to consume the buffer
+   * @param consumer a consumer of messages
+   * @param waitStrategy how the consuming thread waits for messages
+   */
+  public BufferedTransportConsumer(ThreadFactory threadFactory, TransportConsumer consumer,
+      WaitStrategy waitStrategy) {
     this.threadFactory = threadFactory;
     this.consumer = consumer;
+    this.waitStrategy = waitStrategy;
   }
 
   /*
@@ -139,7 +154,11 @@ public class BufferedTransportConsumer implements BufferSupplier, Service, Trans
    */
   @Override
   public void commit() {
-    ringBuffer.publish(uncommitted.get());
+    final long[] batch = uncommitted.get();
+    if (batch[0] != -1L) {
+      ringBuffer.publish(batch[0], batch[1]);
+      batch[0] = -1L;
+    }
   }
 
   /*
@@ -180,16 +199,30 @@ public class BufferedTransportConsumer implements BufferSupplier, Service, Trans
     long sequence = ringBuffer.next();
     final BufferEvent event = ringBuffer.get(sequence);
     event.set(EventType.DATA);
-    uncommitted.set(sequence);
+    final long[] batch = uncommitted.get();
+    if (batch[0] == -1L) {
+      batch[0] = sequence;
+    }
+    batch[1] = sequence;
     return event.getBuffer();
   }
 
+  /**
+   * Buffers may be supplied in batches up to half the size of the ring
+   */
+  @Override
+  public int getMaxUncommitted() {
+    return ringSize / 2;
+  }
+
   private void onEvent(BufferEvent event, long sequence, boolean endOfBatch) throws Exception {
     switch (event.getEventType()) {
     case DATA:
       ByteBuffer buffer = event.getBuffer();
 //      buffer.flip();
-      consumer.accept(buffer);
+      if (buffer.hasRemaining()) {
+        consumer.accept(buffer);
+      }
       break;
     case CONNECTED:
       consumer.connected();
@@ -209,7 +242,7 @@ public class BufferedTransportConsumer implements BufferSupplier, Service, Trans
   public CompletableFuture<? extends Service> open() {
     if (isRunning.compareAndSet(false, true)) {
       this.disruptor = new Disruptor<>(BufferEvent.EVENT_FACTORY, ringSize, threadFactory,
-          ProducerType.SINGLE, new BusySpinWaitStrategy());
+          ProducerType.SINGLE, waitStrategy);
       this.disruptor.handleEventsWith(this::onEvent);
       this.ringBuffer = disruptor.start();
     }
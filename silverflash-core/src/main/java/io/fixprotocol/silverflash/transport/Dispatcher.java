@@ -18,30 +18,47 @@ package io.fixprotocol.silverflash.transport;
 
 import java.io.IOException;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.fixprotocol.silverflash.Service;
 
 /**
  * Dispatcher thread passes received messages to consumers from one or more transports
+ * <p>
+ * Transports are held in an array that is owned by the dispatcher thread, so polling neither
+ * copies nor locks. Transports are added and removed by commands that the dispatcher thread
+ * executes between polls. When a poll finds no work, the thread waits according to its
+ * {@link IdleStrategy}. To spread transports over several threads, use a {@link DispatcherGroup}.
  */
 public class Dispatcher implements Runnable, Service {
 
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+  private volatile long hitCount = 0;
+  private final IdleStrategy idleStrategy;
   private final AtomicBoolean isRunning = new AtomicBoolean();
+  private volatile long pollCount = 0;
   private final AtomicBoolean started = new AtomicBoolean();
-  private Thread thread = null;
-  private final CopyOnWriteArrayList<Transport> transports = new CopyOnWriteArrayList<>();
+  private volatile long startNanos = 0;
+  private volatile Thread thread = null;
   private final ThreadFactory threadFactory;
+  private final AtomicInteger transportCount = new AtomicInteger();
+  // owned by the dispatcher thread
+  private Transport[] transports = new Transport[INITIAL_CAPACITY];
+  private int size = 0;
 
   /**
    * Constructor uses a default ThreadFactory
    */
   public Dispatcher() {
-    this.threadFactory = Executors.defaultThreadFactory();
+    this(Executors.defaultThreadFactory());
   }
 
   /**
@@ -51,7 +68,23 @@ public class Dispatcher implements Runnable, Service {
    *          creates new threads on demand
    */
   public Dispatcher(ThreadFactory threadFactory) {
+    this(threadFactory, IdleStrategy.busySpin());
+  }
+
+  /**
+   * Constructor with a ThreadFactory and IdleStrategy
+   * 
+   * @param threadFactory
+   *          creates new threads on demand. An {@code AffinityThreadFactory} pins the thread to a
+   *          core.
+   * @param idleStrategy
+   *          determines how the thread waits when a poll finds no work
+   */
+  public Dispatcher(ThreadFactory threadFactory, IdleStrategy idleStrategy) {
+    Objects.requireNonNull(threadFactory);
+    Objects.requireNonNull(idleStrategy);
     this.threadFactory = threadFactory;
+    this.idleStrategy = idleStrategy;
   }
 
   /**
@@ -63,37 +96,75 @@ public class Dispatcher implements Runnable, Service {
    */
   public void addTransport(Transport transport) {
     Objects.requireNonNull(transport);
-    transports.add(transport);
-    if (isRunning.compareAndSet(false, true)) {
-      if (thread == null) {
-        thread = threadFactory.newThread(this);
-      }
-      thread.start();
-      while (!started.compareAndSet(true, true))
-        ;
-    }
+    transportCount.incrementAndGet();
+    commands.offer(() -> add(transport));
+    start();
   }
 
   public void close() {
     isRunning.compareAndSet(true, false);
-    if (thread != null) {
+    final Thread current = thread;
+    if (current != null && current != Thread.currentThread()) {
       try {
-        thread.join(1000L);
+        current.join(1000L);
         thread = null;
       } catch (InterruptedException e) {
 
       }
     }
   }
-  
+
+  /**
+   * Returns the ratio of transport polls that read data to all polls
+   * 
+   * @return hit ratio from 0 to 1
+   */
+  public double getHitRatio() {
+    final long polls = pollCount;
+    return polls > 0 ? (double) hitCount / polls : 0.0;
+  }
+
+  /**
+   * Returns the number of transport polls that read data since the dispatcher thread started
+   * 
+   * @return number of hits
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of transport polls since the dispatcher thread started
+   * 
+   * @return number of polls
+   */
+  public long getPollCount() {
+    return pollCount;
+  }
+
+  /**
+   * Returns the rate of transport polls since the dispatcher thread started
+   * 
+   * @return polls per second
+   */
+  public double getPollRate() {
+    final long elapsed = System.nanoTime() - startNanos;
+    return startNanos != 0 && elapsed > 0 ? pollCount * 1e9 / elapsed : 0.0;
+  }
+
+  /**
+   * Returns the number of transports dispatched by this Dispatcher. The count is approximate since
+   * additions and removals are applied asynchronously.
+   * 
+   * @return number of transports
+   */
+  public int getTransportCount() {
+    return transportCount.get();
+  }
+
   public CompletableFuture<Dispatcher> open() {
-    if (isRunning.compareAndSet(false, false)) {
-      CompletableFuture<Dispatcher> future = new CompletableFuture<>();
-      thread.start();
-      return future;
-    } else {
-      return CompletableFuture.completedFuture(this);
-    }
+    start();
+    return CompletableFuture.completedFuture(this);
   }
 
   /**
@@ -104,30 +175,110 @@ public class Dispatcher implements Runnable, Service {
    *          a Transport to stop dispatching
    */
   public void removeTransport(Transport transport) {
-    transports.remove(transport);
-    if (transports.isEmpty()) {
-      close();
-    }
+    commands.offer(() -> remove(transport));
   }
 
   public void run() {
+    pollCount = 0;
+    hitCount = 0;
+    startNanos = System.nanoTime();
     started.set(true);
-    while (isRunning.compareAndSet(true, true)) {
-      for (int i = 0; i < transports.size(); i++) {
-        try {
-          final Transport transport = transports.get(i);
-          if (transport.isReadyToRead()) {
-            try {
-              transport.read();
-            } catch (IOException e) {
-              removeTransport(transport);
+    final Thread self = Thread.currentThread();
+    int idleCount = 0;
+    // a thread that was replaced by a restart exits even if running was set again
+    while (isRunning.get() && thread == self) {
+      boolean isWorkDone = runCommands();
+      final Transport[] theTransports = transports;
+      final int theSize = size;
+      int hits = 0;
+      for (int i = 0; i < theSize; i++) {
+        final Transport transport = theTransports[i];
+        if (transport.isReadyToRead()) {
+          try {
+            if (transport.read() > 0) {
+              hits++;
             }
+          } catch (IOException e) {
+            removeTransport(transport);
           }
-        } catch (ArrayIndexOutOfBoundsException ex) {
-          // item removed while iterating - retry iteration
+        }
+      }
+      pollCount += theSize;
+      if (hits > 0) {
+        hitCount += hits;
+        isWorkDone = true;
+      }
+
+      if (isWorkDone) {
+        idleCount = 0;
+      } else {
+        idleStrategy.idle(idleCount);
+        if (idleCount < Integer.MAX_VALUE) {
+          idleCount++;
         }
       }
     }
     started.set(false);
   }
-}
\ No newline at end of file
+
+  private void add(Transport transport) {
+    if (size == transports.length) {
+      final Transport[] larger = new Transport[2 * transports.length];
+      System.arraycopy(transports, 0, larger, 0, size);
+      transports = larger;
+    }
+    transports[size++] = transport;
+  }
+
+  private void remove(Transport transport) {
+    for (int i = 0; i < size; i++) {
+      if (transports[i] == transport) {
+        System.arraycopy(transports, i + 1, transports, i, size - i - 1);
+        transports[--size] = null;
+        transportCount.decrementAndGet();
+        break;
+      }
+    }
+    if (size == 0 && commands.isEmpty()) {
+      // Only the dispatcher thread decides to stop. A command offered while stopping is caught by
+      // the re-check; if start() has already claimed it, that thread replaces this one.
+      isRunning.set(false);
+      if (!commands.isEmpty()) {
+        isRunning.compareAndSet(false, true);
+      }
+    }
+  }
+
+  private boolean runCommands() {
+    boolean isWorkDone = false;
+    Runnable command;
+    while (isRunning.get() && (command = commands.poll()) != null) {
+      command.run();
+      isWorkDone = true;
+    }
+    return isWorkDone;
+  }
+
+  private synchronized void start() {
+    if (isRunning.compareAndSet(false, true)) {
+      final Thread previous = thread;
+      if (previous == Thread.currentThread()) {
+        // the dispatcher thread continues its loop
+        return;
+      }
+      final Thread next = threadFactory.newThread(this);
+      thread = next;
+      if (previous != null) {
+        // a thread that stopped when its last transport was removed may still be exiting
+        try {
+          previous.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      next.start();
+      while (!started.compareAndSet(true, true))
+        ;
+    }
+  }
+}
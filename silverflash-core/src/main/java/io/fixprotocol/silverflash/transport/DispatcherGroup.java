@@ -0,0 +1,171 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.fixprotocol.silverflash.Service;
+
+/**
+ * A group of Dispatchers, each with its own thread, that shards transports
+ * <p>
+ * Threads are created by a ThreadFactory, so an {@code AffinityThreadFactory} pins each one to a
+ * core. A Transport is assigned to a member when it is constructed, by key, in turn, or to the
+ * member with the fewest transports.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class DispatcherGroup implements Service {
+
+  private final Dispatcher[] dispatchers;
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Constructor
+   *
+   * @param size number of Dispatchers
+   * @param threadFactory creates dispatcher threads
+   */
+  public DispatcherGroup(int size, ThreadFactory threadFactory) {
+    this(size, threadFactory, IdleStrategy.busySpin());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param size number of Dispatchers
+   * @param threadFactory creates dispatcher threads
+   * @param idleStrategy determines how each Dispatcher waits when a poll finds no work
+   */
+  public DispatcherGroup(int size, ThreadFactory threadFactory, IdleStrategy idleStrategy) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Group must have at least one Dispatcher");
+    }
+    Objects.requireNonNull(threadFactory);
+    Objects.requireNonNull(idleStrategy);
+    dispatchers = new Dispatcher[size];
+    for (int i = 0; i < size; i++) {
+      dispatchers[i] = new Dispatcher(threadFactory, idleStrategy);
+    }
+  }
+
+  public void close() {
+    for (Dispatcher dispatcher : dispatchers) {
+      dispatcher.close();
+    }
+  }
+
+  /**
+   * Returns a member of this group
+   *
+   * @param index index of a Dispatcher, zero based
+   * @return a Dispatcher
+   */
+  public Dispatcher getDispatcher(int index) {
+    return dispatchers[index];
+  }
+
+  /**
+   * Returns the member of this group that services a key, such as a session ID. The same key is
+   * always serviced by the same Dispatcher.
+   *
+   * @param key identifier of a session or client
+   * @return a Dispatcher
+   */
+  public Dispatcher getDispatcher(Object key) {
+    return dispatchers[(Objects.hashCode(key) & Integer.MAX_VALUE) % dispatchers.length];
+  }
+
+  /**
+   * Returns the member of this group that dispatches the fewest transports
+   *
+   * @return a Dispatcher
+   */
+  public Dispatcher getLeastLoaded() {
+    Dispatcher selected = dispatchers[0];
+    for (int i = 1; i < dispatchers.length; i++) {
+      if (dispatchers[i].getTransportCount() < selected.getTransportCount()) {
+        selected = dispatchers[i];
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Returns members of this group in turn
+   *
+   * @return a Dispatcher
+   */
+  public Dispatcher getNext() {
+    return dispatchers[(next.getAndIncrement() & Integer.MAX_VALUE) % dispatchers.length];
+  }
+
+  /**
+   * Returns the number of transport polls of all members since their threads started
+   *
+   * @return number of polls
+   */
+  public long getPollCount() {
+    long count = 0;
+    for (Dispatcher dispatcher : dispatchers) {
+      count += dispatcher.getPollCount();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the ratio of transport polls that read data to all polls of all members
+   *
+   * @return hit ratio from 0 to 1
+   */
+  public double getHitRatio() {
+    long polls = 0;
+    long hits = 0;
+    for (Dispatcher dispatcher : dispatchers) {
+      polls += dispatcher.getPollCount();
+      hits += dispatcher.getHitCount();
+    }
+    return polls > 0 ? (double) hits / polls : 0.0;
+  }
+
+  /**
+   * Starts all members of this group. A member is also started when a Transport is added to it.
+   *
+   * @return a future that completes when all dispatcher threads are running
+   */
+  public CompletableFuture<DispatcherGroup> open() {
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[dispatchers.length];
+    for (int i = 0; i < dispatchers.length; i++) {
+      futures[i] = dispatchers[i].open();
+    }
+    return CompletableFuture.allOf(futures).thenApply(v -> this);
+  }
+
+  /**
+   * Returns the number of Dispatchers in this group
+   *
+   * @return size of the group
+   */
+  public int size() {
+    return dispatchers.length;
+  }
+}
@@ -20,7 +20,10 @@ import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -30,6 +33,10 @@ import io.fixprotocol.silverflash.Service;
 
 /**
  * An IO event demultiplexor
+ * <p>
+ * How the reactor waits for IO events is determined by a {@link SelectStrategy}. By default, it
+ * polls without blocking. Ready keys are processed from a reused array rather than by iterating the
+ * selected key set, so the loop does not allocate.
  * 
  * @author Don Mendelson
  *
@@ -37,22 +44,44 @@ import io.fixprotocol.silverflash.Service;
 public class IOReactor implements Runnable, Service {
   private Thread reactorThread;
   private final AtomicBoolean running = new AtomicBoolean();
-  private Selector selector;
+  private volatile Selector selector;
   private final ThreadFactory threadFactory;
   private CompletableFuture<IOReactor> future;
   private ExceptionConsumer exceptionConsumer = System.err::println;
+  private volatile long loopCount = 0;
+  private volatile long selectNanos = 0;
+  private final SelectStrategy selectStrategy;
+  private volatile boolean selecting = false;
+  private volatile long startNanos = 0;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
 
   public IOReactor() {
     this.threadFactory = Executors.defaultThreadFactory();
+    this.selectStrategy = SelectStrategy.busySpin();
   }
 
   public IOReactor(ThreadFactory threadFactory, ExceptionConsumer exceptionConsumer) {
+    this(threadFactory, exceptionConsumer, SelectStrategy.busySpin());
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param threadFactory creates the reactor thread
+   * @param exceptionConsumer handles exceptions on the reactor thread
+   * @param selectStrategy determines how the reactor waits for IO events
+   */
+  public IOReactor(ThreadFactory threadFactory, ExceptionConsumer exceptionConsumer,
+      SelectStrategy selectStrategy) {
+    Objects.requireNonNull(selectStrategy);
     this.threadFactory = threadFactory;
     this.exceptionConsumer = exceptionConsumer;
+    this.selectStrategy = selectStrategy;
   }
 
   public void close() {
     running.compareAndSet(true, false);
+    wakeup();
     if (reactorThread != null) {
       try {
         reactorThread.join(1000L);
@@ -66,6 +95,69 @@ public class IOReactor implements Runnable, Service {
     return selector;
   }
 
+  /**
+   * Returns the number of channels registered with this IOReactor. The count is approximate since
+   * it is read from another thread and includes keys that are cancelled but not yet deregistered.
+   * 
+   * @return number of registered channels
+   */
+  public int getConnectionCount() {
+    final Selector theSelector = selector;
+    return theSelector != null ? theSelector.keys().size() : 0;
+  }
+
+  /**
+   * Runs a task on the reactor thread, waking the reactor if it is blocked in select. Registering
+   * a channel this way does not wait for a blocking {@link SelectStrategy} to time out.
+   * 
+   * @param task work to perform
+   */
+  public void execute(Runnable task) {
+    Objects.requireNonNull(task);
+    tasks.offer(task);
+    if (selecting) {
+      wakeup();
+    }
+  }
+
+  /**
+   * Returns the number of iterations of the reactor loop since it was opened
+   * 
+   * @return loop count
+   */
+  public long getLoopCount() {
+    return loopCount;
+  }
+
+  /**
+   * Returns the rate of iterations of the reactor loop since it was opened
+   * 
+   * @return iterations per second
+   */
+  public double getLoopRate() {
+    final long elapsed = System.nanoTime() - startNanos;
+    return startNanos != 0 && elapsed > 0 ? loopCount * 1e9 / elapsed : 0.0;
+  }
+
+  /**
+   * Returns the total time spent waiting in select since the reactor was opened
+   * 
+   * @return time in nanoseconds
+   */
+  public long getSelectNanos() {
+    return selectNanos;
+  }
+
+  /**
+   * Causes a blocked select to return immediately
+   */
+  public void wakeup() {
+    final Selector theSelector = selector;
+    if (theSelector != null) {
+      theSelector.wakeup();
+    }
+  }
+
   public CompletableFuture<IOReactor> open() {
     if (running.compareAndSet(false, false)) {
       future = new CompletableFuture<>();
@@ -78,42 +170,60 @@ public class IOReactor implements Runnable, Service {
   }
 
   public void run() {
-
+    SelectedKeySet selectedKeySet = null;
     try {
       selector = Selector.open();
+      selectedKeySet = SelectedKeySet.install(selector);
+      loopCount = 0;
+      selectNanos = 0;
+      startNanos = System.nanoTime();
       running.set(true);
       future.complete(this);
     } catch (IOException ex) {
       future.completeExceptionally(ex);
     }
 
+    int idleCount = 0;
     while (running.compareAndSet(true, true)) {
       try {
-        int numberUpdated = selector.selectNow();
-        Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
-
-        while (iter.hasNext()) {
-          SelectionKey selectedKey = iter.next();
-          iter.remove();
-
-          Object attachment = selectedKey.attachment();
-          if (selectedKey.isAcceptable()) {
-            ((Acceptor) attachment).readyToAccept();
-          } else if (selectedKey.isConnectable()) {
-            ((Connector) attachment).readyToConnect();
-          } else {
-            if (selectedKey.isReadable()) {
-              ((ReactiveTransport) attachment).readyToRead();
-            }
+        final boolean ranTasks = runTasks();
+        int numberUpdated;
+        final long selectStart = System.nanoTime();
+        // Flag is set before checking for tasks so that a task cannot be missed by execute()
+        selecting = true;
+        try {
+          numberUpdated =
+              tasks.isEmpty() ? selectStrategy.select(selector, idleCount) : selector.selectNow();
+        } finally {
+          selecting = false;
+        }
+        selectNanos += System.nanoTime() - selectStart;
+        loopCount++;
 
-            // Check if the key is still valid, since it might
-            // have been invalidated in the read handler
-            // (for instance, the socket might have been closed)
-            if (selectedKey.isValid() && selectedKey.isWritable()) {
-              ((ReactiveTransport) attachment).readyToWrite();
+        if (selectedKeySet != null) {
+          final SelectionKey[] keys = selectedKeySet.keys();
+          final int size = selectedKeySet.size();
+          try {
+            for (int i = 0; i < size; i++) {
+              processKey(keys[i]);
             }
+          } finally {
+            selectedKeySet.reset();
+          }
+        } else {
+          Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+          while (iter.hasNext()) {
+            SelectionKey selectedKey = iter.next();
+            iter.remove();
+            processKey(selectedKey);
           }
         }
+
+        if (numberUpdated > 0 || ranTasks) {
+          idleCount = 0;
+        } else if (idleCount < Integer.MAX_VALUE) {
+          idleCount++;
+        }
       } catch (ClosedSelectorException e) {
         exceptionConsumer.accept(e);
         running.set(false);
@@ -132,4 +242,46 @@ public class IOReactor implements Runnable, Service {
     selector = null;
   }
 
+  private void processKey(SelectionKey selectedKey) {
+    // a cancelled key may remain in the set until processed
+    if (!selectedKey.isValid()) {
+      return;
+    }
+    try {
+      Object attachment = selectedKey.attachment();
+      if (selectedKey.isAcceptable()) {
+        ((Acceptor) attachment).readyToAccept();
+      } else if (selectedKey.isConnectable()) {
+        ((Connector) attachment).readyToConnect();
+      } else {
+        if (selectedKey.isReadable()) {
+          ((ReactiveTransport) attachment).readyToRead();
+        }
+
+        // Check if the key is still valid, since it might
+        // have been invalidated in the read handler
+        // (for instance, the socket might have been closed)
+        if (selectedKey.isValid() && selectedKey.isWritable()) {
+          ((ReactiveTransport) attachment).readyToWrite();
+        }
+      }
+    } catch (Exception e) {
+      exceptionConsumer.accept(e);
+    }
+  }
+
+  private boolean runTasks() {
+    boolean ranTasks = false;
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      ranTasks = true;
+      try {
+        task.run();
+      } catch (Exception e) {
+        exceptionConsumer.accept(e);
+      }
+    }
+    return ranTasks;
+  }
+
 }
@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.Service;
+
+/**
+ * A group of IOReactors, each with its own selector thread
+ * <p>
+ * Threads are created by a ThreadFactory, so an {@code AffinityThreadFactory} pins each one to a
+ * core. An acceptor assigns each new connection to a member of the group according to a
+ * {@link BalancingPolicy}.
+ * 
+ * @author Don Mendelson
+ *
+ */
+public class IOReactorGroup implements Service {
+
+  /**
+   * Selects a member of an IOReactorGroup to service a new connection
+   */
+  @FunctionalInterface
+  public interface BalancingPolicy {
+
+    /**
+     * Assigns connections to the IOReactor that has the fewest registered channels
+     * 
+     * @return a policy
+     */
+    static BalancingPolicy leastConnections() {
+      return (group, channel) -> {
+        int selected = 0;
+        int fewest = Integer.MAX_VALUE;
+        for (int i = 0; i < group.size(); i++) {
+          final int count = group.getIOReactor(i).getConnectionCount();
+          if (count < fewest) {
+            fewest = count;
+            selected = i;
+          }
+        }
+        return selected;
+      };
+    }
+
+    /**
+     * Assigns connections to IOReactors in turn
+     * 
+     * @return a policy
+     */
+    static BalancingPolicy roundRobin() {
+      final AtomicInteger next = new AtomicInteger();
+      return (group, channel) -> (next.getAndIncrement() & Integer.MAX_VALUE) % group.size();
+    }
+
+    /**
+     * Assigns connections with the same key to the same IOReactor
+     * 
+     * @param sessionKey derives a key from a connection that identifies its session or client,
+     *        such as its remote address
+     * @return a policy
+     */
+    static BalancingPolicy bySession(Function<SocketChannel, ?> sessionKey) {
+      Objects.requireNonNull(sessionKey);
+      return (group, channel) -> group.getIndex(sessionKey.apply(channel));
+    }
+
+    /**
+     * Selects an IOReactor for a new connection
+     * 
+     * @param group group of IOReactors
+     * @param channel a new connection
+     * @return index of an IOReactor in the group
+     */
+    int select(IOReactorGroup group, SocketChannel channel);
+  }
+
+  private final IOReactor[] reactors;
+
+  /**
+   * Constructor
+   * 
+   * @param size number of IOReactors
+   * @param threadFactory creates selector threads
+   * @param exceptionConsumer handles exceptions on selector threads
+   */
+  public IOReactorGroup(int size, ThreadFactory threadFactory,
+      ExceptionConsumer exceptionConsumer) {
+    this(size, threadFactory, exceptionConsumer, SelectStrategy.busySpin());
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param size number of IOReactors
+   * @param threadFactory creates selector threads
+   * @param exceptionConsumer handles exceptions on selector threads
+   * @param selectStrategy determines how each IOReactor waits for IO events. A strategy that blocks
+   *        without a timeout delays registration of connections from other threads.
+   */
+  public IOReactorGroup(int size, ThreadFactory threadFactory,
+      ExceptionConsumer exceptionConsumer, SelectStrategy selectStrategy) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Group must have at least one IOReactor");
+    }
+    reactors = new IOReactor[size];
+    for (int i = 0; i < size; i++) {
+      reactors[i] = new IOReactor(threadFactory, exceptionConsumer, selectStrategy);
+    }
+  }
+
+  public void close() {
+    for (IOReactor reactor : reactors) {
+      reactor.close();
+    }
+  }
+
+  /**
+   * Returns a member of this group
+   * 
+   * @param index index of an IOReactor, zero based
+   * @return an IOReactor
+   */
+  public IOReactor getIOReactor(int index) {
+    return reactors[index];
+  }
+
+  /**
+   * Returns the member of this group that services a key, such as a session ID. The same key is
+   * always serviced by the same IOReactor.
+   * 
+   * @param key identifier of a session or client
+   * @return an IOReactor
+   */
+  public IOReactor getIOReactor(Object key) {
+    return reactors[getIndex(key)];
+  }
+
+  int getIndex(Object key) {
+    return (Objects.hashCode(key) & Integer.MAX_VALUE) % reactors.length;
+  }
+
+  /**
+   * Starts all members of this group
+   * 
+   * @return a future that completes when all selector threads are running
+   */
+  public CompletableFuture<IOReactorGroup> open() {
+    final CompletableFuture<?>[] futures = new CompletableFuture<?>[reactors.length];
+    for (int i = 0; i < reactors.length; i++) {
+      futures[i] = reactors[i].open();
+    }
+    return CompletableFuture.allOf(futures).thenApply(v -> this);
+  }
+
+  /**
+   * Returns the number of IOReactors in this group
+   * 
+   * @return size of the group
+   */
+  public int size() {
+    return reactors.length;
+  }
+}
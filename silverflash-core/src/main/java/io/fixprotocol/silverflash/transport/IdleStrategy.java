@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how a Dispatcher waits when a poll of its transports finds no work
+ * <p>
+ * A strategy that parks gives up its core while idle at the cost of latency to wake, including
+ * latency to add or remove a transport.
+ *
+ * @author Don Mendelson
+ *
+ */
+@FunctionalInterface
+public interface IdleStrategy {
+
+  /**
+   * Spins, then yields, then parks for exponentially increasing periods
+   *
+   * @param spinTries number of consecutive empty polls before yielding
+   * @param yieldTries number of consecutive empty polls that yield before parking
+   * @param maxParkNanos maximum time to park, in nanoseconds
+   * @return a strategy
+   */
+  static IdleStrategy backoff(int spinTries, int yieldTries, long maxParkNanos) {
+    if (maxParkNanos <= 0) {
+      throw new IllegalArgumentException("Park time must be positive");
+    }
+    final int parkAfter = spinTries + yieldTries;
+    return idleCount -> {
+      if (idleCount < spinTries) {
+        // spin
+      } else if (idleCount < parkAfter) {
+        Thread.yield();
+      } else {
+        final int shift = Math.min(idleCount - parkAfter, 30);
+        LockSupport.parkNanos(Math.min(1000L << shift, maxParkNanos));
+      }
+    };
+  }
+
+  /**
+   * Polls again immediately, so that latency is minimal at the cost of a fully used core. This is
+   * the default.
+   *
+   * @return a strategy
+   */
+  static IdleStrategy busySpin() {
+    return idleCount -> {
+    };
+  }
+
+  /**
+   * Parks for a fixed period
+   *
+   * @param parkNanos time to park, in nanoseconds
+   * @return a strategy
+   */
+  static IdleStrategy parking(long parkNanos) {
+    if (parkNanos <= 0) {
+      throw new IllegalArgumentException("Park time must be positive");
+    }
+    return idleCount -> LockSupport.parkNanos(parkNanos);
+  }
+
+  /**
+   * Yields the processor to other threads
+   *
+   * @return a strategy
+   */
+  static IdleStrategy yielding() {
+    return idleCount -> Thread.yield();
+  }
+
+  /**
+   * Waits after a poll that found no work
+   *
+   * @param idleCount number of consecutive polls that found no work, starting at zero
+   */
+  void idle(int idleCount);
+}
@@ -0,0 +1,288 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+
+/**
+ * Provides a pair of Transports for bidirectional communications between components in the same
+ * process
+ * <p>
+ * Each direction is a lock-free ring with a single writer and a single reader, outside the Java
+ * heap, so a message costs one copy and no system calls. A message is delivered in place from the
+ * ring, so the buffer passed to a consumer is valid only until it returns, and the
+ * {@link BufferSupplier} passed to {@code open()} is not used. Each call of the consumer receives
+ * exactly one message.
+ * <p>
+ * Received messages are read in one of these ways:
+ * <ul>
+ * <li>Polling by a {@link Dispatcher}, or by the application calling {@code read()}.</li>
+ * <li>Callbacks: when a write finds the reader idle, it schedules {@code readyToRead()} of the
+ * reader with an Executor, such as {@link IOReactor#execute(Runnable)}. The Executor must not run
+ * the task in the writing thread. At most one read task of a Transport is scheduled at a time, so
+ * reads never overlap even if the Executor has several threads.</li>
+ * </ul>
+ *
+ * @author Don Mendelson
+ *
+ */
+public class InProcessTransport {
+
+  private class HalfTransport implements ReactiveTransport {
+    private TransportConsumer consumer;
+    private final AtomicBoolean isOpen = new AtomicBoolean();
+    private final AtomicBoolean isReadScheduled = new AtomicBoolean();
+    private HalfTransport peer;
+    private final Runnable readTask = this::readyToRead;
+    private final OneToOneRing readRing;
+    private final ByteBuffer view;
+    private final OneToOneRing writeRing;
+
+    HalfTransport(OneToOneRing readRing, OneToOneRing writeRing) {
+      this.readRing = readRing;
+      this.writeRing = writeRing;
+      this.view = readRing.newView();
+    }
+
+    public void close() {
+      if (isOpen.compareAndSet(true, false)) {
+        readRing.close();
+        if (dispatcher != null) {
+          dispatcher.removeTransport(this);
+        }
+        consumer.disconnected();
+      }
+    }
+
+    public boolean isFifo() {
+      return true;
+    }
+
+    public boolean isMessageOriented() {
+      return true;
+    }
+
+    public boolean isOpen() {
+      return isOpen.get();
+    }
+
+    public boolean isReadyToRead() {
+      return isOpen() && readRing.isReadyToRead();
+    }
+
+    public CompletableFuture<HalfTransport> open(BufferSupplier buffers,
+        TransportConsumer consumer) {
+      Objects.requireNonNull(buffers);
+      Objects.requireNonNull(consumer);
+      if (isOpen.compareAndSet(false, true)) {
+        this.consumer = consumer;
+        if (dispatcher != null) {
+          dispatcher.addTransport(this);
+        }
+        consumer.connected();
+        // messages may have been written before this end opened
+        scheduleRead();
+      }
+      return CompletableFuture.completedFuture(this);
+    }
+
+    /**
+     * Reads messages up to a budget
+     *
+     * @return number of bytes read
+     */
+    public int read() throws IOException {
+      if (!isOpen()) {
+        return 0;
+      }
+      int bytesRead = 0;
+      for (int i = 0; i < READ_BUDGET && readRing.next(); i++) {
+        final int length = readRing.getMessageLength();
+        try {
+          if (length > 0) {
+            readRing.wrap(view);
+            consumer.accept(view);
+            bytesRead += length;
+          }
+        } finally {
+          readRing.release();
+        }
+      }
+      return bytesRead;
+    }
+
+    /**
+     * Reads until no message is available. If reading fails, this Transport is closed, and its
+     * consumer is notified that it is disconnected.
+     */
+    public void readyToRead() {
+      try {
+        do {
+          do {
+            read();
+          } while (isReadyToRead());
+          // Cleared only once the ring is drained, so that another read task cannot run
+          // concurrently. A write that raced with clearing it is caught by the re-check.
+          isReadScheduled.set(false);
+        } while (isReadyToRead() && isReadScheduled.compareAndSet(false, true));
+      } catch (IOException e) {
+        close();
+      }
+    }
+
+    public void readyToWrite() {
+
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+      checkOpen();
+      src.flip();
+      final int bytesWritten = writeRing.write(src, ringFullPolicy);
+      peer.scheduleRead();
+      return bytesWritten;
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+      checkOpen();
+      long bytesWritten = 0;
+      for (int i = 0; i < srcs.length && srcs[i] != null; i++) {
+        srcs[i].flip();
+        bytesWritten += writeRing.write(srcs[i], ringFullPolicy);
+      }
+      peer.scheduleRead();
+      return bytesWritten;
+    }
+
+    private void checkOpen() throws IOException {
+      if (!isOpen()) {
+        throw new IOException("Transport closed");
+      }
+    }
+
+    private void scheduleRead() {
+      if (executor != null && isOpen() && !isReadScheduled.get()
+          && isReadScheduled.compareAndSet(false, true)) {
+        executor.execute(readTask);
+      }
+    }
+  }
+
+  /**
+   * Default size of the ring in each direction
+   */
+  public static final int DEFAULT_CAPACITY = 0x100000;
+
+  /**
+   * Maximum number of messages delivered per read
+   */
+  public static final int READ_BUDGET = 64;
+
+  private final HalfTransport clientTransport;
+  private final Dispatcher dispatcher;
+  private final Executor executor;
+  private final RingFullPolicy ringFullPolicy;
+  private final HalfTransport serverTransport;
+
+  /**
+   * Constructor for polling by the application with default ring size
+   */
+  public InProcessTransport() {
+    this(null, null, DEFAULT_CAPACITY, RingFullPolicy.YIELD);
+  }
+
+  /**
+   * Constructor for polling by the application
+   *
+   * @param capacity size of the ring in each direction in bytes, a power of 2
+   * @param ringFullPolicy action taken by a writer when a ring is full
+   */
+  public InProcessTransport(int capacity, RingFullPolicy ringFullPolicy) {
+    this(null, null, capacity, ringFullPolicy);
+  }
+
+  /**
+   * Constructor for polling by a dispatcher with default ring size
+   *
+   * @param dispatcher thread that reads from both Transports
+   */
+  public InProcessTransport(Dispatcher dispatcher) {
+    this(Objects.requireNonNull(dispatcher), null, DEFAULT_CAPACITY, RingFullPolicy.YIELD);
+  }
+
+  /**
+   * Constructor for polling by a dispatcher
+   *
+   * @param dispatcher thread that reads from both Transports
+   * @param capacity size of the ring in each direction in bytes, a power of 2
+   * @param ringFullPolicy action taken by a writer when a ring is full
+   */
+  public InProcessTransport(Dispatcher dispatcher, int capacity, RingFullPolicy ringFullPolicy) {
+    this(Objects.requireNonNull(dispatcher), null, capacity, ringFullPolicy);
+  }
+
+  /**
+   * Constructor for callbacks with default ring size
+   *
+   * @param executor runs {@code readyToRead()} of a Transport when a message is written to it,
+   *        e.g. {@code ioReactor::execute}
+   */
+  public InProcessTransport(Executor executor) {
+    this(null, Objects.requireNonNull(executor), DEFAULT_CAPACITY, RingFullPolicy.YIELD);
+  }
+
+  /**
+   * Constructor for callbacks
+   *
+   * @param executor runs {@code readyToRead()} of a Transport when a message is written to it,
+   *        e.g. {@code ioReactor::execute}
+   * @param capacity size of the ring in each direction in bytes, a power of 2
+   * @param ringFullPolicy action taken by a writer when a ring is full
+   */
+  public InProcessTransport(Executor executor, int capacity, RingFullPolicy ringFullPolicy) {
+    this(null, Objects.requireNonNull(executor), capacity, ringFullPolicy);
+  }
+
+  private InProcessTransport(Dispatcher dispatcher, Executor executor, int capacity,
+      RingFullPolicy ringFullPolicy) {
+    Objects.requireNonNull(ringFullPolicy);
+    this.dispatcher = dispatcher;
+    this.executor = executor;
+    this.ringFullPolicy = ringFullPolicy;
+    final OneToOneRing inboundRing = new OneToOneRing(capacity);
+    final OneToOneRing outboundRing = new OneToOneRing(capacity);
+    this.clientTransport = new HalfTransport(outboundRing, inboundRing);
+    this.serverTransport = new HalfTransport(inboundRing, outboundRing);
+    clientTransport.peer = serverTransport;
+    serverTransport.peer = clientTransport;
+  }
+
+  public Transport getClientTransport() {
+    return clientTransport;
+  }
+
+  public Transport getServerTransport() {
+    return serverTransport;
+  }
+}
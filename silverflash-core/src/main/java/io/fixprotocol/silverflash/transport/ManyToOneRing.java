@@ -0,0 +1,432 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static io.fixprotocol.silverflash.transport.UnsafeAccess.UNSAFE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring of records in a memory mapped file that any number of producers, in any number of
+ * processes, write to and a single consumer reads
+ * <p>
+ * A producer waits until the consumer has freed enough space, then claims it by a compare-and-swap
+ * of the tail position, so a producer never holds a claim while it waits. Each record has a header
+ * of its length and the ID of the client that wrote it, aligned on an 8 byte boundary so that a
+ * header never wraps. On claiming, a producer writes the length with the negated client ID, which
+ * marks the record as claimed, and publishes the record by swapping in the client ID. A length of
+ * zero means that nothing is claimed, so the consumer zeroes each record as it releases it. A
+ * negative length denotes a control record without a message.
+ * <p>
+ * Since producers may be in other processes, nothing waits forever for one of them. A record that
+ * stays claimed longer than the timeout, such as one whose writer died, is abandoned by the
+ * consumer, and its writer then fails to publish it. A producer that cannot claim space within the
+ * timeout, such as when the consumer died, fails without a claim. A writer that dies between its
+ * claim and marking the record, a window of two stores, is not detected.
+ * <p>
+ * The file consists of the tail position, head position and client ID counter, each on its own
+ * cache line, followed by the data area, whose size must be a power of 2. A new file is zero
+ * filled by the file system, so creation does not touch its pages.
+ *
+ * @author Don Mendelson
+ *
+ */
+class ManyToOneRing {
+
+  /**
+   * Control record announcing a new client
+   */
+  static final int CONNECT = -1;
+  /**
+   * Control record announcing that a client has left
+   */
+  static final int DISCONNECT = -2;
+  /**
+   * Type of a record that carries a message
+   */
+  static final int MESSAGE = 0;
+  /**
+   * Type of a record that its writer claimed but did not publish within the timeout
+   */
+  static final int ABANDONED = -3;
+
+  /**
+   * Default time that a producer waits for space, and that the consumer waits for a claimed
+   * record to be published
+   */
+  static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  static final Path DEFAULT_BASE_PATH = Paths.get(System.getProperty("user.home"), "session",
+      "transport");
+
+  private static final int CLIENT_COUNTER_OFFSET = 128;
+  private static final int DATA_OFFSET = 256;
+  private static final int HEAD_OFFSET = 64;
+  private static final int MAX_CAPACITY = 0x40000000;
+  private static final int RECORD_ALIGNMENT = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  private static final int TAIL_OFFSET = 0;
+
+  private static long getRecordLength(int frameLength) {
+    return (frameLength + RECORD_ALIGNMENT - 1) & ~(RECORD_ALIGNMENT - 1);
+  }
+
+  private final long baseAddress;
+  // keeps the mapping reachable while this ring is in use
+  private final MappedByteBuffer bb;
+  private final long capacity;
+  // consumer state; only the consumer reads records
+  private long head;
+  private boolean isPending = false;
+  private final RandomAccessFile memoryMappedFile;
+  private final long offsetMask;
+  private long pendingSince;
+  private int recordClientId;
+  private long recordLength;
+  private int recordType;
+  private int messageLength;
+  private final long timeoutNanos;
+
+  /**
+   * Maps a ring
+   *
+   * @param file file that holds the ring
+   * @param capacity size of the data area in bytes, a power of 2 no greater than 2^30. If
+   *        {@code create} is {@code false}, the capacity is taken from the existing file and this
+   *        parameter is ignored.
+   * @param create {@code true} to create the file, discarding any existing file, or {@code false}
+   *        to attach to an existing ring
+   * @throws IOException if the file cannot be mapped, or if it does not exist or has an invalid
+   *         size when attaching
+   */
+  ManyToOneRing(File file, int capacity, boolean create) throws IOException {
+    this(file, capacity, create, DEFAULT_TIMEOUT_NANOS);
+  }
+
+  /**
+   * Maps a ring with a timeout
+   *
+   * @param file file that holds the ring
+   * @param capacity size of the data area in bytes; see
+   *        {@link #ManyToOneRing(File, int, boolean)}
+   * @param create {@code true} to create the file, or {@code false} to attach to an existing ring
+   * @param timeoutNanos time that a producer waits for space, and that the consumer waits for a
+   *        claimed record to be published
+   * @throws IOException if the file cannot be mapped, or if it does not exist or has an invalid
+   *         size when attaching
+   */
+  ManyToOneRing(File file, int capacity, boolean create, long timeoutNanos) throws IOException {
+    this.timeoutNanos = timeoutNanos;
+    final long fileSize;
+    if (create) {
+      if (capacity < RECORD_ALIGNMENT || capacity > MAX_CAPACITY
+          || Integer.bitCount(capacity) != 1) {
+        throw new IllegalArgumentException("Capacity must be a power of 2 no greater than 2^30");
+      }
+      fileSize = DATA_OFFSET + capacity;
+    } else {
+      if (!file.exists() || !isValidFileSize(file.length())) {
+        throw new IOException("No shared memory ring at " + file);
+      }
+      fileSize = file.length();
+    }
+    this.memoryMappedFile = new RandomAccessFile(file, "rw");
+    if (create) {
+      // truncating and extending zero fills without writing pages
+      memoryMappedFile.setLength(0);
+      memoryMappedFile.setLength(fileSize);
+    }
+    this.capacity = fileSize - DATA_OFFSET;
+    this.offsetMask = this.capacity - 1;
+    this.bb = memoryMappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    bb.order(ByteOrder.nativeOrder());
+    this.baseAddress = UnsafeAccess.getAddress(bb);
+    this.head = UNSAFE.getLongVolatile(null, baseAddress + HEAD_OFFSET);
+  }
+
+  private static boolean isValidFileSize(long fileSize) {
+    final long capacity = fileSize - DATA_OFFSET;
+    return capacity >= RECORD_ALIGNMENT && capacity <= MAX_CAPACITY
+        && Long.bitCount(capacity) == 1;
+  }
+
+  void close() throws IOException {
+    memoryMappedFile.close();
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return ID of the client that wrote the current record
+   */
+  int getClientId() {
+    return recordClientId;
+  }
+
+  /**
+   * @return length of the message in the current record
+   */
+  int getMessageLength() {
+    return messageLength;
+  }
+
+  /**
+   * @return {@link #MESSAGE}, {@link #CONNECT}, {@link #DISCONNECT} or {@link #ABANDONED}
+   */
+  int getType() {
+    return recordType;
+  }
+
+  boolean isOpen() {
+    return memoryMappedFile.getChannel().isOpen();
+  }
+
+  /**
+   * @return {@code true} if a record is claimed or published at the head of the ring
+   */
+  boolean isReadyToRead() {
+    return UNSAFE.getIntVolatile(null, getAddress(head)) != 0;
+  }
+
+  /**
+   * Advances to the next record, if it is published or abandoned. Consumer only.
+   *
+   * @return {@code true} if a record is available
+   */
+  boolean next() {
+    final long headerAddress = getAddress(head);
+    final int frameLength = UNSAFE.getIntVolatile(null, headerAddress);
+    if (frameLength == 0) {
+      return false;
+    }
+    final long clientIdAddress = headerAddress + Integer.BYTES;
+    final int clientId = UNSAFE.getIntVolatile(null, clientIdAddress);
+    recordLength = frameLength < 0 ? RECORD_HEADER_LENGTH : getRecordLength(frameLength);
+    if (clientId < 0) {
+      // claimed but not yet published
+      final long now = System.nanoTime();
+      if (!isPending) {
+        isPending = true;
+        pendingSince = now;
+        return false;
+      }
+      // if the swap fails, the writer has just published the record
+      if (now - pendingSince < timeoutNanos
+          || !UNSAFE.compareAndSwapInt(null, clientIdAddress, clientId, 0)) {
+        return false;
+      }
+      isPending = false;
+      recordClientId = -clientId;
+      recordType = ABANDONED;
+      messageLength = 0;
+      return true;
+    }
+    isPending = false;
+    recordClientId = clientId;
+    if (frameLength < 0) {
+      recordType = frameLength;
+      messageLength = 0;
+    } else {
+      recordType = MESSAGE;
+      messageLength = frameLength - RECORD_HEADER_LENGTH;
+    }
+    return true;
+  }
+
+  /**
+   * Assigns a client ID that is unique for the life of the ring file
+   *
+   * @return a positive client ID
+   */
+  int nextClientId() {
+    return UNSAFE.getAndAddInt(null, baseAddress + CLIENT_COUNTER_OFFSET, 1) + 1;
+  }
+
+  /**
+   * Copies the message of the current record. Consumer only.
+   *
+   * @param dest buffer to populate; its position is advanced by the message length
+   * @throws IOException if the message is too large for the buffer
+   */
+  void read(ByteBuffer dest) throws IOException {
+    if (messageLength > dest.remaining()) {
+      throw new IOException("Message too large for buffer; length=" + messageLength);
+    }
+    final int destOffset = dest.position();
+    int bytesRead = 0;
+    long position = head + RECORD_HEADER_LENGTH;
+    while (bytesRead < messageLength) {
+      final long bufferOffset = getAddress(position);
+      final int bytesToRead =
+          (int) Math.min(getSpaceRemaining(position), messageLength - bytesRead);
+      UnsafeAccess.copyTo(bufferOffset, dest, destOffset + bytesRead, bytesToRead);
+      bytesRead += bytesToRead;
+      position += bytesToRead;
+    }
+    dest.position(destOffset + messageLength);
+  }
+
+  /**
+   * Releases the current record to producers. Consumer only.
+   */
+  void release() {
+    long position = head;
+    long remaining = recordLength;
+    while (remaining > 0) {
+      final long bytesToZero = Math.min(getSpaceRemaining(position), remaining);
+      UNSAFE.setMemory(getAddress(position), bytesToZero, (byte) 0);
+      position += bytesToZero;
+      remaining -= bytesToZero;
+    }
+    head += recordLength;
+    UNSAFE.putOrderedLong(null, baseAddress + HEAD_OFFSET, head);
+  }
+
+  /**
+   * Writes a control record
+   *
+   * @param clientId ID of the writing client
+   * @param type {@link #CONNECT} or {@link #DISCONNECT}
+   * @param ringFullPolicy action taken while the ring is full
+   * @throws IOException if the ring is full and the policy is to fail or the timeout expires, or
+   *         the ring is closed
+   */
+  void writeControl(int clientId, int type, RingFullPolicy ringFullPolicy) throws IOException {
+    final long position = claim(RECORD_HEADER_LENGTH, type, clientId, ringFullPolicy);
+    publish(position, clientId);
+  }
+
+  /**
+   * Writes a message
+   *
+   * @param clientId ID of the writing client
+   * @param src buffer holding a message between its position and limit; its position is advanced
+   *        to its limit
+   * @param ringFullPolicy action taken while the ring is full
+   * @return number of bytes written
+   * @throws IOException if the message is too large for the ring, the ring is full and the policy
+   *         is to fail or the timeout expires, the ring is closed, or the record was abandoned
+   */
+  int write(int clientId, ByteBuffer src, RingFullPolicy ringFullPolicy) throws IOException {
+    final int length = src.remaining();
+    final int frameLength = RECORD_HEADER_LENGTH + length;
+    final long position = claim(frameLength, frameLength, clientId, ringFullPolicy);
+    final int srcOffset = src.position();
+    int bytesWritten = 0;
+    long dataPosition = position + RECORD_HEADER_LENGTH;
+    while (bytesWritten < length) {
+      final long bufferOffset = getAddress(dataPosition);
+      final int bytesToWrite =
+          (int) Math.min(getSpaceRemaining(dataPosition), length - bytesWritten);
+      UnsafeAccess.copyFrom(src, srcOffset + bytesWritten, bufferOffset, bytesToWrite);
+      bytesWritten += bytesToWrite;
+      dataPosition += bytesToWrite;
+    }
+    src.position(srcOffset + length);
+    publish(position, clientId);
+    return length;
+  }
+
+  /**
+   * Claims space for a record and marks it as claimed
+   *
+   * @param frameLength length of the record including its header
+   * @param header length or control type to write to the header
+   * @param clientId ID of the writing client
+   * @param ringFullPolicy action taken while the ring is full
+   * @return position of the record
+   * @throws IOException if the record is too large for the ring, the ring is full and the policy
+   *         is to fail or the timeout expires, or the ring is closed
+   */
+  long claim(int frameLength, int header, int clientId, RingFullPolicy ringFullPolicy)
+      throws IOException {
+    final long length = getRecordLength(frameLength);
+    if (length > capacity) {
+      throw new IOException("Message too large for shared memory ring; length=" + frameLength);
+    }
+    boolean isWaiting = false;
+    long waitStart = 0;
+    while (true) {
+      final long position = UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET);
+      if (position + length - capacity <= UNSAFE.getLongVolatile(null,
+          baseAddress + HEAD_OFFSET)) {
+        if (UNSAFE.compareAndSwapLong(null, baseAddress + TAIL_OFFSET, position,
+            position + length)) {
+          final long headerAddress = getAddress(position);
+          UNSAFE.putInt(headerAddress + Integer.BYTES, -clientId);
+          UNSAFE.putOrderedInt(null, headerAddress, header);
+          return position;
+        }
+        // another producer claimed the space first
+        continue;
+      }
+      if (ringFullPolicy == RingFullPolicy.FAIL) {
+        throw new IOException("Shared memory ring full");
+      }
+      if (!isOpen()) {
+        throw new IOException("Shared memory ring closed");
+      }
+      final long now = System.nanoTime();
+      if (!isWaiting) {
+        isWaiting = true;
+        waitStart = now;
+      } else if (now - waitStart > timeoutNanos) {
+        throw new IOException("Shared memory ring full; consumer not reading");
+      }
+      switch (ringFullPolicy) {
+        case PARK:
+          LockSupport.parkNanos(1L);
+          break;
+        case YIELD:
+          Thread.yield();
+          break;
+        case FAIL:
+        case SPIN:
+        default:
+          break;
+      }
+    }
+  }
+
+  private void publish(long position, int clientId) throws IOException {
+    final long clientIdAddress = getAddress(position) + Integer.BYTES;
+    if (!UNSAFE.compareAndSwapInt(null, clientIdAddress, -clientId, clientId)) {
+      throw new IOException("Shared memory record abandoned by consumer");
+    }
+  }
+
+  private long getAddress(long position) {
+    return baseAddress + DATA_OFFSET + (position & offsetMask);
+  }
+
+  private long getSpaceRemaining(long position) {
+    return capacity - (position & offsetMask);
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static io.fixprotocol.silverflash.transport.UnsafeAccess.UNSAFE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring of records outside the Java heap with a single producer and a single consumer in the same
+ * process
+ * <p>
+ * Each record has a length prefix and is aligned on an 8 byte boundary. A record never wraps; if
+ * it does not fit before the end of the ring, the remaining space is filled with padding and the
+ * record starts at the beginning. Therefore, a message can be read in place. The producer
+ * publishes records by an ordered write of the tail position, and the consumer frees space by an
+ * ordered write of the head position. Each side caches the position of the other, so it touches
+ * the other's cache line only when it appears to have caught up.
+ *
+ * @author Don Mendelson
+ *
+ */
+class OneToOneRing {
+
+  private static final int DATA_OFFSET = 128;
+  private static final int HEAD_OFFSET = 64;
+  private static final int MAX_CAPACITY = 0x40000000;
+  private static final int PADDING = -1;
+  private static final int RECORD_ALIGNMENT = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  private static final int TAIL_OFFSET = 0;
+
+  private static long getRecordLength(int messageLength) {
+    return (RECORD_HEADER_LENGTH + messageLength + RECORD_ALIGNMENT - 1)
+        & ~(RECORD_ALIGNMENT - 1);
+  }
+
+  private final long baseAddress;
+  // keeps the memory reachable while this ring is in use
+  private final ByteBuffer bb;
+  private final long capacity;
+  // consumer state
+  private long cachedTail;
+  private long head;
+  private volatile boolean isOpen = true;
+  private int messageLength;
+  private final long offsetMask;
+  // producer state
+  private long cachedHead;
+  private long tail;
+
+  /**
+   * Allocates a ring
+   *
+   * @param capacity size in bytes, a power of 2 no greater than 2^30
+   */
+  OneToOneRing(int capacity) {
+    if (capacity < RECORD_ALIGNMENT || capacity > MAX_CAPACITY
+        || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of 2 no greater than 2^30");
+    }
+    this.capacity = capacity;
+    this.offsetMask = capacity - 1;
+    this.bb = ByteBuffer.allocateDirect(DATA_OFFSET + capacity).order(ByteOrder.nativeOrder());
+    this.baseAddress = UnsafeAccess.getAddress(bb);
+  }
+
+  /**
+   * Tells the producer that the consumer is gone, so that it does not wait for space
+   */
+  void close() {
+    isOpen = false;
+  }
+
+  long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return length of the message in the current record
+   */
+  int getMessageLength() {
+    return messageLength;
+  }
+
+  boolean isOpen() {
+    return isOpen;
+  }
+
+  /**
+   * @return {@code true} if a record is published at the head of the ring
+   */
+  boolean isReadyToRead() {
+    return head < cachedTail || head < UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET);
+  }
+
+  /**
+   * Advances to the next record, if it is published. Consumer only.
+   *
+   * @return {@code true} if a record is available
+   */
+  boolean next() {
+    for (;;) {
+      if (head >= cachedTail) {
+        cachedTail = UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET);
+        if (head >= cachedTail) {
+          return false;
+        }
+      }
+      final int length = UNSAFE.getInt(getAddress(head));
+      if (length != PADDING) {
+        messageLength = length;
+        return true;
+      }
+      head += getSpaceRemaining(head);
+      UNSAFE.putOrderedLong(null, baseAddress + HEAD_OFFSET, head);
+    }
+  }
+
+  /**
+   * Points a buffer at the message of the current record, so that it can be read in place. The
+   * buffer is valid until the record is released. Consumer only.
+   *
+   * @param view a direct buffer that does not own memory
+   */
+  void wrap(ByteBuffer view) {
+    UnsafeAccess.wrap(view, getAddress(head) + RECORD_HEADER_LENGTH, messageLength);
+  }
+
+  /**
+   * @return a buffer suitable for {@link #wrap(ByteBuffer)}
+   */
+  ByteBuffer newView() {
+    return bb.duplicate().order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Releases the current record to the producer. Consumer only.
+   */
+  void release() {
+    head += getRecordLength(messageLength);
+    UNSAFE.putOrderedLong(null, baseAddress + HEAD_OFFSET, head);
+  }
+
+  /**
+   * Writes a message. Producer only.
+   *
+   * @param src buffer holding a message between its position and limit; its position is advanced
+   *        to its limit
+   * @param ringFullPolicy action taken while the ring is full
+   * @return number of bytes written
+   * @throws IOException if the message is too large for the ring, the ring is full and the policy
+   *         is to fail, or the consumer has closed the ring
+   */
+  int write(ByteBuffer src, RingFullPolicy ringFullPolicy) throws IOException {
+    final int length = src.remaining();
+    final long recordLength = getRecordLength(length);
+    if (recordLength > capacity) {
+      throw new IOException("Message too large for memory ring; length=" + length);
+    }
+    final long spaceRemaining = getSpaceRemaining(tail);
+    if (recordLength > spaceRemaining) {
+      // Padding is published on its own, so that the consumer can skip it and free the start of
+      // the ring. Together with the record it may exceed the capacity.
+      claim(spaceRemaining, ringFullPolicy);
+      UNSAFE.putInt(getAddress(tail), PADDING);
+      tail += spaceRemaining;
+      UNSAFE.putOrderedLong(null, baseAddress + TAIL_OFFSET, tail);
+    }
+    claim(recordLength, ringFullPolicy);
+    final long address = getAddress(tail);
+    UnsafeAccess.copyFrom(src, src.position(), address + RECORD_HEADER_LENGTH, length);
+    src.position(src.limit());
+    UNSAFE.putInt(address, length);
+    tail += recordLength;
+    // publish
+    UNSAFE.putOrderedLong(null, baseAddress + TAIL_OFFSET, tail);
+    return length;
+  }
+
+  private void claim(long length, RingFullPolicy ringFullPolicy) throws IOException {
+    final long writeLimit = tail + length;
+    if (writeLimit - capacity <= cachedHead) {
+      return;
+    }
+    while (writeLimit - capacity > (cachedHead =
+        UNSAFE.getLongVolatile(null, baseAddress + HEAD_OFFSET))) {
+      if (!isOpen()) {
+        throw new IOException("Memory ring closed");
+      }
+      switch (ringFullPolicy) {
+        case FAIL:
+          throw new IOException("Memory ring full");
+        case PARK:
+          LockSupport.parkNanos(1L);
+          break;
+        case YIELD:
+          Thread.yield();
+          break;
+        case SPIN:
+        default:
+          break;
+      }
+    }
+  }
+
+  private long getAddress(long position) {
+    return baseAddress + DATA_OFFSET + (position & offsetMask);
+  }
+
+  private long getSpaceRemaining(long position) {
+    return capacity - (position & offsetMask);
+  }
+}
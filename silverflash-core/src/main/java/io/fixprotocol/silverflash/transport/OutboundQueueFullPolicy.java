@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+/**
+ * Action taken by a transport when its outbound queue would exceed its high-water mark because a
+ * peer is not consuming messages
+ * 
+ * @author Don Mendelson
+ *
+ */
+public enum OutboundQueueFullPolicy {
+  /**
+   * Fail the write with an {@code IOException}; the transport remains open
+   */
+  FAIL,
+  /**
+   * Close the transport, which suspends its session, and fail the write with an
+   * {@code IOException}
+   */
+  SUSPEND
+}
@@ -0,0 +1,42 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.transport;
+
+/**
+ * Action taken by a producer when a memory ring has insufficient free space for a message
+ * 
+ * @author Don Mendelson
+ *
+ */
+public enum RingFullPolicy {
+  /**
+   * Fail the write with an {@code IOException}
+   */
+  FAIL,
+  /**
+   * Park the producer thread briefly between checks
+   */
+  PARK,
+  /**
+   * Busy spin until the consumer frees space; lowest latency but consumes a core
+   */
+  SPIN,
+  /**
+   * Yield the producer thread between checks
+   */
+  YIELD
+}
@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+
+/**
+ * Determines how an IOReactor waits for IO events
+ * <p>
+ * A strategy that blocks in {@code select()} gives up its core while idle, but a channel
+ * registration from another thread waits until the select returns. Transports register their
+ * channels from the thread that opens them, so the strategies provided here never block without a
+ * timeout, which bounds that wait. A custom strategy must do the same.
+ * 
+ * @author Don Mendelson
+ *
+ */
+@FunctionalInterface
+public interface SelectStrategy {
+
+  /**
+   * Blocks in {@code select()} until a channel is ready, the selector is woken up or a timeout
+   * expires
+   * 
+   * @param timeoutMillis maximum time to block, in milliseconds. It is also the longest time that
+   *        opening a transport waits to register its channel.
+   * @return a strategy
+   */
+  static SelectStrategy blocking(long timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    return (selector, idleCount) -> selector.select(timeoutMillis);
+  }
+
+  /**
+   * Polls without blocking, so that latency is minimal at the cost of a fully used core. This is
+   * the default.
+   * 
+   * @return a strategy
+   */
+  static SelectStrategy busySpin() {
+    return (selector, idleCount) -> selector.selectNow();
+  }
+
+  /**
+   * Polls without blocking for a number of idle iterations, then blocks with a timeout
+   * 
+   * @param spinTries number of consecutive empty polls before blocking
+   * @param timeoutMillis maximum time to block, in milliseconds
+   * @return a strategy
+   */
+  static SelectStrategy spinThenSelect(int spinTries, long timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("Timeout must be positive");
+    }
+    return (selector, idleCount) -> idleCount < spinTries ? selector.selectNow()
+        : selector.select(timeoutMillis);
+  }
+
+  /**
+   * Waits for IO events
+   * 
+   * @param selector selector of an IOReactor
+   * @param idleCount number of consecutive iterations of the IOReactor that found no work
+   * @return number of keys updated
+   * @throws IOException if the selector fails
+   */
+  int select(Selector selector, int idleCount) throws IOException;
+}
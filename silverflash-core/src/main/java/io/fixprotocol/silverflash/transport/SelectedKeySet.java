@@ -0,0 +1,138 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array-backed set of selected keys that replaces the hash set of a Selector
+ * <p>
+ * The set is reused for every select so that processing ready keys does not allocate. Membership
+ * is not checked: a selector only adds a key once per select, after the previous keys have been
+ * processed and the set reset.
+ * 
+ * @author Don Mendelson
+ *
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+  /**
+   * Replaces the selected key set of a Selector
+   * 
+   * @param selector a newly opened selector
+   * @return the installed set, or {@code null} if the Selector implementation does not permit it.
+   *         Then {@link Selector#selectedKeys()} must be used.
+   */
+  static SelectedKeySet install(Selector selector) {
+    try {
+      final Class<?> implClass =
+          Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+      if (!implClass.isInstance(selector)) {
+        return null;
+      }
+      final Field selectedKeysField = implClass.getDeclaredField("selectedKeys");
+      final Field publicSelectedKeysField = implClass.getDeclaredField("publicSelectedKeys");
+      selectedKeysField.setAccessible(true);
+      publicSelectedKeysField.setAccessible(true);
+      final SelectedKeySet keySet = new SelectedKeySet();
+      selectedKeysField.set(selector, keySet);
+      publicSelectedKeysField.set(selector, keySet);
+      return keySet;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private SelectionKey[] keys = new SelectionKey[64];
+  private int size = 0;
+
+  @Override
+  public boolean add(SelectionKey key) {
+    if (key == null) {
+      return false;
+    }
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size << 1);
+    }
+    keys[size++] = key;
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    reset();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return false;
+  }
+
+  @Override
+  public Iterator<SelectionKey> iterator() {
+    return new Iterator<SelectionKey>() {
+      private int index = 0;
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public SelectionKey next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        return keys[index++];
+      }
+    };
+  }
+
+  /**
+   * Returns the backing array. Valid entries are indexed from zero to {@link #size()}.
+   * 
+   * @return array of selected keys
+   */
+  SelectionKey[] keys() {
+    return keys;
+  }
+
+  /**
+   * Empties this set, releasing references to keys
+   */
+  void reset() {
+    Arrays.fill(keys, 0, size, null);
+    size = 0;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return false;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
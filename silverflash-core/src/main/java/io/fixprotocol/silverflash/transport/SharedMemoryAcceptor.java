@@ -0,0 +1,439 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.fixprotocol.silverflash.ExceptionConsumer;
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+
+/**
+ * Gateway end of shared memory transports for many clients on the same host
+ * <p>
+ * All {@link SharedMemoryClientTransport} instances of a gateway write to its single request ring,
+ * which is read by one Dispatcher thread, so memory and polling cost do not grow with the number
+ * of clients. When a client connects, a Transport for it is created and passed to the transport
+ * wrapper, which typically opens it with the consumer of a new session. Requests of the client
+ * are delivered to that consumer on the dispatcher thread, and writes to the Transport go to the
+ * client's own response ring. A response ring may be written by more than one thread.
+ * <p>
+ * A client that exits without closing its transport is detected when a request that it claimed is
+ * not published in time, or when a write to its response ring cannot claim space in time. Either
+ * way, its Transport is closed.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class SharedMemoryAcceptor implements Acceptor {
+
+  /**
+   * Server end of a connection with one client
+   */
+  private class ClientTransport implements Transport {
+    private Supplier<ByteBuffer> buffers;
+    private final int clientId;
+    private TransportConsumer consumer;
+    private final AtomicBoolean isOpen = new AtomicBoolean();
+    private final ManyToOneRing responseRing;
+
+    ClientTransport(int clientId, ManyToOneRing responseRing) {
+      this.clientId = clientId;
+      this.responseRing = responseRing;
+    }
+
+    public void close() {
+      if (isOpen.compareAndSet(true, false)) {
+        try {
+          responseRing.close();
+        } catch (IOException e) {
+
+        }
+        consumer.disconnected();
+      }
+    }
+
+    public boolean isFifo() {
+      return true;
+    }
+
+    public boolean isMessageOriented() {
+      return true;
+    }
+
+    public boolean isOpen() {
+      return isOpen.get();
+    }
+
+    /**
+     * Requests are read by the acceptor
+     */
+    public boolean isReadyToRead() {
+      return false;
+    }
+
+    public CompletableFuture<ClientTransport> open(BufferSupplier buffers,
+        TransportConsumer consumer) {
+      if (isOpen.compareAndSet(false, true)) {
+        Objects.requireNonNull(buffers);
+        Objects.requireNonNull(consumer);
+        this.buffers = buffers;
+        this.consumer = consumer;
+        consumer.connected();
+      }
+      return CompletableFuture.completedFuture(this);
+    }
+
+    public int read() throws IOException {
+      return 0;
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+      if (!isOpen()) {
+        throw new IOException("Transport closed");
+      }
+      src.flip();
+      try {
+        return responseRing.write(clientId, src, ringFullPolicy);
+      } catch (IOException e) {
+        // the client is gone or not reading
+        close();
+        throw e;
+      }
+    }
+
+    void deliver(ManyToOneRing ring) throws IOException {
+      if (!isOpen()) {
+        return;
+      }
+      final ByteBuffer buffer = buffers.get();
+      buffer.clear();
+      ring.read(buffer);
+      buffer.flip();
+      consumer.accept(buffer);
+    }
+  }
+
+  /**
+   * Polls the request ring on the dispatcher thread
+   */
+  private class RequestReader implements Transport {
+
+    public void close() {
+      SharedMemoryAcceptor.this.close();
+    }
+
+    public boolean isFifo() {
+      return true;
+    }
+
+    public boolean isMessageOriented() {
+      return true;
+    }
+
+    public boolean isOpen() {
+      return isOpen.get();
+    }
+
+    public boolean isReadyToRead() {
+      return isOpen() && requestRing.isReadyToRead();
+    }
+
+    public CompletableFuture<? extends Transport> open(BufferSupplier buffers,
+        TransportConsumer consumer) {
+      return CompletableFuture.completedFuture(this);
+    }
+
+    public int read() throws IOException {
+      return readRequests();
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+      throw new IOException("Transport not writable");
+    }
+  }
+
+  /**
+   * Default size of the request ring
+   */
+  public static final int DEFAULT_REQUEST_CAPACITY = 0x4000000;
+
+  /**
+   * Maximum number of requests read per poll
+   */
+  public static final int READ_BUDGET = 64;
+
+  public static final String REQUEST_FILENAME_PATTERN = "shmemgateway%d.dat";
+  public static final String RESPONSE_FILENAME_PATTERN = "shmemgateway%d-%d.dat";
+
+  static String getRequestFileName(int gatewayNumber) {
+    return String.format(REQUEST_FILENAME_PATTERN, gatewayNumber);
+  }
+
+  static String getResponseFileName(int gatewayNumber, int clientId) {
+    return String.format(RESPONSE_FILENAME_PATTERN, gatewayNumber, clientId);
+  }
+
+  private int acceptingClientId;
+  private File baseFile;
+  // open addressing by client ID with linear probing; accessed only by the dispatcher thread
+  private ClientTransport[] clients = new ClientTransport[64];
+  private int clientCount = 0;
+  private final Dispatcher dispatcher;
+  private ExceptionConsumer exceptionConsumer = System.err::println;
+  private final int gatewayNumber;
+  private final AtomicBoolean isOpen = new AtomicBoolean();
+  private final RequestReader reader = new RequestReader();
+  private final int requestCapacity;
+  private ManyToOneRing requestRing;
+  private final RingFullPolicy ringFullPolicy;
+  private final Function<Transport, ?> transportWrapper;
+
+  /**
+   * Constructor with default request ring size
+   *
+   * @param gatewayNumber identifies this gateway on this host
+   * @param dispatcher thread that reads requests of all clients
+   * @param transportWrapper a function to invoke when a client connects
+   */
+  public SharedMemoryAcceptor(int gatewayNumber, Dispatcher dispatcher,
+      Function<Transport, ?> transportWrapper) {
+    this(gatewayNumber, dispatcher, transportWrapper, RingFullPolicy.YIELD,
+        DEFAULT_REQUEST_CAPACITY);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param gatewayNumber identifies this gateway on this host
+   * @param dispatcher thread that reads requests of all clients
+   * @param transportWrapper a function to invoke when a client connects
+   * @param ringFullPolicy action taken by a writer when a response ring is full
+   * @param requestCapacity size of the request ring in bytes, a power of 2
+   */
+  public SharedMemoryAcceptor(int gatewayNumber, Dispatcher dispatcher,
+      Function<Transport, ?> transportWrapper, RingFullPolicy ringFullPolicy,
+      int requestCapacity) {
+    Objects.requireNonNull(dispatcher);
+    Objects.requireNonNull(transportWrapper);
+    Objects.requireNonNull(ringFullPolicy);
+    this.gatewayNumber = gatewayNumber;
+    this.dispatcher = dispatcher;
+    this.transportWrapper = transportWrapper;
+    this.ringFullPolicy = ringFullPolicy;
+    this.requestCapacity = requestCapacity;
+  }
+
+  public void close() {
+    if (isOpen.compareAndSet(true, false)) {
+      dispatcher.removeTransport(reader);
+      for (int i = 0; i < clients.length; i++) {
+        if (clients[i] != null) {
+          clients[i].close();
+          clients[i] = null;
+        }
+      }
+      clientCount = 0;
+      try {
+        requestRing.close();
+      } catch (IOException e) {
+
+      }
+    }
+  }
+
+  /**
+   * Sets a handler for failures of individual clients, which do not stop the gateway. By default,
+   * failures are printed to the standard error stream.
+   *
+   * @param exceptionConsumer handler of exceptions
+   */
+  public void setExceptionConsumer(ExceptionConsumer exceptionConsumer) {
+    Objects.requireNonNull(exceptionConsumer);
+    this.exceptionConsumer = exceptionConsumer;
+  }
+
+  @SuppressWarnings("unchecked")
+  public Function<Transport, ?> getTransportWrapper() {
+    return transportWrapper;
+  }
+
+  public CompletableFuture<SharedMemoryAcceptor> open() {
+    CompletableFuture<SharedMemoryAcceptor> future = new CompletableFuture<>();
+    if (isOpen.compareAndSet(false, true)) {
+      try {
+        baseFile = Files.createDirectories(ManyToOneRing.DEFAULT_BASE_PATH, new FileAttribute<?>[0])
+            .toFile();
+        requestRing = new ManyToOneRing(new File(baseFile, getRequestFileName(gatewayNumber)),
+            requestCapacity, true);
+        dispatcher.addTransport(reader);
+        future.complete(this);
+      } catch (IOException | IllegalArgumentException ex) {
+        isOpen.set(false);
+        future.completeExceptionally(ex);
+      }
+    } else {
+      future.complete(this);
+    }
+    return future;
+  }
+
+  /**
+   * Creates a Transport for the client that is connecting and passes it to the transport wrapper
+   */
+  public Transport readyToAccept() throws IOException {
+    final int clientId = acceptingClientId;
+    final ManyToOneRing responseRing =
+        new ManyToOneRing(new File(baseFile, getResponseFileName(gatewayNumber, clientId)), 0,
+            false);
+    final ClientTransport transport = new ClientTransport(clientId, responseRing);
+    putClient(transport);
+    transportWrapper.apply(transport);
+    return transport;
+  }
+
+  private ClientTransport getClient(int clientId) {
+    final int mask = clients.length - 1;
+    for (int i = clientId & mask; clients[i] != null; i = (i + 1) & mask) {
+      if (clients[i].clientId == clientId) {
+        return clients[i];
+      }
+    }
+    return null;
+  }
+
+  private void putClient(ClientTransport transport) {
+    if (2 * (clientCount + 1) > clients.length) {
+      // clients closed by a failed write are dropped
+      final ClientTransport[] previous = clients;
+      clients = new ClientTransport[previous.length];
+      clientCount = 0;
+      for (ClientTransport client : previous) {
+        if (client != null && client.isOpen()) {
+          insertClient(client);
+        }
+      }
+      if (2 * (clientCount + 1) > clients.length) {
+        final ClientTransport[] live = clients;
+        clients = new ClientTransport[2 * live.length];
+        clientCount = 0;
+        for (ClientTransport client : live) {
+          if (client != null) {
+            insertClient(client);
+          }
+        }
+      }
+    }
+    insertClient(transport);
+  }
+
+  private void insertClient(ClientTransport transport) {
+    final int mask = clients.length - 1;
+    int i = transport.clientId & mask;
+    while (clients[i] != null) {
+      i = (i + 1) & mask;
+    }
+    clients[i] = transport;
+    clientCount++;
+  }
+
+  private ClientTransport removeClient(int clientId) {
+    final int mask = clients.length - 1;
+    int i = clientId & mask;
+    while (clients[i] != null && clients[i].clientId != clientId) {
+      i = (i + 1) & mask;
+    }
+    final ClientTransport removed = clients[i];
+    if (removed == null) {
+      return null;
+    }
+    clients[i] = null;
+    clientCount--;
+    // shift back entries that probed past the vacated slot
+    for (int j = (i + 1) & mask; clients[j] != null; j = (j + 1) & mask) {
+      final int home = clients[j].clientId & mask;
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        clients[i] = clients[j];
+        clients[j] = null;
+        i = j;
+      }
+    }
+    return removed;
+  }
+
+  private void closeClient(int clientId) {
+    final ClientTransport client = removeClient(clientId);
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  private int readRequests() throws IOException {
+    int bytesRead = 0;
+    for (int i = 0; i < READ_BUDGET && requestRing.next(); i++) {
+      final int clientId = requestRing.getClientId();
+      try {
+        switch (requestRing.getType()) {
+          case ManyToOneRing.MESSAGE:
+            final ClientTransport client = getClient(clientId);
+            if (client != null) {
+              try {
+                client.deliver(requestRing);
+                bytesRead += requestRing.getMessageLength();
+              } catch (IOException e) {
+                // a faulty client must not stop the gateway
+                closeClient(clientId);
+                exceptionConsumer.accept(e);
+              }
+            }
+            break;
+          case ManyToOneRing.CONNECT:
+            acceptingClientId = clientId;
+            try {
+              readyToAccept();
+            } catch (IOException e) {
+              exceptionConsumer.accept(e);
+            }
+            break;
+          case ManyToOneRing.DISCONNECT:
+            closeClient(clientId);
+            break;
+          case ManyToOneRing.ABANDONED:
+            // the client died while writing
+            closeClient(clientId);
+            exceptionConsumer.accept(
+                new IOException("Shared memory client abandoned a request; clientId=" + clientId));
+            break;
+          default:
+            break;
+        }
+      } finally {
+        requestRing.release();
+      }
+    }
+    return bytesRead;
+  }
+}
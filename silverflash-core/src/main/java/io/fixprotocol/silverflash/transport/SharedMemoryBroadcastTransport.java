@@ -0,0 +1,411 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static io.fixprotocol.silverflash.transport.UnsafeAccess.UNSAFE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+
+/**
+ * Broadcasts from one publisher to any number of subscribers on the same host through a shared
+ * memory ring
+ * <p>
+ * The publisher writes each record once, regardless of the number of subscribers, and never waits
+ * for them. Each subscriber keeps its own cursor, so subscribers are independent of each other.
+ * Before overwriting space, the publisher announces its intended tail position. After copying a
+ * record, a subscriber checks that announcement, and if the record may have been overwritten, the
+ * subscriber has been lapped. It then discards the record, counts the loss and skips to the
+ * latest record, so it never delivers corrupt data. Likewise, a subscriber discards and counts a
+ * record that is too large for its buffer, and keeps reading. A subscriber starts at the publisher's current
+ * tail when it opens. A publisher that restarts continues from the tail of an existing ring of the
+ * same size.
+ * <p>
+ * Like a datagram, each write, including a gathering write, is delivered as one read. This suits
+ * a {@code FixpSession} in a multicast role, whose sequenced flow detects the gap left by a lapped
+ * subscriber. Writes of the publisher must not be concurrent.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class SharedMemoryBroadcastTransport implements Transport {
+
+  /**
+   * Default size of the ring
+   */
+  public static final int DEFAULT_CAPACITY = 0x1000000;
+  public static final String FILENAME_PATTERN = "shmembroadcast%d.dat";
+
+  private static final int DATA_OFFSET = 128;
+  private static final int LATEST_OFFSET = 16;
+  private static final int MAX_CAPACITY = 0x40000000;
+  private static final int RECORD_ALIGNMENT = 8;
+  private static final int RECORD_HEADER_LENGTH = 8;
+  private static final int TAIL_INTENT_OFFSET = 0;
+  private static final int TAIL_OFFSET = 8;
+
+  private static long getRecordLength(int messageLength) {
+    return (RECORD_HEADER_LENGTH + messageLength + RECORD_ALIGNMENT - 1)
+        & ~(RECORD_ALIGNMENT - 1);
+  }
+
+  private long baseAddress;
+  // keeps the mapping reachable while this transport is open
+  private MappedByteBuffer bb;
+  private Supplier<ByteBuffer> buffers;
+  private long bytesLost = 0;
+  private long capacity;
+  private TransportConsumer consumer;
+  // next position to read by a subscriber, or to write by the publisher
+  private long cursor;
+  private final Dispatcher dispatcher;
+  private long discardedCount = 0;
+  private final AtomicBoolean isOpen = new AtomicBoolean();
+  private final boolean isPublisher;
+  private long lappedCount = 0;
+  private RandomAccessFile memoryMappedFile;
+  private long offsetMask;
+  private final int requestedCapacity;
+  private final int transportNumber;
+
+  /**
+   * Constructor with default ring size
+   *
+   * @param isPublisher {@code true} to play the publisher role, which creates the ring, or
+   *        {@code false} to subscribe to an existing ring
+   * @param transportNumber identifies a ring on this host
+   * @param dispatcher thread that reads for a subscriber, or {@code null} if the application polls
+   *        {@link #read()} itself. Not used by a publisher.
+   */
+  public SharedMemoryBroadcastTransport(boolean isPublisher, int transportNumber,
+      Dispatcher dispatcher) {
+    this(isPublisher, transportNumber, dispatcher, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param isPublisher {@code true} to play the publisher role, which creates the ring, or
+   *        {@code false} to subscribe to an existing ring
+   * @param transportNumber identifies a ring on this host
+   * @param dispatcher thread that reads for a subscriber, or {@code null} if the application polls
+   *        {@link #read()} itself. Not used by a publisher.
+   * @param capacity size of the ring in bytes, a power of 2 no greater than 2^30. A subscriber
+   *        takes the size of the existing ring.
+   */
+  public SharedMemoryBroadcastTransport(boolean isPublisher, int transportNumber,
+      Dispatcher dispatcher, int capacity) {
+    if (isPublisher && (capacity < RECORD_ALIGNMENT || capacity > MAX_CAPACITY
+        || Integer.bitCount(capacity) != 1)) {
+      throw new IllegalArgumentException("Capacity must be a power of 2 no greater than 2^30");
+    }
+    this.isPublisher = isPublisher;
+    this.transportNumber = transportNumber;
+    this.dispatcher = dispatcher;
+    this.requestedCapacity = capacity;
+  }
+
+  public void close() {
+    if (isOpen.compareAndSet(true, false)) {
+      if (dispatcher != null && !isPublisher) {
+        dispatcher.removeTransport(this);
+      }
+      try {
+        memoryMappedFile.close();
+      } catch (IOException e) {
+
+      }
+      consumer.disconnected();
+    }
+  }
+
+  /**
+   * Returns the number of bytes that a subscriber skipped because it was lapped by the publisher
+   * or a record was too large for its buffer
+   *
+   * @return number of bytes lost
+   */
+  public long getBytesLost() {
+    return bytesLost;
+  }
+
+  /**
+   * Returns the number of records that a subscriber discarded because they were too large for its
+   * buffer
+   *
+   * @return number of discarded records
+   */
+  public long getDiscardedCount() {
+    return discardedCount;
+  }
+
+  /**
+   * Returns the number of times that a subscriber was lapped by the publisher
+   *
+   * @return number of losses
+   */
+  public long getLappedCount() {
+    return lappedCount;
+  }
+
+  /**
+   * @return the transportNumber
+   */
+  public int getTransportNumber() {
+    return transportNumber;
+  }
+
+  public boolean isFifo() {
+    return true;
+  }
+
+  /**
+   * A read may deliver several framed messages written together
+   */
+  public boolean isMessageOriented() {
+    return false;
+  }
+
+  public boolean isOpen() {
+    return isOpen.get();
+  }
+
+  public boolean isReadyToRead() {
+    return isOpen() && !isPublisher
+        && UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET) > cursor;
+  }
+
+  public CompletableFuture<SharedMemoryBroadcastTransport> open(BufferSupplier buffers,
+      TransportConsumer consumer) {
+    CompletableFuture<SharedMemoryBroadcastTransport> future = new CompletableFuture<>();
+
+    if (isOpen.compareAndSet(false, true)) {
+      Objects.requireNonNull(buffers);
+      Objects.requireNonNull(consumer);
+      this.buffers = buffers;
+      this.consumer = consumer;
+
+      try {
+        doOpen();
+        if (dispatcher != null && !isPublisher) {
+          dispatcher.addTransport(this);
+        }
+        consumer.connected();
+        future.complete(this);
+      } catch (IOException ex) {
+        isOpen.set(false);
+        future.completeExceptionally(ex);
+      }
+    } else {
+      future.complete(this);
+    }
+    return future;
+  }
+
+  /**
+   * Reads one record for a subscriber
+   *
+   * @return number of bytes read, or zero if no record was available, the subscriber was lapped or
+   *         the record was discarded because it is too large for the buffer
+   */
+  public int read() throws IOException {
+    if (isPublisher) {
+      return 0;
+    }
+    final long tail = UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET);
+    if (cursor >= tail) {
+      return 0;
+    }
+    if (tail - cursor > capacity) {
+      lapped();
+      return 0;
+    }
+    final ByteBuffer buffer = buffers.get();
+    buffer.clear();
+    final int length = UNSAFE.getInt(getAddress(cursor));
+    if (length < 0 || length > buffer.remaining()) {
+      if (isLapped()) {
+        lapped();
+      } else {
+        discarded(length, tail);
+      }
+      return 0;
+    }
+
+    int bytesRead = 0;
+    long position = cursor + RECORD_HEADER_LENGTH;
+    while (bytesRead < length) {
+      final int bytesToRead = (int) Math.min(getSpaceRemaining(position), length - bytesRead);
+      UnsafeAccess.copyTo(getAddress(position), buffer, bytesRead, bytesToRead);
+      bytesRead += bytesToRead;
+      position += bytesToRead;
+    }
+    // the copy must complete before the publisher's intent is checked
+    UNSAFE.loadFence();
+    if (isLapped()) {
+      lapped();
+      return 0;
+    }
+    cursor += getRecordLength(length);
+    buffer.limit(length);
+    consumer.accept(buffer);
+    return length;
+  }
+
+  public int write(ByteBuffer src) throws IOException {
+    src.flip();
+    final int length = src.remaining();
+    final long position = beginRecord(length);
+    writeBuffer(src, position + RECORD_HEADER_LENGTH);
+    endRecord(position, length);
+    return length;
+  }
+
+  /**
+   * Writes buffers as a single record
+   */
+  public long write(ByteBuffer[] srcs) throws IOException {
+    int length = 0;
+    int count = 0;
+    for (; count < srcs.length && srcs[count] != null; count++) {
+      srcs[count].flip();
+      length += srcs[count].remaining();
+    }
+    final long position = beginRecord(length);
+    long dataPosition = position + RECORD_HEADER_LENGTH;
+    for (int i = 0; i < count; i++) {
+      dataPosition += writeBuffer(srcs[i], dataPosition);
+    }
+    endRecord(position, length);
+    return length;
+  }
+
+  private long beginRecord(int length) throws IOException {
+    if (!isPublisher) {
+      throw new IOException("Transport not writable by a subscriber");
+    }
+    final long recordLength = getRecordLength(length);
+    if (recordLength > capacity) {
+      throw new IOException("Message too large for shared memory ring; length=" + length);
+    }
+    final long position = cursor;
+    UNSAFE.putOrderedLong(null, baseAddress + TAIL_INTENT_OFFSET, position + recordLength);
+    // subscribers must see the intent before any overwritten data
+    UNSAFE.storeFence();
+    return position;
+  }
+
+  private void doOpen() throws IOException {
+    final File baseFile =
+        Files.createDirectories(ManyToOneRing.DEFAULT_BASE_PATH, new FileAttribute<?>[0]).toFile();
+    final File file = new File(baseFile, String.format(FILENAME_PATTERN, transportNumber));
+    final long fileSize;
+    if (isPublisher) {
+      fileSize = DATA_OFFSET + requestedCapacity;
+    } else {
+      fileSize = file.length();
+      final long existingCapacity = fileSize - DATA_OFFSET;
+      if (!file.exists() || existingCapacity < RECORD_ALIGNMENT
+          || Long.bitCount(existingCapacity) != 1) {
+        throw new IOException("No shared memory broadcast ring at " + file);
+      }
+    }
+    // a ring of the same size is reused, so its subscribers continue across a publisher restart
+    final boolean isReused = isPublisher && file.length() == fileSize;
+    memoryMappedFile = new RandomAccessFile(file, "rw");
+    if (isPublisher && !isReused) {
+      // truncating and extending zero fills without writing pages
+      memoryMappedFile.setLength(0);
+      memoryMappedFile.setLength(fileSize);
+    }
+    capacity = fileSize - DATA_OFFSET;
+    offsetMask = capacity - 1;
+    bb = memoryMappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    bb.order(ByteOrder.nativeOrder());
+    baseAddress = UnsafeAccess.getAddress(bb);
+    cursor = UNSAFE.getLongVolatile(null, baseAddress + TAIL_OFFSET);
+  }
+
+  private void endRecord(long position, int length) {
+    UNSAFE.putInt(getAddress(position), length);
+    cursor = position + getRecordLength(length);
+    UNSAFE.putOrderedLong(null, baseAddress + LATEST_OFFSET, position);
+    // publish
+    UNSAFE.putOrderedLong(null, baseAddress + TAIL_OFFSET, cursor);
+  }
+
+  private long getAddress(long position) {
+    return baseAddress + DATA_OFFSET + (position & offsetMask);
+  }
+
+  private void discarded(int length, long tail) {
+    discardedCount++;
+    final long recordLength = getRecordLength(Math.max(length, 0));
+    if (length < 0 || recordLength > tail - cursor) {
+      // a corrupt length is not a record boundary; resynchronize at the tail
+      bytesLost += tail - cursor;
+      cursor = tail;
+    } else {
+      bytesLost += recordLength;
+      cursor += recordLength;
+    }
+  }
+
+  private long getSpaceRemaining(long position) {
+    return capacity - (position & offsetMask);
+  }
+
+  private boolean isLapped() {
+    return UNSAFE.getLongVolatile(null, baseAddress + TAIL_INTENT_OFFSET) - cursor > capacity;
+  }
+
+  private void lapped() {
+    final long latest = UNSAFE.getLongVolatile(null, baseAddress + LATEST_OFFSET);
+    lappedCount++;
+    bytesLost += latest - cursor;
+    cursor = latest;
+  }
+
+  private int writeBuffer(ByteBuffer src, long dataPosition) {
+    final int length = src.remaining();
+    final int srcOffset = src.position();
+    int bytesWritten = 0;
+    long position = dataPosition;
+    while (bytesWritten < length) {
+      final int bytesToWrite = (int) Math.min(getSpaceRemaining(position), length - bytesWritten);
+      UnsafeAccess.copyFrom(src, srcOffset + bytesWritten, getAddress(position), bytesToWrite);
+      bytesWritten += bytesToWrite;
+      position += bytesToWrite;
+    }
+    src.position(srcOffset + length);
+    return length;
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+
+/**
+ * Client end of a shared memory gateway served by a {@link SharedMemoryAcceptor}
+ * <p>
+ * Any number of clients, in any number of processes on the same host, write to the one request
+ * ring of a gateway, so the gateway needs a single thread to serve them all. Each client reads
+ * responses from its own ring, which it creates when it opens. A client is assigned an ID that is
+ * unique for the life of the gateway.
+ * <p>
+ * Each read delivers exactly one message.
+ *
+ * @author Don Mendelson
+ *
+ */
+public class SharedMemoryClientTransport implements Transport {
+
+  /**
+   * Default size of the response ring of each client
+   */
+  public static final int DEFAULT_RESPONSE_CAPACITY = 0x1000000;
+
+  private Supplier<ByteBuffer> buffers;
+  private int clientId;
+  private TransportConsumer consumer;
+  private final Dispatcher dispatcher;
+  private final int gatewayNumber;
+  private final AtomicBoolean isOpen = new AtomicBoolean();
+  private ManyToOneRing requestRing;
+  private final int responseCapacity;
+  private File responseFile;
+  private ManyToOneRing responseRing;
+  private final RingFullPolicy ringFullPolicy;
+
+  /**
+   * Constructor with default response ring size
+   *
+   * @param gatewayNumber identifies a gateway on this host
+   * @param dispatcher thread that reads responses
+   */
+  public SharedMemoryClientTransport(int gatewayNumber, Dispatcher dispatcher) {
+    this(gatewayNumber, dispatcher, RingFullPolicy.YIELD, DEFAULT_RESPONSE_CAPACITY);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param gatewayNumber identifies a gateway on this host
+   * @param dispatcher thread that reads responses
+   * @param ringFullPolicy action taken by a writer when the request ring is full
+   * @param responseCapacity size of the response ring in bytes, a power of 2
+   */
+  public SharedMemoryClientTransport(int gatewayNumber, Dispatcher dispatcher,
+      RingFullPolicy ringFullPolicy, int responseCapacity) {
+    Objects.requireNonNull(dispatcher);
+    Objects.requireNonNull(ringFullPolicy);
+    this.gatewayNumber = gatewayNumber;
+    this.dispatcher = dispatcher;
+    this.ringFullPolicy = ringFullPolicy;
+    this.responseCapacity = responseCapacity;
+  }
+
+  public void close() {
+    if (isOpen.compareAndSet(true, false)) {
+      dispatcher.removeTransport(this);
+      try {
+        requestRing.writeControl(clientId, ManyToOneRing.DISCONNECT, ringFullPolicy);
+      } catch (IOException e) {
+
+      }
+      try {
+        requestRing.close();
+        responseRing.close();
+      } catch (IOException e) {
+
+      }
+      responseFile.delete();
+      consumer.disconnected();
+    }
+  }
+
+  /**
+   * @return ID assigned to this client by the gateway, or zero if not open
+   */
+  public int getClientId() {
+    return clientId;
+  }
+
+  public boolean isFifo() {
+    return true;
+  }
+
+  public boolean isMessageOriented() {
+    return true;
+  }
+
+  public boolean isOpen() {
+    return isOpen.get();
+  }
+
+  public boolean isReadyToRead() {
+    return isOpen() && responseRing.isReadyToRead();
+  }
+
+  public CompletableFuture<SharedMemoryClientTransport> open(BufferSupplier buffers,
+      TransportConsumer consumer) {
+    CompletableFuture<SharedMemoryClientTransport> future = new CompletableFuture<>();
+
+    if (isOpen.compareAndSet(false, true)) {
+      Objects.requireNonNull(buffers);
+      Objects.requireNonNull(consumer);
+      this.buffers = buffers;
+      this.consumer = consumer;
+
+      try {
+        final File baseFile = ManyToOneRing.DEFAULT_BASE_PATH.toFile();
+        requestRing = new ManyToOneRing(
+            new File(baseFile, SharedMemoryAcceptor.getRequestFileName(gatewayNumber)), 0, false);
+        clientId = requestRing.nextClientId();
+        responseFile = new File(baseFile,
+            SharedMemoryAcceptor.getResponseFileName(gatewayNumber, clientId));
+        responseRing = new ManyToOneRing(responseFile, responseCapacity, true);
+        // the response ring exists before the gateway learns of this client
+        requestRing.writeControl(clientId, ManyToOneRing.CONNECT, ringFullPolicy);
+        dispatcher.addTransport(this);
+        consumer.connected();
+        future.complete(this);
+      } catch (IOException | IllegalArgumentException ex) {
+        isOpen.set(false);
+        future.completeExceptionally(ex);
+      }
+    } else {
+      future.complete(this);
+    }
+    return future;
+  }
+
+  public int read() throws IOException {
+    if (!responseRing.next()) {
+      return 0;
+    }
+    if (responseRing.getType() != ManyToOneRing.MESSAGE) {
+      // a response abandoned by its writer
+      responseRing.release();
+      return 0;
+    }
+    final ByteBuffer buffer = buffers.get();
+    buffer.clear();
+    try {
+      responseRing.read(buffer);
+    } finally {
+      responseRing.release();
+    }
+    buffer.flip();
+    final int bytesRead = buffer.remaining();
+    consumer.accept(buffer);
+    return bytesRead;
+  }
+
+  public int write(ByteBuffer src) throws IOException {
+    src.flip();
+    return requestRing.write(clientId, src, ringFullPolicy);
+  }
+}
@@ -17,10 +17,11 @@
 
 package io.fixprotocol.silverflash.transport;
 
+import static io.fixprotocol.silverflash.transport.UnsafeAccess.UNSAFE;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
@@ -33,11 +34,11 @@ import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
 import io.fixprotocol.silverflash.buffer.BufferSupplier;
-import sun.misc.Unsafe;
-import sun.nio.ch.DirectBuffer;
+import io.fixprotocol.silverflash.util.platform.MemoryManager;
 
 /**
  * Provides a pair of shared memory pipes for bidirectional in-memory communications
@@ -45,76 +46,259 @@ import sun.nio.ch.DirectBuffer;
  * This implementation is only guaranteed to be safe for a single reader and writer in each
  * direction. Pipes are selected by "client" and "server" roles--each one end of this Transport must
  * play one role and the other end must play the opposite role
- * 
+ * <p>
+ * Each message is written to a pipe as a record with a length prefix, aligned on an 8 byte
+ * boundary, so each read delivers exactly one message. A writer never overtakes the reader; when a
+ * pipe is full, the writer acts according to its {@link RingFullPolicy}.
+ * <p>
+ * The pipes are files in a configurable directory. For lowest latency, place them on a memory file
+ * system such as {@code /dev/shm}, or on a hugetlbfs mount to reduce TLB misses; in the latter case,
+ * set the page size to the huge page size, since hugetlbfs files must be sized in whole pages. Each
+ * pipe is sized independently. A new file is zero filled by the file system without touching its
+ * pages, so pages are faulted in on first use unless pre-faulting is requested at open. Pipes may
+ * also be locked into RAM.
  * 
  * @author Don Mendelson
  *
  */
 public class SharedMemoryTransport implements Transport {
 
+  /**
+   * Collects attributes to build a SharedMemoryTransport
+   *
+   * @param <T> type of the object to build
+   * @param <B> type of the builder
+   */
+  @SuppressWarnings("unchecked")
+  public static class Builder<T extends SharedMemoryTransport, B extends Builder<T, B>> {
+    private Path directory = DEFAULT_BASE_PATH;
+    private Dispatcher dispatcher;
+    private int inboundCapacity = DEFAULT_CAPACITY;
+    private boolean isClient;
+    private boolean isLocked = false;
+    private boolean isPreFaulted = false;
+    private int outboundCapacity = DEFAULT_CAPACITY;
+    private int pageSize = UNSAFE.pageSize();
+    private boolean reset = false;
+    private RingFullPolicy ringFullPolicy = RingFullPolicy.YIELD;
+    private int transportNumber = -1;
+
+    /**
+     * Build a new SharedMemoryTransport object
+     *
+     * @return a new transport
+     */
+    public T build() {
+      return (T) new SharedMemoryTransport(this);
+    }
+
+    /**
+     * Set the role of this end of the Transport
+     *
+     * @param isClient {@code true} to play the client role, {@code false} for server role. Default
+     *        is server.
+     * @return this Builder
+     */
+    public B withClient(boolean isClient) {
+      this.isClient = isClient;
+      return (B) this;
+    }
+
+    /**
+     * Set the directory of the pipe files. Default is {@code $HOME/session/transport}.
+     *
+     * @param directory path to a directory, e.g. {@code /dev/shm} or a hugetlbfs mount
+     * @return this Builder
+     */
+    public B withDirectory(Path directory) {
+      this.directory = directory;
+      return (B) this;
+    }
+
+    /**
+     * Set the thread that reads from the Transport. Default is a new Dispatcher.
+     *
+     * @param dispatcher a dispatcher thread
+     * @return this Builder
+     */
+    public B withDispatcher(Dispatcher dispatcher) {
+      this.dispatcher = dispatcher;
+      return (B) this;
+    }
+
+    /**
+     * Set the size of the pipe that this end reads, if it creates the pipe. An existing pipe keeps
+     * its size.
+     *
+     * @param inboundCapacity size in bytes, a power of 2 no greater than 2^30. Default is 2^30.
+     * @return this Builder
+     */
+    public B withInboundCapacity(int inboundCapacity) {
+      this.inboundCapacity = inboundCapacity;
+      return (B) this;
+    }
+
+    /**
+     * Lock the pipes into RAM at open
+     *
+     * @param isLocked {@code true} to lock pages. Default is {@code false}.
+     * @return this Builder
+     */
+    public B withLock(boolean isLocked) {
+      this.isLocked = isLocked;
+      return (B) this;
+    }
+
+    /**
+     * Set the size of the pipe that this end writes, if it creates the pipe. An existing pipe keeps
+     * its size.
+     *
+     * @param outboundCapacity size in bytes, a power of 2 no greater than 2^30. Default is 2^30.
+     * @return this Builder
+     */
+    public B withOutboundCapacity(int outboundCapacity) {
+      this.outboundCapacity = outboundCapacity;
+      return (B) this;
+    }
+
+    /**
+     * Set the page size of the file system that holds the pipes. A new file is rounded up to a
+     * whole number of pages.
+     *
+     * @param pageSize size in bytes, e.g. 2 MB for a hugetlbfs mount. Default is the page size of
+     *        the operating system.
+     * @return this Builder
+     */
+    public B withPageSize(int pageSize) {
+      this.pageSize = pageSize;
+      return (B) this;
+    }
+
+    /**
+     * Touch every page of the pipes at open, so that messages do not incur page faults
+     *
+     * @param isPreFaulted {@code true} to fault in pages at open. Default is {@code false}.
+     * @return this Builder
+     */
+    public B withPreFault(boolean isPreFaulted) {
+      this.isPreFaulted = isPreFaulted;
+      return (B) this;
+    }
+
+    /**
+     * Discard any messages remaining in existing pipes
+     *
+     * @param reset {@code true} to reset pipes at open. Default is {@code false}.
+     * @return this Builder
+     */
+    public B withReset(boolean reset) {
+      this.reset = reset;
+      return (B) this;
+    }
+
+    /**
+     * Set the action taken by a writer when a pipe is full. Default is
+     * {@link RingFullPolicy#YIELD}.
+     *
+     * @param ringFullPolicy a policy
+     * @return this Builder
+     */
+    public B withRingFullPolicy(RingFullPolicy ringFullPolicy) {
+      this.ringFullPolicy = ringFullPolicy;
+      return (B) this;
+    }
+
+    /**
+     * Set the number that identifies a pair of pipes shared by client and server. Default is a
+     * number unique within this process.
+     *
+     * @param transportNumber a non-negative transport number
+     * @return this Builder
+     */
+    public B withTransportNumber(int transportNumber) {
+      this.transportNumber = transportNumber;
+      return (B) this;
+    }
+  }
+
   private class Channel {
     private long baseAddress;
     private MappedByteBuffer bb;
+    private long capacity;
+    private long fileSize;
+    private boolean isLocked = false;
     private long maxOffset;
     private RandomAccessFile memoryMappedFile;
+    private long offsetMask;
 
-    public Channel(File file, int requestedFileSize) throws IOException {
-      createMemoryMappedFile(file, requestedFileSize);
+    public Channel(File file, int requestedCapacity) throws IOException {
+      createMemoryMappedFile(file, requestedCapacity);
     }
 
     public void close() throws IOException {
+      if (isLocked) {
+        MemoryManager.unlock(baseAddress, fileSize);
+        isLocked = false;
+      }
       memoryMappedFile.close();
     }
 
-    private void createMemoryMappedFile(File file, int requestedFileSize) throws IOException {
-      boolean existed = file.exists();
+    private void createMemoryMappedFile(File file, int requestedCapacity) throws IOException {
+      // a file with a different layout is replaced
+      boolean existed = file.exists() && isValidFileSize(file.length());
+      if (!existed && (requestedCapacity < RECORD_ALIGNMENT || requestedCapacity > MAX_CAPACITY
+          || Integer.bitCount(requestedCapacity) != 1)) {
+        throw new IllegalArgumentException("Capacity must be a power of 2 no greater than 2^30");
+      }
       this.memoryMappedFile = new RandomAccessFile(file, "rw");
       FileChannel channel = memoryMappedFile.getChannel();
 
-      long fileSize;
       if (existed) {
         fileSize = memoryMappedFile.length();
       } else {
-        if (requestedFileSize < 0 || Integer.bitCount(requestedFileSize - DATA_OFFSET) != 1) {
-          throw new IllegalArgumentException("Invalid file size");
-        }
-        fileSize = requestedFileSize & 0x00000000ffffffffL;
+        fileSize = (DATA_OFFSET + (long) requestedCapacity + pageSize - 1) / pageSize * pageSize;
+        // truncating and extending zero fills without writing pages
+        memoryMappedFile.setLength(0);
+        memoryMappedFile.setLength(fileSize);
       }
-      offsetMask = getOffsetMask(fileSize - DATA_OFFSET);
+      capacity = getRingCapacity(fileSize);
+      offsetMask = getOffsetMask(capacity);
 
       bb = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
       bb.order(ByteOrder.nativeOrder());
-      baseAddress = ((DirectBuffer) bb).address();
+      baseAddress = UnsafeAccess.getAddress(bb);
 
-      if (!existed) {
-        // memset() to 0
-        UNSAFE.setMemory(baseAddress, fileSize, (byte) 0);
+      if (isPreFaulted) {
+        preFault();
+      }
+      if (isLockRequested) {
+        isLocked = MemoryManager.lock(baseAddress, fileSize);
       }
       if (!existed || reset) {
         initializePositions();
       }
 
-      this.maxOffset = getMaxBufferOffset(file.length());
+      this.maxOffset = baseAddress + DATA_OFFSET + capacity;
     }
 
     long getBufferOffset(long position) {
       return baseAddress + DATA_OFFSET + (position & offsetMask);
     }
 
-    private long getMaxBufferOffset(long fileLength) {
-      return baseAddress + DATA_OFFSET + ((fileLength - DATA_OFFSET - 1) & offsetMask) + 1;
+    long getCapacity() {
+      return capacity;
     }
 
     long getSpaceRemaining(long bufferOffset) {
       return maxOffset - bufferOffset;
     }
 
-    protected long getWritePosition() {
-      return readLong(WRITE_PTR_OFFSET);
+    protected long getReadPosition() {
+      return readLong(READ_PTR_OFFSET);
     }
 
-    protected long incrementLong(long position, int value) {
-      return UNSAFE.getAndAddLong(null, baseAddress + position, value);
+    protected long getWritePosition() {
+      return readLong(WRITE_PTR_OFFSET);
     }
 
     private void initializePositions() {
@@ -126,10 +310,26 @@ public class SharedMemoryTransport implements Transport {
       return memoryMappedFile.getChannel().isOpen();
     }
 
+    private void preFault() {
+      final int osPageSize = UNSAFE.pageSize();
+      for (long offset = 0; offset < fileSize; offset += osPageSize) {
+        // adding zero atomically faults in a page for writing without altering what the peer wrote
+        UNSAFE.getAndAddInt(null, baseAddress + offset, 0);
+      }
+    }
+
     protected long readLong(long position) {
       return UNSAFE.getLongVolatile(null, baseAddress + position);
     }
 
+    /**
+     * Publishes a position to the other side without a full fence; only one side ever writes a
+     * given position
+     */
+    protected void writeOrderedLong(long position, long value) {
+      UNSAFE.putOrderedLong(null, baseAddress + position, value);
+    }
+
     private void writeLong(long position, long value) {
       UNSAFE.putLongVolatile(null, baseAddress + position, value);
     }
@@ -137,18 +337,64 @@ public class SharedMemoryTransport implements Transport {
 
   private class SinkChannel extends Channel {
 
+    // last read position observed; avoids touching the reader's cache line on every write
+    private long cachedReadPosition;
+    private volatile long producerStallNanos = 0;
+    private volatile long producerStalls = 0;
+
     /**
      * @param file
-     * @param requestedFileSize
+     * @param requestedCapacity
      * @throws IOException
      */
-    public SinkChannel(File file, int requestedFileSize) throws IOException {
-      super(file, requestedFileSize);
+    public SinkChannel(File file, int requestedCapacity) throws IOException {
+      super(file, requestedCapacity);
+      cachedReadPosition = getReadPosition();
+    }
+
+    private void awaitCapacity(long writeLimit) throws IOException {
+      producerStalls++;
+      final long startNanos = System.nanoTime();
+      try {
+        while (writeLimit - getCapacity() > (cachedReadPosition = getReadPosition())) {
+          if (!isOpen()) {
+            throw new IOException("Shared memory transport closed");
+          }
+          switch (ringFullPolicy) {
+            case FAIL:
+              throw new IOException("Shared memory ring full");
+            case PARK:
+              LockSupport.parkNanos(1L);
+              break;
+            case YIELD:
+              Thread.yield();
+              break;
+            case SPIN:
+            default:
+              break;
+          }
+        }
+      } finally {
+        producerStallNanos += System.nanoTime() - startNanos;
+      }
+    }
+
+    private void claim(long writePosition, long length) throws IOException {
+      if (length > getCapacity()) {
+        throw new IOException("Message too large for shared memory ring; length=" + length);
+      }
+      final long writeLimit = writePosition + length;
+      if (writeLimit - getCapacity() > cachedReadPosition) {
+        awaitCapacity(writeLimit);
+      }
     }
 
-    private long incrementWritePosition(int bytesToWrite) {
-      return incrementLong(WRITE_PTR_OFFSET, bytesToWrite);
+    long getProducerStallNanos() {
+      return producerStallNanos;
+    }
 
+    long getProducerStalls() {
+      return producerStalls;
     }
 
     /**
@@ -157,46 +403,59 @@ public class SharedMemoryTransport implements Transport {
      * @throws IOException
      */
     public int write(ByteBuffer src) throws IOException {
-      int pos = src.position();
-      int bytesToWrite = src.remaining();
-      writeBuffer(src, getWritePosition(), bytesToWrite);
-      incrementWritePosition(bytesToWrite);
-      src.position(pos + bytesToWrite);
+      final long writePosition = getWritePosition();
+      final int bytesToWrite = src.remaining();
+      final long recordLength = getRecordLength(bytesToWrite);
+      claim(writePosition, recordLength);
+      writeRecord(src, writePosition);
+      writeOrderedLong(WRITE_PTR_OFFSET, writePosition + recordLength);
       return bytesToWrite;
     }
 
     public long write(ByteBuffer[] srcs) throws IOException {
-      int bytesWritten = 0;
-      for (int i = 0; i < srcs.length; i++) {
-        if (srcs[i] == null) {
-          break;
-        }
-        bytesWritten += write(srcs[i]);
+      long recordsLength = 0;
+      int count = 0;
+      for (; count < srcs.length && srcs[count] != null; count++) {
+        recordsLength += getRecordLength(srcs[count].remaining());
+      }
+      final long writePosition = getWritePosition();
+      claim(writePosition, recordsLength);
+
+      long position = writePosition;
+      long bytesWritten = 0;
+      for (int i = 0; i < count; i++) {
+        final int length = srcs[i].remaining();
+        writeRecord(srcs[i], position);
+        position += getRecordLength(length);
+        bytesWritten += length;
       }
+      // publish the whole batch at once
+      writeOrderedLong(WRITE_PTR_OFFSET, position);
       return bytesWritten;
     }
 
     private void writeBuffer(ByteBuffer src, long writePosition, int length) {
+      final int srcOffset = src.position();
       int bytesWritten = 0;
       long position = writePosition;
       while (bytesWritten < length) {
         final long bufferOffset = getBufferOffset(position);
         long remaining = getSpaceRemaining(bufferOffset);
-        long bytesToWrite = (int) Math.min(remaining, length - bytesWritten);
-
-        if (src.hasArray()) {
-          byte[] srcArray = src.array();
-          UNSAFE.copyMemory(srcArray, BYTE_ARRAY_BASE_OFFSET + bytesWritten, null, bufferOffset,
-              bytesToWrite);
-        } else {
-          long srcAddress = ((DirectBuffer) src).address() + bytesWritten;
-          UNSAFE.copyMemory(srcAddress, bufferOffset, bytesToWrite);
-        }
+        int bytesToWrite = (int) Math.min(remaining, length - bytesWritten);
+        UnsafeAccess.copyFrom(src, srcOffset + bytesWritten, bufferOffset, bytesToWrite);
         bytesWritten += bytesToWrite;
         position += bytesToWrite;
       }
     }
 
+    private void writeRecord(ByteBuffer src, long writePosition) {
+      final int length = src.remaining();
+      writeBuffer(src, writePosition + RECORD_HEADER_LENGTH, length);
+      // record headers are aligned so they never wrap
+      UNSAFE.putInt(getBufferOffset(writePosition), length);
+      src.position(src.position() + length);
+    }
+
   }
 
   /**
@@ -207,19 +466,11 @@ public class SharedMemoryTransport implements Transport {
 
     /**
      * @param file
-     * @param requestedFileSize
+     * @param requestedCapacity
      * @throws IOException
      */
-    public SourceChannel(File file, int requestedFileSize) throws IOException {
-      super(file, requestedFileSize);
-    }
-
-    private long getReadPosition() {
-      return readLong(READ_PTR_OFFSET);
-    }
-
-    private long incrementReadPosition(int bytesToRead) {
-      return incrementLong(READ_PTR_OFFSET, bytesToRead);
+    public SourceChannel(File file, int requestedCapacity) throws IOException {
+      super(file, requestedCapacity);
     }
 
     public boolean isReadyToRead() {
@@ -229,70 +480,79 @@ public class SharedMemoryTransport implements Transport {
     }
 
     /**
-     * @param buffer
-     * @return
+     * Reads one message
+     * 
+     * @param buffer buffer to populate
+     * @return number of bytes read
+     * @throws IOException if the message is too large for the buffer. The message is discarded.
      */
-    public int read(ByteBuffer buffer) {
+    public int read(ByteBuffer buffer) throws IOException {
       final long readPosition = getReadPosition();
-      int bytesToRead = Math.min(buffer.remaining(), (int) (getWritePosition() - readPosition));
-      if (bytesToRead > 0) {
-        readBuffer(buffer, readPosition, bytesToRead);
-        incrementReadPosition(bytesToRead);
+      if (getWritePosition() <= readPosition) {
+        return 0;
+      }
+      final int length = UNSAFE.getInt(getBufferOffset(readPosition));
+      final long recordLength = getRecordLength(length);
+      if (length > buffer.remaining()) {
+        writeOrderedLong(READ_PTR_OFFSET, readPosition + recordLength);
+        throw new IOException("Message too large for buffer; length=" + length);
       }
-      return bytesToRead;
+      readBuffer(buffer, readPosition + RECORD_HEADER_LENGTH, length);
+      // release space to the writer
+      writeOrderedLong(READ_PTR_OFFSET, readPosition + recordLength);
+      return length;
     }
 
     private void readBuffer(ByteBuffer dest, long readPosition, int length) {
+      final int destOffset = dest.position();
       int bytesRead = 0;
       long position = readPosition;
       while (bytesRead < length) {
         final long bufferOffset = getBufferOffset(position);
         long remaining = getSpaceRemaining(bufferOffset);
-        long bytesToRead = (int) Math.min(remaining, length - bytesRead);
-
-        if (dest.hasArray()) {
-          byte[] destArray = dest.array();
-          // When the object reference is null, the offset supplies an
-          // absolute base address.
-          UNSAFE.copyMemory(null, bufferOffset, destArray, BYTE_ARRAY_BASE_OFFSET + bytesRead,
-              bytesToRead);
-        } else {
-          long destAddress = ((DirectBuffer) dest).address() + bytesRead;
-          UNSAFE.copyMemory(bufferOffset, destAddress, bytesToRead);
-        }
-
+        int bytesToRead = (int) Math.min(remaining, length - bytesRead);
+        UnsafeAccess.copyTo(bufferOffset, dest, destOffset + bytesRead, bytesToRead);
         bytesRead += bytesToRead;
         position += bytesToRead;
       }
-      dest.position(length);
+      dest.position(destOffset + length);
     }
 
   }
 
-  private static int BYTE_ARRAY_BASE_OFFSET;
-  private static final int DATA_OFFSET = 16;
+  // positions are on separate cache lines to avoid false sharing between reader and writer
+  private static final int DATA_OFFSET = 128;
   private static final Path DEFAULT_BASE_PATH = Paths.get(System.getProperty("user.home"),
       "session", "transport");
-  private static final int DEFAULT_FILESIZE = 0x40000000 + DATA_OFFSET;
+  /**
+   * Default size of each pipe
+   */
+  public static final int DEFAULT_CAPACITY = 0x40000000;
   public static final String FILENAME_PATTERN = "shmemtransport%d%s.dat";
   private static final AtomicInteger fileNumber = new AtomicInteger();
-  private static final int READ_PTR_OFFSET = 8;
-  private static Unsafe UNSAFE;
+  private static final int MAX_CAPACITY = 0x40000000;
+  private static final int READ_PTR_OFFSET = 64;
+  private static final int RECORD_ALIGNMENT = 8;
+  private static final int RECORD_HEADER_LENGTH = 4;
   private static final int WRITE_PTR_OFFSET = 0;
 
-  static {
-    ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+  public static Builder builder() {
+    return new Builder();
+  }
 
-    try {
-      Class<?> clazz = systemClassLoader.loadClass("sun.misc.Unsafe");
-      Field f = clazz.getDeclaredField("theUnsafe");
-      f.setAccessible(true);
-      UNSAFE = (Unsafe) f.get(null);
-      BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
-    } catch (ClassNotFoundException | SecurityException | IllegalAccessException
-        | IllegalArgumentException | NoSuchFieldException e) {
-      e.printStackTrace();
-    }
+  /**
+   * Space following the largest power of 2 that fits is padding to a page boundary
+   */
+  private static long getRingCapacity(long fileSize) {
+    return Long.highestOneBit(fileSize - DATA_OFFSET);
+  }
+
+  private static long getRecordLength(int messageLength) {
+    return (RECORD_HEADER_LENGTH + messageLength + RECORD_ALIGNMENT - 1) & ~(RECORD_ALIGNMENT - 1);
+  }
+
+  private static boolean isValidFileSize(long fileSize) {
+    return fileSize - DATA_OFFSET >= RECORD_ALIGNMENT && getRingCapacity(fileSize) <= MAX_CAPACITY;
   }
 
   static long getOffsetMask(long size) {
@@ -313,13 +573,19 @@ public class SharedMemoryTransport implements Transport {
   private Supplier<ByteBuffer> buffers;
 
   private TransportConsumer consumer;
+  private final Path directory;
   private final Dispatcher dispatcher;
+  private final int inboundCapacity;
   private final boolean isClient;
+  private final boolean isLockRequested;
   private final AtomicBoolean isOpen = new AtomicBoolean();
-  private long offsetMask;
+  private final boolean isPreFaulted;
+  private final int outboundCapacity;
+  private final int pageSize;
   private SourceChannel readChannel;
 
   private final boolean reset;
+  private final RingFullPolicy ringFullPolicy;
   private int transportNumber = 1;
   private SinkChannel writeChannel;
 
@@ -337,10 +603,42 @@ public class SharedMemoryTransport implements Transport {
 
   public SharedMemoryTransport(boolean isClient, boolean reset, int transportNumber,
       Dispatcher dispatcher) {
-    this.isClient = isClient;
-    this.reset = reset;
-    this.transportNumber = transportNumber;
-    this.dispatcher = dispatcher;
+    this(isClient, reset, transportNumber, dispatcher, RingFullPolicy.YIELD);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param isClient {@code true} to play the client role, {@code false} for server role
+   * @param reset {@code true} to discard any messages remaining in existing pipes
+   * @param transportNumber identifies a pair of pipes shared by client and server
+   * @param dispatcher thread that reads from this Transport
+   * @param ringFullPolicy action taken by a writer when a pipe is full
+   */
+  public SharedMemoryTransport(boolean isClient, boolean reset, int transportNumber,
+      Dispatcher dispatcher, RingFullPolicy ringFullPolicy) {
+    this(builder().withClient(isClient).withReset(reset).withTransportNumber(transportNumber)
+        .withDispatcher(Objects.requireNonNull(dispatcher)).withRingFullPolicy(ringFullPolicy));
+  }
+
+  protected SharedMemoryTransport(Builder<?, ?> builder) {
+    Objects.requireNonNull(builder.directory);
+    Objects.requireNonNull(builder.ringFullPolicy);
+    if (builder.pageSize <= 0) {
+      throw new IllegalArgumentException("Invalid page size");
+    }
+    this.isClient = builder.isClient;
+    this.reset = builder.reset;
+    this.transportNumber =
+        builder.transportNumber >= 0 ? builder.transportNumber : fileNumber.incrementAndGet();
+    this.dispatcher = builder.dispatcher != null ? builder.dispatcher : new Dispatcher();
+    this.ringFullPolicy = builder.ringFullPolicy;
+    this.directory = builder.directory;
+    this.inboundCapacity = builder.inboundCapacity;
+    this.outboundCapacity = builder.outboundCapacity;
+    this.pageSize = builder.pageSize;
+    this.isPreFaulted = builder.isPreFaulted;
+    this.isLockRequested = builder.isLocked;
   }
 
   public void close() {
@@ -373,7 +671,7 @@ public class SharedMemoryTransport implements Transport {
 
   private void doOpen(boolean isClient) throws IOException {
 
-    final Path basePath = Files.createDirectories(DEFAULT_BASE_PATH, new FileAttribute<?>[0]);
+    final Path basePath = Files.createDirectories(directory, new FileAttribute<?>[0]);
     final File baseFile = basePath.toFile();
 
     final File clientFile = new File(baseFile,
@@ -382,18 +680,45 @@ public class SharedMemoryTransport implements Transport {
         String.format(FILENAME_PATTERN, transportNumber, "S"));
 
     if (isClient) {
-      this.readChannel = new SourceChannel(clientFile, DEFAULT_FILESIZE);
-      this.writeChannel = new SinkChannel(serverFile, DEFAULT_FILESIZE);
+      this.readChannel = new SourceChannel(clientFile, inboundCapacity);
+      this.writeChannel = new SinkChannel(serverFile, outboundCapacity);
     } else {
-      this.readChannel = new SourceChannel(serverFile, DEFAULT_FILESIZE);
-      this.writeChannel = new SinkChannel(clientFile, DEFAULT_FILESIZE);
+      this.readChannel = new SourceChannel(serverFile, inboundCapacity);
+      this.writeChannel = new SinkChannel(clientFile, outboundCapacity);
     }
   }
 
+  /**
+   * Returns the cumulative time that writers waited for free space in the outbound pipe
+   * 
+   * @return stalled time in nanoseconds
+   */
+  public long getProducerStallNanos() {
+    final SinkChannel channel = getWriteChannel();
+    return channel != null ? channel.getProducerStallNanos() : 0;
+  }
+
+  /**
+   * Returns the number of writes that found the outbound pipe full
+   * 
+   * @return number of stalled writes
+   */
+  public long getProducerStalls() {
+    final SinkChannel channel = getWriteChannel();
+    return channel != null ? channel.getProducerStalls() : 0;
+  }
+
   SourceChannel getReadChannel() {
     return readChannel;
   }
 
+  /**
+   * @return the action taken by a writer when a pipe is full
+   */
+  public RingFullPolicy getRingFullPolicy() {
+    return ringFullPolicy;
+  }
+
   /**
    * @return the transportNumber
    */
@@ -439,7 +764,8 @@ public class SharedMemoryTransport implements Transport {
         dispatcher.addTransport(this);
         connected();
         future.complete(this);
-      } catch (IOException ex) {
+      } catch (IOException | IllegalArgumentException ex) {
+        isOpen.set(false);
         future.completeExceptionally(ex);
       }
 
@@ -483,4 +809,16 @@ public class SharedMemoryTransport implements Transport {
     return getWriteChannel().write(src);
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.transport.Transport#write(java.nio.ByteBuffer[])
+   */
+  public long write(ByteBuffer[] srcs) throws IOException {
+    for (int i = 0; i < srcs.length && srcs[i] != null; i++) {
+      srcs[i].flip();
+    }
+    return getWriteChannel().write(srcs);
+  }
+
 }
@@ -33,6 +33,8 @@ import java.util.function.Supplier;
 import io.fixprotocol.silverflash.ExceptionConsumer;
 import io.fixprotocol.silverflash.buffer.BufferSupplier;
 import io.fixprotocol.silverflash.frame.FrameSpliterator;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameSpliterator;
+import io.fixprotocol.silverflash.frame.ReassemblingFrameSpliterator;
 
 /**
  * Allows multiple sessions to share a Transport.
@@ -100,7 +102,9 @@ public class SharedTransportDecorator<T> implements Transport, IdentifiableTrans
     }
 
     /**
-     * Provide a message framer. If not provided, a default implementation is used.
+     * Provide a message framer. If not provided, a default implementation is used. For a
+     * {@linkplain Transport#isStream() stream transport}, the default reassembles frames that
+     * straddle reads.
      * 
      * @param frameSpliter the frameSpliter to set
      * @return this transport
@@ -184,6 +188,11 @@ public class SharedTransportDecorator<T> implements Transport, IdentifiableTrans
     }
     if (builder.frameSpliter != null) {
       this.frameSpliter = builder.frameSpliter;
+    } else if (transport.isStream()) {
+      this.frameSpliter = new ReassemblingFrameSpliterator();
+    } else {
+      // each read holds whole frames
+      this.frameSpliter = new MessageLengthFrameSpliterator();
     }
   }
 
@@ -224,6 +233,9 @@ public class SharedTransportDecorator<T> implements Transport, IdentifiableTrans
    * @see io.fixprotocol.silverflash.transport.TransportConsumer#disconnected()
    */
   public void disconnected() {
+    if (frameSpliter instanceof ReassemblingFrameSpliterator) {
+      ((ReassemblingFrameSpliterator) frameSpliter).reset();
+    }
     consumerMap.forEach((t, u) -> u.disconnected());
   }
 
@@ -288,6 +300,24 @@ public class SharedTransportDecorator<T> implements Transport, IdentifiableTrans
     }
   }
 
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.transport.Transport#cork()
+   */
+  public void cork() {
+    transport.cork();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see io.fixprotocol.silverflash.transport.Transport#flush()
+   */
+  public void flush() throws IOException {
+    transport.flush();
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -26,6 +26,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
 import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.transport.IOReactorGroup.BalancingPolicy;
 
 /**
  * A server TCP acceptor
@@ -79,9 +80,26 @@ public class TcpAcceptor extends AbstractTcpAcceptor {
 
   }
 
+  /**
+   * Constructs an acceptor that spreads connections over a group of IO reactors
+   * 
+   * @param group
+   *          a running group of IO reactors
+   * @param policy
+   *          selects an IO reactor for each accepted connection
+   * @param localAddress
+   *          local address to listen on
+   * @param transportWrapper
+   *          a function to invoke when a connection is accepted
+   */
+  public TcpAcceptor(IOReactorGroup group, BalancingPolicy policy, SocketAddress localAddress,
+      Function<Transport, ?> transportWrapper) {
+    super(group, policy, localAddress, transportWrapper);
+  }
+
   @Override
   protected TcpClientTransport createTransport(SocketChannel clientChannel) {
-    return new TcpClientTransport(getSelector(), clientChannel);
+    return new TcpClientTransport(getSelector(clientChannel), clientChannel);
   }
 
 }
@@ -27,6 +27,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
 import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.transport.IOReactorGroup.BalancingPolicy;
 
 /**
  * A server acceptor with TLS over TCP
@@ -95,9 +96,36 @@ public class TlsTcpAcceptor extends AbstractTcpAcceptor {
 
   }
 
+  /**
+   * Creates an acceptor that spreads connections over a group of IO reactors
+   * 
+   * @param group
+   *          a running group of IO reactors
+   * @param policy
+   *          selects an IO reactor for each accepted connection
+   * @param localAddress
+   *          local address to listen for connections
+   * @param keystore
+   *          key store
+   * @param truststore
+   *          trusted keys
+   * @param storePassphrase
+   *          passphrase for key stores
+   * @param transportWrapper
+   *          a function to invoke when a connection is accepted
+   */
+  public TlsTcpAcceptor(IOReactorGroup group, BalancingPolicy policy, SocketAddress localAddress,
+      KeyStore keystore, KeyStore truststore, char[] storePassphrase,
+      Function<Transport, ?> transportWrapper) {
+    super(group, policy, localAddress, transportWrapper);
+    this.keystore = keystore;
+    this.truststore = truststore;
+    this.storePassphrase = storePassphrase;
+  }
+
   @Override
   protected TlsTcpClientTransport createTransport(SocketChannel clientChannel) {
-    return new TlsTcpClientTransport(getSelector(), clientChannel, keystore, truststore,
+    return new TlsTcpClientTransport(getSelector(clientChannel), clientChannel, keystore, truststore,
         storePassphrase);
   }
 
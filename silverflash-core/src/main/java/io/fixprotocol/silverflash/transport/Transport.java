@@ -65,6 +65,23 @@ public interface Transport {
    */
   int write(ByteBuffer src) throws IOException;
 
+  /**
+   * Gathers subsequent writes of the calling thread until the matching {@link #flush()} so that a
+   * burst of messages is sent with fewer system calls. Corks of one thread nest, and writes of other
+   * threads are not held. Does nothing if this Transport does not coalesce writes.
+   */
+  default void cork() {
+  }
+
+  /**
+   * Sends writes gathered since {@link #cork()}, and stops gathering if the outermost cork of the
+   * calling thread is flushed
+   * 
+   * @throws IOException if an IO error occurs
+   */
+  default void flush() throws IOException {
+  }
+
   /**
    * Writes contents of message buffers
    * 
@@ -97,6 +114,16 @@ public interface Transport {
    */
   boolean isMessageOriented();
 
+  /**
+   * Does this Transport deliver an ordered stream without message boundaries, such as TCP? Then a
+   * message frame may straddle reads, so received frames must be reassembled.
+   * 
+   * @return Returns {@code true} if this Transport is FIFO and not message oriented
+   */
+  default boolean isStream() {
+    return !isMessageOriented() && isFifo();
+  }
+
   /**
    * Tells whether this Transport is open
    * 
@@ -0,0 +1,120 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import sun.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * Access to memory outside the Java heap for memory rings
+ *
+ * @author Don Mendelson
+ *
+ */
+final class UnsafeAccess {
+
+  static int BYTE_ARRAY_BASE_OFFSET;
+  static Unsafe UNSAFE;
+  private static long BUFFER_ADDRESS_OFFSET;
+  private static long BUFFER_CAPACITY_OFFSET;
+
+  static {
+    ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+
+    try {
+      Class<?> clazz = systemClassLoader.loadClass("sun.misc.Unsafe");
+      Field f = clazz.getDeclaredField("theUnsafe");
+      f.setAccessible(true);
+      UNSAFE = (Unsafe) f.get(null);
+      BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+      BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+      BUFFER_CAPACITY_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("capacity"));
+    } catch (ClassNotFoundException | SecurityException | IllegalAccessException
+        | IllegalArgumentException | NoSuchFieldException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Copies bytes from a buffer to an address
+   *
+   * @param src buffer, either heap or direct
+   * @param srcOffset index of the first byte to copy
+   * @param address destination address
+   * @param length number of bytes to copy
+   */
+  static void copyFrom(ByteBuffer src, int srcOffset, long address, int length) {
+    if (src.hasArray()) {
+      UNSAFE.copyMemory(src.array(), BYTE_ARRAY_BASE_OFFSET + src.arrayOffset() + srcOffset, null,
+          address, length);
+    } else {
+      UNSAFE.copyMemory(((DirectBuffer) src).address() + srcOffset, address, length);
+    }
+  }
+
+  /**
+   * Copies bytes from an address to a buffer
+   *
+   * @param address source address
+   * @param dest buffer, either heap or direct
+   * @param destOffset index of the first byte to populate
+   * @param length number of bytes to copy
+   */
+  static void copyTo(long address, ByteBuffer dest, int destOffset, int length) {
+    if (dest.hasArray()) {
+      // When the object reference is null, the offset supplies an absolute base address.
+      UNSAFE.copyMemory(null, address, dest.array(),
+          BYTE_ARRAY_BASE_OFFSET + dest.arrayOffset() + destOffset, length);
+    } else {
+      UNSAFE.copyMemory(address, ((DirectBuffer) dest).address() + destOffset, length);
+    }
+  }
+
+  /**
+   * Returns the address of a mapped or direct buffer
+   *
+   * @param buffer a direct buffer
+   * @return address of its first byte
+   */
+  static long getAddress(ByteBuffer buffer) {
+    return ((DirectBuffer) buffer).address();
+  }
+
+  /**
+   * Points a direct buffer at a range of memory without allocating a new buffer. The buffer is
+   * cleared, so its position is zero and its limit is the length of the range.
+   *
+   * @param view a direct buffer that does not own memory, e.g. a duplicate, since its memory is
+   *        not freed through its address
+   * @param address address of the first byte of the range
+   * @param length number of bytes in the range
+   */
+  static void wrap(ByteBuffer view, long address, int length) {
+    UNSAFE.putLong(view, BUFFER_ADDRESS_OFFSET, address);
+    UNSAFE.putInt(view, BUFFER_CAPACITY_OFFSET, length);
+    view.clear();
+  }
+
+  private UnsafeAccess() {
+
+  }
+}
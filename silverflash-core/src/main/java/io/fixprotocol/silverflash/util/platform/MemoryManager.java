@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.util.platform;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+/**
+ * Locks memory into RAM so that it is never paged out
+ * <p>
+ * Locking is limited by the operating system, e.g. by {@code ulimit -l} on Linux. A failure to lock
+ * is reported but is not fatal. Locking is not supported on Windows.
+ *
+ * @author Don Mendelson
+ *
+ */
+public final class MemoryManager {
+
+  private interface CLibrary extends Library {
+    public static final CLibrary INSTANCE = (CLibrary) Native.loadLibrary("c", CLibrary.class);
+
+    int mlock(final Pointer addr, final NativeLong len) throws LastErrorException;
+
+    int munlock(final Pointer addr, final NativeLong len) throws LastErrorException;
+  }
+
+  /**
+   * Locks a range of memory
+   *
+   * @param address address of the first byte
+   * @param length number of bytes
+   * @return {@code true} if the memory was locked
+   */
+  public static boolean lock(long address, long length) {
+    if (Platform.isWindows()) {
+      System.err.println("Memory locking not supported");
+      return false;
+    }
+    try {
+      final int ret = CLibrary.INSTANCE.mlock(new Pointer(address), new NativeLong(length));
+      if (ret < 0) {
+        throw new Exception("mlock( " + address + ", " + length + " ) return " + ret);
+      }
+      return true;
+    } catch (Throwable e) {
+      System.err.format("Error locking memory; %s%n", e);
+      return false;
+    }
+  }
+
+  /**
+   * Unlocks a range of memory locked by {@link #lock(long, long)}
+   *
+   * @param address address of the first byte
+   * @param length number of bytes
+   */
+  public static void unlock(long address, long length) {
+    if (Platform.isWindows()) {
+      return;
+    }
+    try {
+      CLibrary.INSTANCE.munlock(new Pointer(address), new NativeLong(length));
+    } catch (Throwable e) {
+      System.err.format("Error unlocking memory; %s%n", e);
+    }
+  }
+
+  private MemoryManager() {
+
+  }
+}
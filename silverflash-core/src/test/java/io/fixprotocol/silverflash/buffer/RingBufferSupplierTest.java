@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.buffer;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+public class RingBufferSupplierTest {
+
+  private final ConcurrentLinkedQueue<Integer> received = new ConcurrentLinkedQueue<>();
+  private RingBufferSupplier supplier;
+
+  @Before
+  public void setUp() throws Exception {
+    supplier = new RingBufferSupplier(Executors.defaultThreadFactory(),
+        buffer -> received.add((int) buffer.get()), new YieldingWaitStrategy());
+    supplier.open().get();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    supplier.close();
+  }
+
+  @Test
+  public void batch() throws InterruptedException {
+    final int batchSize = supplier.getMaxUncommitted();
+    assertTrue(batchSize > 1);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < batchSize; i++) {
+      ByteBuffer buffer = supplier.get();
+      buffer.clear();
+      // every third buffer is left empty
+      if (i % 3 != 2) {
+        buffer.put((byte) i);
+        expected.add(i);
+      }
+      buffer.flip();
+    }
+    Thread.sleep(100L);
+    assertTrue(received.isEmpty());
+
+    supplier.commit();
+    awaitReceived(expected.size());
+    assertEquals(expected, new ArrayList<>(received));
+  }
+
+  @Test
+  public void wrap() throws InterruptedException {
+    final int batchSize = supplier.getMaxUncommitted();
+    List<Integer> expected = new ArrayList<>();
+    // more buffers than the ring holds
+    for (int batch = 0; batch < 5; batch++) {
+      for (int i = 0; i < batchSize; i++) {
+        ByteBuffer buffer = supplier.get();
+        buffer.clear();
+        buffer.put((byte) i);
+        buffer.flip();
+        expected.add(i);
+      }
+      supplier.commit();
+    }
+    awaitReceived(expected.size());
+    assertEquals(expected, new ArrayList<>(received));
+  }
+
+  private void awaitReceived(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && received.size() < count; i++) {
+      Thread.sleep(10L);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CompletableFuture;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.fixp.ArbitratedTransport.LineStatistics;
+import io.fixprotocol.silverflash.fixp.flow.SimplexSequencer;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameDecoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * @author Don Mendelson
+ *
+ */
+public class ArbitratedTransportTest {
+
+  class TestConsumer implements TransportConsumer {
+    int datagramsReceived = 0;
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      datagramsReceived++;
+    }
+
+    @Override
+    public void connected() {
+
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  private static final int templateId = 22;
+  private static final int schemaVersion = 0;
+  private static final int schemaId = 33;
+  private static final int windowSize = 64;
+
+  private ArbitratedTransport arbitrator;
+  private final ByteBuffer datagram = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+  private final MessageLengthFrameEncoder frameEncoder = new MessageLengthFrameEncoder();
+  private final TransportConsumer[] lineConsumers = new TransportConsumer[2];
+  private final ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(new byte[0]);
+  private TestConsumer testConsumer;
+
+  @Before
+  public void setUp() throws Exception {
+    Transport lineA = mock(Transport.class);
+    Transport lineB = mock(Transport.class);
+    doReturn(CompletableFuture.completedFuture(lineA)).when(lineA).open(any(), any());
+    doReturn(CompletableFuture.completedFuture(lineB)).when(lineB).open(any(), any());
+
+    arbitrator =
+        new ArbitratedTransport(lineA, lineB, windowSize, new MessageLengthFrameDecoder());
+    testConsumer = new TestConsumer();
+    arbitrator.open(new SingleBufferSupplier(ByteBuffer.allocate(1024)), testConsumer).get();
+
+    ArgumentCaptor<TransportConsumer> consumerA = ArgumentCaptor.forClass(TransportConsumer.class);
+    verify(lineA).open(any(BufferSupplier.class), consumerA.capture());
+    lineConsumers[ArbitratedTransport.LINE_A] = consumerA.getValue();
+    ArgumentCaptor<TransportConsumer> consumerB = ArgumentCaptor.forClass(TransportConsumer.class);
+    verify(lineB).open(any(BufferSupplier.class), consumerB.capture());
+    lineConsumers[ArbitratedTransport.LINE_B] = consumerB.getValue();
+  }
+
+  @Test
+  public void deliverOnce() {
+    final int messageCount = 200;
+    final long lostOnA = 8;
+    final long lostOnB = 5;
+    SimplexSequencer sequencer = new SimplexSequencer(frameEncoder);
+    for (long seqNo = 1; seqNo <= messageCount; seqNo++) {
+      encodeDatagram(sequencer);
+      if (seqNo != lostOnA) {
+        receive(ArbitratedTransport.LINE_A);
+      }
+      if (seqNo != lostOnB) {
+        receive(ArbitratedTransport.LINE_B);
+      }
+    }
+
+    assertEquals(messageCount, testConsumer.datagramsReceived);
+    LineStatistics statisticsA = arbitrator.getStatistics(ArbitratedTransport.LINE_A);
+    LineStatistics statisticsB = arbitrator.getStatistics(ArbitratedTransport.LINE_B);
+    assertEquals(messageCount - 1, statisticsA.getReceived());
+    assertEquals(messageCount - 1, statisticsA.getFirstArrivals());
+    assertEquals(1, statisticsB.getFirstArrivals());
+    assertEquals(messageCount - 2, statisticsB.getDuplicates());
+    assertEquals(messageCount - 2, statisticsB.getLagSamples());
+    assertEquals(0, statisticsA.getLagSamples());
+    // losses are counted as they leave the window
+    assertEquals(1, statisticsA.getLost());
+    assertEquals(1, statisticsB.getLost());
+    assertEquals(0, arbitrator.getUnrecovered());
+  }
+
+  @Test
+  public void lostOnBothLines() {
+    final int messageCount = 200;
+    final long lost = 10;
+    SimplexSequencer sequencer = new SimplexSequencer(frameEncoder);
+    for (long seqNo = 1; seqNo <= messageCount; seqNo++) {
+      encodeDatagram(sequencer);
+      if (seqNo != lost) {
+        receive(ArbitratedTransport.LINE_A);
+        receive(ArbitratedTransport.LINE_B);
+      }
+    }
+
+    assertEquals(messageCount - 1, testConsumer.datagramsReceived);
+    assertEquals(0, arbitrator.getStatistics(ArbitratedTransport.LINE_A).getLost());
+    assertEquals(1, arbitrator.getUnrecovered());
+  }
+
+  @Test
+  public void idleHeartbeats() {
+    final int messageCount = 10;
+    final int heartbeatCount = 5;
+    SimplexSequencer sequencer = new SimplexSequencer(frameEncoder);
+    for (long seqNo = 1; seqNo <= messageCount; seqNo++) {
+      encodeDatagram(sequencer);
+      receive(ArbitratedTransport.LINE_A);
+      receive(ArbitratedTransport.LINE_B);
+    }
+    assertEquals(messageCount, testConsumer.datagramsReceived);
+
+    // idle stream carries only Sequence messages with the same next sequence number
+    for (int i = 0; i < heartbeatCount; i++) {
+      encodeHeartbeat(sequencer);
+      receive(ArbitratedTransport.LINE_A);
+      receive(ArbitratedTransport.LINE_B);
+    }
+    assertEquals(messageCount + heartbeatCount, testConsumer.datagramsReceived);
+
+    // line A is down; heartbeats continue on line B alone
+    for (int i = 0; i < heartbeatCount; i++) {
+      encodeHeartbeat(sequencer);
+      receive(ArbitratedTransport.LINE_B);
+    }
+    assertEquals(messageCount + 2 * heartbeatCount, testConsumer.datagramsReceived);
+  }
+
+  @Test
+  public void unsequenced() {
+    datagram.clear();
+    encodeApplicationMessageWithFrame(datagram);
+    receive(ArbitratedTransport.LINE_A);
+    receive(ArbitratedTransport.LINE_B);
+    assertEquals(2, testConsumer.datagramsReceived);
+  }
+
+  private void encodeApplicationMessageWithFrame(ByteBuffer buffer) {
+    int offset = buffer.position();
+    mutableBuffer.wrap(buffer);
+    frameEncoder.wrap(buffer, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.blockLength(8).templateId(templateId).schemaId(schemaId)
+        .version(schemaVersion);
+    offset += MessageHeaderEncoder.ENCODED_LENGTH;
+    buffer.position(offset);
+    buffer.putLong(0L);
+    frameEncoder.setMessageLength(8 + MessageHeaderEncoder.ENCODED_LENGTH);
+    frameEncoder.encodeFrameTrailer();
+  }
+
+  private void encodeDatagram(SimplexSequencer sequencer) {
+    message.clear();
+    encodeApplicationMessageWithFrame(message);
+    datagram.clear();
+    for (ByteBuffer src : sequencer.apply(new ByteBuffer[] {message})) {
+      ByteBuffer frame = src.duplicate();
+      frame.flip();
+      datagram.put(frame);
+    }
+  }
+
+  private void encodeHeartbeat(SimplexSequencer sequencer) {
+    datagram.clear();
+    for (ByteBuffer src : sequencer.apply(new ByteBuffer[0])) {
+      ByteBuffer frame = src.duplicate();
+      frame.flip();
+      datagram.put(frame);
+    }
+  }
+
+  private void receive(int line) {
+    ByteBuffer received = datagram.duplicate().order(ByteOrder.nativeOrder());
+    received.flip();
+    lineConsumers[line].accept(received);
+  }
+}
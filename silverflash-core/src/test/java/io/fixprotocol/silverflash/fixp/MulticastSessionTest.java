@@ -18,11 +18,16 @@
 package io.fixprotocol.silverflash.fixp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.agrona.MutableDirectBuffer;
@@ -39,13 +44,115 @@ import io.fixprotocol.silverflash.fixp.FixpSession;
 import io.fixprotocol.silverflash.fixp.SessionId;
 import io.fixprotocol.silverflash.fixp.messages.FlowType;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.store.InMemoryMessageStore;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.transport.Dispatcher;
 import io.fixprotocol.silverflash.transport.PipeTransport;
+import io.fixprotocol.silverflash.transport.SharedMemoryBroadcastTransport;
+import io.fixprotocol.silverflash.transport.TcpAcceptor;
+import io.fixprotocol.silverflash.transport.TcpConnectorTransport;
 import io.fixprotocol.silverflash.transport.Transport;
 import io.fixprotocol.silverflash.transport.TransportDecorator;
 
 public class MulticastSessionTest {
 
+  /**
+   * Drops every tenth datagram written while enabled to simulate packet loss on a multicast feed
+   */
+  class LossyTransport extends TransportDecorator {
+    volatile boolean isDropping = false;
+    int writes = 0;
+    int dropped = 0;
+
+    LossyTransport(Transport component) {
+      super(component, false, false, true);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      if (drop()) {
+        return src.position();
+      }
+      return super.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+      if (drop()) {
+        long length = 0;
+        for (ByteBuffer src : srcs) {
+          length += src.position();
+        }
+        return length;
+      }
+      return super.write(srcs);
+    }
+
+    private boolean drop() {
+      if (isDropping && ++writes % 10 == 5) {
+        dropped++;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Discards datagrams written before a consumer joins the feed
+   */
+  class JoinableTransport extends TransportDecorator {
+    volatile boolean isJoined = false;
+
+    JoinableTransport(Transport component) {
+      super(component, false, false, true);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      if (!isJoined) {
+        return src.position();
+      }
+      return super.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+      if (!isJoined) {
+        long length = 0;
+        for (ByteBuffer src : srcs) {
+          length += src.position();
+        }
+        return length;
+      }
+      return super.write(srcs);
+    }
+  }
+
+  class MergingReceiver implements MessageConsumer<UUID> {
+    long firstSeqNo = 0;
+    boolean isInOrder = true;
+    long lastSeqNo = 0;
+    int liveMsgsReceived = 0;
+    int snapshotMsgsReceived = 0;
+    int snapshotState = 0;
+
+    @Override
+    public void accept(ByteBuffer buf, Session<UUID> session, long seqNo) {
+      if (seqNo == 0) {
+        snapshotMsgsReceived++;
+        snapshotState = buf.get(buf.position() + MessageHeaderEncoder.ENCODED_LENGTH);
+      } else {
+        if (liveMsgsReceived == 0) {
+          firstSeqNo = seqNo;
+        } else if (seqNo != lastSeqNo + 1) {
+          isInOrder = false;
+        }
+        lastSeqNo = seqNo;
+        liveMsgsReceived++;
+      }
+    }
+  }
+
   class TestReceiver implements MessageConsumer<UUID> {
     int bytesReceived = 0;
     private byte[] dst = new byte[16 * 1024];
@@ -108,6 +215,72 @@ public class MulticastSessionTest {
     engine2.close();
   }
 
+  @Test
+  public void sharedMemoryBroadcast() throws Exception {
+    final int transportNumber = 23;
+    SharedMemoryBroadcastTransport publisherTransport =
+        new SharedMemoryBroadcastTransport(true, transportNumber, null, 0x10000);
+    Dispatcher dispatcher = new Dispatcher(Executors.defaultThreadFactory());
+    SharedMemoryBroadcastTransport subscriberTransport =
+        new SharedMemoryBroadcastTransport(false, transportNumber, dispatcher);
+    TestReceiver clientReceiver = new TestReceiver();
+    String topic = "futures";
+
+    FixpSession producerSession =
+        FixpSession
+            .builder()
+            .withReactor(engine1.getReactor())
+            .withTransport(publisherTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder())))
+            .withOutboundFlow(FlowType.Idempotent)
+            .withOutboundKeepaliveInterval(keepAliveInterval)
+            .asMulticastPublisher()
+            .withTopic(topic)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withSessionId(SessionId.generateUUID())
+            .build();
+
+    FixpSession consumerSession =
+        FixpSession
+            .builder()
+            .withReactor(engine2.getReactor())
+            .withTransport(subscriberTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+            .asMulticastConsumer()
+            .withTopic(topic)
+            .build();
+
+    try {
+      // the publisher creates the ring, and the consumer joins the feed in progress
+      producerSession.open().get(1000, TimeUnit.MILLISECONDS);
+      consumerSession.open().get(1000, TimeUnit.MILLISECONDS);
+
+      // the producer repeats its Topic for late joiners
+      Thread.sleep(2 * keepAliveInterval);
+
+      ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+      for (int i = 0; i < messageCount; ++i) {
+        buf.clear();
+        encodeApplicationMessageWithFrame(buf, messages[i]);
+        producerSession.send(buf);
+      }
+
+      for (int i = 0; i < 100 && clientReceiver.getMsgsReceived() < messageCount; i++) {
+        Thread.sleep(10);
+      }
+      assertEquals(messageCount, clientReceiver.getMsgsReceived());
+      assertEquals(0, subscriberTransport.getLappedCount());
+    } finally {
+      consumerSession.close();
+      producerSession.close();
+      dispatcher.close();
+    }
+  }
+
   @Test
   public void multicast() throws Exception {
     Transport serverTransport = memoryTransport.getServerTransport();
@@ -176,6 +349,196 @@ public class MulticastSessionTest {
     producerSession.close();
    }
 
+  @Test
+  public void multicastRecovery() throws Exception {
+    InMemoryMessageStore store = new InMemoryMessageStore();
+    store.open().get(1000, TimeUnit.MILLISECONDS);
+
+    LossyTransport lossyServerTransport = new LossyTransport(memoryTransport.getServerTransport());
+    String topic = "options";
+
+    FixpSession producerSession =
+        FixpSession
+            .builder()
+            .withReactor(engine1.getReactor())
+            .withTransport(lossyServerTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder())))
+            .withOutboundFlow(FlowType.Recoverable)
+            .withMessageStore(store)
+            .withOutboundKeepaliveInterval(3000)
+            .asMulticastPublisher()
+            .withTopic(topic)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withSessionId(SessionId.generateUUID())
+            .build();
+
+    RetransmissionServer retransmissionServer =
+        new RetransmissionServer(store, System.err::println);
+    retransmissionServer.open().get(1000, TimeUnit.MILLISECONDS);
+    InetSocketAddress recoveryAddress =
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 7546);
+
+    try (TcpAcceptor tcpAcceptor = new TcpAcceptor(engine1.getIOReactor().getSelector(),
+        recoveryAddress, retransmissionServer::serve)) {
+      tcpAcceptor.open().get(1000, TimeUnit.MILLISECONDS);
+
+      Transport clientTransport = memoryTransport.getClientTransport();
+      TransportDecorator nonFifoClientTransport =
+          new TransportDecorator(clientTransport, false, true, false);
+      TestReceiver clientReceiver = new TestReceiver();
+
+      // recovery transport shares the selector thread of the feed so delivery is serialized
+      FixpSession consumerSession =
+          FixpSession
+              .builder()
+              .withReactor(engine2.getReactor())
+              .withTransport(nonFifoClientTransport)
+              .withBufferSupplier(
+                  new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                      ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+              .asMulticastConsumer()
+              .withTopic(topic)
+              .withRecoveryTransport(
+                  new TcpConnectorTransport(engine1.getIOReactor().getSelector(), recoveryAddress))
+              .build();
+
+      producerSession.open().get(1000, TimeUnit.MILLISECONDS);
+      consumerSession.open().get(1000, TimeUnit.MILLISECONDS);
+
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+
+      }
+
+      lossyServerTransport.isDropping = true;
+      ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+      for (int i = 0; i < messageCount; ++i) {
+        buf.clear();
+        encodeApplicationMessageWithFrame(buf, messages[i]);
+        producerSession.send(buf);
+      }
+
+      try {
+        Thread.sleep(2000);
+      } catch (InterruptedException e) {
+
+      }
+      assertTrue(lossyServerTransport.dropped > 0);
+      assertEquals(messageCount, clientReceiver.getMsgsReceived());
+
+      consumerSession.close();
+      producerSession.close();
+    } finally {
+      retransmissionServer.close();
+      store.close();
+    }
+  }
+
+  @Test
+  public void multicastLateJoin() throws Exception {
+    InMemoryMessageStore store = new InMemoryMessageStore();
+    store.open().get(1000, TimeUnit.MILLISECONDS);
+
+    JoinableTransport liveServerTransport =
+        new JoinableTransport(memoryTransport.getServerTransport());
+    PipeTransport snapshotTransport = new PipeTransport(engine1.getIOReactor().getSelector());
+    String topic = "options";
+
+    FixpSession producerSession =
+        FixpSession
+            .builder()
+            .withReactor(engine1.getReactor())
+            .withTransport(liveServerTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder())))
+            .withOutboundFlow(FlowType.Recoverable)
+            .withMessageStore(store)
+            .withOutboundKeepaliveInterval(keepAliveInterval)
+            .asMulticastPublisher()
+            .withTopic(topic)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withSessionId(SessionId.generateUUID())
+            .build();
+    final UUID sessionId = producerSession.getSessionId();
+
+    // state of the topic is the number of messages sent
+    final int[] sent = new int[1];
+    SnapshotSource source = sink -> {
+      ByteBuffer state = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+      encodeApplicationMessageWithFrame(state, new byte[] {(byte) sent[0]});
+      sink.send(state);
+      return producerSession.getNextSeqNoToSend();
+    };
+    SnapshotPublisher publisher = new SnapshotPublisher(engine1.getReactor(),
+        new TransportDecorator(snapshotTransport.getServerTransport(), false, false, true),
+        producerSession, source, 60000);
+
+    SessionReadyFuture producerReady = new SessionReadyFuture(sessionId, engine1.getReactor());
+    producerSession.open().get(1000, TimeUnit.MILLISECONDS);
+    producerReady.get(1000, TimeUnit.MILLISECONDS);
+    publisher.open().get(1000, TimeUnit.MILLISECONDS);
+
+    // sent before the consumer joins, including Topic
+    ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+    final int joinAt = messageCount / 2;
+    for (; sent[0] < joinAt; ++sent[0]) {
+      buf.clear();
+      encodeApplicationMessageWithFrame(buf, messages[sent[0]]);
+      producerSession.send(buf);
+    }
+
+    liveServerTransport.isJoined = true;
+    MergingReceiver clientReceiver = new MergingReceiver();
+    FixpSession consumerSession =
+        FixpSession
+            .builder()
+            .withReactor(engine2.getReactor())
+            .withTransport(new TransportDecorator(memoryTransport.getClientTransport(), false,
+                true, false))
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+            .asMulticastConsumer()
+            .withTopic(topic)
+            .withSnapshotTransport(
+                new TransportDecorator(snapshotTransport.getClientTransport(), false, true, false))
+            .build();
+    SessionReadyFuture consumerReady = new SessionReadyFuture(sessionId, engine2.getReactor());
+    consumerSession.open().get(1000, TimeUnit.MILLISECONDS);
+
+    // the late joiner learns the session from a Topic heartbeat on the live feed
+    consumerReady.get(4 * keepAliveInterval, TimeUnit.MILLISECONDS);
+    assertEquals(sessionId, consumerSession.getSessionId());
+    for (int i = 0; i < 10; ++i, ++sent[0]) {
+      buf.clear();
+      encodeApplicationMessageWithFrame(buf, messages[sent[0]]);
+      producerSession.send(buf);
+    }
+    // first cycle after joining is merged with buffered messages
+    publisher.publish();
+    for (; sent[0] < messageCount; ++sent[0]) {
+      buf.clear();
+      encodeApplicationMessageWithFrame(buf, messages[sent[0]]);
+      producerSession.send(buf);
+    }
+
+    Thread.sleep(1000);
+    assertEquals(1, clientReceiver.snapshotMsgsReceived);
+    assertEquals(joinAt + 10, clientReceiver.snapshotState);
+    assertEquals(clientReceiver.snapshotState + 1, clientReceiver.firstSeqNo);
+    assertEquals(messageCount, clientReceiver.lastSeqNo);
+    assertTrue(clientReceiver.isInOrder);
+
+    consumerSession.close();
+    publisher.close();
+    producerSession.close();
+    store.close();
+  }
+
   private long encodeApplicationMessageWithFrame(ByteBuffer buffer, byte[] message) {
     int offset = 0;
     mutableBuffer.wrap(buffer);
@@ -20,9 +20,11 @@ package io.fixprotocol.silverflash.fixp;
 import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ServiceEventType.SERVICE_STORE_RETREIVE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,6 +49,7 @@ import io.fixprotocol.silverflash.fixp.SessionEventTopics;
 import io.fixprotocol.silverflash.fixp.SessionId;
 import io.fixprotocol.silverflash.fixp.Sessions;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.RetransmitRejectCode;
 import io.fixprotocol.silverflash.fixp.messages.RetransmitRequestEncoder;
 import io.fixprotocol.silverflash.fixp.store.InMemoryMessageStore;
 import io.fixprotocol.silverflash.fixp.store.MessageStore;
@@ -153,4 +156,20 @@ public class RetransmitterTest {
     assertTrue(messages.getValue().length > 0);
     assertEquals(lastRequestTimestamp, timestamp.getValue().longValue());
   }
+
+  @Test
+  public void testNotAvailable() throws StoreException, InterruptedException, IOException {
+    ByteBuffer message = ByteBuffer.allocate(1024);
+    message.put("The quick brown fox".getBytes());
+    for (long seqNo = 1; seqNo < 11; seqNo++) {
+      store.insertMessage(uuid, seqNo, message);
+    }
+
+    notifyGap(350, 20);
+    Thread.sleep(2000);
+
+    verify(session).rejectResend(lastRequestTimestamp, RetransmitRejectCode.OutOfRange);
+    verify(session, never()).resend(any(ByteBuffer[].class), anyInt(), anyInt(), anyLong(),
+        anyLong());
+  }
 }
@@ -0,0 +1,76 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp;
+
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.FromSessionEventType.SESSION_READY;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.SessionEventType.HEARTBEAT;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType.APPLICATION_MESSAGE_TO_SEND;
+import static org.junit.Assert.*;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.reactor.Topic;
+import io.fixprotocol.silverflash.reactor.Topics;
+
+public class SessionEventTopicsTest {
+
+  @Test
+  public void unheld() {
+    final UUID sessionId = SessionId.generateUUID();
+    final int sessionCount = SessionEventTopics.getSessionCount();
+
+    // a lookup before the session is held leaves no entry
+    Topic readyTopic = SessionEventTopics.getTopic(sessionId, SESSION_READY);
+    SessionEventTopics.getTopic(sessionId, HEARTBEAT);
+    SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
+    assertEquals(sessionCount, SessionEventTopics.getSessionCount());
+
+    SessionEventTopics.acquire(sessionId);
+    assertEquals(sessionCount + 1, SessionEventTopics.getSessionCount());
+    assertSame(readyTopic, SessionEventTopics.getTopic(sessionId, SESSION_READY));
+
+    SessionEventTopics.release(sessionId);
+    assertEquals(sessionCount, SessionEventTopics.getSessionCount());
+    assertEquals(Topics.RELEASED, readyTopic.getId());
+
+    // nor does a lookup after it is released
+    SessionEventTopics.getTopic(sessionId, SESSION_READY);
+    assertEquals(sessionCount, SessionEventTopics.getSessionCount());
+  }
+
+  @Test
+  public void references() {
+    final UUID sessionId = SessionId.generateUUID();
+    final int sessionCount = SessionEventTopics.getSessionCount();
+
+    // both ends of a session in one process
+    SessionEventTopics.acquire(sessionId);
+    SessionEventTopics.acquire(sessionId);
+    Topic toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
+
+    SessionEventTopics.release(sessionId);
+    assertEquals(sessionCount + 1, SessionEventTopics.getSessionCount());
+    assertNotEquals(Topics.RELEASED, toSendTopic.getId());
+
+    SessionEventTopics.release(sessionId);
+    assertEquals(sessionCount, SessionEventTopics.getSessionCount());
+    assertEquals(Topics.RELEASED, toSendTopic.getId());
+  }
+}
@@ -17,12 +17,18 @@
 
 package io.fixprotocol.silverflash.fixp;
 
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.FromSessionEventType.SESSION_READY;
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType.APPLICATION_MESSAGE_TO_SEND;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.agrona.MutableDirectBuffer;
@@ -43,6 +49,11 @@ import io.fixprotocol.silverflash.fixp.SessionTerminatedFuture;
 import io.fixprotocol.silverflash.fixp.auth.SimpleAuthenticator;
 import io.fixprotocol.silverflash.fixp.messages.FlowType;
 import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.store.Durability;
+import io.fixprotocol.silverflash.fixp.store.InMemoryMessageStore;
+import io.fixprotocol.silverflash.fixp.store.MessageJournal;
+import io.fixprotocol.silverflash.fixp.store.MessageStore;
+import io.fixprotocol.silverflash.fixp.store.MessageStoreResult;
 import io.fixprotocol.silverflash.frame.MessageFrameEncoder;
 import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
 import io.fixprotocol.silverflash.frame.sofh.SofhFrameEncoder;
@@ -50,6 +61,8 @@ import io.fixprotocol.silverflash.frame.sofh.SofhFrameSpliterator;
 import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
 import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
 import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.reactor.Topic;
+import io.fixprotocol.silverflash.reactor.Topics;
 import io.fixprotocol.silverflash.transport.PipeTransport;
 import io.fixprotocol.silverflash.transport.Transport;
 import io.fixprotocol.silverflash.transport.TransportDecorator;
@@ -78,6 +91,28 @@ public class SessionTest {
     }
   }
 
+  class CorkRecordingTransport extends TransportDecorator {
+    int corks = 0;
+    int depth = 0;
+    int flushes = 0;
+
+    CorkRecordingTransport(Transport component) {
+      super(component, component.isFifo());
+    }
+
+    @Override
+    public void cork() {
+      corks++;
+      depth++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      flushes++;
+      depth--;
+    }
+  }
+
   static final byte STREAM_ID = 99;
 
   private static final int templateId = 22;
@@ -251,6 +286,160 @@ public class SessionTest {
     future.get(1000, TimeUnit.MILLISECONDS);
   }
   
+  @Test
+  public void recoverable() throws Exception {
+    frameEncoder = new MessageLengthFrameEncoder();
+    Transport serverTransport = memoryTransport.getServerTransport();
+    TestReceiver serverReceiver = new TestReceiver();
+
+    FixpSession serverSession =
+        FixpSession
+            .builder()
+            .withReactor(engine.getReactor())
+            .withTransport(serverTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(serverReceiver)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withOutboundFlow(FlowType.Idempotent).withOutboundKeepaliveInterval(10000).asServer()
+            .build();
+
+    serverSession.open();
+
+    Transport clientTransport = memoryTransport.getClientTransport();
+    TestReceiver clientReceiver = new TestReceiver();
+    UUID sessionId = SessionId.generateUUID();
+    MessageStore store = new InMemoryMessageStore();
+
+    FixpSession clientSession =
+        FixpSession
+            .builder()
+            .withReactor(reactor2)
+            .withTransport(clientTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+            .withOutboundFlow(FlowType.Recoverable).withMessageStore(store)
+            .withSessionId(sessionId)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withClientCredentials(userCredentials.getBytes()).withOutboundKeepaliveInterval(10000)
+            .build();
+
+    SessionReadyFuture future = new SessionReadyFuture(sessionId, reactor2);
+    clientSession.open();
+    future.get(3000, TimeUnit.MILLISECONDS);
+
+    ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+    int bytesSent = 0;
+    for (int i = 0; i < messageCount; ++i) {
+      buf.clear();
+      bytesSent += encodeApplicationMessageWithFrame(buf, messages[i]);
+      clientSession.send(buf);
+    }
+
+    try {
+      Thread.sleep(1000);
+    } catch (InterruptedException e) {
+
+    }
+    assertEquals(messageCount, serverReceiver.getMsgsReceived());
+
+    // every message sent on a recoverable flow is stored for retransmission
+    assertEquals(messageCount, store.retrieveMaxSeqNo(sessionId));
+
+    SessionTerminatedFuture future2 = new SessionTerminatedFuture(sessionId, reactor2);
+    clientSession.close();
+    future.get(1000, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void recoverableJournaled() throws Exception {
+    frameEncoder = new MessageLengthFrameEncoder();
+    Transport serverTransport = memoryTransport.getServerTransport();
+    TestReceiver serverReceiver = new TestReceiver();
+
+    FixpSession serverSession =
+        FixpSession
+            .builder()
+            .withReactor(engine.getReactor())
+            .withTransport(serverTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(serverReceiver)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withOutboundFlow(FlowType.Idempotent).withOutboundKeepaliveInterval(10000).asServer()
+            .build();
+
+    serverSession.open();
+
+    Transport clientTransport = memoryTransport.getClientTransport();
+    TestReceiver clientReceiver = new TestReceiver();
+    UUID sessionId = SessionId.generateUUID();
+    MessageStore store = new InMemoryMessageStore();
+    store.open().get();
+    // ring smaller than the number of messages sent so that the sender is held back
+    MessageJournal journal =
+        new MessageJournal(store, Executors.defaultThreadFactory(), System.err::println, 16);
+    journal.open().get();
+
+    try {
+      FixpSession clientSession =
+          FixpSession
+              .builder()
+              .withReactor(reactor2)
+              .withTransport(clientTransport)
+              .withBufferSupplier(
+                  new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                      ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+              .withOutboundFlow(FlowType.Recoverable).withMessageJournal(journal)
+              .withDurability(Durability.FLUSH)
+              .withSessionId(sessionId)
+              .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+              .withClientCredentials(userCredentials.getBytes())
+              .withOutboundKeepaliveInterval(10000)
+              .build();
+
+      SessionReadyFuture future = new SessionReadyFuture(sessionId, reactor2);
+      clientSession.open();
+      future.get(3000, TimeUnit.MILLISECONDS);
+
+      ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+      for (int i = 0; i < messageCount; ++i) {
+        buf.clear();
+        encodeApplicationMessageWithFrame(buf, messages[i]);
+        clientSession.send(buf);
+      }
+
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+
+      }
+      assertEquals(messageCount, serverReceiver.getMsgsReceived());
+
+      clientSession.close();
+      // drains pending messages into the store
+      journal.close();
+
+      // read back what the journal stored for each sequence number
+      assertEquals(messageCount, store.retrieveMaxSeqNo(sessionId));
+      MessageStoreResult result = new MessageStoreResult(sessionId);
+      assertTrue(result.setRequest(System.currentTimeMillis(), 1, messageCount));
+      store.retrieveMessagesAsync(result, r -> {
+        ByteBuffer expected = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < messageCount; ++i) {
+          expected.clear();
+          encodeApplicationMessageWithFrame(expected, messages[i]);
+          expected.flip();
+          assertEquals(expected, r.getMessage(i + 1));
+        }
+      });
+    } finally {
+      journal.close();
+      store.close();
+    }
+  }
+
   @Test
   public void withSofh() throws Exception {
     frameEncoder = new SofhFrameEncoder();
@@ -315,7 +504,133 @@ public class SessionTest {
     clientSession.close();
     future.get(1000, TimeUnit.MILLISECONDS);
   }
-  
+
+  @Test
+  public void topicsReleased() throws Exception {
+    frameEncoder = new MessageLengthFrameEncoder();
+    TestReceiver serverReceiver = new TestReceiver();
+
+    FixpSession serverSession =
+        FixpSession
+            .builder()
+            .withReactor(engine.getReactor())
+            .withTransport(memoryTransport.getServerTransport())
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(serverReceiver)
+            .withOutboundFlow(FlowType.Idempotent).withOutboundKeepaliveInterval(10000).asServer()
+            .build();
+
+    serverSession.open();
+
+    TestReceiver clientReceiver = new TestReceiver();
+    UUID sessionId = SessionId.generateUUID();
+
+    FixpSession clientSession =
+        FixpSession
+            .builder()
+            .withReactor(reactor2)
+            .withTransport(memoryTransport.getClientTransport())
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+            .withOutboundFlow(FlowType.Idempotent).withSessionId(sessionId)
+            .withClientCredentials(userCredentials.getBytes()).withOutboundKeepaliveInterval(10000)
+            .build();
+
+    SessionReadyFuture future = new SessionReadyFuture(sessionId, reactor2);
+    clientSession.open();
+    future.get(3000, TimeUnit.MILLISECONDS);
+
+    Topic readyTopic = SessionEventTopics.getTopic(sessionId, SESSION_READY);
+    Topic toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
+    assertTrue(reactor2.hasSubscriber(toSendTopic));
+    final int sessionCount = SessionEventTopics.getSessionCount();
+
+    SessionTerminatedFuture future2 = new SessionTerminatedFuture(sessionId, reactor2);
+    clientSession.close();
+    future2.get(1000, TimeUnit.MILLISECONDS);
+
+    // both ends hold the topics; they are released when the last end is disconnected
+    for (int i = 0; i < 100 && SessionEventTopics.getSessionCount() >= sessionCount; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(sessionCount - 1, SessionEventTopics.getSessionCount());
+    assertEquals(Topics.RELEASED, readyTopic.getId());
+    assertFalse(reactor2.hasSubscriber(toSendTopic));
+  }
+
+  @Test
+  public void coalesced() throws Exception {
+    frameEncoder = new MessageLengthFrameEncoder();
+    TestReceiver serverReceiver = new TestReceiver();
+
+    FixpSession serverSession =
+        FixpSession
+            .builder()
+            .withReactor(engine.getReactor())
+            .withTransport(memoryTransport.getServerTransport())
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(serverReceiver)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withOutboundFlow(FlowType.Unsequenced).withOutboundKeepaliveInterval(10000).asServer()
+            .build();
+
+    serverSession.open();
+
+    CorkRecordingTransport clientTransport =
+        new CorkRecordingTransport(memoryTransport.getClientTransport());
+    TestReceiver clientReceiver = new TestReceiver();
+    UUID sessionId = SessionId.generateUUID();
+
+    FixpSession clientSession =
+        FixpSession
+            .builder()
+            .withReactor(reactor2)
+            .withTransport(clientTransport)
+            .withBufferSupplier(
+                new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(
+                    ByteOrder.nativeOrder()))).withMessageConsumer(clientReceiver)
+            .withOutboundFlow(FlowType.Unsequenced).withSessionId(sessionId)
+            .withMessageFrameEncoder(new MessageLengthFrameEncoder())
+            .withClientCredentials(userCredentials.getBytes()).withOutboundKeepaliveInterval(10000)
+            .withCoalescing(true).build();
+
+    SessionReadyFuture future = new SessionReadyFuture(sessionId, reactor2);
+    clientSession.open();
+    future.get(3000, TimeUnit.MILLISECONDS);
+
+    Topic toSendTopic = SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND);
+    ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < messageCount; ++i) {
+      buf.clear();
+      encodeApplicationMessageWithFrame(buf, messages[i]);
+      reactor2.post(toSendTopic, buf);
+    }
+
+    for (int i = 0; i < 100 && serverReceiver.getMsgsReceived() < messageCount; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(messageCount, serverReceiver.getMsgsReceived());
+    // corked once per batch of the reactor and flushed at its end
+    assertTrue(clientTransport.corks > 0 && clientTransport.corks <= messageCount);
+    assertEquals(clientTransport.corks, clientTransport.flushes);
+    assertEquals(0, clientTransport.depth);
+
+    // an application batch nests
+    clientSession.beginBatch();
+    clientSession.beginBatch();
+    clientSession.endBatch();
+    assertEquals(1, clientTransport.depth);
+    clientSession.endBatch();
+    assertEquals(0, clientTransport.depth);
+
+    SessionTerminatedFuture future2 = new SessionTerminatedFuture(sessionId, reactor2);
+    clientSession.close();
+    future2.get(1000, TimeUnit.MILLISECONDS);
+  }
+
   private long encodeApplicationMessageWithFrame(ByteBuffer buffer, byte[] message) {
     int offset = 0;
     mutableBuffer.wrap(buffer);
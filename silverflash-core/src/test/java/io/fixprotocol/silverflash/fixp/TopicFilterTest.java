@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.fixp.flow.MultiplexSequencer;
+import io.fixprotocol.silverflash.fixp.messages.FlowType;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.TopicEncoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+/**
+ * @author Don Mendelson
+ *
+ */
+public class TopicFilterTest {
+
+  class TestConsumer implements TransportConsumer {
+    int datagramsReceived = 0;
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      datagramsReceived++;
+    }
+
+    @Override
+    public void connected() {
+
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  private static final int templateId = 22;
+  private static final int schemaVersion = 0;
+  private static final int schemaId = 33;
+
+  private final ByteBuffer datagram = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+  private TopicFilter filter;
+  private final MessageLengthFrameEncoder frameEncoder = new MessageLengthFrameEncoder();
+  private final ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final MutableDirectBuffer mutableBuffer = new UnsafeBuffer(new byte[0]);
+  private TestConsumer testConsumer;
+  private final TopicEncoder topicEncoder = new TopicEncoder();
+
+  @Before
+  public void setUp() throws Exception {
+    testConsumer = new TestConsumer();
+    filter = new TopicFilter(testConsumer, "wanted1", "wanted2");
+  }
+
+  @Test
+  public void filterTopics() {
+    final int messageCount = 10;
+    byte[] wanted = SessionId.UUIDAsBytes(UUID.randomUUID());
+    byte[] unwanted = SessionId.UUIDAsBytes(UUID.randomUUID());
+    MultiplexSequencer wantedSequencer = new MultiplexSequencer(frameEncoder, wanted);
+    MultiplexSequencer unwantedSequencer = new MultiplexSequencer(frameEncoder, unwanted);
+
+    encodeTopic(wanted, "wanted1");
+    receive();
+    encodeTopic(unwanted, "unwanted");
+    receive();
+    for (int i = 0; i < messageCount; i++) {
+      encodeDatagram(wantedSequencer);
+      receive();
+      encodeDatagram(unwantedSequencer);
+      receive();
+    }
+
+    assertEquals(messageCount + 1, testConsumer.datagramsReceived);
+    assertEquals(messageCount + 1, filter.getFiltered());
+  }
+
+  @Test
+  public void classification() {
+    // only an exact match of the classification is wanted
+    encodeTopic(SessionId.UUIDAsBytes(UUID.randomUUID()), "wanted");
+    receive();
+    encodeTopic(SessionId.UUIDAsBytes(UUID.randomUUID()), "wanted12");
+    receive();
+    encodeTopic(SessionId.UUIDAsBytes(UUID.randomUUID()), "wanted3");
+    receive();
+    assertEquals(0, testConsumer.datagramsReceived);
+    assertEquals(3, filter.getFiltered());
+
+    encodeTopic(SessionId.UUIDAsBytes(UUID.randomUUID()), "wanted2");
+    receive();
+    assertEquals(1, testConsumer.datagramsReceived);
+  }
+
+  @Test
+  public void truncatedTopic() {
+    encodeTopic(SessionId.UUIDAsBytes(UUID.randomUUID()), "wanted1");
+    datagram.position(datagram.position() - 1);
+    receive();
+    assertEquals(0, testConsumer.datagramsReceived);
+  }
+
+  @Test
+  public void notYetLearned() {
+    MultiplexSequencer sequencer =
+        new MultiplexSequencer(frameEncoder, SessionId.UUIDAsBytes(UUID.randomUUID()));
+    encodeDatagram(sequencer);
+    receive();
+    assertEquals(0, testConsumer.datagramsReceived);
+  }
+
+  @Test
+  public void unattributed() {
+    datagram.clear();
+    encodeApplicationMessageWithFrame(datagram);
+    receive();
+    assertEquals(1, testConsumer.datagramsReceived);
+  }
+
+  private void encodeApplicationMessageWithFrame(ByteBuffer buffer) {
+    int offset = buffer.position();
+    mutableBuffer.wrap(buffer);
+    frameEncoder.wrap(buffer, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.blockLength(8).templateId(templateId).schemaId(schemaId)
+        .version(schemaVersion);
+    offset += MessageHeaderEncoder.ENCODED_LENGTH;
+    buffer.position(offset);
+    buffer.putLong(0L);
+    frameEncoder.setMessageLength(8 + MessageHeaderEncoder.ENCODED_LENGTH);
+    frameEncoder.encodeFrameTrailer();
+  }
+
+  private void encodeDatagram(MultiplexSequencer sequencer) {
+    message.clear();
+    encodeApplicationMessageWithFrame(message);
+    datagram.clear();
+    for (ByteBuffer src : sequencer.apply(new ByteBuffer[] {message})) {
+      ByteBuffer frame = src.duplicate();
+      frame.flip();
+      datagram.put(frame);
+    }
+  }
+
+  private void encodeTopic(byte[] uuidAsBytes, String topic) {
+    datagram.clear();
+    mutableBuffer.wrap(datagram);
+    int offset = 0;
+    frameEncoder.wrap(datagram, offset).encodeFrameHeader();
+    offset += frameEncoder.getHeaderLength();
+    messageHeaderEncoder.wrap(mutableBuffer, offset);
+    messageHeaderEncoder.blockLength(topicEncoder.sbeBlockLength())
+        .templateId(topicEncoder.sbeTemplateId()).schemaId(topicEncoder.sbeSchemaId())
+        .version(topicEncoder.sbeSchemaVersion());
+    offset += messageHeaderEncoder.encodedLength();
+    topicEncoder.wrap(mutableBuffer, offset);
+    for (int i = 0; i < 16; i++) {
+      topicEncoder.sessionId(i, uuidAsBytes[i]);
+    }
+    topicEncoder.flow(FlowType.Idempotent);
+    topicEncoder.classification(topic);
+    frameEncoder.setMessageLength(offset + topicEncoder.encodedLength());
+    frameEncoder.encodeFrameTrailer();
+    datagram.position(offset + topicEncoder.encodedLength());
+  }
+
+  private void receive() {
+    ByteBuffer received = datagram.duplicate().order(ByteOrder.nativeOrder());
+    received.flip();
+    filter.accept(received);
+  }
+}
@@ -112,6 +112,15 @@ public class UdpSessionTest {
 
   @Test
   public void sendIdempotent() throws Exception {
+    sendIdempotent(0);
+  }
+
+  @Test
+  public void sendIdempotentPacked() throws Exception {
+    sendIdempotent(1400);
+  }
+
+  private void sendIdempotent(int maxDatagramSize) throws Exception {
     TestReceiver serverReceiver = new TestReceiver();
     Transport serverTransport = new UdpTransport(engine.getIOReactor().getSelector(), clientAddress,
         serverAddress);
@@ -136,6 +145,7 @@ public class UdpSessionTest {
             new SingleBufferSupplier(ByteBuffer.allocate(16 * 1024).order(ByteOrder.nativeOrder())))
         .withMessageConsumer(clientReceiver).withOutboundFlow(FlowType.Idempotent)
         .withSessionId(sessionId).withClientCredentials(userCredentials.getBytes())
+        .withDatagramPacking(maxDatagramSize, 1, TimeUnit.MILLISECONDS)
         .withOutboundKeepaliveInterval(keepAliveInterval).build();
 
     SessionReadyFuture readyFuture = new SessionReadyFuture(sessionId, reactor2);
@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp.flow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.buffer.BufferSupplier;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.transport.Transport;
+import io.fixprotocol.silverflash.transport.TransportConsumer;
+
+public class DatagramPackerTest {
+
+  /**
+   * Records the contents of each datagram, from the start of each buffer to its position
+   */
+  class RecordingTransport implements Transport {
+    final List<ByteBuffer[]> datagrams = new ArrayList<>();
+    final List<byte[]> payloads = new ArrayList<>();
+
+    public void close() {
+
+    }
+
+    public boolean isFifo() {
+      return false;
+    }
+
+    public boolean isMessageOriented() {
+      return true;
+    }
+
+    public boolean isOpen() {
+      return true;
+    }
+
+    public boolean isReadyToRead() {
+      return false;
+    }
+
+    public CompletableFuture<? extends Transport> open(BufferSupplier buffers,
+        TransportConsumer consumer) {
+      return CompletableFuture.completedFuture(this);
+    }
+
+    public int read() throws IOException {
+      return 0;
+    }
+
+    public int write(ByteBuffer src) throws IOException {
+      return (int) write(new ByteBuffer[] {src});
+    }
+
+    public long write(ByteBuffer[] srcs) throws IOException {
+      datagrams.add(srcs.clone());
+      final ByteBuffer last = srcs[srcs.length - 1];
+      final byte[] payload = new byte[last.position()];
+      for (int i = 0; i < payload.length; i++) {
+        payload[i] = last.get(i);
+      }
+      payloads.add(payload);
+      return payload.length;
+    }
+  }
+
+  private static final int MAX_DATAGRAM_SIZE = DatagramPacker.MAX_HEADER_LENGTH + 100;
+
+  private final ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+  private RecordingTransport transport;
+
+  @Before
+  public void setUp() {
+    transport = new RecordingTransport();
+  }
+
+  @Test
+  public void pack() throws Exception {
+    DatagramPacker packer = new DatagramPacker(transport, null, MAX_DATAGRAM_SIZE);
+    // four messages of 30 bytes fill a datagram of 100 bytes after three
+    for (int i = 1; i <= 4; i++) {
+      assertTrue(packer.pack(fill(i, 30)));
+      // the caller's buffer is unchanged
+      assertEquals(30, message.position());
+    }
+    assertEquals(1, transport.payloads.size());
+    assertEquals(90, transport.payloads.get(0).length);
+    assertEquals(1, transport.payloads.get(0)[0]);
+    assertEquals(3, transport.payloads.get(0)[89]);
+    assertEquals(1, packer.getMessageCount());
+
+    packer.flush();
+    assertEquals(2, transport.payloads.size());
+    assertEquals(30, transport.payloads.get(1).length);
+    assertEquals(4, transport.payloads.get(1)[0]);
+    assertEquals(0, packer.getMessageCount());
+
+    // nothing staged, so nothing is written
+    packer.flush();
+    assertEquals(2, transport.payloads.size());
+  }
+
+  @Test
+  public void tooLarge() throws Exception {
+    DatagramPacker packer = new DatagramPacker(transport, null, MAX_DATAGRAM_SIZE);
+    assertTrue(packer.pack(fill(1, 10)));
+    assertFalse(packer.pack(fill(2, 101)));
+    // staged messages are not written on account of a refused one
+    assertEquals(0, transport.payloads.size());
+    assertEquals(1, packer.getMessageCount());
+  }
+
+  @Test
+  public void sequenced() throws Exception {
+    SimplexSequencer sequencer = new SimplexSequencer(new MessageLengthFrameEncoder(), 1);
+    DatagramPacker packer = new DatagramPacker(transport, sequencer, MAX_DATAGRAM_SIZE);
+    for (int i = 1; i <= 5; i++) {
+      assertTrue(packer.pack(fill(i, 30)));
+    }
+    packer.flush();
+
+    // one Sequence message for each datagram, and a sequence number for each message
+    assertEquals(2, transport.datagrams.size());
+    for (ByteBuffer[] datagram : transport.datagrams) {
+      assertEquals(2, datagram.length);
+      assertSame(transport.datagrams.get(0)[0], datagram[0]);
+    }
+    assertEquals(90, transport.payloads.get(0).length);
+    assertEquals(60, transport.payloads.get(1).length);
+    assertEquals(6, sequencer.getNextSeqNo());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void datagramTooSmall() {
+    new DatagramPacker(transport, null, DatagramPacker.MAX_HEADER_LENGTH);
+  }
+
+  private ByteBuffer fill(int value, int length) {
+    message.clear();
+    for (int i = 0; i < length; i++) {
+      message.put((byte) value);
+    }
+    return message;
+  }
+}
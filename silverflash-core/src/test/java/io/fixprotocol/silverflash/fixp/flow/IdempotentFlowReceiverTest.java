@@ -0,0 +1,99 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp.flow;
+
+import static io.fixprotocol.silverflash.fixp.SessionEventTopics.ToSessionEventType.APPLICATION_MESSAGE_TO_SEND;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.Session;
+import io.fixprotocol.silverflash.fixp.SessionEventTopics;
+import io.fixprotocol.silverflash.fixp.SessionId;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderDecoder;
+import io.fixprotocol.silverflash.fixp.messages.NotAppliedDecoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
+import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
+import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.transport.Transport;
+
+public class IdempotentFlowReceiverTest {
+
+  private EventReactor<ByteBuffer> reactor;
+
+  @Before
+  public void setUp() throws Exception {
+    reactor = EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
+        .withPayloadAllocator(new ByteBufferPayload(2048)).build();
+    reactor.open().get();
+  }
+
+  @After
+  public void tearDown() {
+    reactor.close();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  @Test
+  public void notifyGap() throws InterruptedException {
+    final UUID sessionId = SessionId.generateUUID();
+    final Session<UUID> session = mock(Session.class);
+    when(session.getSessionId()).thenReturn(sessionId);
+    final MessageLengthFrameEncoder frameEncoder = new MessageLengthFrameEncoder();
+
+    FlowReceiverBuilder builder = IdempotentFlowReceiver.builder();
+    IdempotentFlowReceiver receiver = (IdempotentFlowReceiver) builder.withSession(session)
+        .withMessageConsumer((buffer, s, seqNo) -> {}).withReactor(reactor)
+        .withTransport(mock(Transport.class)).withMessageFrameEncoder(frameEncoder).build();
+
+    final AtomicLong fromSeqNo = new AtomicLong();
+    final AtomicLong count = new AtomicLong();
+    reactor.subscribe(SessionEventTopics.getTopic(sessionId, APPLICATION_MESSAGE_TO_SEND),
+        buffer -> {
+          final UnsafeBuffer directBuffer = new UnsafeBuffer(buffer);
+          final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+          int offset = frameEncoder.getHeaderLength();
+          messageHeaderDecoder.wrap(directBuffer, offset);
+          assertEquals(NotAppliedDecoder.TEMPLATE_ID, messageHeaderDecoder.templateId());
+          offset += messageHeaderDecoder.encodedLength();
+          final NotAppliedDecoder notAppliedDecoder = new NotAppliedDecoder();
+          notAppliedDecoder.wrap(directBuffer, offset, messageHeaderDecoder.blockLength(),
+              messageHeaderDecoder.version());
+          count.set(notAppliedDecoder.count());
+          fromSeqNo.set(notAppliedDecoder.fromSeqNo());
+        });
+
+    // encoded in place in the event that sends it
+    receiver.notifyGap(5, 3);
+    for (int i = 0; i < 100 && count.get() == 0; i++) {
+      Thread.sleep(10L);
+    }
+    assertEquals(5, fromSeqNo.get());
+    assertEquals(3, count.get());
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.fixp.flow;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.Session;
+import io.fixprotocol.silverflash.fixp.SessionId;
+import io.fixprotocol.silverflash.fixp.messages.MessageHeaderEncoder;
+import io.fixprotocol.silverflash.fixp.messages.SequenceEncoder;
+import io.fixprotocol.silverflash.frame.MessageLengthFrameEncoder;
+import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
+import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
+import io.fixprotocol.silverflash.reactor.EventReactor;
+import io.fixprotocol.silverflash.transport.Transport;
+
+public class RecoverableFlowReceiverTest {
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+  private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+  private final UnsafeBuffer mutableBuffer = new UnsafeBuffer(buffer);
+  private EventReactor<ByteBuffer> reactor;
+  private final List<Long> received = new ArrayList<>();
+  private final SequenceEncoder sequenceEncoder = new SequenceEncoder();
+
+  @Before
+  public void setUp() throws Exception {
+    reactor = EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
+        .withPayloadAllocator(new ByteBufferPayload(2048)).build();
+    reactor.open().get();
+  }
+
+  @After
+  public void tearDown() {
+    reactor.close();
+  }
+
+  @Test
+  public void point() {
+    // no keepalive, but not joining a flow in progress
+    RecoverableFlowReceiver receiver = createReceiver(false);
+    receiver.accept(applicationMessage());
+    receiver.accept(applicationMessage());
+    assertEquals(Arrays.asList(1L, 2L), received);
+  }
+
+  @Test
+  public void joining() {
+    RecoverableFlowReceiver receiver = createReceiver(true);
+    receiver.accept(applicationMessage());
+    assertTrue(received.isEmpty());
+
+    receiver.accept(sequence(10));
+    receiver.accept(applicationMessage());
+    assertEquals(Arrays.asList(10L), received);
+  }
+
+  private ByteBuffer applicationMessage() {
+    buffer.clear();
+    messageHeaderEncoder.wrap(mutableBuffer, 0).blockLength(8).templateId(22).schemaId(33)
+        .version(0);
+    buffer.limit(messageHeaderEncoder.encodedLength() + 8);
+    return buffer;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private RecoverableFlowReceiver createReceiver(boolean isJoining) {
+    final UUID sessionId = SessionId.generateUUID();
+    final Session<UUID> session = mock(Session.class);
+    when(session.getSessionId()).thenReturn(sessionId);
+
+    FlowReceiverBuilder builder = RecoverableFlowReceiver.builder();
+    return (RecoverableFlowReceiver) builder.withSession(session).withJoining(isJoining)
+        .withMessageConsumer((message, s, seqNo) -> received.add(seqNo)).withReactor(reactor)
+        .withTransport(mock(Transport.class)).withKeepaliveInterval(0)
+        .withMessageFrameEncoder(new MessageLengthFrameEncoder()).build();
+  }
+
+  private ByteBuffer sequence(long nextSeqNo) {
+    buffer.clear();
+    messageHeaderEncoder.wrap(mutableBuffer, 0).blockLength(sequenceEncoder.sbeBlockLength())
+        .templateId(sequenceEncoder.sbeTemplateId()).schemaId(sequenceEncoder.sbeSchemaId())
+        .version(sequenceEncoder.sbeSchemaVersion());
+    sequenceEncoder.wrap(mutableBuffer, messageHeaderEncoder.encodedLength()).nextSeqNo(nextSeqNo);
+    buffer.limit(messageHeaderEncoder.encodedLength() + sequenceEncoder.encodedLength());
+    return buffer;
+  }
+}
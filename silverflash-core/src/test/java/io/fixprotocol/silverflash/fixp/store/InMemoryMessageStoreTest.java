@@ -18,9 +18,11 @@
 package io.fixprotocol.silverflash.fixp.store;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -104,4 +106,120 @@ public class InMemoryMessageStoreTest {
     assertEquals(10, found);
   }
 
+  @Test
+  public void testReusedBuffer() throws StoreException {
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(8);
+    for (long seqNo = 1; seqNo <= 100; seqNo++) {
+      message.clear();
+      message.putLong(seqNo);
+      message.flip();
+      store.insertMessage(sessionId, seqNo, message);
+    }
+
+    MessageStoreResult request = new MessageStoreResult(sessionId);
+    assertTrue(request.setRequest(System.currentTimeMillis(), 1, 100));
+    store.retrieveMessagesAsync(request, result -> {
+      for (long seqNo = 1; seqNo <= 100; seqNo++) {
+        ByteBuffer stored = result.getMessage(seqNo);
+        assertEquals(seqNo, stored.getLong(stored.position()));
+      }
+      result.finishedRetrieving();
+    });
+  }
+
+  @Test
+  public void testRetainedWindow() throws Exception {
+    store.close();
+    // window of 50 messages or 256 bytes in slabs of 64 bytes
+    store = new InMemoryMessageStore(50, 256, 64);
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(4);
+
+    for (long seqNo = 1; seqNo <= 100; seqNo++) {
+      message.clear();
+      message.putInt((int) seqNo);
+      message.flip();
+      store.insertMessage(sessionId, seqNo, message);
+    }
+    assertEquals(100, store.retrieveMaxSeqNo(sessionId));
+
+    // count limit
+    MessageStoreResult request = new MessageStoreResult(sessionId);
+    assertTrue(request.setRequest(System.currentTimeMillis(), 50, 10));
+    store.retrieveMessagesAsync(request, result -> {
+      assertFalse(result.isAvailable(50));
+      result.finishedRetrieving();
+    });
+    assertTrue(request.setRequest(System.currentTimeMillis(), 51, 50));
+    store.retrieveMessagesAsync(request, result -> {
+      assertTrue(result.isAvailable(51) && result.isAvailable(100));
+      assertEquals(51, result.getMessage(51).getInt(result.getMessage(51).position()));
+      result.finishedRetrieving();
+    });
+
+    // length limit
+    ByteBuffer large = ByteBuffer.allocate(200);
+    large.put(0, (byte) 101);
+    store.insertMessage(sessionId, 101, large);
+    assertTrue(request.setRequest(System.currentTimeMillis(), 51, 50));
+    store.retrieveMessagesAsync(request, result -> {
+      assertFalse(result.isAvailable(51));
+      result.finishedRetrieving();
+    });
+    assertTrue(request.setRequest(System.currentTimeMillis(), 87, 15));
+    store.retrieveMessagesAsync(request, result -> {
+      assertTrue(result.isAvailable(87));
+      assertEquals(15, result.getMessagesRemaining(87));
+      assertEquals(101, result.getMessage(101).get(result.getMessage(101).position()));
+      result.finishedRetrieving();
+    });
+  }
+
+  @Test
+  public void testRetrievedAfterEviction() throws Exception {
+    store.close();
+    // window of 50 messages or 256 bytes in slabs of 64 bytes
+    store = new InMemoryMessageStore(50, 256, 64);
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(4);
+    for (long seqNo = 1; seqNo <= 40; seqNo++) {
+      message.clear();
+      message.putInt((int) seqNo);
+      message.flip();
+      store.insertMessage(sessionId, seqNo, message);
+    }
+
+    // a retransmitter may still be sending views after it has finished retrieving
+    final List<ByteBuffer> retrieved = new ArrayList<>();
+    MessageStoreResult request = new MessageStoreResult(sessionId);
+    assertTrue(request.setRequest(System.currentTimeMillis(), 30, 10));
+    store.retrieveMessagesAsync(request, result -> {
+      retrieved.addAll(result.getMessageList(30, 10));
+      result.finishedRetrieving();
+    });
+    assertEquals(10, retrieved.size());
+
+    // the window rolls past the retrieved messages many times over
+    for (long seqNo = 41; seqNo <= 1000; seqNo++) {
+      message.clear();
+      message.putInt((int) seqNo);
+      message.flip();
+      store.insertMessage(sessionId, seqNo, message);
+    }
+
+    for (int i = 0; i < retrieved.size(); i++) {
+      final ByteBuffer view = retrieved.get(i);
+      assertEquals(30 + i, view.getInt(view.position()));
+    }
+  }
+
+  @Test(expected = StoreException.class)
+  public void testNotAscending() throws StoreException {
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(8);
+    store.insertMessage(sessionId, 2, message);
+    store.insertMessage(sessionId, 1, message);
+  }
+
 }
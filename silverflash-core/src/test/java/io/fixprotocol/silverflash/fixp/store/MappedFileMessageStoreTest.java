@@ -0,0 +1,160 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileMessageStoreTest {
+
+  private Path directory;
+  private MappedFileMessageStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("store");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (store != null) {
+      store.close();
+    }
+    deleteRecursively(directory.toFile());
+  }
+
+  @Test
+  public void insertAndRetrieve() throws Exception {
+    store = newStore(0);
+    UUID sessionId = UUID.randomUUID();
+    final int maxSeqNo = 200;
+    insert(sessionId, 1, maxSeqNo);
+    assertEquals(maxSeqNo, store.retrieveMaxSeqNo(sessionId));
+
+    // range spans several segments
+    verify(sessionId, 37, 150, 150);
+  }
+
+  @Test(expected = StoreException.class)
+  public void notAscending() throws Exception {
+    store = newStore(0);
+    UUID sessionId = UUID.randomUUID();
+    insert(sessionId, 1, 10);
+    insert(sessionId, 10, 1);
+  }
+
+  @Test
+  public void reopen() throws Exception {
+    store = newStore(0);
+    UUID sessionId = UUID.randomUUID();
+    insert(sessionId, 1, 100);
+    store.flush(Durability.SYNC);
+    store.close();
+
+    store = newStore(0);
+    assertEquals(100, store.retrieveMaxSeqNo(sessionId));
+    verify(sessionId, 1, 100, 100);
+
+    // appends after restart
+    insert(sessionId, 101, 10);
+    assertEquals(110, store.retrieveMaxSeqNo(sessionId));
+    verify(sessionId, 95, 16, 16);
+  }
+
+  @Test
+  public void retention() throws Exception {
+    store = newStore(2);
+    UUID sessionId = UUID.randomUUID();
+    // index capacity of 16 messages per segment
+    insert(sessionId, 1, 100);
+    assertEquals(100, store.retrieveMaxSeqNo(sessionId));
+
+    File[] segments = directory.resolve(sessionId.toString()).toFile().listFiles();
+    // two segments, each of a data and index file
+    assertEquals(4, segments.length);
+
+    // oldest messages are not available
+    MessageStoreResult result = new MessageStoreResult(sessionId);
+    assertTrue(result.setRequest(System.currentTimeMillis(), 1, 10));
+    store.retrieveMessagesAsync(result, r -> assertEquals(0, r.getMessagesRemaining(1)));
+    verify(sessionId, 81, 20, 20);
+  }
+
+  @Test
+  public void unknownSession() throws Exception {
+    store = newStore(0);
+    UUID sessionId = UUID.randomUUID();
+    assertEquals(0, store.retrieveMaxSeqNo(sessionId));
+    verify(sessionId, 1, 10, 0);
+  }
+
+  private void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+
+  private void insert(UUID sessionId, long fromSeqNo, int count) throws StoreException {
+    for (long seqNo = fromSeqNo; seqNo < fromSeqNo + count; seqNo++) {
+      // message length varies so that records roll over chunk boundaries
+      ByteBuffer message = ByteBuffer.allocate(8 + (int) (seqNo % 50)).order(ByteOrder.nativeOrder());
+      message.putLong(seqNo);
+      message.rewind();
+      store.insertMessage(sessionId, seqNo, message);
+      assertEquals(0, message.position());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private MappedFileMessageStore newStore(int retainedSegments) throws Exception {
+    MappedFileMessageStore store = (MappedFileMessageStore) MappedFileMessageStore.builder()
+        .withDirectory(directory).withChunkSize(512).withChunksPerSegment(4).withIndexCapacity(16)
+        .withRetainedSegments(retainedSegments).build();
+    store.open().get();
+    return store;
+  }
+
+  private void verify(UUID sessionId, long fromSeqNo, int count, int expected)
+      throws StoreException {
+    MessageStoreResult result = new MessageStoreResult(sessionId);
+    assertTrue(result.setRequest(System.currentTimeMillis(), fromSeqNo, count));
+    store.retrieveMessagesAsync(result, r -> {
+      assertEquals(expected, r.getMessagesRemaining(fromSeqNo));
+      for (long seqNo = fromSeqNo; seqNo < fromSeqNo + expected; seqNo++) {
+        ByteBuffer stored = r.getMessage(seqNo);
+        assertEquals(8 + seqNo % 50, stored.remaining());
+        assertEquals(seqNo, stored.getLong(stored.position()));
+      }
+      r.finishedRetrieving();
+    });
+  }
+}
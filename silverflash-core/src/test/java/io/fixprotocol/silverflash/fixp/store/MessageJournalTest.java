@@ -0,0 +1,248 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.fixp.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageJournalTest {
+
+  class FlushCountingStore extends InMemoryMessageStore {
+    final List<Durability> flushes = new ArrayList<>();
+
+    @Override
+    public void flush(Durability durability) throws StoreException {
+      flushes.add(durability);
+    }
+  }
+
+  class BlockingStore extends InMemoryMessageStore {
+    private final CountDownLatch latch;
+
+    BlockingStore(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void insertMessage(UUID sessionId, long seqNo, ByteBuffer message)
+        throws StoreException {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        throw new StoreException(e);
+      }
+      super.insertMessage(sessionId, seqNo, message);
+    }
+  }
+
+  private MessageJournal journal;
+  private FlushCountingStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    store = new FlushCountingStore();
+    store.open().get();
+    journal = new MessageJournal(store, Executors.defaultThreadFactory(), System.err::println, 64);
+    journal.open().get();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    journal.close();
+    store.close();
+  }
+
+  @Test
+  public void append() throws Exception {
+    UUID sessionId = UUID.randomUUID();
+    // buffer in the state passed to a transport, before flip
+    ByteBuffer message = ByteBuffer.allocate(1024);
+    final int maxSeqNo = 200;
+    for (long seqNo = 1; seqNo <= maxSeqNo; seqNo++) {
+      message.clear();
+      message.putLong(seqNo);
+      journal.append(journal.reserve(1), sessionId, seqNo, new ByteBuffer[] {message},
+          Durability.FLUSH);
+      // sender's buffer is left untouched
+      assertEquals(8, message.position());
+    }
+    // drains pending messages
+    journal.close();
+
+    assertEquals(maxSeqNo, store.retrieveMaxSeqNo(sessionId));
+    MessageStoreResult result = new MessageStoreResult(sessionId);
+    assertTrue(result.setRequest(System.currentTimeMillis(), 1, maxSeqNo));
+    store.retrieveMessagesAsync(result, r -> {
+      for (long seqNo = 1; seqNo <= maxSeqNo; seqNo++) {
+        ByteBuffer stored = r.getMessage(seqNo);
+        assertEquals(8, stored.remaining());
+        assertEquals(seqNo, stored.getLong(stored.position()));
+      }
+    });
+
+    // flushed at least once per batch, not necessarily per message
+    assertTrue(store.flushes.size() >= 1 && store.flushes.size() <= maxSeqNo);
+    assertEquals(Durability.FLUSH, store.flushes.get(0));
+  }
+
+  @Test
+  public void full() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    BlockingStore blockingStore = new BlockingStore(latch);
+    blockingStore.open().get();
+    final int ringSize = 64;
+    MessageJournal blockedJournal = new MessageJournal(blockingStore,
+        Executors.defaultThreadFactory(), System.err::println, ringSize);
+    blockedJournal.open().get();
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(64);
+    message.put((byte) 1);
+    try {
+      // journal thread is stuck on the first message, so a full ring is pending
+      for (long seqNo = 1; seqNo <= ringSize; seqNo++) {
+        blockedJournal.append(sessionId, seqNo, message, Durability.NONE);
+      }
+      try {
+        blockedJournal.append(sessionId, ringSize + 1, message, Durability.NONE);
+        fail("Append to a full journal should fail");
+      } catch (StoreException e) {
+        // expected without blocking
+      }
+      try {
+        blockedJournal.append(sessionId, ringSize + 1, new ByteBuffer[] {message, message},
+            Durability.NONE);
+        fail("Append to a full journal should fail");
+      } catch (StoreException e) {
+        // expected without blocking
+      }
+      latch.countDown();
+      blockedJournal.close();
+      assertEquals(ringSize, blockingStore.retrieveMaxSeqNo(sessionId));
+    } finally {
+      latch.countDown();
+      blockedJournal.close();
+      blockingStore.close();
+    }
+  }
+
+  @Test
+  public void sharedReservations() throws Exception {
+    // senders contend for a small journal that lags behind them
+    BlockingStore slowStore = new BlockingStore(new CountDownLatch(0));
+    slowStore.open().get();
+    MessageJournal sharedJournal = new MessageJournal(slowStore,
+        Executors.defaultThreadFactory(), System.err::println, 4);
+    sharedJournal.open().get();
+    final int messageCount = 500;
+    final UUID[] sessionIds = new UUID[3];
+    final Thread[] senders = new Thread[sessionIds.length];
+    final List<Exception> failures = new ArrayList<>();
+    try {
+      for (int i = 0; i < senders.length; i++) {
+        final UUID sessionId = UUID.randomUUID();
+        sessionIds[i] = sessionId;
+        senders[i] = new Thread(() -> {
+          ByteBuffer[] messages = {ByteBuffer.allocate(64), ByteBuffer.allocate(64)};
+          try {
+            for (long seqNo = 1; seqNo <= messageCount; seqNo += messages.length) {
+              for (ByteBuffer message : messages) {
+                message.clear();
+                message.put((byte) 1);
+              }
+              sharedJournal.append(sharedJournal.reserve(messages.length), sessionId, seqNo,
+                  messages, Durability.NONE);
+            }
+          } catch (StoreException e) {
+            synchronized (failures) {
+              failures.add(e);
+            }
+          }
+        });
+        senders[i].start();
+      }
+      for (Thread sender : senders) {
+        sender.join();
+      }
+      sharedJournal.close();
+      assertTrue(failures.isEmpty());
+      for (UUID sessionId : sessionIds) {
+        assertEquals(messageCount, slowStore.retrieveMaxSeqNo(sessionId));
+      }
+    } finally {
+      sharedJournal.close();
+      slowStore.close();
+    }
+  }
+
+  @Test
+  public void storeFailure() throws Exception {
+    List<Exception> failures = new ArrayList<>();
+    InMemoryMessageStore failingStore = new InMemoryMessageStore() {
+      @Override
+      public void insertMessage(UUID sessionId, long seqNo, ByteBuffer message)
+          throws StoreException {
+        if (seqNo == 1) {
+          throw new IllegalStateException("Store failure");
+        }
+        super.insertMessage(sessionId, seqNo, message);
+      }
+    };
+    failingStore.open().get();
+    MessageJournal failingJournal = new MessageJournal(failingStore,
+        Executors.defaultThreadFactory(), failures::add, 64);
+    failingJournal.open().get();
+    try {
+      UUID sessionId = UUID.randomUUID();
+      ByteBuffer message = ByteBuffer.allocate(64);
+      message.put((byte) 1);
+      for (long seqNo = 1; seqNo <= 10; seqNo++) {
+        failingJournal.append(sessionId, seqNo, message, Durability.NONE);
+      }
+      // the journal thread survives the failure, so close does not hang
+      failingJournal.close();
+      assertEquals(10, failingStore.retrieveMaxSeqNo(sessionId));
+      assertEquals(1, failures.size());
+    } finally {
+      failingJournal.close();
+      failingStore.close();
+    }
+  }
+
+  @Test
+  public void fireAndForget() throws Exception {
+    UUID sessionId = UUID.randomUUID();
+    ByteBuffer message = ByteBuffer.allocate(64);
+    message.put((byte) 1);
+    journal.append(sessionId, 1, message, Durability.NONE);
+    journal.close();
+
+    assertEquals(1, store.retrieveMaxSeqNo(sessionId));
+    assertEquals(0, store.flushes.size());
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.frame;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.frame.sofh.SofhFrameDecoder;
+import io.fixprotocol.silverflash.frame.sofh.SofhFrameEncoder;
+import io.fixprotocol.silverflash.frame.sofh.SofhFrameSpliterator;
+
+public class ReassemblingFrameSpliteratorTest {
+
+  private ByteBuffer buffer;
+  private int count;
+  private final Consumer<ByteBuffer> verifier = new Consumer<ByteBuffer>() {
+
+    public void accept(ByteBuffer message) {
+      assertEquals(count + 1, message.remaining());
+      while (message.hasRemaining()) {
+        assertEquals((byte) count, message.get());
+      }
+      count++;
+    }
+  };
+  private final int messageCount = Byte.MAX_VALUE;
+  private ByteBuffer[] messages;
+
+  @Before
+  public void setUp() throws Exception {
+    messages = new ByteBuffer[messageCount];
+    for (int i = 0; i < messageCount; ++i) {
+      messages[i] = ByteBuffer.allocate(i + 1).order(ByteOrder.nativeOrder());
+      for (int j = 0; j < messages[i].limit(); ++j) {
+        messages[i].put((byte) i);
+      }
+    }
+
+    buffer = ByteBuffer.allocate(16 * 1024).order(ByteOrder.nativeOrder());
+  }
+
+  @Test
+  public void wholeFrames() {
+    encodeAll(new MessageLengthFrameEncoder());
+    ReassemblingFrameSpliterator spliterator = new ReassemblingFrameSpliterator();
+    count = 0;
+    spliterator.wrap(buffer);
+    spliterator.forEachRemaining(verifier);
+    assertEquals(messageCount, count);
+    assertEquals(0, spliterator.getBytesCarried());
+    assertFalse(spliterator.hasRemaining());
+  }
+
+  @Test
+  public void straddlingFrames() {
+    encodeAll(new MessageLengthFrameEncoder());
+    final int[] readSizes = {1, 2, 3, 7, 64, 129, 1000};
+    for (int readSize : readSizes) {
+      buffer.rewind();
+      count = 0;
+      readInChunks(new ReassemblingFrameSpliterator(), readSize);
+      assertEquals("read size " + readSize, messageCount, count);
+    }
+  }
+
+  @Test
+  public void straddlingSofhFrames() {
+    encodeAll(new SofhFrameEncoder());
+    final int[] readSizes = {1, 5, 6, 11, 250};
+    for (int readSize : readSizes) {
+      buffer.rewind();
+      count = 0;
+      // small initial capacity forces expansion
+      readInChunks(new ReassemblingFrameSpliterator(new SofhFrameSpliterator(),
+          new SofhFrameDecoder(), 16), readSize);
+      assertEquals("read size " + readSize, messageCount, count);
+    }
+  }
+
+  @Test
+  public void reset() {
+    encodeAll(new MessageLengthFrameEncoder());
+    ReassemblingFrameSpliterator spliterator = new ReassemblingFrameSpliterator();
+    ByteBuffer read = ByteBuffer.allocate(3).order(buffer.order());
+    read.put(buffer.get()).put(buffer.get()).put(buffer.get());
+    read.flip();
+    count = 0;
+    spliterator.wrap(read);
+    spliterator.forEachRemaining(verifier);
+    assertEquals(1, count);
+
+    buffer.get();
+    read.clear();
+    read.put(buffer.get());
+    read.flip();
+    spliterator.wrap(read);
+    spliterator.forEachRemaining(verifier);
+    assertEquals(1, spliterator.getBytesCarried());
+
+    spliterator.reset();
+    assertEquals(0, spliterator.getBytesCarried());
+  }
+
+  private void encodeAll(MessageFrameEncoder encoder) {
+    int offset = 0;
+    for (int i = 0; i < messageCount; ++i) {
+      ByteBuffer message = messages[i];
+      message.flip();
+      int messageLength = message.remaining();
+      encoder.wrap(buffer, offset).setMessageLength(messageLength).encodeFrameHeader();
+      buffer.position(offset + encoder.getHeaderLength());
+      buffer.put(message);
+      encoder.encodeFrameTrailer();
+      offset += encoder.getEncodedLength();
+    }
+    buffer.flip();
+  }
+
+  private void readInChunks(ReassemblingFrameSpliterator spliterator, int readSize) {
+    // a single read buffer is reused, as by a stream transport
+    ByteBuffer read = ByteBuffer.allocateDirect(readSize).order(buffer.order());
+    while (buffer.hasRemaining()) {
+      read.clear();
+      int length = Math.min(readSize, buffer.remaining());
+      for (int i = 0; i < length; i++) {
+        read.put(buffer.get());
+      }
+      read.flip();
+      spliterator.wrap(read);
+      spliterator.forEachRemaining(verifier);
+    }
+    assertEquals(0, spliterator.getBytesCarried());
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+
+public class BackoffWaitStrategyTest {
+
+  /**
+   * Becomes available after a fixed number of polls, so that phases are counted deterministically
+   */
+  static class CountdownSequence extends Sequence {
+    private int pollsRemaining;
+
+    CountdownSequence(int polls) {
+      super(-1L);
+      this.pollsRemaining = polls;
+    }
+
+    @Override
+    public long get() {
+      return --pollsRemaining > 0 ? -1L : 0L;
+    }
+  }
+
+  private RingBuffer<Object> ringBuffer;
+  private BackoffWaitStrategy strategy;
+
+  @Before
+  public void setUp() {
+    strategy = BackoffWaitStrategy.builder().withSpinTries(100).withYieldTries(10)
+        .withParkTime(10, TimeUnit.MICROSECONDS).withTimeout(5, TimeUnit.MILLISECONDS).build();
+    ringBuffer = RingBuffer.createSingleProducer(Object::new, 8, strategy);
+  }
+
+  @Test
+  public void available() throws Exception {
+    SequenceBarrier barrier = ringBuffer.newBarrier();
+    ringBuffer.publish(ringBuffer.next());
+    assertEquals(0, barrier.waitFor(0));
+    // fast path is not counted
+    assertEquals(0, strategy.getSpins());
+    assertEquals(0, strategy.getYields());
+    assertEquals(0, strategy.getParks());
+  }
+
+  @Test
+  public void backoff() throws Exception {
+    // a timeout far beyond the yields, even on a loaded machine
+    strategy = BackoffWaitStrategy.builder().withSpinTries(100).withYieldTries(10)
+        .withParkTime(10, TimeUnit.MICROSECONDS).withTimeout(10, TimeUnit.SECONDS).build();
+    SequenceBarrier barrier = ringBuffer.newBarrier();
+    final int parks = 3;
+    // one poll on the fast path, then one per spin, yield and park
+    Sequence dependentSequence = new CountdownSequence(1 + 100 + 10 + parks + 1);
+    assertEquals(0, strategy.waitFor(0, dependentSequence, dependentSequence, barrier));
+    assertEquals(100, strategy.getSpins());
+    assertEquals(10, strategy.getYields());
+    assertEquals(parks, strategy.getParks());
+
+    strategy.reset();
+    assertEquals(0, strategy.getParks());
+  }
+
+  @Test(expected = TimeoutException.class)
+  public void timeout() throws Exception {
+    SequenceBarrier barrier = ringBuffer.newBarrier();
+    try {
+      barrier.waitFor(0);
+    } finally {
+      // times out only while parking, so the earlier phases ran in full
+      assertEquals(100, strategy.getSpins());
+      assertEquals(10, strategy.getYields());
+    }
+  }
+
+  @Test
+  public void noTimeout() {
+    assertEquals(0, BackoffWaitStrategy.builder().build().getTimeoutNanos());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(5), strategy.getTimeoutNanos());
+  }
+}
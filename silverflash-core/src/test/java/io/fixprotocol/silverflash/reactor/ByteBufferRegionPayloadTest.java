@@ -0,0 +1,82 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteBufferRegionPayloadTest {
+
+  private ByteBufferRegionPayload allocator;
+
+  @Before
+  public void setUp() {
+    // 8 blocks of 64 bytes
+    allocator = new ByteBufferRegionPayload(512, 64);
+  }
+
+  @Test
+  public void claim() {
+    ByteBuffer payload = allocator.claimPayload(null, 100);
+    assertNotNull(payload);
+    assertEquals(0, payload.position());
+    assertEquals(100, payload.limit());
+  }
+
+  @Test
+  public void exhausted() {
+    assertNotNull(allocator.claimPayload(null, 256));
+    assertNotNull(allocator.claimPayload(null, 256));
+    assertNull(allocator.claimPayload(null, 1));
+    allocator.releasePayload(null);
+    assertNotNull(allocator.claimPayload(null, 1));
+  }
+
+  @Test
+  public void wrap() {
+    assertNotNull(allocator.claimPayload(null, 384));
+    allocator.releasePayload(null);
+    // does not fit in the remaining 2 blocks, so it is placed at start of region
+    ByteBuffer payload = allocator.claimPayload(null, 192);
+    assertNotNull(payload);
+    assertEquals(192, payload.remaining());
+    // only 3 blocks remain until the first claim is released
+    assertNull(allocator.claimPayload(null, 256));
+    assertNotNull(allocator.claimPayload(null, 192));
+  }
+
+  @Test
+  public void copy() {
+    ByteBuffer src = ByteBuffer.allocate(1024);
+    src.put("Hello world!".getBytes());
+    ByteBuffer payload = allocator.copyPayload(src, null);
+    payload.flip();
+    assertEquals(12, payload.remaining());
+    assertEquals('H', payload.get(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooLong() {
+    allocator.claimPayload(null, 1024);
+  }
+}
@@ -30,6 +30,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.lmax.disruptor.BusySpinWaitStrategy;
+
 import io.fixprotocol.silverflash.Receiver;
 import io.fixprotocol.silverflash.reactor.ByteBufferDispatcher;
 import io.fixprotocol.silverflash.reactor.ByteBufferPayload;
@@ -175,4 +177,198 @@ public class EventReactorTest {
     EventFuture future = new EventFuture(topic, reactor);
     ByteBuffer result = future.get(10L, TimeUnit.MILLISECONDS);
   }
+
+  @Test
+  public void timedEvents() throws InterruptedException {
+    Topic topic = Topics.getTopic("TestTopic3");
+    reactor.subscribe(topic, receiver);
+    ByteBuffer src = ByteBuffer.allocate(0);
+
+    TimerSchedule interval = reactor.postAtInterval(topic, src, 20L);
+    reactor.postAt(topic, src, 10L);
+    Thread.sleep(500L);
+    assertTrue(interval.cancel());
+    int count = receiver.getCount();
+    // one-time event plus about 25 intervals
+    assertTrue(count > 10 && count < 40);
+
+    Thread.sleep(100L);
+    assertEquals(count, receiver.getCount());
+  }
+
+  @Test
+  public void claimAndCommit() throws InterruptedException {
+    Topic topic = Topics.getTopic("TestTopic4");
+    reactor.subscribe(topic, receiver);
+    final byte[] bytes = "Hello world!".getBytes();
+
+    long sequence = reactor.claim(topic, bytes.length);
+    reactor.getPayload(sequence).put(bytes);
+    reactor.commit(sequence);
+    Thread.sleep(100L);
+
+    assertEquals(1, receiver.getCount());
+    byte[] dst = new byte[bytes.length];
+    receiver.getLastBuffer().get(dst);
+    assertArrayEquals(bytes, dst);
+  }
+
+  @Test
+  public void endOfBatch() throws InterruptedException {
+    Topic topic = Topics.getTopic("TestTopic6");
+    final int count = 100;
+    final AtomicInteger actionRuns = new AtomicInteger();
+    final AtomicInteger receivedAtLastRun = new AtomicInteger();
+    final Runnable action = () -> {
+      actionRuns.incrementAndGet();
+      receivedAtLastRun.set(receiver.getCount());
+    };
+    reactor.subscribe(topic, buffer -> {
+      receiver.accept(buffer);
+      // deferred once per batch no matter how often
+      reactor.runAtEndOfBatch(topic, action);
+      reactor.runAtEndOfBatch(topic, action);
+    });
+
+    ByteBuffer src = ByteBuffer.allocate(16);
+    for (int i = 0; i < count; i++) {
+      reactor.post(topic, src);
+    }
+    Thread.sleep(200L);
+
+    assertEquals(count, receiver.getCount());
+    assertTrue(actionRuns.get() >= 1 && actionRuns.get() <= count);
+    // the action runs after the events of its batch
+    assertEquals(count, receivedAtLastRun.get());
+
+    // not the dispatching thread, so run at once
+    reactor.runAtEndOfBatch(topic, action);
+    assertEquals(count, receivedAtLastRun.get());
+  }
+
+  @Test
+  public void releasedTopic() throws InterruptedException {
+    Topic released = Topics.getTopic("TestTopic5", "Released");
+    assertNotNull(reactor.subscribe(released, receiver));
+    Topics.release(released);
+    assertFalse(reactor.hasSubscriber(released));
+    assertNull(reactor.subscribe(released, receiver));
+
+    // a Topic that reuses the identifier does not inherit the subscriber
+    Topic reused = Topics.getTopic("TestTopic5", "Reused");
+    assertFalse(reactor.hasSubscriber(reused));
+    TestReceiver receiver2 = new TestReceiver();
+    assertNotNull(reactor.subscribe(reused, receiver2));
+
+    ByteBuffer src = ByteBuffer.allocate(1024);
+    reactor.post(released, src);
+    reactor.post(reused, src);
+    Thread.sleep(100L);
+    assertEquals(0, receiver.getCount());
+    assertEquals(1, receiver2.getCount());
+    reactor.unsubscribe(released);
+    assertTrue(reactor.hasSubscriber(reused));
+    Topics.release(reused);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void claimTooLong() {
+    reactor.claim(Topics.getTopic("TestTopic4"), 4096);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void waitStrategyWithoutTimeout() {
+    EventReactor.builder().withWaitStrategy(BackoffWaitStrategy.builder().build());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void waitStrategyNeverTimesOut() {
+    EventReactor.builder().withWaitStrategy(new BusySpinWaitStrategy());
+  }
+
+  @Test
+  public void waitStrategyWithTimeout() throws Exception {
+    EventReactor<ByteBuffer> backoffReactor =
+        EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
+            .withPayloadAllocator(new ByteBufferPayload(2048))
+            .withWaitStrategy(
+                BackoffWaitStrategy.builder().withTimeout(1, TimeUnit.MILLISECONDS).build())
+            .build();
+    backoffReactor.open().get();
+    try {
+      Topic topic = Topics.getTopic("TestTopic7");
+      backoffReactor.subscribe(topic, receiver);
+      // timer expires only if an idle wait times out
+      backoffReactor.postAt(topic, ByteBuffer.allocate(0), 10L);
+      Thread.sleep(200L);
+      assertEquals(1, receiver.getCount());
+    } finally {
+      backoffReactor.close();
+    }
+  }
+
+  @Test
+  public void payloadRegion() throws Exception {
+    EventReactor<ByteBuffer> regionReactor =
+        EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
+            .withPayloadAllocator(new ByteBufferRegionPayload(16 * 1024)).build();
+    regionReactor.open().get();
+    try {
+      Topic topic = Topics.getTopic("TestTopic5");
+      regionReactor.subscribe(topic, receiver);
+
+      // larger than a fixed slot
+      ByteBuffer src = ByteBuffer.allocate(4096);
+      while (src.hasRemaining()) {
+        src.put((byte) src.position());
+      }
+      for (int i = 0; i < 20; i++) {
+        regionReactor.post(topic, src);
+      }
+      long sequence = regionReactor.claim(topic, 10);
+      regionReactor.getPayload(sequence).put("Hello".getBytes());
+      regionReactor.commit(sequence);
+      Thread.sleep(100L);
+
+      assertEquals(21, receiver.getCount());
+      ByteBuffer received = receiver.getLastBuffer();
+      assertEquals(0, received.position());
+      assertEquals(5, received.remaining());
+    } finally {
+      regionReactor.close();
+    }
+  }
+
+  @Test
+  public void shards() throws Exception {
+    EventReactor<ByteBuffer> shardedReactor =
+        EventReactor.builder().withDispatcher(new ByteBufferDispatcher())
+            .withPayloadAllocator(new ByteBufferPayload(2048)).withShards(4).withServiceShard(2)
+            .build();
+    shardedReactor.open().get();
+    try {
+      assertEquals(4, shardedReactor.getShardCount());
+      assertEquals(2, shardedReactor.getShardIndex(Topics.getTopic("SERVICE")));
+      assertEquals(shardedReactor.getShardIndex(Topics.getTopic("session1", "HEARTBEAT")),
+          shardedReactor.getShardIndex(Topics.getTopic("session1", "PEER_TERMINATED")));
+
+      ByteBuffer src = ByteBuffer.allocate(16);
+      for (int i = 0; i < 16; i++) {
+        Topic topic = Topics.getTopic("session" + i, "TestTopic6");
+        shardedReactor.subscribe(topic, receiver);
+        src.clear();
+        src.putInt(i);
+        shardedReactor.post(topic, src);
+      }
+      Topic topic = Topics.getTopic("session0", "TestTopic6");
+      long sequence = shardedReactor.claim(topic, 4);
+      shardedReactor.getPayload(sequence).putInt(16);
+      shardedReactor.commit(sequence);
+      Thread.sleep(100L);
+
+      assertEquals(17, receiver.getCount());
+    } finally {
+      shardedReactor.close();
+    }
+  }
 }
@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.fixprotocol.silverflash.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+  private static final long TICK = 1000;
+
+  private final List<TimerSchedule> expired = new ArrayList<>();
+  private final TimerWheel.Expiry expiry = timer -> expired.add(timer);
+  private TimerWheel wheel;
+
+  @Before
+  public void setUp() {
+    expired.clear();
+    wheel = new TimerWheel(TICK, 8, 0);
+  }
+
+  @Test
+  public void oneTime() {
+    TimerSchedule timer = new TimerSchedule(Topics.getTopic("t1"), null, 5 * TICK + 1, 0);
+    wheel.schedule(timer);
+    wheel.expire(5 * TICK, expiry);
+    assertEquals(0, expired.size());
+    // never early; fires on the following tick
+    wheel.expire(6 * TICK, expiry);
+    assertEquals(1, expired.size());
+    assertEquals(0, wheel.getSize());
+    // already run
+    assertFalse(timer.cancel());
+  }
+
+  @Test
+  public void beyondOneRotation() {
+    TimerSchedule timer = new TimerSchedule(Topics.getTopic("t1"), null, 20 * TICK, 0);
+    wheel.schedule(timer);
+    wheel.expire(19 * TICK, expiry);
+    assertEquals(0, expired.size());
+    wheel.expire(20 * TICK, expiry);
+    assertEquals(1, expired.size());
+  }
+
+  @Test
+  public void periodic() {
+    TimerSchedule timer = new TimerSchedule(Topics.getTopic("t1"), null, 3 * TICK, 3 * TICK);
+    wheel.schedule(timer);
+    // late expiration does not shift later deadlines
+    wheel.expire(4 * TICK, expiry);
+    assertEquals(1, expired.size());
+    wheel.expire(6 * TICK, expiry);
+    assertEquals(2, expired.size());
+    wheel.expire(30 * TICK, expiry);
+    assertEquals(10, expired.size());
+    assertEquals(1, wheel.getSize());
+
+    assertTrue(timer.cancel());
+    wheel.expire(40 * TICK, expiry);
+    assertEquals(10, expired.size());
+    assertEquals(0, wheel.getSize());
+  }
+
+  @Test
+  public void cancelled() {
+    TimerSchedule timer1 = new TimerSchedule(Topics.getTopic("t1"), null, 2 * TICK, 0);
+    TimerSchedule timer2 = new TimerSchedule(Topics.getTopic("t2"), null, 2 * TICK, 0);
+    wheel.schedule(timer1);
+    wheel.schedule(timer2);
+    assertTrue(timer1.cancel());
+    assertFalse(timer1.cancel());
+    wheel.expire(2 * TICK, expiry);
+    assertEquals(1, expired.size());
+    assertEquals(timer2, expired.get(0));
+  }
+
+  @Test
+  public void backPressure() {
+    TimerSchedule timer = new TimerSchedule(Topics.getTopic("t1"), null, TICK, 0);
+    wheel.schedule(timer);
+    assertEquals(0, wheel.expire(2 * TICK, t -> false));
+    // retried
+    assertEquals(1, wheel.expire(2 * TICK, expiry));
+  }
+}
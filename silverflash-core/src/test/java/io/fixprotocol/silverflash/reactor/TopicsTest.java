@@ -67,4 +67,42 @@ public class TopicsTest {
     assertEquals(0, joebob2.compareTo(joebob1));
     assertEquals(joebob1.hashCode(), joebob2.hashCode());
   }
+
+  @Test
+  public void testInterned() {
+    Topic joebob1 = Topics.getTopic("Joe", "Bob");
+    Topic joebob2 = Topics.parse("Joe/Bob");
+    Topic bobjoe = Topics.getTopic("Bob", "Joe");
+    assertSame(joebob1, joebob2);
+    assertEquals(joebob1.getId(), joebob2.getId());
+    assertNotEquals(joebob1.getId(), bobjoe.getId());
+    assertTrue(joebob1.getId() < Topics.getTopicCount());
+  }
+
+  @Test
+  public void testRelease() {
+    Topic released = Topics.getTopic("Joe", "Released");
+    Topics.release(released);
+    assertEquals(Topics.RELEASED, released.getId());
+
+    Topic reinterned = Topics.getTopic("Joe", "Released");
+    assertNotSame(released, reinterned);
+    assertEquals(released, reinterned);
+    assertTrue(reinterned.getId() >= 0);
+
+    // releasing a stale instance leaves its successor interned
+    Topics.release(released);
+    assertSame(reinterned, Topics.getTopic("Joe", "Released"));
+    Topics.release(reinterned);
+  }
+
+  @Test
+  public void testReleasedIdReused() {
+    Topics.release(Topics.getTopic("Joe", "Reused"));
+    final int topicCount = Topics.getTopicCount();
+    for (int i = 0; i < 1000; i++) {
+      Topics.release(Topics.getTopic("Joe", "Reused", Integer.toString(i)));
+    }
+    assertTrue(Topics.getTopicCount() - topicCount < 10);
+  }
 }
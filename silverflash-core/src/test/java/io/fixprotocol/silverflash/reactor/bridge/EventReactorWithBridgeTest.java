@@ -74,6 +74,7 @@ public class EventReactorWithBridgeTest {
   public void tearDown() throws Exception {
     reactor1.close();
     reactor2.close();
+    engine.close();
   }
 
   @Test
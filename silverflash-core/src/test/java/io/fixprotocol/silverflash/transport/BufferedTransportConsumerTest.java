@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+public class BufferedTransportConsumerTest {
+
+  private final ConcurrentLinkedQueue<Integer> received = new ConcurrentLinkedQueue<>();
+  private volatile boolean isConnected = false;
+  private BufferedTransportConsumer bufferedConsumer;
+
+  @Before
+  public void setUp() throws Exception {
+    bufferedConsumer = new BufferedTransportConsumer(Executors.defaultThreadFactory(),
+        new TransportConsumer() {
+
+          @Override
+          public void accept(ByteBuffer buffer) {
+            received.add((int) buffer.get());
+          }
+
+          @Override
+          public void connected() {
+            isConnected = true;
+          }
+
+          @Override
+          public void disconnected() {
+            isConnected = false;
+          }
+        }, new YieldingWaitStrategy());
+    bufferedConsumer.open().get();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    bufferedConsumer.close();
+  }
+
+  @Test
+  public void batch() throws InterruptedException {
+    bufferedConsumer.connected();
+
+    final int batchSize = bufferedConsumer.getMaxUncommitted();
+    assertTrue(batchSize > 1);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < batchSize; i++) {
+      ByteBuffer buffer = bufferedConsumer.get();
+      // every third buffer is left empty
+      if (i % 3 != 2) {
+        buffer.put((byte) i);
+        expected.add(i);
+      }
+      buffer.flip();
+    }
+    Thread.sleep(100L);
+    assertTrue(isConnected);
+    assertTrue(received.isEmpty());
+
+    bufferedConsumer.commit();
+    awaitReceived(expected.size());
+    assertEquals(expected, new ArrayList<>(received));
+  }
+
+  @Test
+  public void wrap() throws InterruptedException {
+    final int batchSize = bufferedConsumer.getMaxUncommitted();
+    List<Integer> expected = new ArrayList<>();
+    // more buffers than the ring holds
+    for (int batch = 0; batch < 5; batch++) {
+      for (int i = 0; i < batchSize; i++) {
+        ByteBuffer buffer = bufferedConsumer.get();
+        buffer.put((byte) i);
+        buffer.flip();
+        expected.add(i);
+      }
+      bufferedConsumer.commit();
+    }
+    awaitReceived(expected.size());
+    assertEquals(expected, new ArrayList<>(received));
+  }
+
+  private void awaitReceived(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && received.size() < count; i++) {
+      Thread.sleep(10L);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DispatcherGroupTest {
+
+  private DispatcherGroup group;
+
+  @Before
+  public void setUp() throws Exception {
+    group = new DispatcherGroup(2, Executors.defaultThreadFactory(),
+        IdleStrategy.backoff(100, 10, 1000000L));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    group.close();
+  }
+
+  @Test
+  public void shard() throws Exception {
+    Transport[] transports = new Transport[4];
+    for (int i = 0; i < transports.length; i++) {
+      transports[i] = mock(Transport.class);
+      when(transports[i].isReadyToRead()).thenReturn(true);
+      when(transports[i].read()).thenReturn(i % 2 == 0 ? 64 : 0);
+      group.getNext().addTransport(transports[i]);
+    }
+    assertEquals(2, group.getDispatcher(0).getTransportCount());
+    assertEquals(2, group.getDispatcher(1).getTransportCount());
+
+    for (Transport transport : transports) {
+      verify(transport, timeout(1000L).atLeastOnce()).read();
+    }
+    assertTrue(group.getPollCount() > 0);
+    final double hitRatio = group.getHitRatio();
+    assertTrue(hitRatio > 0.0 && hitRatio < 1.0);
+
+    group.getDispatcher(1).removeTransport(transports[1]);
+    // removal is applied by the dispatcher thread
+    while (group.getDispatcher(1).getTransportCount() > 1) {
+      Thread.sleep(1L);
+    }
+    assertSame(group.getDispatcher(1), group.getLeastLoaded());
+  }
+
+  @Test
+  public void byKey() {
+    assertSame(group.getDispatcher("session1"), group.getDispatcher("session1"));
+  }
+}
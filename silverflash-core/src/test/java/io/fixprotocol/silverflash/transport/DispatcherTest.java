@@ -0,0 +1,60 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DispatcherTest {
+
+  private Dispatcher dispatcher;
+
+  @Before
+  public void setUp() throws Exception {
+    dispatcher =
+        new Dispatcher(Executors.defaultThreadFactory(), IdleStrategy.backoff(100, 10, 1000000L));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    dispatcher.close();
+  }
+
+  @Test
+  public void restart() throws Exception {
+    // removing the last transport stops the thread while another transport is being added
+    for (int i = 0; i < 200; i++) {
+      Transport removed = mock(Transport.class);
+      Transport added = mock(Transport.class);
+      when(added.isReadyToRead()).thenReturn(true);
+      dispatcher.addTransport(removed);
+      dispatcher.removeTransport(removed);
+      dispatcher.addTransport(added);
+      verify(added, timeout(1000L).atLeastOnce()).read();
+      dispatcher.removeTransport(added);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+import io.fixprotocol.silverflash.transport.IOReactorGroup.BalancingPolicy;
+
+public class IOReactorGroupTest {
+
+  private IOReactorGroup group;
+
+  @Before
+  public void setUp() throws Exception {
+    group = new IOReactorGroup(3, Executors.defaultThreadFactory(), System.err::println);
+    group.open().get();
+  }
+
+  @After
+  public void tearDown() {
+    group.close();
+  }
+
+  @Test
+  public void roundRobin() {
+    BalancingPolicy policy = BalancingPolicy.roundRobin();
+    for (int i = 0; i < 7; i++) {
+      assertEquals(i % 3, policy.select(group, null));
+    }
+  }
+
+  @Test
+  public void leastConnections() {
+    BalancingPolicy policy = BalancingPolicy.leastConnections();
+    assertEquals(0, policy.select(group, null));
+    for (int i = 0; i < group.size(); i++) {
+      assertNotNull(group.getIOReactor(i).getSelector());
+      assertEquals(0, group.getIOReactor(i).getConnectionCount());
+    }
+  }
+
+  @Test
+  public void acceptor() throws Exception {
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7548);
+    final AtomicInteger bytesReceived = new AtomicInteger();
+    final TransportConsumer serverReceiver = new TransportConsumer() {
+
+      @Override
+      public void accept(ByteBuffer buf) {
+        bytesReceived.addAndGet(buf.remaining());
+        buf.position(buf.limit());
+      }
+
+      @Override
+      public void connected() {
+      }
+
+      @Override
+      public void disconnected() {
+      }
+    };
+
+    final TcpAcceptor acceptor =
+        new TcpAcceptor(group, BalancingPolicy.roundRobin(), serverAddress, transport -> {
+          try {
+            return transport.open(
+                new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+                serverReceiver).get();
+          } catch (InterruptedException | ExecutionException e) {
+            return null;
+          }
+        });
+    acceptor.open().get();
+
+    final int connections = group.size() * 2;
+    IOReactor clientReactor = new IOReactor();
+    clientReactor.open().get();
+    TcpConnectorTransport[] clients = new TcpConnectorTransport[connections];
+    try {
+      ByteBuffer buf = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+      for (int i = 0; i < connections; i++) {
+        clients[i] = new TcpConnectorTransport(clientReactor.getSelector(), serverAddress);
+        clients[i].open(
+            new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+            serverReceiver).get(1000L, TimeUnit.MILLISECONDS);
+      }
+      Thread.sleep(500L);
+
+      // the first member also services the server socket
+      assertEquals(3, group.getIOReactor(0).getConnectionCount());
+      for (int i = 1; i < group.size(); i++) {
+        assertEquals(2, group.getIOReactor(i).getConnectionCount());
+      }
+
+      for (int i = 0; i < connections; i++) {
+        buf.clear();
+        buf.put(new byte[16]);
+        clients[i].write(buf);
+      }
+      Thread.sleep(500L);
+      assertEquals(connections * 16, bytesReceived.get());
+    } finally {
+      for (TcpConnectorTransport client : clients) {
+        if (client != null) {
+          client.close();
+        }
+      }
+      acceptor.close();
+      clientReactor.close();
+    }
+  }
+
+  @Test
+  public void bySession() {
+    BalancingPolicy policy = BalancingPolicy.bySession(channel -> "session1");
+    final int index = policy.select(group, null);
+    assertEquals(index, policy.select(group, null));
+    assertSame(group.getIOReactor(index), group.getIOReactor("session1"));
+  }
+}
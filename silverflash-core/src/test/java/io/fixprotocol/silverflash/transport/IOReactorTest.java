@@ -0,0 +1,162 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IOReactorTest {
+
+  private Pipe pipe;
+  private Selector selector;
+
+  @Before
+  public void setUp() throws Exception {
+    selector = Selector.open();
+    pipe = Pipe.open();
+    pipe.source().configureBlocking(false);
+    pipe.sink().configureBlocking(false);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    pipe.source().close();
+    pipe.sink().close();
+    selector.close();
+  }
+
+  @Test
+  public void selectedKeySet() throws Exception {
+    SelectedKeySet keySet = SelectedKeySet.install(selector);
+    assertNotNull(keySet);
+    SelectionKey readKey = pipe.source().register(selector, SelectionKey.OP_READ);
+    SelectionKey writeKey = pipe.sink().register(selector, SelectionKey.OP_WRITE);
+
+    // the sink is writable at once
+    assertEquals(1, selector.selectNow());
+    assertEquals(1, keySet.size());
+    assertSame(writeKey, keySet.keys()[0]);
+    assertSame(keySet, selector.selectedKeys());
+    keySet.reset();
+    assertEquals(0, keySet.size());
+    assertNull(keySet.keys()[0]);
+
+    pipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+    assertEquals(2, selector.selectNow());
+    Iterator<SelectionKey> iter = keySet.iterator();
+    int count = 0;
+    while (iter.hasNext()) {
+      SelectionKey key = iter.next();
+      assertTrue(key == readKey || key == writeKey);
+      count++;
+    }
+    assertEquals(2, count);
+    keySet.clear();
+    assertEquals(0, keySet.size());
+
+    // grows beyond its initial capacity
+    for (int i = 0; i < 100; i++) {
+      keySet.add(readKey);
+    }
+    assertEquals(100, keySet.size());
+    assertFalse(keySet.add(null));
+  }
+
+  @Test
+  public void strategies() throws Exception {
+    pipe.source().register(selector, SelectionKey.OP_READ);
+
+    assertEquals(0, SelectStrategy.busySpin().select(selector, 0));
+
+    final SelectStrategy spinThenSelect = SelectStrategy.spinThenSelect(2, 50L);
+    long start = System.nanoTime();
+    assertEquals(0, spinThenSelect.select(selector, 1));
+    final long spinNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    assertEquals(0, spinThenSelect.select(selector, 2));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+    assertTrue(spinNanos < TimeUnit.MILLISECONDS.toNanos(40));
+
+    start = System.nanoTime();
+    assertEquals(0, SelectStrategy.blocking(50L).select(selector, 0));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+
+    pipe.sink().write(ByteBuffer.wrap(new byte[] {1}));
+    assertEquals(1, SelectStrategy.blocking(10000L).select(selector, 0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void blockingWithoutTimeout() {
+    SelectStrategy.blocking(0L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void spinThenSelectWithoutTimeout() {
+    SelectStrategy.spinThenSelect(10, 0L);
+  }
+
+  @Test
+  public void executeWakesBlockedReactor() throws Exception {
+    IOReactor reactor = new IOReactor(Executors.defaultThreadFactory(), System.err::println,
+        SelectStrategy.blocking(10000L));
+    reactor.open().get();
+    try {
+      // let the reactor block in select
+      Thread.sleep(50L);
+      CompletableFuture<Thread> ran = new CompletableFuture<>();
+      reactor.execute(() -> ran.complete(Thread.currentThread()));
+      final Thread reactorThread = ran.get(1000L, TimeUnit.MILLISECONDS);
+      assertTrue(reactorThread != Thread.currentThread());
+
+      // a channel is registered on the reactor thread without waiting for the timeout
+      CompletableFuture<SelectionKey> registered = new CompletableFuture<>();
+      reactor.execute(() -> {
+        try {
+          registered.complete(pipe.source().register(reactor.getSelector(), 0));
+        } catch (Exception e) {
+          registered.completeExceptionally(e);
+        }
+      });
+      assertTrue(registered.get(1000L, TimeUnit.MILLISECONDS).isValid());
+      assertEquals(1, reactor.getConnectionCount());
+
+      assertTrue(reactor.getLoopCount() > 0);
+      assertTrue(reactor.getLoopRate() > 0.0);
+      assertTrue(reactor.getSelectNanos() > 0);
+    } finally {
+      reactor.close();
+    }
+  }
+}
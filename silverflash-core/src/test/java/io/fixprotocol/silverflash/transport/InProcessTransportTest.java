@@ -0,0 +1,310 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+
+public class InProcessTransportTest {
+
+  /**
+   * Echoes each message
+   */
+  class Reflector implements TransportConsumer {
+    private final ByteBuffer response = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+    private final Transport transport;
+
+    Reflector(Transport transport) {
+      this.transport = transport;
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      response.clear();
+      response.put(buffer);
+      try {
+        transport.write(response);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    @Override
+    public void connected() {
+
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  class TestReceiver implements TransportConsumer {
+    private volatile int bytesReceived = 0;
+    private boolean isConnected = false;
+    private boolean isMessageAligned = true;
+    private volatile int messagesReceived = 0;
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      // message i has length i and every byte is i
+      final int length = buffer.remaining();
+      while (buffer.hasRemaining()) {
+        if (buffer.get() != (byte) length) {
+          isMessageAligned = false;
+        }
+      }
+      bytesReceived += length;
+      messagesReceived++;
+    }
+
+    @Override
+    public void connected() {
+      isConnected = true;
+    }
+
+    @Override
+    public void disconnected() {
+      isConnected = false;
+    }
+  }
+
+  private Transport clientTransport;
+  private Dispatcher dispatcher;
+  private IOReactor iOReactor;
+  final int messageCount = Byte.MAX_VALUE;
+  private byte[][] messages;
+  private Transport serverTransport;
+
+  @Before
+  public void setUp() throws Exception {
+    dispatcher = new Dispatcher();
+    iOReactor = new IOReactor();
+    iOReactor.open().get();
+
+    messages = new byte[messageCount][];
+    for (int i = 0; i < messageCount; ++i) {
+      messages[i] = new byte[i];
+      Arrays.fill(messages[i], (byte) i);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if (serverTransport != null) {
+      serverTransport.close();
+    }
+    if (clientTransport != null) {
+      clientTransport.close();
+    }
+    dispatcher.close();
+    iOReactor.close();
+  }
+
+  @Test
+  public void callbacks() throws Exception {
+    roundTrip(new InProcessTransport(iOReactor::execute));
+  }
+
+  @Test
+  public void polling() throws Exception {
+    roundTrip(new InProcessTransport(dispatcher));
+  }
+
+  @Test
+  public void wrap() throws Exception {
+    // the application polls a small ring, so messages are padded at its end
+    InProcessTransport transport = new InProcessTransport(0x400, RingFullPolicy.FAIL);
+    serverTransport = transport.getServerTransport();
+    TestReceiver serverReceiver = new TestReceiver();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        serverReceiver).get();
+    clientTransport = transport.getClientTransport();
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new TestReceiver()).get();
+
+    ByteBuffer buf = ByteBuffer.allocateDirect(1024).order(ByteOrder.nativeOrder());
+    int totalBytesSent = 0;
+    for (int n = 0; n < 10; n++) {
+      for (int i = 1; i < messageCount; ++i) {
+        buf.clear();
+        buf.put(messages[i], 0, messages[i].length);
+        totalBytesSent += clientTransport.write(buf);
+        while (serverTransport.read() > 0);
+      }
+    }
+    assertEquals(totalBytesSent, serverReceiver.bytesReceived);
+    assertEquals(10 * (messageCount - 1), serverReceiver.messagesReceived);
+    assertTrue(serverReceiver.isMessageAligned);
+
+    // nothing is read, so the ring fills
+    boolean isFull = false;
+    for (int i = 0; i < 0x400 && !isFull; i++) {
+      buf.clear();
+      buf.put(messages[64], 0, messages[64].length);
+      try {
+        clientTransport.write(buf);
+      } catch (IOException e) {
+        isFull = true;
+      }
+    }
+    assertTrue(isFull);
+  }
+
+  @Test(timeout = 10000)
+  public void largeRecordWrap() throws Exception {
+    // records larger than half the ring do not fit together with the padding before them
+    InProcessTransport transport =
+        new InProcessTransport(iOReactor::execute, 0x400, RingFullPolicy.YIELD);
+    serverTransport = transport.getServerTransport();
+    TestReceiver serverReceiver = new TestReceiver();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        serverReceiver).get();
+    clientTransport = transport.getClientTransport();
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new TestReceiver()).get();
+
+    ByteBuffer buf = ByteBuffer.allocateDirect(1024).order(ByteOrder.nativeOrder());
+    final int[] lengths = {500, 600, 900};
+    int totalBytesSent = 0;
+    final int count = 30;
+    for (int n = 0; n < count; n++) {
+      final int length = lengths[n % lengths.length];
+      buf.clear();
+      for (int i = 0; i < length; i++) {
+        buf.put((byte) length);
+      }
+      totalBytesSent += clientTransport.write(buf);
+    }
+
+    while (serverReceiver.messagesReceived < count) {
+      Thread.sleep(10L);
+    }
+    assertEquals(totalBytesSent, serverReceiver.bytesReceived);
+    assertTrue(serverReceiver.isMessageAligned);
+  }
+
+  @Test
+  public void multiThreadedExecutor() throws Exception {
+    // reads must not overlap, or the receiver's counts would be lost
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      InProcessTransport transport = new InProcessTransport(executor);
+      serverTransport = transport.getServerTransport();
+      TestReceiver serverReceiver = new TestReceiver();
+      serverTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          serverReceiver).get();
+      clientTransport = transport.getClientTransport();
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get();
+
+      ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+      int totalBytesSent = 0;
+      final int rounds = 100;
+      for (int n = 0; n < rounds; n++) {
+        for (int i = 1; i < messageCount; ++i) {
+          buf.clear();
+          buf.put(messages[i], 0, messages[i].length);
+          totalBytesSent += clientTransport.write(buf);
+        }
+      }
+
+      final long deadline = System.currentTimeMillis() + 5000L;
+      while (serverReceiver.bytesReceived < totalBytesSent
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+      }
+      assertEquals(totalBytesSent, serverReceiver.bytesReceived);
+      assertEquals(rounds * (messageCount - 1), serverReceiver.messagesReceived);
+      assertTrue(serverReceiver.isMessageAligned);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void writeAfterClose() throws Exception {
+    InProcessTransport transport = new InProcessTransport(0x400, RingFullPolicy.FAIL);
+    serverTransport = transport.getServerTransport();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new TestReceiver()).get();
+    clientTransport = transport.getClientTransport();
+    TestReceiver clientReceiver = new TestReceiver();
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        clientReceiver).get();
+
+    clientTransport.close();
+    assertFalse(clientReceiver.isConnected);
+
+    ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+    buf.put(messages[1], 0, messages[1].length);
+    clientTransport.write(buf);
+  }
+
+  private void roundTrip(InProcessTransport transport) throws Exception {
+    serverTransport = transport.getServerTransport();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new Reflector(serverTransport)).get();
+    clientTransport = transport.getClientTransport();
+    TestReceiver clientReceiver = new TestReceiver();
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        clientReceiver).get();
+    assertTrue(clientReceiver.isConnected);
+
+    ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+    int totalBytesSent = 0;
+    for (int i = 1; i < messageCount; ++i) {
+      buf.clear();
+      buf.put(messages[i], 0, messages[i].length);
+      totalBytesSent += clientTransport.write(buf);
+    }
+
+    final long deadline = System.currentTimeMillis() + 5000L;
+    while (clientReceiver.messagesReceived < messageCount - 1
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(totalBytesSent, clientReceiver.bytesReceived);
+    assertTrue(clientReceiver.isMessageAligned);
+  }
+}
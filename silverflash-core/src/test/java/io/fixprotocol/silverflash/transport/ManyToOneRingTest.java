@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ManyToOneRingTest {
+
+  private File file;
+  private ManyToOneRing ring;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile("ring", ".dat");
+    ring = new ManyToOneRing(file, 64, true, TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    ring.close();
+    file.delete();
+  }
+
+  @Test
+  public void abandoned() throws Exception {
+    // a client that dies after claiming a record never publishes it
+    ring.claim(16, 16, 7, RingFullPolicy.FAIL);
+    ByteBuffer message = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+    message.putLong(42L).flip();
+    ring.write(8, message, RingFullPolicy.FAIL);
+
+    assertTrue(ring.isReadyToRead());
+    assertFalse(ring.next());
+    Thread.sleep(50L);
+    assertTrue(ring.next());
+    assertEquals(ManyToOneRing.ABANDONED, ring.getType());
+    assertEquals(7, ring.getClientId());
+    ring.release();
+
+    assertTrue(ring.next());
+    assertEquals(ManyToOneRing.MESSAGE, ring.getType());
+    assertEquals(8, ring.getClientId());
+    ByteBuffer dest = ByteBuffer.allocate(8).order(ByteOrder.nativeOrder());
+    ring.read(dest);
+    ring.release();
+    assertEquals(42L, dest.getLong(0));
+    assertFalse(ring.next());
+  }
+
+  @Test(expected = IOException.class, timeout = 5000L)
+  public void consumerNotReading() throws Exception {
+    ByteBuffer message = ByteBuffer.allocate(24).order(ByteOrder.nativeOrder());
+    while (true) {
+      message.clear();
+      ring.write(1, message, RingFullPolicy.YIELD);
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+
+public class SharedMemoryAcceptorTest {
+
+  /**
+   * Echoes each request to the client that sent it
+   */
+  class Reflector implements TransportConsumer {
+    private final ByteBuffer response = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+    private final Transport transport;
+
+    Reflector(Transport transport) {
+      this.transport = transport;
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      response.clear();
+      response.put(buffer);
+      try {
+        transport.write(response);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
+    @Override
+    public void connected() {
+      connectedClients++;
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  class TestReceiver implements TransportConsumer {
+    private final byte fill;
+    private boolean isMessageAligned = true;
+    private volatile int messagesReceived = 0;
+
+    TestReceiver(byte fill) {
+      this.fill = fill;
+    }
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      while (buffer.hasRemaining()) {
+        if (buffer.get() != fill) {
+          isMessageAligned = false;
+        }
+      }
+      messagesReceived++;
+    }
+
+    @Override
+    public void connected() {
+
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  private SharedMemoryAcceptor acceptor;
+  private Dispatcher clientDispatcher;
+  private final SharedMemoryClientTransport[] clients = new SharedMemoryClientTransport[2];
+  private volatile int connectedClients = 0;
+  private Dispatcher gatewayDispatcher;
+
+  @Before
+  public void setUp() throws Exception {
+    gatewayDispatcher = new Dispatcher(Executors.defaultThreadFactory());
+    // small rings so that records wrap
+    acceptor = new SharedMemoryAcceptor(1, gatewayDispatcher, transport -> {
+      transport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          new Reflector(transport));
+      return transport;
+    }, RingFullPolicy.YIELD, 0x1000);
+    acceptor.open().get();
+    clientDispatcher = new Dispatcher(Executors.defaultThreadFactory());
+    for (int i = 0; i < clients.length; i++) {
+      clients[i] =
+          new SharedMemoryClientTransport(1, clientDispatcher, RingFullPolicy.YIELD, 0x1000);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (SharedMemoryClientTransport client : clients) {
+      client.close();
+    }
+    acceptor.close();
+    clientDispatcher.close();
+    gatewayDispatcher.close();
+  }
+
+  @Test
+  public void manyClients() throws Exception {
+    final int messageCount = 10000;
+    TestReceiver[] receivers = new TestReceiver[clients.length];
+    for (int i = 0; i < clients.length; i++) {
+      receivers[i] = new TestReceiver((byte) i);
+      clients[i].open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          receivers[i]).get();
+    }
+    assertNotEquals(clients[0].getClientId(), clients[1].getClientId());
+
+    ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+    for (int n = 0; n < messageCount; n++) {
+      for (int i = 0; i < clients.length; i++) {
+        message.clear();
+        for (int j = 0; j < n % message.capacity(); j++) {
+          message.put((byte) i);
+        }
+        clients[i].write(message);
+      }
+    }
+
+    final long deadline = System.currentTimeMillis() + 5000L;
+    while ((receivers[0].messagesReceived < messageCount
+        || receivers[1].messagesReceived < messageCount)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10L);
+    }
+    assertEquals(clients.length, connectedClients);
+    for (TestReceiver receiver : receivers) {
+      assertEquals(messageCount, receiver.messagesReceived);
+      assertTrue(receiver.isMessageAligned);
+    }
+  }
+
+  @Test
+  public void reconnect() throws Exception {
+    // the gateway reuses the slots of clients that have left
+    ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+    for (int n = 0; n < 200; n++) {
+      final SharedMemoryClientTransport client =
+          new SharedMemoryClientTransport(1, clientDispatcher, RingFullPolicy.YIELD, 0x1000);
+      final TestReceiver receiver = new TestReceiver((byte) 1);
+      client.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          receiver).get();
+      message.clear();
+      message.put((byte) 1);
+      client.write(message);
+
+      final long deadline = System.currentTimeMillis() + 5000L;
+      while (receiver.messagesReceived < 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1L);
+      }
+      assertEquals(1, receiver.messagesReceived);
+      client.close();
+    }
+    assertEquals(200, connectedClients);
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ *    Copyright 2015-2016 FIX Protocol Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.fixprotocol.silverflash.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.fixprotocol.silverflash.buffer.SingleBufferSupplier;
+
+public class SharedMemoryBroadcastTransportTest {
+
+  class TestReceiver implements TransportConsumer {
+    private boolean isMessageAligned = true;
+    private byte lastFill = -1;
+    private int messagesReceived = 0;
+
+    @Override
+    public void accept(ByteBuffer buffer) {
+      final byte fill = buffer.get(buffer.position());
+      while (buffer.hasRemaining()) {
+        if (buffer.get() != fill) {
+          isMessageAligned = false;
+        }
+      }
+      lastFill = fill;
+      messagesReceived++;
+    }
+
+    @Override
+    public void connected() {
+
+    }
+
+    @Override
+    public void disconnected() {
+
+    }
+  }
+
+  private static final int CAPACITY = 0x1000;
+
+  private SharedMemoryBroadcastTransport publisher;
+  private final SharedMemoryBroadcastTransport[] subscribers =
+      new SharedMemoryBroadcastTransport[2];
+  private final TestReceiver[] receivers = new TestReceiver[subscribers.length];
+
+  @Before
+  public void setUp() throws Exception {
+    // no dispatcher; the test polls
+    publisher = new SharedMemoryBroadcastTransport(true, 1, null, CAPACITY);
+    publisher.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+        new TestReceiver()).get();
+    for (int i = 0; i < subscribers.length; i++) {
+      subscribers[i] = new SharedMemoryBroadcastTransport(false, 1, null);
+      receivers[i] = new TestReceiver();
+      subscribers[i].open(
+          new SingleBufferSupplier(ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder())),
+          receivers[i]).get();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (SharedMemoryBroadcastTransport subscriber : subscribers) {
+      subscriber.close();
+    }
+    publisher.close();
+  }
+
+  @Test
+  public void fanOut() throws Exception {
+    final int messageCount = 1000;
+    ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+    for (int n = 0; n < messageCount; n++) {
+      message.clear();
+      for (int j = 0; j < 1 + n % 100; j++) {
+        message.put((byte) n);
+      }
+      publisher.write(message);
+      // each subscriber keeps its own cursor
+      for (SharedMemoryBroadcastTransport subscriber : subscribers) {
+        while (subscriber.read() > 0);
+      }
+    }
+
+    for (int i = 0; i < subscribers.length; i++) {
+      assertEquals(messageCount, receivers[i].messagesReceived);
+      assertTrue(receivers[i].isMessageAligned);
+      assertEquals(0, subscribers[i].getLappedCount());
+    }
+  }
+
+  @Test
+  public void tooLarge() throws Exception {
+    SharedMemoryBroadcastTransport subscriber = new SharedMemoryBroadcastTransport(false, 1, null);
+    TestReceiver receiver = new TestReceiver();
+    subscriber.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(64).order(ByteOrder.nativeOrder())),
+        receiver).get();
+    try {
+      ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+      for (int n = 0; n < 3; n++) {
+        message.clear();
+        // the second message does not fit the subscriber's buffer
+        final int length = n == 1 ? message.capacity() : 32;
+        for (int j = 0; j < length; j++) {
+          message.put((byte) n);
+        }
+        publisher.write(message);
+      }
+
+      // the record is discarded rather than failing the subscriber
+      while (subscriber.isReadyToRead()) {
+        subscriber.read();
+      }
+      assertEquals(2, receiver.messagesReceived);
+      assertEquals(2, receiver.lastFill);
+      assertTrue(receiver.isMessageAligned);
+      assertEquals(1, subscriber.getDiscardedCount());
+      assertTrue(subscriber.getBytesLost() >= 128);
+      assertEquals(0, subscriber.getLappedCount());
+    } finally {
+      subscriber.close();
+    }
+  }
+
+  @Test
+  public void lapped() throws Exception {
+    final int messageCount = 100;
+    ByteBuffer message = ByteBuffer.allocate(128).order(ByteOrder.nativeOrder());
+    for (int n = 0; n < messageCount; n++) {
+      message.clear();
+      for (int j = 0; j < message.capacity(); j++) {
+        message.put((byte) n);
+      }
+      publisher.write(message);
+      // only the first subscriber keeps up
+      while (subscribers[0].read() > 0);
+    }
+    // a read that detects a lap returns zero, so poll until caught up
+    while (subscribers[1].isReadyToRead()) {
+      subscribers[1].read();
+    }
+
+    assertEquals(messageCount, receivers[0].messagesReceived);
+    assertEquals(0, subscribers[0].getLappedCount());
+
+    // the slow subscriber skips to the latest message rather than reading overwritten data
+    assertTrue(subscribers[1].getLappedCount() > 0);
+    assertTrue(subscribers[1].getBytesLost() > 0);
+    assertTrue(receivers[1].messagesReceived < messageCount);
+    assertTrue(receivers[1].isMessageAligned);
+    assertEquals((byte) (messageCount - 1), receivers[1].lastFill);
+  }
+}
@@ -23,6 +23,8 @@ import static org.junit.Assert.assertTrue;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import org.junit.After;
@@ -41,12 +43,29 @@ public class SharedMemoryTransportTest {
     private int bytesReceived = 0;
     private byte[] dst = new byte[0x10000000 / 1024];
     private boolean isConnected = false;
+    private int messagesReceived = 0;
+    private boolean isMessageAligned = true;
 
     @Override
     public void accept(ByteBuffer buf) {
       int bytesToReceive = buf.remaining();
       bytesReceived += bytesToReceive;
       buf.get(dst, 0, bytesToReceive);
+      // message i has length i and every byte is i
+      for (int i = 0; i < bytesToReceive; i++) {
+        if (dst[i] != (byte) bytesToReceive) {
+          isMessageAligned = false;
+        }
+      }
+      messagesReceived++;
+    }
+
+    public int getMessagesReceived() {
+      return messagesReceived;
+    }
+
+    public boolean isMessageAligned() {
+      return isMessageAligned;
     }
 
     public int getBytesReceived() {
@@ -154,6 +173,112 @@ public class SharedMemoryTransportTest {
     assertEquals(totalBytesSent, serverReceiver.getBytesReceived());
     byte[] last = serverReceiver.getLastMessage();
     // assertEquals((byte) (Byte.MAX_VALUE - 1), last[0]);
+    // one read per message; empty message is not delivered
+    assertEquals(messageCount - 1, serverReceiver.getMessagesReceived());
+    assertTrue(serverReceiver.isMessageAligned());
+    assertEquals(0, clientTransport.getProducerStalls());
+  }
+
+  @Test
+  public void writeBatch() throws IOException {
+    TestReceiver serverReceiver = new TestReceiver();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+        serverReceiver);
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+        new TestReceiver());
+
+    ByteBuffer[] srcs = new ByteBuffer[32];
+    int totalBytesSent = 0;
+    for (int i = 1; i < 17; ++i) {
+      srcs[i - 1] = ByteBuffer.allocateDirect(i).order(ByteOrder.nativeOrder());
+      srcs[i - 1].put(messages[i]);
+      totalBytesSent += i;
+    }
+    assertEquals(totalBytesSent, clientTransport.write(srcs));
+
+    try {
+      Thread.sleep(500);
+    } catch (InterruptedException e) {
+
+    }
+    assertEquals(totalBytesSent, serverReceiver.getBytesReceived());
+    assertEquals(16, serverReceiver.getMessagesReceived());
+    assertTrue(serverReceiver.isMessageAligned());
+  }
+
+  @Test
+  public void ringFull() throws IOException {
+    clientTransport.close();
+    clientTransport =
+        new SharedMemoryTransport(true, true, 1, clientDispatcher, RingFullPolicy.FAIL);
+    // no reader on the other side
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+        new TestReceiver());
+
+    ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024 - 8).order(ByteOrder.nativeOrder());
+    long bytesSent = 0;
+    boolean isFull = false;
+    while (!isFull) {
+      buf.clear();
+      buf.position(buf.capacity());
+      try {
+        bytesSent += clientTransport.write(buf);
+      } catch (IOException e) {
+        isFull = true;
+      }
+    }
+    // records fill the pipe exactly
+    assertEquals(0x40000000 / (64 * 1024) * buf.capacity(), bytesSent);
+    assertEquals(1, clientTransport.getProducerStalls());
+  }
+
+  @Test
+  public void configured() throws Exception {
+    serverTransport.close();
+    clientTransport.close();
+    final Path directory = Files.createTempDirectory("transport");
+    // pipes of different sizes; the server creates both
+    serverTransport = SharedMemoryTransport.builder().withDirectory(directory)
+        .withTransportNumber(2).withDispatcher(serverDispatcher).withInboundCapacity(0x10000)
+        .withOutboundCapacity(0x1000).withPreFault(true).withReset(true).build();
+    clientTransport = SharedMemoryTransport.builder().withClient(true).withDirectory(directory)
+        .withTransportNumber(2).withDispatcher(clientDispatcher).withPreFault(true)
+        .withRingFullPolicy(RingFullPolicy.FAIL).build();
+
+    TestReceiver serverReceiver = new TestReceiver();
+    serverTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+        serverReceiver).get();
+    clientTransport.open(
+        new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+        new TestReceiver()).get();
+
+    // files are rounded up to whole pages
+    assertTrue(Files.size(directory.resolve(
+        String.format(SharedMemoryTransport.FILENAME_PATTERN, 2, "S"))) > 0x10000);
+    assertTrue(Files.size(directory.resolve(
+        String.format(SharedMemoryTransport.FILENAME_PATTERN, 2, "C"))) <= 0x10000);
+
+    ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+    int totalBytesSent = 0;
+    for (int i = 0; i < messageCount; ++i) {
+      buf.clear();
+      buf.put(messages[i], 0, messages[i].length);
+      totalBytesSent += clientTransport.write(buf);
+    }
+
+    try {
+      Thread.sleep(500);
+    } catch (InterruptedException e) {
+
+    }
+    // the client writes to the larger pipe without filling it
+    assertEquals(totalBytesSent, serverReceiver.getBytesReceived());
+    assertTrue(serverReceiver.isMessageAligned());
+    assertEquals(0, clientTransport.getProducerStalls());
   }
 
   @Test
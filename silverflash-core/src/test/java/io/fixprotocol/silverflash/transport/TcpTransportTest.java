@@ -24,6 +24,8 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -240,4 +242,242 @@ public class TcpTransportTest {
       tcpAcceptor.close();
     }
   }
+
+  @Test
+  public void testSendCoalesced() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7543);
+
+    final TestReceiver serverReceiver = new TestReceiver();
+
+    final TcpAcceptor tcpAcceptor =
+        new TcpAcceptor(iOReactor.getSelector(), serverAddress, serverReceiver);
+    tcpAcceptor.open().get();
+
+    try {
+      clientTransport = new TcpConnectorTransport(iOReactor.getSelector(), serverAddress);
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get(1000L, TimeUnit.MILLISECONDS);
+
+      // client gets accepted signal before server transport is fully constructed
+      Thread.sleep(500L);
+      assertTrue(serverReceiver.isConnected());
+
+      ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+      int totalBytesSent = 0;
+      clientTransport.cork();
+      for (int i = 0; i < messageCount; ++i) {
+        buf.clear();
+        buf.put(messages[i], 0, messages[i].length);
+        totalBytesSent += clientTransport.write(buf);
+      }
+      Thread.sleep(100L);
+      assertEquals(0, serverReceiver.getBytesReceived());
+      assertEquals(totalBytesSent, clientTransport.getOutboundQueueSize());
+
+      clientTransport.flush();
+      Thread.sleep(500L);
+      assertEquals(totalBytesSent, serverReceiver.getBytesReceived());
+    } finally {
+      tcpAcceptor.close();
+    }
+  }
+
+  @Test
+  public void corkOwnedByThread() throws Exception {
+
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7546);
+
+    final TestReceiver serverReceiver = new TestReceiver();
+
+    final TcpAcceptor tcpAcceptor =
+        new TcpAcceptor(iOReactor.getSelector(), serverAddress, serverReceiver);
+    tcpAcceptor.open().get();
+
+    try {
+      clientTransport = new TcpConnectorTransport(iOReactor.getSelector(), serverAddress);
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get(1000L, TimeUnit.MILLISECONDS);
+      Thread.sleep(500L);
+      assertTrue(serverReceiver.isConnected());
+
+      ByteBuffer buf = ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder());
+      // nested corks of this thread
+      clientTransport.cork();
+      clientTransport.cork();
+      buf.clear();
+      buf.put(messages[10], 0, messages[10].length);
+      clientTransport.write(buf);
+      clientTransport.flush();
+      Thread.sleep(100L);
+      assertEquals(0, serverReceiver.getBytesReceived());
+      assertEquals(10, clientTransport.getOutboundQueueSize());
+
+      // a write of another thread, like a heartbeat, is not held, and follows gathered bytes
+      Thread other = new Thread(() -> {
+        ByteBuffer heartbeat = ByteBuffer.allocate(64).order(ByteOrder.nativeOrder());
+        heartbeat.put(messages[20], 0, messages[20].length);
+        try {
+          clientTransport.write(heartbeat);
+        } catch (IOException e) {
+          fail(e.getMessage());
+        }
+      });
+      other.start();
+      other.join();
+      Thread.sleep(500L);
+      assertEquals(30, serverReceiver.getBytesReceived());
+
+      // still corked by this thread
+      buf.clear();
+      buf.put(messages[5], 0, messages[5].length);
+      clientTransport.write(buf);
+      Thread.sleep(100L);
+      assertEquals(30, serverReceiver.getBytesReceived());
+
+      clientTransport.flush();
+      Thread.sleep(500L);
+      assertEquals(35, serverReceiver.getBytesReceived());
+    } finally {
+      tcpAcceptor.close();
+    }
+  }
+
+  @Test
+  public void slowPeer() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7544);
+
+    try (ServerSocketChannel slowServer = ServerSocketChannel.open()) {
+      slowServer.bind(serverAddress);
+
+      clientTransport = new TcpConnectorTransport(iOReactor.getSelector(), serverAddress);
+      clientTransport.setOutboundQueue(64 * 1024, OutboundQueueFullPolicy.FAIL);
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get(1000L, TimeUnit.MILLISECONDS);
+
+      // peer never reads
+      try (SocketChannel peer = slowServer.accept()) {
+        ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+        boolean isFull = false;
+        for (int i = 0; i < 100000 && !isFull; ++i) {
+          buf.clear();
+          buf.put(messages[messageCount - 1]);
+          try {
+            assertEquals(messageCount - 1, clientTransport.write(buf));
+          } catch (IOException e) {
+            isFull = true;
+          }
+        }
+        assertTrue(isFull);
+        assertTrue(clientTransport.getOutboundQueueSize() > 0);
+        assertTrue(clientTransport.isOpen());
+      }
+    }
+  }
+
+  @Test
+  public void lateReader() throws IOException, InterruptedException, ExecutionException,
+      TimeoutException {
+
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7547);
+
+    try (ServerSocketChannel slowServer = ServerSocketChannel.open()) {
+      slowServer.bind(serverAddress);
+
+      clientTransport = new TcpConnectorTransport(iOReactor.getSelector(), serverAddress);
+      clientTransport.setOutboundQueue(4 * 1024 * 1024, OutboundQueueFullPolicy.FAIL);
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get(1000L, TimeUnit.MILLISECONDS);
+
+      try (SocketChannel peer = slowServer.accept()) {
+        // peer does not read until the socket is full and writes are queued
+        final int messageLength = 1000;
+        ByteBuffer buf = ByteBuffer.allocate(messageLength);
+        long bytesSent = 0;
+        int queuedMessages = 0;
+        for (int i = 0; i < 100000 && queuedMessages < 100; ++i) {
+          buf.clear();
+          while (buf.hasRemaining()) {
+            buf.put((byte) (bytesSent + buf.position()));
+          }
+          clientTransport.write(buf);
+          bytesSent += messageLength;
+          if (clientTransport.getOutboundQueueSize() > 0) {
+            queuedMessages++;
+          }
+        }
+        assertEquals(100, queuedMessages);
+
+        // queue is drained on OP_WRITE as the peer reads
+        peer.configureBlocking(false);
+        ByteBuffer dst = ByteBuffer.allocate(64 * 1024);
+        long bytesReceived = 0;
+        final long deadline = System.currentTimeMillis() + 10000L;
+        while (bytesReceived < bytesSent && System.currentTimeMillis() < deadline) {
+          dst.clear();
+          int bytesRead = peer.read(dst);
+          dst.flip();
+          for (int j = 0; j < bytesRead; j++) {
+            assertEquals((byte) (bytesReceived + j), dst.get(j));
+          }
+          bytesReceived += Math.max(bytesRead, 0);
+          if (bytesRead == 0) {
+            Thread.sleep(1L);
+          }
+        }
+        assertEquals(bytesSent, bytesReceived);
+        assertEquals(0, clientTransport.getOutboundQueueSize());
+      }
+    }
+  }
+
+  @Test
+  public void outboundQueueGrows() throws IOException, InterruptedException, ExecutionException,
+      TimeoutException {
+
+    InetSocketAddress serverAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7545);
+
+    try (ServerSocketChannel slowServer = ServerSocketChannel.open()) {
+      slowServer.bind(serverAddress);
+
+      final int highWaterMark = 1024 * 1024;
+      clientTransport = new TcpConnectorTransport(iOReactor.getSelector(), serverAddress);
+      clientTransport.setOutboundQueue(highWaterMark, OutboundQueueFullPolicy.FAIL);
+      clientTransport.open(
+          new SingleBufferSupplier(ByteBuffer.allocate(8096).order(ByteOrder.nativeOrder())),
+          new TestReceiver()).get(1000L, TimeUnit.MILLISECONDS);
+      assertEquals(0, clientTransport.getOutboundCapacity());
+
+      // peer never reads
+      try (SocketChannel peer = slowServer.accept()) {
+        ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.nativeOrder());
+        int smallestCapacity = 0;
+        boolean isFull = false;
+        for (int i = 0; i < 100000 && !isFull; ++i) {
+          buf.clear();
+          buf.put(messages[messageCount - 1]);
+          try {
+            clientTransport.write(buf);
+          } catch (IOException e) {
+            isFull = true;
+          }
+          if (smallestCapacity == 0) {
+            smallestCapacity = clientTransport.getOutboundCapacity();
+          }
+        }
+        assertTrue(isFull);
+        // storage starts small and grows only to the high-water mark
+        assertTrue(smallestCapacity > 0 && smallestCapacity < highWaterMark);
+        assertEquals(highWaterMark, clientTransport.getOutboundCapacity());
+
+        clientTransport.close();
+        assertEquals(0, clientTransport.getOutboundCapacity());
+      }
+    }
+  }
 }